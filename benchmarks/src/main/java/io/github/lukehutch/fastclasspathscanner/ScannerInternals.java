@@ -0,0 +1,89 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.ZipFile;
+
+/**
+ * Access to the package-private scanning methods of FastClasspathScanner, so that individual scanning phases can be
+ * benchmarked in isolation. Lives in the same package as FastClasspathScanner, so that renaming or changing the
+ * signature of these methods breaks the build of the benchmarks.
+ */
+public final class ScannerInternals {
+    private ScannerInternals() {
+    }
+
+    /** Clear the state of the scanner, as at the start of scan(), so that the same classes can be scanned again. */
+    public static void reset(final FastClasspathScanner scanner) {
+        scanner.classesEncounteredSoFarDuringScan.clear();
+        scanner.classGraphBuilder.reset();
+    }
+
+    public static void readClassInfoFromClassfileHeader(final FastClasspathScanner scanner,
+            final InputStream inputStream, final long classfileSize) {
+        try {
+            scanner.readClassInfoFromClassfileHeader(inputStream, classfileSize);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void scanZipfile(final FastClasspathScanner scanner, final ZipFile zipFile,
+            final long lastModified) {
+        try {
+            scanner.scanZipfile(zipFile.getName(), zipFile, lastModified, false);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void scanDir(final FastClasspathScanner scanner, final File dir) {
+        try {
+            scanner.scanDir(dir, dir.getPath().length() + 1, false, false);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Recursively delete a temporary directory. */
+    public static void deleteRecursively(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File child : files) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.benchmark;
+
+import io.github.lukehutch.fastclasspathscanner.FastClasspathScanner;
+import io.github.lukehutch.fastclasspathscanner.ScannerInternals;
+import io.github.lukehutch.fastclasspathscanner.SyntheticClassfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of parsing a single classfile header with readClassInfoFromClassfileHeader(). */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassfileParsingBenchmark {
+    /** "synthetic" for a small synthetic class, or "large" for the (large) FastClasspathScanner classfile. */
+    @Param({ "synthetic", "large" })
+    public String classfile;
+
+    private byte[] classfileBytes;
+    private FastClasspathScanner scanner;
+
+    @Setup
+    public void setup() throws IOException {
+        if (classfile.equals("synthetic")) {
+            classfileBytes = SyntheticClassfiles.classfile("bench.Widget", SyntheticClassfiles.ACC_CLASS,
+                    "bench.Base", Collections.singletonList("bench.Iface"), Collections.singletonList("bench.Ann"),
+                    8, 8);
+        } else {
+            try (InputStream inputStream = FastClasspathScanner.class.getResourceAsStream(FastClasspathScanner.class
+                    .getSimpleName() + ".class")) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buf = new byte[8192];
+                for (int n; (n = inputStream.read(buf)) > 0;) {
+                    out.write(buf, 0, n);
+                }
+                classfileBytes = out.toByteArray();
+            }
+        }
+        scanner = new FastClasspathScanner();
+    }
+
+    @Benchmark
+    public void readClassInfoFromClassfileHeader() {
+        ScannerInternals.reset(scanner);
+        ScannerInternals.readClassInfoFromClassfileHeader(scanner, new ByteArrayInputStream(classfileBytes),
+                classfileBytes.length);
+    }
+}
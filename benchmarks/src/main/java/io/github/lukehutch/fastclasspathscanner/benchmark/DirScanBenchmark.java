@@ -0,0 +1,94 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.benchmark;
+
+import io.github.lukehutch.fastclasspathscanner.FastClasspathScanner;
+import io.github.lukehutch.fastclasspathscanner.ScannerInternals;
+import io.github.lukehutch.fastclasspathscanner.SyntheticClassfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to scan a classpath directory with scanDir(). The same number of synthetic classes is spread over a package
+ * tree of the given depth, to measure the overhead of directory traversal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirScanBenchmark {
+    @Param({ "1", "8", "32" })
+    public int depth;
+
+    private static final int NUM_CLASSES = 2000;
+
+    private File tempDir;
+    private FastClasspathScanner scanner;
+
+    @Setup
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("fcs-bench").toFile();
+        String packageName = "bench";
+        for (int level = 0; level < depth; level++) {
+            SyntheticClassfiles.writeDir(tempDir, SyntheticClassfiles.tree(packageName, NUM_CLASSES / depth, 4, 10));
+            packageName += ".d" + level;
+        }
+        scanner = new FastClasspathScanner("bench");
+    }
+
+    @TearDown
+    public void tearDown() {
+        ScannerInternals.deleteRecursively(tempDir);
+    }
+
+    @Benchmark
+    public void scanDir() {
+        ScannerInternals.reset(scanner);
+        ScannerInternals.scanDir(scanner, tempDir);
+    }
+}
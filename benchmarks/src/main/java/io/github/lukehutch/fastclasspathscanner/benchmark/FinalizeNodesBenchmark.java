@@ -0,0 +1,99 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.benchmark;
+
+import io.github.lukehutch.fastclasspathscanner.classgraph.ClassGraphBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to compute the transitive closure of synthetic class hierarchies with ClassGraphBuilder.finalizeNodes(). The
+ * graph is rebuilt before each invocation, since finalizeNodes() is not idempotent; each invocation takes milliseconds,
+ * so the per-invocation setup does not distort the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FinalizeNodesBenchmark {
+    /**
+     * "deep": a single chain of 1000 classes; "binary": a binary tree of 20000 classes; "wide": 20000 classes with
+     * the same superclass. Every tenth class implements one of 10 interfaces and has one of 10 annotations.
+     */
+    @Param({ "deep", "binary", "wide" })
+    public String shape;
+
+    private ClassGraphBuilder classGraphBuilder;
+
+    @Setup(Level.Invocation)
+    public void buildGraph() {
+        final int numClasses = shape.equals("deep") ? 1000 : 20000;
+        final int fanout = shape.equals("deep") ? 1 : shape.equals("binary") ? 2 : numClasses;
+        classGraphBuilder = new ClassGraphBuilder();
+        for (int i = 0; i < 10; i++) {
+            classGraphBuilder.linkToSuperinterfaces("bench.Iface" + i, null, null, false);
+        }
+        for (int i = 0; i < numClasses; i++) {
+            ArrayList<String> interfaces = null;
+            HashSet<String> annotations = null;
+            if (i % 10 == 0) {
+                interfaces = new ArrayList<>();
+                interfaces.add("bench.Iface" + (i / 10) % 10);
+                annotations = new HashSet<>();
+                annotations.add("bench.Ann" + (i / 10) % 10);
+            }
+            classGraphBuilder.linkToSuperclassAndInterfaces("bench.C" + i,
+                    i == 0 ? "java.lang.Object" : "bench.C" + ((i - 1) / fanout), interfaces, annotations);
+        }
+    }
+
+    @Benchmark
+    public ClassGraphBuilder finalizeNodes() {
+        classGraphBuilder.finalizeNodes();
+        return classGraphBuilder;
+    }
+}
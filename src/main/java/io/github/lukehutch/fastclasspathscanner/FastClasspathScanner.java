@@ -29,31 +29,71 @@
 
 package io.github.lukehutch.fastclasspathscanner;
 
+import io.github.lukehutch.fastclasspathscanner.classgraph.AnnotationClassRef;
+import io.github.lukehutch.fastclasspathscanner.classgraph.AnnotationEnumValue;
+import io.github.lukehutch.fastclasspathscanner.classgraph.AnnotationInfo;
 import io.github.lukehutch.fastclasspathscanner.classgraph.ClassGraphBuilder;
+import io.github.lukehutch.fastclasspathscanner.classgraph.ConstantPoolIndex;
+import io.github.lukehutch.fastclasspathscanner.classgraph.FieldInfo;
+import io.github.lukehutch.fastclasspathscanner.classgraph.MappedClassGraphIndex;
+import io.github.lukehutch.fastclasspathscanner.classgraph.MethodCallIndex;
+import io.github.lukehutch.fastclasspathscanner.classgraph.MethodInfo;
 import io.github.lukehutch.fastclasspathscanner.matchprocessor.ClassAnnotationMatchProcessor;
+import io.github.lukehutch.fastclasspathscanner.matchprocessor.ConstantPoolMatchProcessor;
+import io.github.lukehutch.fastclasspathscanner.matchprocessor.FieldAnnotationMatchProcessor;
+import io.github.lukehutch.fastclasspathscanner.matchprocessor.FileMatchByteBufferProcessor;
 import io.github.lukehutch.fastclasspathscanner.matchprocessor.FileMatchProcessor;
 import io.github.lukehutch.fastclasspathscanner.matchprocessor.InterfaceMatchProcessor;
+import io.github.lukehutch.fastclasspathscanner.matchprocessor.MethodAnnotationMatchProcessor;
+import io.github.lukehutch.fastclasspathscanner.matchprocessor.MethodCallMatchProcessor;
 import io.github.lukehutch.fastclasspathscanner.matchprocessor.StaticFinalFieldMatchProcessor;
 import io.github.lukehutch.fastclasspathscanner.matchprocessor.SubclassMatchProcessor;
 import io.github.lukehutch.fastclasspathscanner.matchprocessor.SubinterfaceMatchProcessor;
-
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
+import io.github.lukehutch.fastclasspathscanner.utils.BoundedTaskDispatcher;
+import io.github.lukehutch.fastclasspathscanner.utils.BufferUnmapper;
+import io.github.lukehutch.fastclasspathscanner.utils.ClassfileReader;
+import io.github.lukehutch.fastclasspathscanner.utils.ClasspathDiff;
+import io.github.lukehutch.fastclasspathscanner.utils.ClasspathSnapshot;
+import io.github.lukehutch.fastclasspathscanner.utils.JarSummary;
+import io.github.lukehutch.fastclasspathscanner.utils.MappedZipFile;
+import io.github.lukehutch.fastclasspathscanner.utils.MultiPatternMatcher;
+import io.github.lukehutch.fastclasspathscanner.utils.PooledInflater;
+import io.github.lukehutch.fastclasspathscanner.utils.ScanEvents;
+import io.github.lukehutch.fastclasspathscanner.utils.ScanStatistics;
+import io.github.lukehutch.fastclasspathscanner.utils.ScanStatistics.ClasspathElementStatistics;
+import io.github.lukehutch.fastclasspathscanner.utils.ScanTracer;
+
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 /**
  * Uber-fast, ultra-lightweight Java classpath scanner. Scans the classpath by parsing the classfile binary format
  * directly rather than by using reflection. (Reflection causes the classloader to load each class, which can take an
@@ -69,18 +109,24 @@ import java.util.zip.ZipFile;
  * 
  * (4) find classes that have a given annotation;
  * 
- * (5) find classes that contain a specific static final field, returning the constant literal value used to initialize
+ * (5) find methods that have a given annotation, without calling the classloader on the declaring classes;
+ * 
+ * (6) find fields that have a given annotation, without calling the classloader on the declaring classes;
+ * 
+ * (7) find classes that contain a specific static final field, returning the constant literal value used to initialize
  * the field in the classfile;
  * 
- * (6) find file paths (even for non-classfiles) anywhere on the classpath that match a given regexp;
+ * (8) find classes that reference a given class, or that contain a string constant with a given substring;
  * 
- * (7) detect changes to the contents of the classpath after the initial scan;
+ * (9) find file paths (even for non-classfiles) anywhere on the classpath that match a given regexp;
  * 
- * (8) return a list of all directories and files on the classpath (i.e. all classpath elements) as a list of File
+ * (10) detect changes to the contents of the classpath after the initial scan;
+ * 
+ * (11) return a list of all directories and files on the classpath (i.e. all classpath elements) as a list of File
  * objects, with the list deduplicated and filtered to include only classpath directories and files that actually exist;
  * and
  * 
- * (9) return a list of the names of all classes and interfaces on the classpath (after whitelist and blacklist
+ * (12) return a list of the names of all classes and interfaces on the classpath (after whitelist and blacklist
  * filtering).
  * 
  * See the accompanying README.md file for complete documentation.
@@ -112,7 +158,7 @@ public class FastClasspathScanner {
     /**
      * A list of file path matchers to call when a directory or subdirectory on the classpath matches a given regexp.
      */
-    private final ArrayList<FilePathMatcher> filePathMatchers = new ArrayList<>();
+    private final MultiPatternMatcher<FilePathMatcher> filePathMatchers = new MultiPatternMatcher<>();
 
     /**
      * A map from fully-qualified class name, to static field name, to a StaticFieldMatchProcessor to call when the
@@ -121,15 +167,103 @@ public class FastClasspathScanner {
     private final HashMap<String, HashMap<String, StaticFinalFieldMatchProcessor>> //
     classNameToStaticFieldnameToMatchProcessor = new HashMap<>();
 
+    /** Static final field matchers that match by class name pattern, field name pattern, type or annotation. */
+    private final ArrayList<StaticFinalFieldPatternMatcher> staticFinalFieldPatternMatchers = new ArrayList<>();
+
+    /** A map from referenced class name to the ConstantPoolMatchProcessors to call when a reference is found. */
+    private final HashMap<String, ArrayList<ConstantPoolMatchProcessor>> //
+    referencedClassNameToMatchProcessors = new HashMap<>();
+
+    /** Matchers for substrings of string constants in constant pools. */
+    private final ArrayList<StringConstantMatcher> stringConstantMatchers = new ArrayList<>();
+
+    /** The inverted index of constant pool class references and string constants, if enabled. */
+    private ConstantPoolIndex constantPoolIndex;
+
+    /** The index from invoked methods to their callers, if enabled. */
+    private MethodCallIndex methodCallIndex;
+
+    /** Matchers for call sites of methods, called once the method call index has been built. */
+    private final ArrayList<MethodCallMatcher> methodCallMatchers = new ArrayList<>();
+
+    /** The directory to cache jarfile summaries in, or null if jarfile summaries are disabled. */
+    private File jarSummaryCacheDir;
+
+    /**
+     * The names of the superclasses, interfaces and annotations that the registered ClassMatchers look for. Used to
+     * skip jarfiles using their summaries, and to decide which classes to retain in bounded-memory mode.
+     */
+    private final HashSet<String> classMatcherTargetNames = new HashSet<>();
+
+    /**
+     * The names of classes, interfaces and annotations to retain the class graph for in addition to the ClassMatcher
+     * targets, or null if bounded-memory mode is not enabled.
+     */
+    private HashSet<String> boundedMemoryQueriedNames;
+
+    /** The summary of the jarfile currently being scanned, if jarfile summaries are enabled. */
+    private JarSummary jarSummaryBeingBuilt;
+
+    /** True if the fingerprints of classfiles and resources should be recorded during each scan. */
+    private boolean classpathSnapshotsEnabled;
+
+    /** The classpath snapshot recorded by the most recent scan or timestamp scan, if snapshots are enabled. */
+    private ClasspathSnapshot classpathSnapshot;
+
+    /** The classpath snapshot recorded by the most recent call to scan(), if snapshots are enabled. */
+    private ClasspathSnapshot scannedClasspathSnapshot;
+
+    /** The classpath to scan instead of the java.class.path system property, or null. */
+    private String classpathOverride;
+
+    /** Timings and counters for the most recent scan. */
+    private final ScanStatistics scanStatistics = new ScanStatistics();
+
+    /** The name the ScanStatistics MBean is registered under, or null if it has not been registered. */
+    private ObjectName scanStatisticsMBeanName;
+
+    /** The file to write a trace of each scan to, or null if tracing is disabled. */
+    private File scanTraceFile;
+
+    /** The tracer for the scan in progress, or null if tracing is disabled. */
+    private ScanTracer scanTracer;
+
+    /** The executor to run FileMatchProcessors on, or null if they are run on the scanning thread. */
+    private Executor fileMatchExecutor;
+
+    /** The maximum number of FileMatchProcessor calls submitted to fileMatchExecutor but not yet completed. */
+    private int maxFileMatchesInFlight;
+
+    /** If true, each FileMatchProcessor is called for one match at a time, in scan order. */
+    private boolean serialFileMatchProcessors;
+
+    /** The dispatcher for FileMatchProcessor calls in the scan in progress, or null. */
+    private BoundedTaskDispatcher fileMatchDispatcher;
+
+    /** Zipfiles and mappings to close once the FileMatchProcessors running on fileMatchDispatcher have completed. */
+    private final ArrayList<Closeable> closeAfterFileMatchProcessors = new ArrayList<>();
+
     /**
      * Classes encountered so far during a scan. If the same fully-qualified classname is encountered more than once,
      * the second and subsequent instances are ignored, because they are masked by the earlier occurrence in the
-     * classpath.
+     * classpath. (Package-private for the benchmarks.)
      */
-    private final HashSet<String> classesEncounteredSoFarDuringScan = new HashSet<>();
+    final HashSet<String> classesEncounteredSoFarDuringScan = new HashSet<>();
 
-    /** The class and interface graph builder. */
-    private final ClassGraphBuilder classGraphBuilder = new ClassGraphBuilder();
+    /**
+     * True while a classfile is being read by updateClassfile(), to replace a class in the class graph of the most
+     * recent scan.
+     */
+    private boolean updatingClassGraph;
+
+    /**
+     * The match processors that matched the classfile being parsed. They are called once the classfile has been
+     * parsed, so that the time spent in them is not counted as parse time.
+     */
+    private final ArrayList<Runnable> pendingMatchProcessorCalls = new ArrayList<>();
+
+    /** The class and interface graph builder. (Package-private for the benchmarks.) */
+    final ClassGraphBuilder classGraphBuilder = new ClassGraphBuilder();
 
     // -----------------------------------------------------------------------------------------------------------------
 
@@ -193,6 +327,16 @@ public class FastClasspathScanner {
         }
     }
 
+    /** Call the classloader for a class matched by a ClassMatcher, recording the time taken in the statistics. */
+    private <T> Class<? extends T> loadMatchingClass(final String className) {
+        final long loadStart = System.nanoTime();
+        try {
+            return loadClass(className);
+        } finally {
+            scanStatistics.addClassLoadTime(System.nanoTime() - loadStart);
+        }
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
@@ -210,14 +354,19 @@ public class FastClasspathScanner {
         if (superclass.isInterface()) {
             throw new IllegalArgumentException(superclass.getName() + " is an interface, not a regular class");
         }
+        classMatcherTargetNames.add(superclass.getName());
         classMatchers.add(new ClassMatcher() {
             @Override
             public void lookForMatches() {
                 for (final String subclass : classGraphBuilder.getNamesOfSubclassesOf(superclass.getName())) {
                     // Call classloader
-                    final Class<? extends T> klass = loadClass(subclass);
+                    final Class<? extends T> klass = loadMatchingClass(subclass);
                     // Process match
+                    final long matchStart = System.nanoTime();
+                    final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
                     subclassMatchProcessor.processMatch(klass);
+                    ScanEvents.INSTANCE.endMatchProcessor(event, subclassMatchProcessor, subclass);
+                    scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
                 }
             }
         });
@@ -299,14 +448,19 @@ public class FastClasspathScanner {
         if (!superInterface.isInterface()) {
             throw new IllegalArgumentException(superInterface.getName() + " is not an interface");
         }
+        classMatcherTargetNames.add(superInterface.getName());
         classMatchers.add(new ClassMatcher() {
             @Override
             public void lookForMatches() {
                 for (final String subInterface : classGraphBuilder.getNamesOfSubinterfacesOf(superInterface.getName())) {
                     // Call classloader
-                    final Class<? extends T> klass = loadClass(subInterface);
+                    final Class<? extends T> klass = loadMatchingClass(subInterface);
                     // Process match
+                    final long matchStart = System.nanoTime();
+                    final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
                     subinterfaceMatchProcessor.processMatch(klass);
+                    ScanEvents.INSTANCE.endMatchProcessor(event, subinterfaceMatchProcessor, subInterface);
+                    scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
                 }
             }
         });
@@ -392,6 +546,7 @@ public class FastClasspathScanner {
         if (!implementedInterface.isInterface()) {
             throw new IllegalArgumentException(implementedInterface.getName() + " is not an interface");
         }
+        classMatcherTargetNames.add(implementedInterface.getName());
         classMatchers.add(new ClassMatcher() {
             @Override
             public void lookForMatches() {
@@ -399,9 +554,13 @@ public class FastClasspathScanner {
                 for (final String implClass : classGraphBuilder.getNamesOfClassesImplementing(implementedInterface
                         .getName())) {
                     // Call classloader
-                    final Class<? extends T> klass = loadClass(implClass);
+                    final Class<? extends T> klass = loadMatchingClass(implClass);
                     // Process match
+                    final long matchStart = System.nanoTime();
+                    final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
                     interfaceMatchProcessor.processMatch(klass);
+                    ScanEvents.INSTANCE.endMatchProcessor(event, interfaceMatchProcessor, implClass);
+                    scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
                 }
             }
         });
@@ -443,6 +602,10 @@ public class FastClasspathScanner {
 
     /**
      * Calls the provided ClassMatchProcessor if classes are found on the classpath that have the specified annotation.
+     * A class has the annotation if it is annotated with it directly, if one of its annotations is meta-annotated with
+     * it (transitively, e.g. if @Service is annotated with @Component, then classes annotated with @Service have the
+     * annotation @Component), or if the annotation is @Inherited and a superclass has the annotation. Meta-annotations
+     * and @Inherited can only be resolved for annotation types that are themselves on the classpath and whitelisted.
      * 
      * @param annotation
      *            The class annotation to match.
@@ -454,6 +617,7 @@ public class FastClasspathScanner {
         if (!annotation.isAnnotation()) {
             throw new IllegalArgumentException("Class " + annotation.getName() + " is not an annotation");
         }
+        classMatcherTargetNames.add(annotation.getName());
         classMatchers.add(new ClassMatcher() {
             @Override
             public void lookForMatches() {
@@ -461,9 +625,13 @@ public class FastClasspathScanner {
                 for (final String classWithAnnotation : classGraphBuilder.getNamesOfClassesWithAnnotation(annotation
                         .getName())) {
                     // Call classloader
-                    final Class<?> klass = loadClass(classWithAnnotation);
+                    final Class<?> klass = loadMatchingClass(classWithAnnotation);
                     // Process match
+                    final long matchStart = System.nanoTime();
+                    final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
                     classAnnotationMatchProcessor.processMatch(klass);
+                    ScanEvents.INSTANCE.endMatchProcessor(event, classAnnotationMatchProcessor, classWithAnnotation);
+                    scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
                 }
             }
         });
@@ -471,9 +639,51 @@ public class FastClasspathScanner {
     }
 
     /**
-     * Returns the names of classes on the classpath that have the specified annotation. Should be called after scan(),
-     * and returns matching classes whether or not a ClassAnnotationMatchProcessor was added to the scanner before the
-     * call to scan(). Does not call the classloader on the matching classes, just returns their names.
+     * Calls the provided ClassMatchProcessor if classes are found on the classpath that have the specified annotation,
+     * and the values of the annotation (read directly from the classfile) match the given predicate, e.g.
+     * {@code a -> "GET".equals(a.getValue("method"))}. The classloader is only called on classes that match the
+     * predicate. Meta-annotations and @Inherited annotations are matched as for matchClassesWithAnnotation() without a
+     * predicate; in these cases, the predicate is applied to the annotation on the annotation type or superclass.
+     * 
+     * @param annotation
+     *            The class annotation to match.
+     * @param annotationPredicate
+     *            The predicate to apply to the values of the annotation.
+     * @param classAnnotationMatchProcessor
+     *            the ClassAnnotationMatchProcessor to call when a match is found.
+     */
+    public FastClasspathScanner matchClassesWithAnnotation(final Class<?> annotation,
+            final Predicate<AnnotationInfo> annotationPredicate,
+            final ClassAnnotationMatchProcessor classAnnotationMatchProcessor) {
+        if (!annotation.isAnnotation()) {
+            throw new IllegalArgumentException("Class " + annotation.getName() + " is not an annotation");
+        }
+        classMatcherTargetNames.add(annotation.getName());
+        classMatchers.add(new ClassMatcher() {
+            @Override
+            public void lookForMatches() {
+                // For all classes with the given annotation, where the annotation values match the predicate
+                for (final String classWithAnnotation : classGraphBuilder.getNamesOfClassesWithAnnotation(
+                        annotation.getName(), annotationPredicate)) {
+                    // Call classloader
+                    final Class<?> klass = loadMatchingClass(classWithAnnotation);
+                    // Process match
+                    final long matchStart = System.nanoTime();
+                    final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
+                    classAnnotationMatchProcessor.processMatch(klass);
+                    ScanEvents.INSTANCE.endMatchProcessor(event, classAnnotationMatchProcessor, classWithAnnotation);
+                    scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Returns the names of classes on the classpath that have the specified annotation, directly, as a meta-annotation
+     * or by @Inherited inheritance. Should be called after scan(), and returns matching classes whether or not a
+     * ClassAnnotationMatchProcessor was added to the scanner before the call to scan(). Does not call the classloader
+     * on the matching classes, just returns their names.
      * 
      * @param annotation
      *            The class annotation.
@@ -487,9 +697,10 @@ public class FastClasspathScanner {
     }
 
     /**
-     * Returns the names of classes on the classpath that have the specified annotation. Should be called after scan(),
-     * and returns matching classes whether or not a ClassAnnotationMatchProcessor was added to the scanner before the
-     * call to scan(). Does not call the classloader on the matching classes, just returns their names.
+     * Returns the names of classes on the classpath that have the specified annotation, directly, as a meta-annotation
+     * or by @Inherited inheritance. Should be called after scan(), and returns matching classes whether or not a
+     * ClassAnnotationMatchProcessor was added to the scanner before the call to scan(). Does not call the classloader
+     * on the matching classes, just returns their names.
      * 
      * @param annotationName
      *            The name of the class annotation.
@@ -499,6 +710,264 @@ public class FastClasspathScanner {
         return classGraphBuilder.getNamesOfClassesWithAnnotation(annotationName);
     }
 
+    /**
+     * Returns the names of classes on the classpath that have the specified annotation, where the values of the
+     * annotation (read directly from the classfile) match the given predicate. Should be called after scan(). Does not
+     * call the classloader on the matching classes, just returns their names.
+     * 
+     * @param annotationName
+     *            The name of the class annotation.
+     * @param annotationPredicate
+     *            The predicate to apply to the values of the annotation.
+     * @return A list of the names of classes that have the named annotation with matching values, or the empty list if
+     *         none.
+     */
+    public List<String> getNamesOfClassesWithAnnotation(final String annotationName,
+            final Predicate<AnnotationInfo> annotationPredicate) {
+        return classGraphBuilder.getNamesOfClassesWithAnnotation(annotationName, annotationPredicate);
+    }
+
+    /**
+     * Returns the named annotation on the named class, together with its values, read directly from the classfile.
+     * Should be called after scan(). If the annotation is not directly present on the class, the @Inherited annotations
+     * of superclasses are searched, followed by meta-annotations. Does not call the classloader.
+     * 
+     * @param className
+     *            The name of the class.
+     * @param annotationName
+     *            The name of the annotation.
+     * @return The annotation and its values, or null if the class does not have the annotation.
+     */
+    public AnnotationInfo getAnnotationInfo(final String className, final String annotationName) {
+        return classGraphBuilder.getAnnotationInfo(className, annotationName);
+    }
+
+    /**
+     * Returns the annotations directly present on the named class or interface, together with their values, read
+     * directly from the classfile. Should be called after scan(). Does not call the classloader.
+     * 
+     * @param className
+     *            The name of the class or interface.
+     * @return The annotations on the class or interface, or the empty list if none.
+     */
+    public List<AnnotationInfo> getAnnotationInfos(final String className) {
+        return classGraphBuilder.getAnnotationInfos(className);
+    }
+
+    /**
+     * Returns the names of interfaces on the classpath (including annotation types) that have the specified annotation,
+     * directly or as a meta-annotation. Should be called after scan(). Does not call the classloader on the matching
+     * interfaces, just returns their names.
+     * 
+     * @param annotation
+     *            The interface annotation.
+     * @return A list of the names of interfaces with the annotation, or the empty list if none.
+     */
+    public List<String> getNamesOfInterfacesWithAnnotation(final Class<?> annotation) {
+        if (!annotation.isAnnotation()) {
+            throw new IllegalArgumentException("Class " + annotation.getName() + " is not an annotation");
+        }
+        return classGraphBuilder.getNamesOfInterfacesWithAnnotation(annotation.getName());
+    }
+
+    /**
+     * Returns the names of interfaces on the classpath (including annotation types) that have the specified annotation,
+     * directly or as a meta-annotation. Should be called after scan(). Does not call the classloader on the matching
+     * interfaces, just returns their names.
+     * 
+     * @param annotationName
+     *            The name of the interface annotation.
+     * @return A list of the names of interfaces with the named annotation, or the empty list if none.
+     */
+    public List<String> getNamesOfInterfacesWithAnnotation(final String annotationName) {
+        return classGraphBuilder.getNamesOfInterfacesWithAnnotation(annotationName);
+    }
+
+    /**
+     * Returns the names of annotation types on the classpath that are annotated with the specified meta-annotation,
+     * either directly or via another annotation. Should be called after scan(). Does not call the classloader on the
+     * matching annotation types, just returns their names.
+     * 
+     * @param metaAnnotation
+     *            The meta-annotation.
+     * @return A list of the names of annotations with the meta-annotation, or the empty list if none.
+     */
+    public List<String> getNamesOfAnnotationsWithMetaAnnotation(final Class<?> metaAnnotation) {
+        if (!metaAnnotation.isAnnotation()) {
+            throw new IllegalArgumentException("Class " + metaAnnotation.getName() + " is not an annotation");
+        }
+        return classGraphBuilder.getNamesOfAnnotationsWithMetaAnnotation(metaAnnotation.getName());
+    }
+
+    /**
+     * Returns the names of annotation types on the classpath that are annotated with the specified meta-annotation,
+     * either directly or via another annotation. Should be called after scan(). Does not call the classloader on the
+     * matching annotation types, just returns their names.
+     * 
+     * @param metaAnnotationName
+     *            The name of the meta-annotation.
+     * @return A list of the names of annotations with the named meta-annotation, or the empty list if none.
+     */
+    public List<String> getNamesOfAnnotationsWithMetaAnnotation(final String metaAnnotationName) {
+        return classGraphBuilder.getNamesOfAnnotationsWithMetaAnnotation(metaAnnotationName);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Calls the provided MethodAnnotationMatchProcessor for each method found on the classpath that has the specified
+     * annotation. The declaring class, method name and method type descriptor are read directly from the classfile, so
+     * the classloader is not called on the declaring class.
+     * 
+     * @param annotation
+     *            The method annotation to match.
+     * @param methodAnnotationMatchProcessor
+     *            the MethodAnnotationMatchProcessor to call when a match is found.
+     */
+    public FastClasspathScanner matchMethodsWithAnnotation(final Class<?> annotation,
+            final MethodAnnotationMatchProcessor methodAnnotationMatchProcessor) {
+        if (!annotation.isAnnotation()) {
+            throw new IllegalArgumentException("Class " + annotation.getName() + " is not an annotation");
+        }
+        classMatcherTargetNames.add(annotation.getName());
+        classMatchers.add(new ClassMatcher() {
+            @Override
+            public void lookForMatches() {
+                // For all methods with the given annotation
+                for (final MethodInfo method : classGraphBuilder.getMethodsWithAnnotation(annotation.getName())) {
+                    // Process match
+                    final long matchStart = System.nanoTime();
+                    final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
+                    methodAnnotationMatchProcessor.processMatch(method.getClassName(), method.getMethodName(),
+                            method.getMethodDescriptor());
+                    ScanEvents.INSTANCE.endMatchProcessor(event, methodAnnotationMatchProcessor,
+                            method.getClassName(), method.getMethodName());
+                    scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Returns the methods on the classpath that have the specified annotation. Should be called after scan(), and
+     * returns matching methods whether or not a MethodAnnotationMatchProcessor was added to the scanner before the call
+     * to scan(). Does not call the classloader on the declaring classes.
+     * 
+     * @param annotation
+     *            The method annotation.
+     * @return A list of the methods with the method annotation, or the empty list if none.
+     */
+    public List<MethodInfo> getMethodsWithAnnotation(final Class<?> annotation) {
+        if (!annotation.isAnnotation()) {
+            throw new IllegalArgumentException("Class " + annotation.getName() + " is not an annotation");
+        }
+        return classGraphBuilder.getMethodsWithAnnotation(annotation.getName());
+    }
+
+    /**
+     * Returns the methods on the classpath that have the specified annotation. Should be called after scan(), and
+     * returns matching methods whether or not a MethodAnnotationMatchProcessor was added to the scanner before the call
+     * to scan(). Does not call the classloader on the declaring classes.
+     * 
+     * @param annotationName
+     *            The name of the method annotation.
+     * @return A list of the methods with the named method annotation, or the empty list if none.
+     */
+    public List<MethodInfo> getMethodsWithAnnotation(final String annotationName) {
+        return classGraphBuilder.getMethodsWithAnnotation(annotationName);
+    }
+
+    /**
+     * Returns the names of classes on the classpath that declare at least one method with the specified annotation.
+     * Should be called after scan(). Does not call the classloader on the matching classes, just returns their names.
+     * 
+     * @param annotationName
+     *            The name of the method annotation.
+     * @return A list of the names of classes with a method that has the named annotation, or the empty list if none.
+     */
+    public List<String> getNamesOfClassesWithMethodAnnotation(final String annotationName) {
+        return classGraphBuilder.getNamesOfClassesWithMethodAnnotation(annotationName);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Calls the provided FieldAnnotationMatchProcessor for each field found on the classpath that has the specified
+     * annotation. The declaring class, field name and field type descriptor are read directly from the classfile, so
+     * the classloader is not called on the declaring class.
+     * 
+     * @param annotation
+     *            The field annotation to match.
+     * @param fieldAnnotationMatchProcessor
+     *            the FieldAnnotationMatchProcessor to call when a match is found.
+     */
+    public FastClasspathScanner matchFieldsWithAnnotation(final Class<?> annotation,
+            final FieldAnnotationMatchProcessor fieldAnnotationMatchProcessor) {
+        if (!annotation.isAnnotation()) {
+            throw new IllegalArgumentException("Class " + annotation.getName() + " is not an annotation");
+        }
+        classMatcherTargetNames.add(annotation.getName());
+        classMatchers.add(new ClassMatcher() {
+            @Override
+            public void lookForMatches() {
+                // For all fields with the given annotation
+                for (final FieldInfo field : classGraphBuilder.getFieldsWithAnnotation(annotation.getName())) {
+                    // Process match
+                    final long matchStart = System.nanoTime();
+                    final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
+                    fieldAnnotationMatchProcessor.processMatch(field.getClassName(), field.getFieldName(),
+                            field.getFieldDescriptor());
+                    ScanEvents.INSTANCE.endMatchProcessor(event, fieldAnnotationMatchProcessor,
+                            field.getClassName(), field.getFieldName());
+                    scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Returns the fields on the classpath that have the specified annotation. Should be called after scan(), and
+     * returns matching fields whether or not a FieldAnnotationMatchProcessor was added to the scanner before the call
+     * to scan(). Does not call the classloader on the declaring classes.
+     * 
+     * @param annotation
+     *            The field annotation.
+     * @return A list of the fields with the field annotation, or the empty list if none.
+     */
+    public List<FieldInfo> getFieldsWithAnnotation(final Class<?> annotation) {
+        if (!annotation.isAnnotation()) {
+            throw new IllegalArgumentException("Class " + annotation.getName() + " is not an annotation");
+        }
+        return classGraphBuilder.getFieldsWithAnnotation(annotation.getName());
+    }
+
+    /**
+     * Returns the fields on the classpath that have the specified annotation. Should be called after scan(), and
+     * returns matching fields whether or not a FieldAnnotationMatchProcessor was added to the scanner before the call
+     * to scan(). Does not call the classloader on the declaring classes.
+     * 
+     * @param annotationName
+     *            The name of the field annotation.
+     * @return A list of the fields with the named field annotation, or the empty list if none.
+     */
+    public List<FieldInfo> getFieldsWithAnnotation(final String annotationName) {
+        return classGraphBuilder.getFieldsWithAnnotation(annotationName);
+    }
+
+    /**
+     * Returns the names of classes on the classpath that declare at least one field with the specified annotation.
+     * Should be called after scan(). Does not call the classloader on the matching classes, just returns their names.
+     * 
+     * @param annotationName
+     *            The name of the field annotation.
+     * @return A list of the names of classes with a field that has the named annotation, or the empty list if none.
+     */
+    public List<String> getNamesOfClassesWithFieldAnnotation(final String annotationName) {
+        return classGraphBuilder.getNamesOfClassesWithFieldAnnotation(annotationName);
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
@@ -574,233 +1043,1175 @@ public class FastClasspathScanner {
         return matchStaticFinalFieldNames(fullyQualifiedStaticFinalFieldNamesSet, staticFinalFieldMatchProcessor);
     }
 
-    // -----------------------------------------------------------------------------------------------------------------
-
     /**
-     * Calls the given FileMatchProcessor if files are found on the classpath with the given regexp pattern in their
-     * path.
+     * Calls the given StaticFinalFieldMatchProcessor for each static final field with a constant initializer value
+     * whose declaring class name, field name, type and/or field annotation match the given criteria, e.g. to harvest
+     * all String constants named "*_KEY" in package com.xyz.config:
      * 
-     * @param filenameMatchPattern
-     *            The regexp to match, e.g. "app/templates/.*\\.html"
-     * @param fileMatchProcessor
-     *            The FileMatchProcessor to call when each match is found.
+     * <code>
+     *   matchStaticFinalFields("com\\.xyz\\.config\\..*", ".*_KEY", String.class, null, processor)
+     * </code>
+     * 
+     * Any criterion that is null matches all fields. The class name pattern is tested once per class, and the field
+     * criteria are tested during the same pass over the field table that reads the constant initializer values, so
+     * matching fields are found without calling the classloader. Static final fields that are not initialized with a
+     * constant value are skipped. See matchStaticFinalFieldNames() for details on which fields have constant values.
+     * 
+     * @param classNamePattern
+     *            A regexp that the fully-qualified name of the declaring class must match, or null to match any class.
+     * @param fieldNamePattern
+     *            A regexp that the field name must match, or null to match any field name.
+     * @param fieldType
+     *            The type of the field (a primitive type or String), or null to match fields of any type.
+     * @param fieldAnnotation
+     *            An annotation that the field must have, or null to match fields with or without annotations.
+     * @param staticFinalFieldMatchProcessor
+     *            the StaticFinalFieldMatchProcessor to call when a match is found.
      */
-    public FastClasspathScanner matchFilenamePattern(final String filenameMatchPattern,
-            final FileMatchProcessor fileMatchProcessor) {
-        filePathMatchers.add(new FilePathMatcher(Pattern.compile(filenameMatchPattern), fileMatchProcessor));
+    public FastClasspathScanner matchStaticFinalFields(final String classNamePattern, final String fieldNamePattern,
+            final Class<?> fieldType, final Class<?> fieldAnnotation,
+            final StaticFinalFieldMatchProcessor staticFinalFieldMatchProcessor) {
+        String fieldDescriptor = null;
+        if (fieldType != null) {
+            if (fieldType == String.class) {
+                fieldDescriptor = "Ljava/lang/String;";
+            } else if (fieldType == int.class) {
+                fieldDescriptor = "I";
+            } else if (fieldType == long.class) {
+                fieldDescriptor = "J";
+            } else if (fieldType == short.class) {
+                fieldDescriptor = "S";
+            } else if (fieldType == byte.class) {
+                fieldDescriptor = "B";
+            } else if (fieldType == char.class) {
+                fieldDescriptor = "C";
+            } else if (fieldType == boolean.class) {
+                fieldDescriptor = "Z";
+            } else if (fieldType == float.class) {
+                fieldDescriptor = "F";
+            } else if (fieldType == double.class) {
+                fieldDescriptor = "D";
+            } else {
+                throw new IllegalArgumentException(fieldType.getName()
+                        + " is not a primitive type or String, so cannot be the type of a constant static final field");
+            }
+        }
+        if (fieldAnnotation != null && !fieldAnnotation.isAnnotation()) {
+            throw new IllegalArgumentException("Class " + fieldAnnotation.getName() + " is not an annotation");
+        }
+        staticFinalFieldPatternMatchers.add(new StaticFinalFieldPatternMatcher(
+                classNamePattern == null ? null : Pattern.compile(classNamePattern),
+                fieldNamePattern == null ? null : Pattern.compile(fieldNamePattern), fieldDescriptor,
+                fieldAnnotation == null ? null : fieldAnnotation.getName(), staticFinalFieldMatchProcessor));
         return this;
     }
 
-    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * Calls the given StaticFinalFieldMatchProcessor for each static final field with a constant initializer value
+     * whose declaring class name and field name match the given regexps. See matchStaticFinalFields(String, String,
+     * Class, Class, StaticFinalFieldMatchProcessor) for details.
+     * 
+     * @param classNamePattern
+     *            A regexp that the fully-qualified name of the declaring class must match, or null to match any class.
+     * @param fieldNamePattern
+     *            A regexp that the field name must match, or null to match any field name.
+     * @param staticFinalFieldMatchProcessor
+     *            the StaticFinalFieldMatchProcessor to call when a match is found.
+     */
+    public FastClasspathScanner matchStaticFinalFields(final String classNamePattern, final String fieldNamePattern,
+            final StaticFinalFieldMatchProcessor staticFinalFieldMatchProcessor) {
+        return matchStaticFinalFields(classNamePattern, fieldNamePattern, null, null, staticFinalFieldMatchProcessor);
+    }
 
-    /** An interface used for testing if a file path matches a specified pattern. */
-    private static class FilePathMatcher {
-        Pattern pattern;
-        FileMatchProcessor fileMatchProcessor;
+    // -----------------------------------------------------------------------------------------------------------------
 
-        public FilePathMatcher(final Pattern pattern, final FileMatchProcessor fileMatchProcessor) {
-            this.pattern = pattern;
-            this.fileMatchProcessor = fileMatchProcessor;
+    /**
+     * Calls the given ConstantPoolMatchProcessor for each class on the classpath whose constant pool references the
+     * named class, e.g. to find all classes that use "sun.misc.Unsafe". A class references another class if it names
+     * the class in a CONSTANT_Class entry, e.g. to call a method, access a field, instantiate or cast to the class
+     * (references to array types are counted as references to the array element type). The constant pool is read
+     * directly from the classfile, so the classloader is not called.
+     * 
+     * @param referencedClassName
+     *            The name of the referenced class.
+     * @param constantPoolMatchProcessor
+     *            the ConstantPoolMatchProcessor to call when a match is found.
+     */
+    public FastClasspathScanner matchClassesReferencing(final String referencedClassName,
+            final ConstantPoolMatchProcessor constantPoolMatchProcessor) {
+        ArrayList<ConstantPoolMatchProcessor> matchProcessors = referencedClassNameToMatchProcessors
+                .get(referencedClassName);
+        if (matchProcessors == null) {
+            referencedClassNameToMatchProcessors.put(referencedClassName, matchProcessors = new ArrayList<>());
         }
+        matchProcessors.add(constantPoolMatchProcessor);
+        return this;
     }
 
-    /** An interface used for testing if a class matches specified criteria. */
-    private static interface ClassMatcher {
-        public abstract void lookForMatches();
+    /**
+     * Calls the given ConstantPoolMatchProcessor for each string constant in the constant pool of a class on the
+     * classpath that contains the given substring, e.g. "jdbc:". The constant pool is read directly from the classfile,
+     * so the classloader is not called.
+     * 
+     * @param substring
+     *            The substring to look for in string constants.
+     * @param constantPoolMatchProcessor
+     *            the ConstantPoolMatchProcessor to call when a match is found.
+     */
+    public FastClasspathScanner matchClassesContainingStringConstant(final String substring,
+            final ConstantPoolMatchProcessor constantPoolMatchProcessor) {
+        stringConstantMatchers.add(new StringConstantMatcher(substring, constantPoolMatchProcessor));
+        return this;
     }
 
-    // -----------------------------------------------------------------------------------------------------------------
-
     /**
-     * Returns the names of all classes and interfaces processed during the scan, i.e. all classes reachable after
-     * taking into account the package whitelist and blacklist criteria.
+     * Builds an inverted index of the class references and string constants in the constant pools of all classes
+     * during the scan, so that getNamesOfClassesReferencing() and getNamesOfClassesContainingStringConstant() can be
+     * called after scan() without rescanning the classpath. Must be called before scan().
      */
-    public <T> Set<String> getNamesOfAllClasses() {
-        return classGraphBuilder.getNamesOfAllClasses();
+    public FastClasspathScanner enableConstantPoolIndex() {
+        if (constantPoolIndex == null) {
+            constantPoolIndex = new ConstantPoolIndex();
+        }
+        return this;
     }
 
-    // -----------------------------------------------------------------------------------------------------------------
-
     /**
-     * Read annotation entry from classfile.
+     * Returns the names of classes on the classpath whose constant pool references the named class. Requires
+     * enableConstantPoolIndex() to have been called before scan(). Does not call the classloader.
+     * 
+     * @param referencedClassName
+     *            The name of the referenced class.
+     * @return A list of the names of the referencing classes, or the empty list if none.
      */
-    private String readAnnotation(final DataInputStream inp, final Object[] constantPool) throws IOException {
-        final String annotationFieldDescriptor = readRefdString(inp, constantPool);
-        String annotationClassName;
-        if (annotationFieldDescriptor.charAt(0) == 'L'
-                && annotationFieldDescriptor.charAt(annotationFieldDescriptor.length() - 1) == ';') {
-            // Lcom/xyz/Annotation; -> com.xyz.Annotation
-            annotationClassName = annotationFieldDescriptor.substring(1, annotationFieldDescriptor.length() - 1)
-                    .replace('/', '.');
-        } else {
-            // Should not happen
-            annotationClassName = annotationFieldDescriptor;
+    public List<String> getNamesOfClassesReferencing(final String referencedClassName) {
+        if (constantPoolIndex == null) {
+            throw new IllegalStateException("enableConstantPoolIndex() must be called before scan()");
         }
-        final int numElementValuePairs = inp.readUnsignedShort();
-        for (int i = 0; i < numElementValuePairs; i++) {
-            inp.skipBytes(2); // element_name_index
-            readAnnotationElementValue(inp, constantPool);
+        return constantPoolIndex.getNamesOfClassesReferencing(referencedClassName);
+    }
+
+    /**
+     * Returns the names of classes on the classpath with a string constant in their constant pool that contains the
+     * given substring. Requires enableConstantPoolIndex() to have been called before scan(). Does not call the
+     * classloader.
+     * 
+     * @param substring
+     *            The substring to look for in string constants.
+     * @return A list of the names of the matching classes, or the empty list if none.
+     */
+    public List<String> getNamesOfClassesContainingStringConstant(final String substring) {
+        if (constantPoolIndex == null) {
+            throw new IllegalStateException("enableConstantPoolIndex() must be called before scan()");
         }
-        return annotationClassName;
+        return constantPoolIndex.getNamesOfClassesContainingStringConstant(substring);
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+
     /**
-     * Read annotation element value from classfile.
+     * Builds a graph from each class to the classes it references during the scan, so that
+     * getNamesOfClassesReachableFrom() and getNamesOfClassesReferencedBy() can be called after scan(). References are
+     * read from the CONSTANT_Class entries of the constant pool, from the descriptors of referenced fields and
+     * methods, and from the descriptors and annotations of declared fields and methods. The classloader is not called.
+     * Must be called before scan().
      */
-    private void readAnnotationElementValue(final DataInputStream inp, final Object[] constantPool) throws IOException {
-        final int tag = inp.readUnsignedByte();
+    public FastClasspathScanner enableClassDependencyGraph() {
+        classGraphBuilder.enableClassDependencyGraph();
+        return this;
+    }
+
+    /**
+     * Returns the names of all classes transitively reachable from the named root classes by following class
+     * references, including the root classes themselves, e.g. to find the classes needed to run an application given
+     * its entry points. Classes that were not scanned (e.g. classes outside the whitelisted packages, or JRE classes)
+     * are included in the result, but their own references are not followed. Requires enableClassDependencyGraph() to
+     * have been called before scan(). Does not call the classloader.
+     * 
+     * @param rootClassNames
+     *            The names of the root classes.
+     * @return A list of the names of the reachable classes, in breadth-first order.
+     */
+    public List<String> getNamesOfClassesReachableFrom(final String... rootClassNames) {
+        if (!classGraphBuilder.isClassDependencyGraphEnabled()) {
+            throw new IllegalStateException("enableClassDependencyGraph() must be called before scan()");
+        }
+        return classGraphBuilder.getNamesOfClassesReachableFrom(Arrays.asList(rootClassNames));
+    }
+
+    /**
+     * Returns the names of the classes directly referenced by the named class. Requires enableClassDependencyGraph()
+     * to have been called before scan(). Does not call the classloader.
+     * 
+     * @param className
+     *            The name of the class.
+     * @return A list of the names of the referenced classes, or the empty list if none.
+     */
+    public List<String> getNamesOfClassesReferencedBy(final String className) {
+        if (!classGraphBuilder.isClassDependencyGraphEnabled()) {
+            throw new IllegalStateException("enableClassDependencyGraph() must be called before scan()");
+        }
+        return classGraphBuilder.getNamesOfClassesReferencedBy(className);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Builds an index of method call sites during the scan, so that getCallersOf() can be called after scan(). Method
+     * bodies are decoded just enough to find invokevirtual, invokespecial, invokestatic and invokeinterface
+     * instructions. Decoding is performed in parallel with the scan, on a thread pool private to the scanner. Methods
+     * whose bodies cannot be decoded are skipped. The classloader is not called. Must be called before scan().
+     */
+    public FastClasspathScanner enableMethodCallIndex() {
+        if (methodCallIndex == null) {
+            methodCallIndex = new MethodCallIndex();
+        }
+        return this;
+    }
+
+    /**
+     * Calls the given MethodCallMatchProcessor for each call site of the named method on the classpath, once the scan
+     * is complete. Calls made through a reference to a subclass, subinterface or implementing class of the named class
+     * are also matched. Enables the method call index.
+     * 
+     * @param className
+     *            The name of the class that declares the method.
+     * @param methodName
+     *            The name of the method.
+     * @param methodDescriptor
+     *            The type descriptor of the method, e.g. "(Ljava/lang/String;)V", or null to match all overloads.
+     * @param methodCallMatchProcessor
+     *            the MethodCallMatchProcessor to call when a match is found.
+     */
+    public FastClasspathScanner matchCallersOf(final String className, final String methodName,
+            final String methodDescriptor, final MethodCallMatchProcessor methodCallMatchProcessor) {
+        enableMethodCallIndex();
+        methodCallMatchers.add(new MethodCallMatcher(className, methodName, methodDescriptor,
+                methodCallMatchProcessor));
+        return this;
+    }
+
+    /**
+     * Returns the methods that call the named method, e.g. to find all remaining uses of an API before deprecating it.
+     * Calls made through a reference to a subclass, subinterface or implementing class of the named class are also
+     * returned. Requires enableMethodCallIndex() to have been called before scan(). Does not call the classloader.
+     * 
+     * @param className
+     *            The name of the class that declares the method.
+     * @param methodName
+     *            The name of the method.
+     * @param methodDescriptor
+     *            The type descriptor of the method, e.g. "(Ljava/lang/String;)V", or null to match all overloads.
+     * @return A list of the calling methods, or the empty list if none.
+     */
+    public List<MethodInfo> getCallersOf(final String className, final String methodName,
+            final String methodDescriptor) {
+        if (methodCallIndex == null) {
+            throw new IllegalStateException("enableMethodCallIndex() must be called before scan()");
+        }
+        final LinkedHashSet<MethodInfo> callers = new LinkedHashSet<>();
+        for (final MethodInfo[] call : findCalls(className, methodName, methodDescriptor)) {
+            callers.add(call[0]);
+        }
+        return new ArrayList<>(callers);
+    }
+
+    /** Find the (caller, callee) pairs for calls to the named method, including calls via subtypes of the class. */
+    private List<MethodInfo[]> findCalls(final String className, final String methodName,
+            final String methodDescriptor) {
+        final LinkedHashSet<String> ownerClassNames = new LinkedHashSet<>();
+        ownerClassNames.add(className);
+        ownerClassNames.addAll(classGraphBuilder.getNamesOfSubclassesOf(className));
+        ownerClassNames.addAll(classGraphBuilder.getNamesOfSubinterfacesOf(className));
+        ownerClassNames.addAll(classGraphBuilder.getNamesOfClassesImplementing(className));
+        final ArrayList<MethodInfo[]> calls = new ArrayList<>();
+        for (final String ownerClassName : ownerClassNames) {
+            for (final MethodInfo callee : methodCallIndex.getCallees(ownerClassName, methodName)) {
+                if (methodDescriptor == null || methodDescriptor.equals(callee.getMethodDescriptor())) {
+                    for (final MethodInfo caller : methodCallIndex.getCallers(callee)) {
+                        calls.add(new MethodInfo[] { caller, callee });
+                    }
+                }
+            }
+        }
+        return calls;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Saves a compact summary of each scanned jarfile to the given cache directory, and uses the summaries saved by
+     * previous scans to skip jarfiles that cannot contain any classes matching the registered match processors. A
+     * jarfile is skipped if none of its classes can be a subclass, subinterface or implementation of a requested
+     * class or interface, or have a requested class, method or field annotation, whether directly or via superclasses,
+     * superinterfaces or meta-annotations defined in other jarfiles. Summaries are invalidated when a jarfile's size or
+     * modification time changes, or when the scanner's whitelist or blacklist changes.
+     * 
+     * Jarfiles are only skipped when the only match processors registered are class matchers (matchSubclassesOf(),
+     * matchSubinterfacesOf(), matchClassesImplementing(), match...WithAnnotation()) and matchStaticFinalFieldNames().
+     * Note that when jarfiles are skipped, the getNamesOf...() methods only return results from the scanned classpath
+     * elements.
+     * 
+     * @param jarSummaryCacheDir
+     *            The directory to save jarfile summaries in. Created if it does not exist.
+     */
+    public FastClasspathScanner setJarSummaryCacheDir(final File jarSummaryCacheDir) {
+        if (!jarSummaryCacheDir.isDirectory() && !jarSummaryCacheDir.mkdirs()) {
+            throw new IllegalArgumentException("Could not create directory " + jarSummaryCacheDir);
+        }
+        this.jarSummaryCacheDir = jarSummaryCacheDir;
+        return this;
+    }
+
+    /**
+     * Scans the given classpath instead of the classpath given by the java.class.path system property.
+     * 
+     * @param classpath
+     *            The classpath to scan, with elements separated by File.pathSeparator.
+     */
+    public FastClasspathScanner overrideClasspath(final String classpath) {
+        this.classpathOverride = classpath;
+        return this;
+    }
+
+    /**
+     * Returns timings and counters for the most recent call to scan(), in total and for each classpath element: the
+     * number of classfiles read and masked, the number of bytes read and inflated, and the time spent parsing
+     * classfiles, finalizing the class graph, in match processors, and loading matching classes. The same object is
+     * updated by each scan.
+     */
+    public ScanStatistics getScanStatistics() {
+        return scanStatistics;
+    }
+
+    /**
+     * Registers the ScanStatistics of this scanner with the platform MBean server, so that it can be read with JMX
+     * tools such as jconsole. The MBean's ObjectName is
+     * "io.github.lukehutch.fastclasspathscanner:type=ScanStatistics,name=" followed by the quoted name.
+     * 
+     * @param name
+     *            The name to distinguish this scanner from others in the same JVM.
+     * @throws IllegalArgumentException
+     *             if the MBean could not be registered, e.g. because the name is already in use.
+     */
+    public synchronized FastClasspathScanner registerScanStatisticsMBean(final String name) {
+        unregisterScanStatisticsMBean();
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName objectName = new ObjectName("io.github.lukehutch.fastclasspathscanner:"
+                    + "type=ScanStatistics,name=" + ObjectName.quote(name));
+            mBeanServer.registerMBean(scanStatistics, objectName);
+            scanStatisticsMBeanName = objectName;
+        } catch (final JMException e) {
+            throw new IllegalArgumentException("Could not register ScanStatistics MBean with name " + name, e);
+        }
+        return this;
+    }
+
+    /** Unregisters the ScanStatistics MBean, if it was registered with registerScanStatisticsMBean(). */
+    public synchronized FastClasspathScanner unregisterScanStatisticsMBean() {
+        if (scanStatisticsMBeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(scanStatisticsMBeanName);
+            } catch (final JMException e) {
+                // Already unregistered
+            }
+            scanStatisticsMBeanName = null;
+        }
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Stores the class and interface hierarchy and the names of the annotations of each class off-heap, in direct
+     * buffers, rather than as objects on the heap. This keeps heap usage flat when scanning millions of classes, at
+     * the cost of slower hierarchy queries: subclasses, implementing classes etc. are found by searching the graph
+     * each time they are queried, rather than being precomputed. Annotation values, method and field annotations,
+     * and the optional indices are still stored on the heap. The off-heap size of the graph is reported by
+     * getScanStatistics().getClassGraphOffHeapBytes().
+     */
+    public FastClasspathScanner enableOffHeapClassGraph() {
+        classGraphBuilder.enableOffHeapClassGraph();
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Records a fingerprint of each classfile and resource in the whitelisted paths during each scan: the CRC and
+     * size of jarfile entries, and the size and modification time of files in directories. The fingerprints are
+     * read from jarfile central directories and file metadata, so no file contents are read or parsed. Once enabled,
+     * getClasspathChangesSinceScan() returns the classes and resources that were added, removed or modified since
+     * the last scan, and getClasspathSnapshot() returns the snapshot recorded by the last scan, for comparing two
+     * scans. Jarfiles skipped using their jarfile summaries are still fingerprinted.
+     */
+    public FastClasspathScanner enableClasspathSnapshots() {
+        classpathSnapshotsEnabled = true;
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Enables bounded-memory mode. Once the match processors have been called at the end of each scan, the class
+     * graph is pruned to the classes, interfaces and annotations needed to answer queries about the superclasses,
+     * interfaces and annotations of the registered class matchers and the given names. Classes on a path to a
+     * queried name are retained, e.g. subclasses and superclasses of a queried class, or classes with a queried
+     * annotation. Queries about other names return empty results after the scan, and getNamesOfAllClasses() only
+     * returns the retained classes. The estimated size of the retained class graph is reported by
+     * getScanStatistics().getClassGraphFootprintBytes().
+     * 
+     * @param queriedClassNames
+     *            The names of classes, interfaces or annotations that will be passed to getNamesOf...() methods
+     *            after the scan, in addition to those of the registered class matchers.
+     */
+    public FastClasspathScanner enableBoundedMemoryMode(final String... queriedClassNames) {
+        boundedMemoryQueriedNames = new HashSet<>(Arrays.asList(queriedClassNames));
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Records a timeline of each scan, and writes it to the given file in Chrome trace-event JSON format at the end
+     * of the scan, overwriting the file from any previous scan. The trace can be opened in chrome://tracing or
+     * another trace viewer. It contains spans for the scan of each directory and jarfile, class graph finalization,
+     * each class matcher and each FileMatchProcessor call, and for decoding method bodies on worker threads if
+     * enableMethodCallIndex() has been called.
+     * 
+     * @param traceFile
+     *            The file to write the trace to.
+     */
+    public FastClasspathScanner enableScanTrace(final File traceFile) {
+        this.scanTraceFile = traceFile;
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Calls the given FileMatchProcessor if files are found on the classpath with the given regexp pattern in their
+     * path.
+     * 
+     * @param filenameMatchPattern
+     *            The regexp to match, e.g. "app/templates/.*\\.html"
+     * @param fileMatchProcessor
+     *            The FileMatchProcessor to call when each match is found.
+     */
+    public FastClasspathScanner matchFilenamePattern(final String filenameMatchPattern,
+            final FileMatchProcessor fileMatchProcessor) {
+        filePathMatchers.add(filenameMatchPattern, new FilePathMatcher(fileMatchProcessor, null));
+        return this;
+    }
+
+    /**
+     * Calls the given FileMatchByteBufferProcessor if files are found on the classpath with the given regexp pattern
+     * in their path, passing the contents of the file as a read-only ByteBuffer. Files in directories and
+     * uncompressed jarfile entries are memory-mapped rather than copied, and compressed jarfile entries are inflated
+     * once, even if they are matched by several patterns.
+     * 
+     * @param filenameMatchPattern
+     *            The regexp to match, e.g. "app/templates/.*\\.html"
+     * @param fileMatchByteBufferProcessor
+     *            The FileMatchByteBufferProcessor to call when each match is found.
+     */
+    public FastClasspathScanner matchFilenamePattern(final String filenameMatchPattern,
+            final FileMatchByteBufferProcessor fileMatchByteBufferProcessor) {
+        filePathMatchers.add(filenameMatchPattern, new FilePathMatcher(null, fileMatchByteBufferProcessor));
+        return this;
+    }
+
+    /**
+     * Calls FileMatchProcessors on the given executor rather than on the scanning thread, so that slow or I/O-bound
+     * processing of matching files overlaps with the rest of the scan. scan() waits for all processors to complete
+     * before finalizing the class graph, and rethrows the first exception thrown by a processor. Processors must be
+     * thread-safe unless serialPerProcessor is true.
+     * 
+     * @param executor
+     *            The executor to run FileMatchProcessors on.
+     * @param maxInFlight
+     *            The maximum number of matches submitted to the executor but not yet processed. The scan blocks
+     *            when this many matches are outstanding.
+     * @param serialPerProcessor
+     *            If true, each FileMatchProcessor (or FileMatchByteBufferProcessor) is called for one match at a
+     *            time, in the order the matches were found, although different processors run concurrently.
+     */
+    public FastClasspathScanner enableConcurrentFileMatchProcessors(final Executor executor, final int maxInFlight,
+            final boolean serialPerProcessor) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.fileMatchExecutor = executor;
+        this.maxFileMatchesInFlight = maxInFlight;
+        this.serialFileMatchProcessors = serialPerProcessor;
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** The match processor to call when a file path matches a specified pattern. */
+    private static class FilePathMatcher {
+        FileMatchProcessor fileMatchProcessor;
+        FileMatchByteBufferProcessor fileMatchByteBufferProcessor;
+
+        public FilePathMatcher(final FileMatchProcessor fileMatchProcessor,
+                final FileMatchByteBufferProcessor fileMatchByteBufferProcessor) {
+            this.fileMatchProcessor = fileMatchProcessor;
+            this.fileMatchByteBufferProcessor = fileMatchByteBufferProcessor;
+        }
+
+        /** The match processor, for reporting. */
+        Object getMatchProcessor() {
+            return fileMatchProcessor != null ? fileMatchProcessor : fileMatchByteBufferProcessor;
+        }
+    }
+
+    /**
+     * A file or zipfile entry whose path matched one or more filename patterns. The contents are read into a
+     * ByteBuffer at most once, however many FileMatchByteBufferProcessors are called, and are released once the
+     * last FileMatchProcessor for the match has been called.
+     */
+    private abstract static class FileMatch {
+        final String absolutePath;
+        final String relativePath;
+        /** The name of the match, for reporting. */
+        final String matchName;
+        private ByteBuffer contents;
+        /** The number of FileMatchProcessors for the match that have not yet been called. */
+        private final AtomicInteger numPendingProcessors = new AtomicInteger();
+
+        FileMatch(final String absolutePath, final String relativePath, final String matchName) {
+            this.absolutePath = absolutePath;
+            this.relativePath = relativePath;
+            this.matchName = matchName;
+        }
+
+        abstract InputStream openInputStream() throws IOException;
+
+        abstract ByteBuffer readContents() throws IOException;
+
+        /** Release the contents returned by readContents(), e.g. by unmapping them. */
+        void releaseContents(final ByteBuffer contents) {
+        }
+
+        /** Returns a read-only ByteBuffer over the contents, positioned at the first byte. */
+        synchronized ByteBuffer getContents() throws IOException {
+            if (contents == null) {
+                contents = readContents();
+            }
+            return contents.duplicate();
+        }
+
+        /** Called after each FileMatchProcessor for the match. Releases the contents after the last one. */
+        void processorCalled() {
+            if (numPendingProcessors.decrementAndGet() == 0) {
+                synchronized (this) {
+                    if (contents != null) {
+                        releaseContents(contents);
+                        contents = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /** A matching file in a directory, or listed directly on the classpath. */
+    private static class FileSystemFileMatch extends FileMatch {
+        final File file;
+
+        FileSystemFileMatch(final File file, final String absolutePath, final String relativePath,
+                final String matchName) {
+            super(absolutePath, relativePath, matchName);
+            this.file = file;
+        }
+
+        @Override
+        InputStream openInputStream() throws IOException {
+            return new FileInputStream(file);
+        }
+
+        @Override
+        ByteBuffer readContents() throws IOException {
+            return mapFile(file);
+        }
+
+        @Override
+        void releaseContents(final ByteBuffer contents) {
+            BufferUnmapper.unmap(contents);
+        }
+    }
+
+    /** A matching zipfile entry. */
+    private static class ZipEntryFileMatch extends FileMatch {
+        final ZipfileContents zipfileContents;
+        final ZipEntry entry;
+
+        ZipEntryFileMatch(final ZipfileContents zipfileContents, final ZipEntry entry, final String matchName) {
+            super(entry.getName(), entry.getName(), matchName);
+            this.zipfileContents = zipfileContents;
+            this.entry = entry;
+        }
+
+        @Override
+        InputStream openInputStream() throws IOException {
+            return zipfileContents.zipFile.getInputStream(entry);
+        }
+
+        @Override
+        ByteBuffer readContents() throws IOException {
+            return zipfileContents.readEntry(entry);
+        }
+    }
+
+    /**
+     * A zipfile, and a memory mapping of the zipfile that is created the first time an entry is read from it. The
+     * mapping is released by close(); the ZipFile is closed by its owner.
+     */
+    private static class ZipfileContents implements Closeable {
+        final ZipFile zipFile;
+        private MappedZipFile mappedZipFile;
+        private boolean mappedZipFileOpened;
+
+        ZipfileContents(final ZipFile zipFile) {
+            this.zipFile = zipFile;
+        }
+
+        /**
+         * Returns the entry of the mapped zipfile for an entry with the given compression method, or null if the
+         * zipfile could not be mapped, or the entry is not in the mapped zipfile or has a different method.
+         */
+        private MappedZipFile.Entry getMappedEntry(final ZipEntry entry, final int method) throws IOException {
+            if (entry.getMethod() != method) {
+                return null;
+            }
+            synchronized (this) {
+                if (!mappedZipFileOpened) {
+                    mappedZipFile = MappedZipFile.open(new File(zipFile.getName()));
+                    mappedZipFileOpened = true;
+                }
+            }
+            final MappedZipFile.Entry mappedEntry = mappedZipFile == null ? null
+                    : mappedZipFile.getEntry(entry.getName());
+            return mappedEntry != null && mappedEntry.method == method && mappedEntry.size < Integer.MAX_VALUE - 8
+                    ? mappedEntry
+                    : null;
+        }
+
+        /**
+         * Inflate a DEFLATED entry from the mapped zipfile into out[0..size) with a pooled Inflater, in one call.
+         */
+        private void inflate(final MappedZipFile.Entry mappedEntry, final byte[] out) throws IOException {
+            final PooledInflater inflater = PooledInflater.acquire();
+            try {
+                inflater.inflate(mappedZipFile.getRawData(mappedEntry), out, (int) mappedEntry.size);
+            } finally {
+                inflater.release();
+            }
+        }
+
+        /**
+         * Read a classfile entry into the scratch buffer of a ClassfileReader. DEFLATED entries are inflated
+         * directly into the scratch buffer with a pooled Inflater if possible, so that no inflater stream or
+         * buffers are allocated for the entry.
+         */
+        void readClassfile(final ZipEntry entry, final ClassfileReader reader) throws IOException {
+            final MappedZipFile.Entry mappedEntry = getMappedEntry(entry, ZipEntry.DEFLATED);
+            if (mappedEntry != null) {
+                inflate(mappedEntry, reader.prepareBuffer((int) mappedEntry.size));
+            } else {
+                try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                    reader.read(inputStream, entry.getSize());
+                }
+            }
+        }
+
+        /**
+         * Read the contents of an entry into a read-only ByteBuffer. STORED entries are sliced out of the mapped
+         * zipfile if possible, and DEFLATED entries are inflated with a pooled Inflater if possible, otherwise the
+         * entry is read from the ZipFile into a heap buffer.
+         */
+        ByteBuffer readEntry(final ZipEntry entry) throws IOException {
+            final MappedZipFile.Entry storedEntry = getMappedEntry(entry, ZipEntry.STORED);
+            if (storedEntry != null) {
+                return mappedZipFile.getRawData(storedEntry);
+            }
+            final MappedZipFile.Entry deflatedEntry = getMappedEntry(entry, ZipEntry.DEFLATED);
+            if (deflatedEntry != null) {
+                final byte[] buf = new byte[(int) deflatedEntry.size];
+                inflate(deflatedEntry, buf);
+                return ByteBuffer.wrap(buf).asReadOnlyBuffer();
+            }
+            final long size = entry.getSize();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Zip entry too large to read into a ByteBuffer: " + entry.getName());
+            }
+            byte[] buf = new byte[size < 0 ? 8192 : (int) size];
+            int len = 0;
+            try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                for (int n; (n = inputStream.read(buf, len, buf.length - len)) >= 0;) {
+                    len += n;
+                    if (len == buf.length) {
+                        // Buffer full -- check for EOF before growing it, in case the size was unknown or wrong
+                        final int b = inputStream.read();
+                        if (b < 0) {
+                            break;
+                        }
+                        buf = Arrays.copyOf(buf, Math.max(8192, buf.length * 2));
+                        buf[len++] = (byte) b;
+                    }
+                }
+            }
+            return ByteBuffer.wrap(buf, 0, len).slice().asReadOnlyBuffer();
+        }
+
+        /** Release the mapping of the zipfile. Entries are read from the ZipFile afterwards. */
+        @Override
+        public synchronized void close() {
+            if (mappedZipFile != null) {
+                mappedZipFile.close();
+                mappedZipFile = null;
+            }
+            mappedZipFileOpened = true;
+        }
+    }
+
+    /** A matcher for static final fields, by class name pattern, field name pattern, type and/or annotation. */
+    private static class StaticFinalFieldPatternMatcher {
+        final Pattern classNamePattern;
+        final Pattern fieldNamePattern;
+        final String fieldDescriptor;
+        final String fieldAnnotationName;
+        final StaticFinalFieldMatchProcessor staticFinalFieldMatchProcessor;
+
+        public StaticFinalFieldPatternMatcher(final Pattern classNamePattern, final Pattern fieldNamePattern,
+                final String fieldDescriptor, final String fieldAnnotationName,
+                final StaticFinalFieldMatchProcessor staticFinalFieldMatchProcessor) {
+            this.classNamePattern = classNamePattern;
+            this.fieldNamePattern = fieldNamePattern;
+            this.fieldDescriptor = fieldDescriptor;
+            this.fieldAnnotationName = fieldAnnotationName;
+            this.staticFinalFieldMatchProcessor = staticFinalFieldMatchProcessor;
+        }
+
+        public boolean matchesClass(final String className) {
+            return classNamePattern == null || classNamePattern.matcher(className).matches();
+        }
+
+        /** Test the field type first, since it is cheaper than matching the field name. */
+        public boolean matchesField(final String fieldName, final String descriptor) {
+            return (fieldDescriptor == null || fieldDescriptor.equals(descriptor))
+                    && (fieldNamePattern == null || fieldNamePattern.matcher(fieldName).matches());
+        }
+
+        public boolean matchesFieldAnnotations(final ArrayList<String> fieldAnnotationNames) {
+            return fieldAnnotationName == null || fieldAnnotationNames != null
+                    && fieldAnnotationNames.contains(fieldAnnotationName);
+        }
+    }
+
+    /** A matcher for call sites of a method. */
+    private static class MethodCallMatcher {
+        final String className;
+        final String methodName;
+        final String methodDescriptor;
+        final MethodCallMatchProcessor methodCallMatchProcessor;
+
+        public MethodCallMatcher(final String className, final String methodName, final String methodDescriptor,
+                final MethodCallMatchProcessor methodCallMatchProcessor) {
+            this.className = className;
+            this.methodName = methodName;
+            this.methodDescriptor = methodDescriptor;
+            this.methodCallMatchProcessor = methodCallMatchProcessor;
+        }
+    }
+
+    /** A matcher for substrings of string constants in constant pools. */
+    private static class StringConstantMatcher {
+        final String substring;
+        final ConstantPoolMatchProcessor constantPoolMatchProcessor;
+
+        public StringConstantMatcher(final String substring,
+                final ConstantPoolMatchProcessor constantPoolMatchProcessor) {
+            this.substring = substring;
+            this.constantPoolMatchProcessor = constantPoolMatchProcessor;
+        }
+    }
+
+    /** An interface used for testing if a class matches specified criteria. */
+    private static interface ClassMatcher {
+        public abstract void lookForMatches();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the names of all classes and interfaces processed during the scan, i.e. all classes reachable after
+     * taking into account the package whitelist and blacklist criteria.
+     */
+    public <T> Set<String> getNamesOfAllClasses() {
+        return classGraphBuilder.getNamesOfAllClasses();
+    }
+
+    /**
+     * Writes the class graph of the most recent scan to a file in the MappedClassGraphIndex binary format. The file
+     * can be memory-mapped with MappedClassGraphIndex.open(), in this or another process, to answer getNamesOf...()
+     * hierarchy and annotation queries without rescanning the classpath or deserializing the class graph.
+     * 
+     * @param indexFile
+     *            The file to write the index to. Any existing file is replaced atomically.
+     */
+    public FastClasspathScanner writeClassGraphIndex(final File indexFile) throws IOException {
+        MappedClassGraphIndex.write(classGraphBuilder, indexFile);
+        return this;
+    }
+
+    /**
+     * Adds or replaces a single class in the class graph of the most recent scan, without rescanning the classpath,
+     * e.g. when a class is hot-reloaded in a long-running process. Only the superclass and subclass closures and the
+     * annotation and interface mappings in the hierarchy neighbourhood of the class are recomputed, so the results
+     * of getNamesOf...() queries are the same as if the classpath had been rescanned with the new classfile in it.
+     * Match processors are not called, and the constant pool, method call and class dependency indices are not
+     * updated. Not supported with enableOffHeapClassGraph() or in bounded-memory mode.
+     * 
+     * @param classfileInputStream
+     *            The contents of the new classfile.
+     * @throws IllegalStateException
+     *             if the class graph cannot be updated.
+     */
+    public FastClasspathScanner updateClassfile(final InputStream classfileInputStream) throws IOException {
+        classGraphBuilder.checkUpdatable();
+        updatingClassGraph = true;
+        try {
+            readClassInfoFromClassfileHeader(classfileInputStream, /* classfileSize = */-1);
+            callPendingMatchProcessors();
+        } finally {
+            updatingClassGraph = false;
+        }
+        return this;
+    }
+
+    /**
+     * Removes a single class, interface or annotation type from the class graph of the most recent scan, without
+     * rescanning the classpath, e.g. when a class is unloaded from a long-running process. If the class is still the
+     * superclass or a superinterface of another class, it remains in the graph as if it had not been found on the
+     * classpath. The constant pool, method call and class dependency indices are not updated. Not supported with
+     * enableOffHeapClassGraph() or in bounded-memory mode.
+     * 
+     * @throws IllegalStateException
+     *             if the class graph cannot be updated.
+     */
+    public FastClasspathScanner removeClass(final String className) {
+        classGraphBuilder.removeClass(className);
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Read annotation entry from classfile, including the annotation's element values.
+     */
+    private AnnotationInfo readAnnotation(final ClassfileReader inp) throws IOException {
+        // Lcom/xyz/Annotation; -> com.xyz.Annotation
+        final String annotationClassName = inp.getDescriptorClassName(inp.readUnsignedShort());
+        final int numElementValuePairs = inp.readUnsignedShort();
+        final LinkedHashMap<String, Object> values = numElementValuePairs > 0 ? new LinkedHashMap<String, Object>()
+                : null;
+        for (int i = 0; i < numElementValuePairs; i++) {
+            final String elementName = inp.readRefdString();
+            values.put(elementName, readAnnotationElementValue(inp));
+        }
+        return new AnnotationInfo(annotationClassName, values);
+    }
+
+    /**
+     * Read annotation element value from classfile. Primitive constants are wrapped in the corresponding wrapper class,
+     * enum constants are returned as AnnotationEnumValue, class literals as AnnotationClassRef, nested annotations as
+     * AnnotationInfo, and arrays as Object[].
+     */
+    private Object readAnnotationElementValue(final ClassfileReader inp) throws IOException {
+        final int tag = inp.readUnsignedByte();
         switch (tag) {
         case 'B':
+            // byte, char, short and boolean constants are all stored as 4-byte int values
+            return ((Integer) inp.getConstant(inp.readUnsignedShort())).byteValue();
         case 'C':
+            return (char) ((Integer) inp.getConstant(inp.readUnsignedShort())).intValue();
+        case 'S':
+            return ((Integer) inp.getConstant(inp.readUnsignedShort())).shortValue();
+        case 'Z':
+            return ((Integer) inp.getConstant(inp.readUnsignedShort())).intValue() != 0;
         case 'D':
         case 'F':
         case 'I':
         case 'J':
-        case 'S':
-        case 'Z':
         case 's':
-            // const_value_index
-            inp.skipBytes(2);
-            break;
-        case 'e':
+            // const_value_index -- already the correct wrapper type, or String
+            return inp.getConstant(inp.readUnsignedShort());
+        case 'e': {
             // enum_const_value
-            inp.skipBytes(4);
-            break;
+            // Lcom/xyz/Enum; -> com.xyz.Enum
+            final String enumTypeName = inp.getDescriptorClassName(inp.readUnsignedShort());
+            final String enumConstName = inp.readRefdString();
+            return new AnnotationEnumValue(enumTypeName, enumConstName);
+        }
         case 'c':
             // class_info_index
-            inp.skipBytes(2);
-            break;
+            return new AnnotationClassRef(inp.readRefdString());
         case '@':
             // Complex (nested) annotation
-            readAnnotation(inp, constantPool);
-            break;
-        case '[':
+            return readAnnotation(inp);
+        case '[': {
             // array_value
             final int count = inp.readUnsignedShort();
+            final Object[] values = new Object[count];
             for (int l = 0; l < count; ++l) {
                 // Nested annotation element value
-                readAnnotationElementValue(inp, constantPool);
+                values[l] = readAnnotationElementValue(inp);
             }
-            break;
+            return values;
+        }
         default:
             // System.err.println("Invalid annotation element type tag: 0x" + Integer.toHexString(tag));
-            break;
+            return null;
         }
     }
 
     /**
-     * Read as usigned short constant pool reference, then look up the string in the constant pool.
+     * Coerce the constant pool value of a static final field initializer to the wrapper class for the field type.
      */
-    private static String readRefdString(final DataInputStream inp, final Object[] constantPool) throws IOException {
-        return (String) constantPool[inp.readUnsignedShort()];
+    private static Object coerceConstantValue(final String descriptor, final Object constValue) {
+        // byte, char, short and boolean constants are all stored as 4-byte int
+        // values -- coerce and wrap in the proper wrapper class with autoboxing
+        switch (descriptor) {
+        case "B":
+            // Convert byte store in Integer to Byte
+            return ((Integer) constValue).byteValue();
+        case "C":
+            // Convert char stored in Integer to Character
+            return (char) ((Integer) constValue).intValue();
+        case "S":
+            // Convert char stored in Integer to Short
+            return ((Integer) constValue).shortValue();
+        case "Z":
+            // Convert char stored in Integer to Boolean
+            return ((Integer) constValue).intValue() != 0;
+        case "I":
+        case "J":
+        case "F":
+        case "D":
+        case "Ljava/lang/String;":
+            // Field is int, long, float, double or String => object is already in correct
+            // wrapper type (Integer, Long, Float, Double or String), nothing to do
+            return constValue;
+        default:
+            // Should never happen:
+            // constant values can only be stored as an int, long, float, double or String
+            return constValue;
+        }
     }
 
     /**
-     * Directly examine contents of classfile binary header.
+     * Look for class references and string constants in the constant pool of a class, calling any matching
+     * ConstantPoolMatchProcessors and adding the class to the constant pool index, if enabled.
      */
-    private void readClassInfoFromClassfileHeader(final InputStream inputStream) throws IOException {
-        final DataInputStream inp = new DataInputStream(new BufferedInputStream(inputStream, 1024));
+    private void scanConstantPool(final String className, final ClassfileReader inp) throws IOException {
+        final int classId = constantPoolIndex == null ? -1 : constantPoolIndex.addClass(className);
+        for (int i = 1, cpCount = inp.getConstantPoolCount(); i < cpCount; i++) {
+            if (inp.getTag(i) == 7) {
+                // Class reference
+                final String referencedClassName = inp.getReferencedClassName(i);
+                if (referencedClassName != null && !referencedClassName.equals(className)) {
+                    if (classId >= 0) {
+                        constantPoolIndex.addReferencedClass(classId, referencedClassName);
+                    }
+                    final ArrayList<ConstantPoolMatchProcessor> matchProcessors = //
+                    referencedClassNameToMatchProcessors.get(referencedClassName);
+                    if (matchProcessors != null) {
+                        for (final ConstantPoolMatchProcessor matchProcessor : matchProcessors) {
+                            pendingMatchProcessorCalls.add(() -> {
+                                final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
+                                matchProcessor.processMatch(className, referencedClassName);
+                                ScanEvents.INSTANCE.endMatchProcessor(event, matchProcessor, className);
+                            });
+                        }
+                    }
+                }
+            } else if (inp.getTag(i) == 8) {
+                // String constant
+                final String stringConstant = inp.getString(i);
+                if (classId >= 0) {
+                    constantPoolIndex.addStringConstant(classId, stringConstant);
+                }
+                for (final StringConstantMatcher stringConstantMatcher : stringConstantMatchers) {
+                    if (stringConstant.contains(stringConstantMatcher.substring)) {
+                        pendingMatchProcessorCalls.add(() -> {
+                            final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
+                            stringConstantMatcher.constantPoolMatchProcessor.processMatch(className, stringConstant);
+                            ScanEvents.INSTANCE.endMatchProcessor(event,
+                                    stringConstantMatcher.constantPoolMatchProcessor, className);
+                        });
+                    }
+                }
+            }
+        }
+    }
 
-        // Magic
-        if (inp.readInt() != 0xCAFEBABE) {
-            // Not classfile
-            return;
+    /** Names that are compared against constant pool entries, encoded in modified UTF8. */
+    private static final byte[] JAVA_LANG_OBJECT = ClassfileReader.encode("java/lang/Object");
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = ClassfileReader.encode("RuntimeVisibleAnnotations");
+    private static final byte[] CONSTANT_VALUE = ClassfileReader.encode("ConstantValue");
+    private static final byte[] CODE = ClassfileReader.encode("Code");
+    private static final byte[] ANNOTATION_DEFAULT = ClassfileReader.encode("AnnotationDefault");
+
+    /**
+     * Read a classfile into the scratch buffer of the current thread, then examine the classfile binary header.
+     * (Package-private for the benchmarks.)
+     * 
+     * @param classfileSize
+     *            The size of the classfile, or -1 if not known.
+     */
+    void readClassInfoFromClassfileHeader(final InputStream inputStream, final long classfileSize)
+            throws IOException {
+        final ClassfileReader reader = ClassfileReader.acquire();
+        try {
+            reader.read(inputStream, classfileSize);
+            readClassInfoFromClassfileHeader(reader);
+        } finally {
+            reader.release();
         }
+    }
 
-        // Minor version
-        inp.readUnsignedShort();
-        // Major version
-        inp.readUnsignedShort();
-
-        // Constant pool count (1-indexed, zeroth entry not used)
-        final int cpCount = inp.readUnsignedShort();
-        // Constant pool
-        final Object[] constantPool = new Object[cpCount];
-        final int[] indirectStringRef = new int[cpCount];
-        Arrays.fill(indirectStringRef, -1);
-        for (int i = 1; i < cpCount; ++i) {
-            final int tag = inp.readUnsignedByte();
-            switch (tag) {
-            case 1: // Modified UTF8
-                constantPool[i] = inp.readUTF();
-                break;
-            case 3: // int, short, char, byte, boolean are all represented by Constant_INTEGER
-                constantPool[i] = inp.readInt();
-                break;
-            case 4: // float
-                constantPool[i] = inp.readFloat();
-                break;
-            case 5: // long
-                constantPool[i] = inp.readLong();
-                i++; // double slot
-                break;
-            case 6: // double
-                constantPool[i] = inp.readDouble();
-                i++; // double slot
-                break;
-            case 7: // Class
-            case 8: // String
-                // Forward or backward indirect reference to a modified UTF8 entry
-                indirectStringRef[i] = inp.readUnsignedShort();
-                break;
-            case 9: // field ref
-            case 10: // method ref
-            case 11: // interface ref
-            case 12: // name and type
-                inp.skipBytes(4); // two shorts
-                break;
-            case 15: // method handle
-                inp.skipBytes(3);
-                break;
-            case 16: // method type
-                inp.skipBytes(2);
-                break;
-            case 18: // invoke dynamic
-                inp.skipBytes(4);
-                break;
-            default:
-                // System.err.println("Unkown tag value for constant pool entry: " + tag);
-                break;
+    /** Call the match processors that matched the classfile that was parsed last. */
+    private void callPendingMatchProcessors() {
+        if (!pendingMatchProcessorCalls.isEmpty()) {
+            final long matchStart = System.nanoTime();
+            try {
+                for (final Runnable matchProcessorCall : pendingMatchProcessorCalls) {
+                    matchProcessorCall.run();
+                }
+            } finally {
+                pendingMatchProcessorCalls.clear();
             }
+            scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
         }
-        // Resolve indirection of string references now that all the strings have been read
-        // (allows forward references to strings before they have been encountered)
-        for (int i = 1; i < cpCount; i++) {
-            if (indirectStringRef[i] >= 0) {
-                constantPool[i] = constantPool[indirectStringRef[i]];
-            }
+    }
+
+    /**
+     * Directly examine contents of classfile binary header.
+     */
+    private void readClassInfoFromClassfileHeader(final ClassfileReader inp) throws IOException {
+        pendingMatchProcessorCalls.clear();
+        // Magic, version and constant pool (constant pool entries are only decoded when they are looked up)
+        if (!inp.readHeader()) {
+            // Not classfile
+            return;
         }
+        final int cpCount = inp.getConstantPoolCount();
+        final boolean recordDependencies = !updatingClassGraph && classGraphBuilder.isClassDependencyGraphEnabled();
+        final boolean recordCalls = !updatingClassGraph && methodCallIndex != null;
 
         // Access flags
         final int flags = inp.readUnsignedShort();
         final boolean isInterface = (flags & 0x0200) != 0;
+        final boolean isAnnotation = (flags & 0x2000) != 0;
 
         // The fully-qualified class name of this class, with slashes replaced with dots
-        final String className = readRefdString(inp, constantPool).replace('/', '.');
-        if (className.equals("java.lang.Object")) {
+        final int classNameIdx = inp.readUnsignedShort();
+        if (inp.stringEquals(classNameIdx, JAVA_LANG_OBJECT)) {
             // java.lang.Object doesn't have a superclass to be linked to, can simply return
             return;
         }
+        final String className = inp.getClassName(classNameIdx);
 
-        // Determine if this fully-qualified class name has already been encountered during this scan
-        if (!classesEncounteredSoFarDuringScan.add(className)) {
+        if (updatingClassGraph) {
+            // Replace the previous definition of the class
+            classGraphBuilder.removeClassContents(className);
+        } else if (!(classGraphBuilder.isOffHeapClassGraphEnabled() ? classGraphBuilder.markEncountered(className)
+                : classesEncounteredSoFarDuringScan.add(className))) {
             // If so, skip this classfile, because the earlier class with the same name as this one
             // occurred earlier on the classpath, so it masks this one.
+            if (jarSummaryBeingBuilt != null) {
+                // The summary would depend on the rest of the classpath
+                jarSummaryBeingBuilt.setIncomplete();
+            }
+            scanStatistics.classfileMasked();
             return;
         }
 
         // Superclass name, with slashes replaced with dots
-        final String superclassName = readRefdString(inp, constantPool).replace('/', '.');
+        final String superclassName = inp.readRefdClassName();
+        if (jarSummaryBeingBuilt != null) {
+            jarSummaryBeingBuilt.addDefinedClass(className);
+            jarSummaryBeingBuilt.addReferencedName(superclassName);
+        }
+
+        // Look for class references and string constants in the constant pool
+        if (!updatingClassGraph && (constantPoolIndex != null || !referencedClassNameToMatchProcessors.isEmpty()
+                || !stringConstantMatchers.isEmpty())) {
+            scanConstantPool(className, inp);
+        }
+
+        // Record the classes referenced from the constant pool
+        final HashSet<String> dependencies = recordDependencies ? new HashSet<String>() : null;
+        if (recordDependencies) {
+            for (int i = 1; i < cpCount; i++) {
+                final int tag = inp.getTag(i);
+                if (tag == 7) {
+                    final String referencedClassName = inp.getReferencedClassName(i);
+                    if (referencedClassName != null) {
+                        dependencies.add(referencedClassName);
+                    }
+                } else if (tag == 12) {
+                    // Descriptor of NameAndType
+                    inp.addDescriptorClassNames(inp.getSecondRef(i), dependencies);
+                } else if (tag == 16) {
+                    // Descriptor of MethodType
+                    inp.addDescriptorClassNames(i, dependencies);
+                }
+            }
+        }
+
+        // Resolve the methods referenced by Methodref and InterfaceMethodref entries, for finding call sites
+        MethodInfo[] methodRefs = null;
+        ArrayList<MethodInfo> callers = null;
+        ArrayList<byte[]> codeAttributes = null;
+        if (recordCalls) {
+            methodRefs = new MethodInfo[cpCount];
+            for (int i = 1; i < cpCount; i++) {
+                if (inp.getTag(i) == 10 || inp.getTag(i) == 11) {
+                    final int nameAndType = inp.getSecondRef(i);
+                    methodRefs[i] = new MethodInfo(inp.getClassName(inp.getRef(i)), inp.getString(inp.getRef(
+                            nameAndType)), inp.getString(inp.getSecondRef(nameAndType)));
+                }
+            }
+            callers = new ArrayList<>();
+            codeAttributes = new ArrayList<>();
+        }
 
         // Look up static field name match processors given class name 
         final HashMap<String, StaticFinalFieldMatchProcessor> staticFieldnameToMatchProcessor = //
-        classNameToStaticFieldnameToMatchProcessor.get(className);
+        updatingClassGraph ? null : classNameToStaticFieldnameToMatchProcessor.get(className);
+
+        // Find static final field pattern matchers whose class name pattern matches this class
+        ArrayList<StaticFinalFieldPatternMatcher> classFieldPatternMatchers = null;
+        for (final StaticFinalFieldPatternMatcher fieldPatternMatcher : staticFinalFieldPatternMatchers) {
+            if (!updatingClassGraph && fieldPatternMatcher.matchesClass(className)) {
+                if (classFieldPatternMatchers == null) {
+                    classFieldPatternMatchers = new ArrayList<>();
+                }
+                classFieldPatternMatchers.add(fieldPatternMatcher);
+            }
+        }
 
         // Interfaces
         final int interfaceCount = inp.readUnsignedShort();
         final ArrayList<String> interfaces = interfaceCount > 0 ? new ArrayList<String>() : null;
         for (int i = 0; i < interfaceCount; i++) {
-            interfaces.add(readRefdString(inp, constantPool).replace('/', '.'));
+            interfaces.add(inp.readRefdClassName());
+        }
+        if (jarSummaryBeingBuilt != null) {
+            jarSummaryBeingBuilt.addReferencedNames(interfaces);
         }
 
         // Fields
@@ -809,77 +2220,105 @@ public class FastClasspathScanner {
             final int accessFlags = inp.readUnsignedShort();
             // See http://docs.oracle.com/javase/specs/jvms/se7/html/jvms-4.html#jvms-4.6
             final boolean isStaticFinal = (accessFlags & 0x0018) == 0x0018;
-            final String fieldName = readRefdString(inp, constantPool);
+            // The field name and descriptor are only decoded if they are needed (getString() caches the decoded
+            // string, so looking them up more than once is cheap)
+            final int fieldNameIdx = inp.readUnsignedShort();
             final StaticFinalFieldMatchProcessor staticFinalFieldMatchProcessor = staticFieldnameToMatchProcessor != null //
-            ? staticFieldnameToMatchProcessor.get(fieldName)
+            ? staticFieldnameToMatchProcessor.get(inp.getString(fieldNameIdx))
                     : null;
-            final String descriptor = readRefdString(inp, constantPool);
+            final int descriptorIdx = inp.readUnsignedShort();
             final int attributesCount = inp.readUnsignedShort();
+            if (recordDependencies) {
+                inp.addDescriptorClassNames(descriptorIdx, dependencies);
+            }
             if (!isStaticFinal && staticFinalFieldMatchProcessor != null) {
                 // Requested to match a field that is not static or not final
                 System.err.println(StaticFinalFieldMatchProcessor.class.getSimpleName()
-                        + ": cannot match requested field " + className + "." + fieldName
+                        + ": cannot match requested field " + className + "." + inp.getString(fieldNameIdx)
                         + " because it is either not static or not final");
-            } else if (!isStaticFinal || staticFinalFieldMatchProcessor == null) {
-                // Not matching this static final field, just skip field attributes rather than parsing them
-                for (int j = 0; j < attributesCount; j++) {
-                    inp.skipBytes(2); // attribute_name_index
-                    final int attributeLength = inp.readInt();
-                    inp.skipBytes(attributeLength);
+            }
+            // Look for static final fields that match one of the requested names or one of the field patterns,
+            // and that are initialized with a constant value
+            boolean matchesFieldPattern = false;
+            if (isStaticFinal && classFieldPatternMatchers != null) {
+                for (final StaticFinalFieldPatternMatcher fieldPatternMatcher : classFieldPatternMatchers) {
+                    if (fieldPatternMatcher.matchesField(inp.getString(fieldNameIdx), inp.getString(descriptorIdx))) {
+                        matchesFieldPattern = true;
+                        break;
+                    }
                 }
-            } else {
-                // Look for static final fields that match one of the requested names,
-                // and that are initialized with a constant value
-                boolean foundConstantValue = false;
-                for (int j = 0; j < attributesCount; j++) {
-                    final String attributeName = readRefdString(inp, constantPool);
-                    final int attributeLength = inp.readInt();
-                    if (attributeName.equals("ConstantValue")) {
-                        // http://docs.oracle.com/javase/specs/jvms/se7/html/jvms-4.html#jvms-4.7.2
-                        Object constValue = constantPool[inp.readUnsignedShort()];
-                        // byte, char, short and boolean constants are all stored as 4-byte int
-                        // values -- coerce and wrap in the proper wrapper class with autoboxing
-                        switch (descriptor) {
-                        case "B":
-                            // Convert byte store in Integer to Byte
-                            constValue = ((Integer) constValue).byteValue();
-                            break;
-                        case "C":
-                            // Convert char stored in Integer to Character
-                            constValue = (char) ((Integer) constValue).intValue();
-                            break;
-                        case "S":
-                            // Convert char stored in Integer to Short
-                            constValue = ((Integer) constValue).shortValue();
-                            break;
-                        case "Z":
-                            // Convert char stored in Integer to Boolean
-                            constValue = ((Integer) constValue).intValue() != 0;
-                            break;
-                        case "I":
-                        case "J":
-                        case "F":
-                        case "D":
-                        case "Ljava.lang.String;":
-                            // Field is int, long, float, double or String => object is already in correct
-                            // wrapper type (Integer, Long, Float, Double or String), nothing to do
-                            break;
-                        default:
-                            // Should never happen:
-                            // constant values can only be stored as an int, long, float, double or String
-                            break;
+            }
+            final boolean matchConstantValue = isStaticFinal
+                    && (staticFinalFieldMatchProcessor != null || matchesFieldPattern);
+            Object constValue = null;
+            ArrayList<String> fieldAnnotationNames = null;
+            FieldInfo fieldInfo = null;
+            for (int j = 0; j < attributesCount; j++) {
+                final int attributeNameIdx = inp.readUnsignedShort();
+                final int attributeLength = inp.readInt();
+                if (matchConstantValue && inp.stringEquals(attributeNameIdx, CONSTANT_VALUE)) {
+                    // http://docs.oracle.com/javase/specs/jvms/se7/html/jvms-4.html#jvms-4.7.2
+                    constValue = coerceConstantValue(inp.getString(descriptorIdx),
+                            inp.getConstant(inp.readUnsignedShort()));
+                } else if (inp.stringEquals(attributeNameIdx, RUNTIME_VISIBLE_ANNOTATIONS)) {
+                    final int annotationCount = inp.readUnsignedShort();
+                    for (int m = 0; m < annotationCount; m++) {
+                        final String annotationName = readAnnotation(inp).getAnnotationName();
+                        if (fieldInfo == null) {
+                            fieldInfo = new FieldInfo(className, inp.getString(fieldNameIdx),
+                                    inp.getString(descriptorIdx));
+                        }
+                        // Index field by annotation
+                        classGraphBuilder.addFieldAnnotation(annotationName, fieldInfo);
+                        if (jarSummaryBeingBuilt != null) {
+                            jarSummaryBeingBuilt.addReferencedName(annotationName);
+                        }
+                        if (recordDependencies) {
+                            dependencies.add(annotationName);
+                        }
+                        if (matchesFieldPattern) {
+                            // Save field annotations for matching against field patterns
+                            if (fieldAnnotationNames == null) {
+                                fieldAnnotationNames = new ArrayList<>(2);
+                            }
+                            fieldAnnotationNames.add(annotationName);
                         }
-                        // Call static final field match processor
-                        staticFinalFieldMatchProcessor.processMatch(className, fieldName, constValue);
-                        foundConstantValue = true;
-                    } else {
-                        inp.skipBytes(attributeLength);
                     }
-                    if (!foundConstantValue) {
-                        System.err.println(StaticFinalFieldMatchProcessor.class.getSimpleName()
-                                + ": Requested static final field " + className + "." + fieldName
-                                + "is not initialized with a constant literal value, so there is no "
-                                + "initializer value in the constant pool of the classfile");
+                } else {
+                    inp.skipBytes(attributeLength);
+                }
+            }
+            final String fieldName = matchConstantValue ? inp.getString(fieldNameIdx) : null;
+            final Object fieldConstValue = constValue;
+            if (staticFinalFieldMatchProcessor != null && matchConstantValue) {
+                if (constValue != null) {
+                    // Call static final field match processor once the classfile has been parsed
+                    pendingMatchProcessorCalls.add(() -> {
+                        final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
+                        staticFinalFieldMatchProcessor.processMatch(className, fieldName, fieldConstValue);
+                        ScanEvents.INSTANCE.endMatchProcessor(event, staticFinalFieldMatchProcessor, className,
+                                fieldName);
+                    });
+                } else {
+                    System.err.println(StaticFinalFieldMatchProcessor.class.getSimpleName()
+                            + ": Requested static final field " + className + "." + fieldName
+                            + "is not initialized with a constant literal value, so there is no "
+                            + "initializer value in the constant pool of the classfile");
+                }
+            }
+            if (matchesFieldPattern && constValue != null) {
+                // Call the match processor of each matching field pattern (fields without a constant initializer
+                // value are silently skipped)
+                for (final StaticFinalFieldPatternMatcher fieldPatternMatcher : classFieldPatternMatchers) {
+                    if (fieldPatternMatcher.matchesField(fieldName, inp.getString(descriptorIdx))
+                            && fieldPatternMatcher.matchesFieldAnnotations(fieldAnnotationNames)) {
+                        pendingMatchProcessorCalls.add(() -> {
+                            final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
+                            fieldPatternMatcher.staticFinalFieldMatchProcessor.processMatch(className, fieldName,
+                                    fieldConstValue);
+                            ScanEvents.INSTANCE.endMatchProcessor(event,
+                                    fieldPatternMatcher.staticFinalFieldMatchProcessor, className, fieldName);
+                        });
                     }
                 }
             }
@@ -888,38 +2327,96 @@ public class FastClasspathScanner {
         // Methods
         final int methodCount = inp.readUnsignedShort();
         for (int i = 0; i < methodCount; i++) {
-            inp.skipBytes(6); // access_flags, name_index, descriptor_index
+            inp.skipBytes(2); // access_flags
+            final int methodNameIdx = inp.readUnsignedShort();
+            final int methodDescriptorIdx = inp.readUnsignedShort();
             final int attributesCount = inp.readUnsignedShort();
+            if (recordDependencies) {
+                inp.addDescriptorClassNames(methodDescriptorIdx, dependencies);
+            }
+            MethodInfo methodInfo = null;
             for (int j = 0; j < attributesCount; j++) {
-                inp.skipBytes(2); // attribute_name_index
+                final int attributeNameIdx = inp.readUnsignedShort();
                 final int attributeLength = inp.readInt();
-                inp.skipBytes(attributeLength);
+                if (inp.stringEquals(attributeNameIdx, RUNTIME_VISIBLE_ANNOTATIONS)) {
+                    final int annotationCount = inp.readUnsignedShort();
+                    for (int m = 0; m < annotationCount; m++) {
+                        final String annotationName = readAnnotation(inp).getAnnotationName();
+                        if (methodInfo == null) {
+                            methodInfo = new MethodInfo(className, inp.getString(methodNameIdx),
+                                    inp.getString(methodDescriptorIdx));
+                        }
+                        // Index method by annotation
+                        classGraphBuilder.addMethodAnnotation(annotationName, methodInfo);
+                        if (jarSummaryBeingBuilt != null) {
+                            jarSummaryBeingBuilt.addReferencedName(annotationName);
+                        }
+                        if (recordDependencies) {
+                            dependencies.add(annotationName);
+                        }
+                    }
+                } else if (recordCalls && inp.stringEquals(attributeNameIdx, CODE)) {
+                    // Read method body, to be decoded in parallel to find call sites
+                    final byte[] codeAttribute = inp.readBytes(attributeLength);
+                    if (methodInfo == null) {
+                        methodInfo = new MethodInfo(className, inp.getString(methodNameIdx),
+                                inp.getString(methodDescriptorIdx));
+                    }
+                    callers.add(methodInfo);
+                    codeAttributes.add(codeAttribute);
+                } else if (isAnnotation && inp.stringEquals(attributeNameIdx, ANNOTATION_DEFAULT)) {
+                    // Default value of an annotation element (the method name is the element name)
+                    classGraphBuilder.addAnnotationDefaultValue(className, inp.getString(methodNameIdx),
+                            readAnnotationElementValue(inp));
+                } else {
+                    inp.skipBytes(attributeLength);
+                }
             }
         }
 
+        if (recordCalls && !callers.isEmpty()) {
+            methodCallIndex.addCodeAttributes(methodRefs, callers, codeAttributes);
+        }
+
         // Attributes (including class annotations)
         HashSet<String> annotations = null;
+        ArrayList<AnnotationInfo> annotationInfos = null;
         final int attributesCount = inp.readUnsignedShort();
         for (int i = 0; i < attributesCount; i++) {
-            final String attributeName = readRefdString(inp, constantPool);
+            final int attributeNameIdx = inp.readUnsignedShort();
             final int attributeLength = inp.readInt();
-            if ("RuntimeVisibleAnnotations".equals(attributeName)) {
+            if (inp.stringEquals(attributeNameIdx, RUNTIME_VISIBLE_ANNOTATIONS)) {
                 final int annotationCount = inp.readUnsignedShort();
                 for (int m = 0; m < annotationCount; m++) {
-                    final String annotationName = readAnnotation(inp, constantPool);
+                    final AnnotationInfo annotationInfo = readAnnotation(inp);
                     if (annotations == null) {
                         annotations = new HashSet<>();
+                        annotationInfos = new ArrayList<>();
                     }
-                    annotations.add(annotationName);
+                    annotations.add(annotationInfo.getAnnotationName());
+                    annotationInfos.add(annotationInfo);
                 }
             } else {
                 inp.skipBytes(attributeLength);
             }
         }
+        if (annotationInfos != null) {
+            classGraphBuilder.addAnnotationInfos(className, annotationInfos);
+        }
+        if (jarSummaryBeingBuilt != null) {
+            jarSummaryBeingBuilt.addReferencedNames(annotations);
+        }
+        if (recordDependencies) {
+            if (annotations != null) {
+                dependencies.addAll(annotations);
+            }
+            dependencies.remove(className);
+            classGraphBuilder.addClassDependencies(className, dependencies);
+        }
 
         if (isInterface) {
-            classGraphBuilder
-                    .linkToSuperinterfaces(/* interfaceName = */className, /* superInterfaces = */interfaces);
+            classGraphBuilder.linkToSuperinterfaces(/* interfaceName = */className,
+                    /* superInterfaces = */interfaces, annotations, isAnnotation);
 
         } else {
             classGraphBuilder.linkToSuperclassAndInterfaces(className, superclassName, interfaces, annotations);
@@ -934,31 +2431,34 @@ public class FastClasspathScanner {
     private void scanFile(final File file, final String absolutePath, final String relativePath,
             final boolean scanTimestampsOnly) throws IOException {
         lastModified = Math.max(lastModified, file.lastModified());
+        if (classpathSnapshot != null) {
+            classpathSnapshot.addFile(relativePath, file);
+        }
         if (!scanTimestampsOnly) {
             if (relativePath.endsWith(".class")) {
                 // Found a classfile
+                final long parseStart = System.nanoTime();
                 try (InputStream inputStream = new FileInputStream(file)) {
                     // Inspect header of classfile
-                    readClassInfoFromClassfileHeader(inputStream);
+                    readClassInfoFromClassfileHeader(inputStream, file.length());
                 }
+                scanStatistics.classfileRead(file.length(), 0, System.nanoTime() - parseStart);
+                callPendingMatchProcessors();
             } else {
                 // For non-classfiles, match file paths against path patterns
-                for (final FilePathMatcher fileMatcher : filePathMatchers) {
-                    if (fileMatcher.pattern.matcher(relativePath).matches()) {
-                        // If there's a match, open the file as a stream and call the match processor
-                        try (InputStream inputStream = new FileInputStream(file)) {
-                            fileMatcher.fileMatchProcessor.processMatch(absolutePath, relativePath, inputStream);
-                        }
-                    }
+                final List<FilePathMatcher> fileMatchers = filePathMatchers.getMatches(relativePath);
+                if (!fileMatchers.isEmpty()) {
+                    processFileMatch(fileMatchers, new FileSystemFileMatch(file, absolutePath, relativePath,
+                            absolutePath));
                 }
             }
         }
     }
 
     /**
-     * Scan a directory for matching file path patterns.
+     * Scan a directory for matching file path patterns. (Package-private for the benchmarks.)
      */
-    private void scanDir(final File dir, final int ignorePrefixLen, boolean inWhitelistedPath,
+    void scanDir(final File dir, final int ignorePrefixLen, boolean inWhitelistedPath,
             final boolean scanTimestampsOnly) throws IOException {
         String relativePath = (ignorePrefixLen > dir.getPath().length() ? "" : dir.getPath().substring(ignorePrefixLen))
                 + "/";
@@ -1006,84 +2506,317 @@ public class FastClasspathScanner {
 
     /**
      * Scan a zipfile for matching file path patterns. (Does not recurse into zipfiles within zipfiles.)
+     * (Package-private for the benchmarks.)
      */
-    private void scanZipfile(final String zipfilePath, final ZipFile zipFile, final long zipFileLastModified,
+    void scanZipfile(final String zipfilePath, final ZipFile zipFile, final long zipFileLastModified,
             final boolean scanTimestampsOnly) throws IOException {
         boolean timestampWarning = false;
-        for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
-            // Scan for matching filenames
-            final ZipEntry entry = entries.nextElement();
-            if (!entry.isDirectory()) {
-                // Only process file entries (zipfile indices contain both directory entries and
-                // separate file entries for files within each directory, in lexicographic order)
-                final String path = entry.getName();
-                boolean scanFile = false;
-                for (final String whitelistedPath : whitelistedPathsToScan) {
-                    if (path.startsWith(whitelistedPath) //
-                            || whitelistedPath.equals("/")) {
-                        // File path has a whitelisted path as a prefix -- can scan file
-                        scanFile = true;
-                        break;
-                    }
-                }
-                for (final String blacklistedPath : blacklistedPathsToScan) {
-                    if (path.startsWith(blacklistedPath)) {
-                        // File path has a blacklisted path as a prefix -- don't scan it
-                        scanFile = false;
-                        break;
-                    }
-                }
-                if (scanFile) {
-                    // If USE_ZIPFILE_ENTRY_MODIFICATION_TIMES is true, use zipfile entry timestamps,
-                    // otherwise use the modification time of the zipfile itself. Using zipfile entry
-                    // timestamps assumes that the timestamp on zipfile entries was properly added, and
-                    // that the clock of the machine adding the zipfile entries is in sync with the 
-                    // clock used to timestamp regular file and directory entries in the current
-                    // classpath. USE_ZIPFILE_ENTRY_MODIFICATION_TIMES is set to false by default,
-                    // as zipfile entry timestamps are less trustworthy than filesystem timestamps.
-                    final long entryTime = USE_ZIPFILE_ENTRY_MODIFICATION_TIMES //
-                    ? entry.getTime()
-                            : zipFileLastModified;
-                    lastModified = Math.max(lastModified, entryTime);
-                    if (entryTime > System.currentTimeMillis() && !timestampWarning) {
-                        final String msg = zipfilePath + " contains modification timestamps after the current time";
-                        // Log.warning(msg);
-                        System.err.println(msg);
-                        // Only warn once
-                        timestampWarning = true;
-                    }
-                    if (!scanTimestampsOnly) {
-                        if (path.endsWith(".class")) {
-                            // Found a classfile, open it as a stream and inspect header
-                            try (InputStream inputStream = zipFile.getInputStream(entry)) {
-                                readClassInfoFromClassfileHeader(inputStream);
-                            }
-                        } else {
-                            // For non-classfiles, match file paths against path patterns
-                            for (final FilePathMatcher fileMatcher : filePathMatchers) {
-                                if (fileMatcher.pattern.matcher(path).matches()) {
-                                    // There's a match -- open the file as a stream and
-                                    // call the match processor
-                                    try (InputStream inputStream = zipFile.getInputStream(entry)) {
-                                        fileMatcher.fileMatchProcessor.processMatch(path, path, inputStream);
-                                    }
+        final ZipfileContents zipfileContents = new ZipfileContents(zipFile);
+        try {
+            for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+                // Scan for matching filenames
+                final ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    // Only process file entries (zipfile indices contain both directory entries and
+                    // separate file entries for files within each directory, in lexicographic order)
+                    final String path = entry.getName();
+                    if (isWhitelistedPath(path)) {
+                        if (classpathSnapshot != null) {
+                            classpathSnapshot.addZipEntry(entry);
+                        }
+                        // If USE_ZIPFILE_ENTRY_MODIFICATION_TIMES is true, use zipfile entry timestamps,
+                        // otherwise use the modification time of the zipfile itself. Using zipfile entry
+                        // timestamps assumes that the timestamp on zipfile entries was properly added, and
+                        // that the clock of the machine adding the zipfile entries is in sync with the 
+                        // clock used to timestamp regular file and directory entries in the current
+                        // classpath. USE_ZIPFILE_ENTRY_MODIFICATION_TIMES is set to false by default,
+                        // as zipfile entry timestamps are less trustworthy than filesystem timestamps.
+                        final long entryTime = USE_ZIPFILE_ENTRY_MODIFICATION_TIMES //
+                        ? entry.getTime()
+                                : zipFileLastModified;
+                        lastModified = Math.max(lastModified, entryTime);
+                        if (entryTime > System.currentTimeMillis() && !timestampWarning) {
+                            final String msg = zipfilePath + " contains modification timestamps after the current time";
+                            // Log.warning(msg);
+                            System.err.println(msg);
+                            // Only warn once
+                            timestampWarning = true;
+                        }
+                        if (!scanTimestampsOnly) {
+                            if (path.endsWith(".class")) {
+                                // Found a classfile, read it into the scratch buffer of this thread and inspect header
+                                final long parseStart = System.nanoTime();
+                                final ClassfileReader reader = ClassfileReader.acquire();
+                                try {
+                                    zipfileContents.readClassfile(entry, reader);
+                                    readClassInfoFromClassfileHeader(reader);
+                                } finally {
+                                    reader.release();
+                                }
+                                scanStatistics.classfileRead(entry.getCompressedSize(),
+                                        entry.getMethod() == ZipEntry.STORED ? 0 : entry.getSize(),
+                                        System.nanoTime() - parseStart);
+                                callPendingMatchProcessors();
+                            } else {
+                                // For non-classfiles, match file paths against path patterns
+                                final List<FilePathMatcher> fileMatchers = filePathMatchers.getMatches(path);
+                                if (!fileMatchers.isEmpty()) {
+                                    processFileMatch(fileMatchers, new ZipEntryFileMatch(zipfileContents, entry,
+                                            zipfilePath + "!" + path));
                                 }
                             }
                         }
                     }
                 }
             }
+        } finally {
+            // Release the mapping of the zipfile once FileMatchProcessors have finished reading entries from it
+            closeAfterFileMatchProcessors(zipfileContents);
+        }
+    }
+
+    /** Memory-map a file read-only. */
+    private static ByteBuffer mapFile(final File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map into a ByteBuffer: " + file);
+            }
+            return channel.map(MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Call the FileMatchProcessors for a matching file, either on the scanning thread, or on the executor if
+     * concurrent FileMatchProcessors are enabled.
+     */
+    private void processFileMatch(final List<FilePathMatcher> fileMatchers, final FileMatch fileMatch)
+            throws IOException {
+        fileMatch.numPendingProcessors.set(fileMatchers.size());
+        for (final FilePathMatcher fileMatcher : fileMatchers) {
+            if (fileMatchDispatcher == null) {
+                callFileMatchProcessor(fileMatcher, fileMatch);
+            } else {
+                fileMatchDispatcher.submit(serialFileMatchProcessors ? fileMatcher : null,
+                        () -> callFileMatchProcessor(fileMatcher, fileMatch));
+            }
+        }
+    }
+
+    /** Call a FileMatchProcessor for a matching file. */
+    private void callFileMatchProcessor(final FilePathMatcher fileMatcher, final FileMatch fileMatch)
+            throws IOException {
+        final long matchStart = System.nanoTime();
+        final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
+        try {
+            if (fileMatcher.fileMatchProcessor != null) {
+                try (InputStream inputStream = fileMatch.openInputStream()) {
+                    fileMatcher.fileMatchProcessor.processMatch(fileMatch.absolutePath, fileMatch.relativePath,
+                            inputStream);
+                }
+            } else {
+                final ByteBuffer contents = fileMatch.getContents();
+                fileMatcher.fileMatchByteBufferProcessor.processMatch(fileMatch.absolutePath,
+                        fileMatch.relativePath, contents, contents.remaining());
+            }
+        } finally {
+            fileMatch.processorCalled();
+        }
+        ScanEvents.INSTANCE.endMatchProcessor(event, fileMatcher.getMatchProcessor(), fileMatch.matchName);
+        if (scanTracer != null) {
+            scanTracer.end(matchStart, "FileMatchProcessor", "match", "path", fileMatch.matchName);
+        }
+        scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
+    }
+
+    /**
+     * Close a resource that FileMatchProcessors may still be reading from: immediately if they are called on the
+     * scanning thread, otherwise once all FileMatchProcessors submitted during the scan have completed.
+     */
+    private void closeAfterFileMatchProcessors(final Closeable resource) throws IOException {
+        if (fileMatchDispatcher == null) {
+            resource.close();
+        } else {
+            closeAfterFileMatchProcessors.add(resource);
         }
     }
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /** Returns true if a path relative to a classpath element is within a whitelisted and non-blacklisted path. */
+    private boolean isWhitelistedPath(final String relativePath) {
+        boolean whitelisted = false;
+        for (final String whitelistedPath : whitelistedPathsToScan) {
+            if (relativePath.startsWith(whitelistedPath) || whitelistedPath.equals("/")) {
+                whitelisted = true;
+                break;
+            }
+        }
+        for (final String blacklistedPath : blacklistedPathsToScan) {
+            if (relativePath.startsWith(blacklistedPath)) {
+                return false;
+            }
+        }
+        return whitelisted;
+    }
+
+    /** A string representation of the whitelist and blacklist, for fingerprinting jarfile summaries. */
+    private String getScanSpec() {
+        final String[] whitelist = whitelistedPathsToScan.clone();
+        final String[] blacklist = blacklistedPathsToScan.clone();
+        Arrays.sort(whitelist);
+        Arrays.sort(blacklist);
+        return String.join(",", whitelist) + "|" + String.join(",", blacklist);
+    }
+
+    /** Returns true if the registered match processors can all be evaluated against jarfile summaries. */
+    private boolean canSkipJars() {
+        return (!classMatchers.isEmpty() || !classNameToStaticFieldnameToMatchProcessor.isEmpty())
+                && filePathMatchers.isEmpty() && staticFinalFieldPatternMatchers.isEmpty()
+                && referencedClassNameToMatchProcessors.isEmpty() && stringConstantMatchers.isEmpty()
+                && constantPoolIndex == null && methodCallIndex == null
+                && !classGraphBuilder.isClassDependencyGraphEnabled();
+    }
+
+    /** Find the packages containing whitelisted classes in a classpath element that has no jarfile summary. */
+    private HashSet<String> findWhitelistedPackages(final File pathElt) throws IOException {
+        final HashSet<String> packages = new HashSet<>();
+        if (pathElt.isDirectory()) {
+            findWhitelistedPackages(pathElt, "", packages);
+        } else {
+            final String pathLower = pathElt.getPath().toLowerCase();
+            if (pathLower.endsWith(".jar") || pathLower.endsWith(".zip")) {
+                try (ZipFile zipFile = new ZipFile(pathElt)) {
+                    for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries
+                            .hasMoreElements();) {
+                        final String path = entries.nextElement().getName();
+                        if (path.endsWith(".class") && isWhitelistedPath(path)) {
+                            final int lastSlashIdx = path.lastIndexOf('/');
+                            packages.add(lastSlashIdx < 0 ? "" : path.substring(0, lastSlashIdx).replace('/', '.'));
+                        }
+                    }
+                }
+            }
+        }
+        return packages;
+    }
+
+    /** Recursively find the packages containing whitelisted classes in a directory. */
+    private void findWhitelistedPackages(final File dir, final String relativePath, final HashSet<String> packages) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (file.isDirectory()) {
+                    findWhitelistedPackages(file, relativePath + file.getName() + "/", packages);
+                } else if (file.getName().endsWith(".class") && isWhitelistedPath(relativePath + file.getName())) {
+                    packages.add(relativePath.isEmpty() ? "" : relativePath.substring(0, relativePath.length() - 1)
+                            .replace('/', '.'));
+                }
+            }
+        }
+    }
+
+    /**
+     * Use the jarfile summaries saved by previous scans to find the jarfiles that cannot contain any classes matching
+     * the registered match processors. A classpath element is needed if it has no summary, if it references a
+     * requested superclass, interface or annotation, or (transitively) if it references a class in a package defined
+     * by a needed classpath element, since that class may be a subclass, implementation or meta-annotated annotation
+     * of a requested type. A jarfile that defines classes in the same package as a later needed classpath element is
+     * also needed, since its classes may mask classes in the later element.
+     * 
+     * @param classpathElements
+     *            The classpath elements, in classpath order.
+     * @param jarsWithSummaries
+     *            Filled in with the jarfiles that have a valid summary.
+     * @return The jarfiles that can be skipped.
+     */
+    private Set<File> findSkippableJars(final ArrayList<File> classpathElements,
+            final HashSet<File> jarsWithSummaries) {
+        final String scanSpec = getScanSpec();
+        final int numElements = classpathElements.size();
+        final ArrayList<JarSummary> summaries = new ArrayList<>(numElements);
+        for (final File pathElt : classpathElements) {
+            final String pathLower = pathElt.getPath().toLowerCase();
+            JarSummary summary = null;
+            if (pathElt.isFile() && (pathLower.endsWith(".jar") || pathLower.endsWith(".zip"))) {
+                summary = JarSummary.read(jarSummaryCacheDir, pathElt, JarSummary.fingerprint(pathElt, scanSpec));
+                if (summary != null) {
+                    jarsWithSummaries.add(pathElt);
+                }
+            }
+            summaries.add(summary);
+        }
+        if (!canSkipJars()) {
+            return Collections.emptySet();
+        }
+
+        // Packages of the classes that contain requested static final fields
+        final HashSet<String> staticFieldPackages = new HashSet<>();
+        for (final String className : classNameToStaticFieldnameToMatchProcessor.keySet()) {
+            staticFieldPackages.add(JarSummary.packageOf(className));
+        }
+
+        // Find the classpath elements that directly contain or reference requested classes
+        final boolean[] needed = new boolean[numElements];
+        final ArrayList<Set<String>> definedPackages = new ArrayList<>(numElements);
+        final HashSet<String> neededPackages = new HashSet<>();
+        try {
+            for (int i = 0; i < numElements; i++) {
+                final JarSummary summary = summaries.get(i);
+                if (summary == null) {
+                    needed[i] = true;
+                    definedPackages.add(findWhitelistedPackages(classpathElements.get(i)));
+                } else {
+                    needed[i] = summary.mightReferenceAny(classMatcherTargetNames)
+                            || !Collections.disjoint(summary.getDefinedPackages(), staticFieldPackages);
+                    definedPackages.add(summary.getDefinedPackages());
+                }
+                if (needed[i]) {
+                    neededPackages.addAll(definedPackages.get(i));
+                }
+            }
+        } catch (final IOException e) {
+            // Can't read a classpath element -- scan everything
+            return Collections.emptySet();
+        }
+
+        // Iterate to a fixpoint, adding classpath elements that may extend or mask classes in needed elements
+        for (boolean changed = true; changed;) {
+            changed = false;
+            for (int i = 0; i < numElements; i++) {
+                if (!needed[i]) {
+                    boolean isNeeded = summaries.get(i).referencesAnyPackage(neededPackages);
+                    for (int j = i + 1; j < numElements && !isNeeded; j++) {
+                        isNeeded = needed[j] && !Collections.disjoint(definedPackages.get(i), definedPackages.get(j));
+                    }
+                    if (isNeeded) {
+                        needed[i] = true;
+                        neededPackages.addAll(definedPackages.get(i));
+                        changed = true;
+                    }
+                }
+            }
+        }
+        final HashSet<File> skippableJars = new HashSet<>();
+        for (int i = 0; i < numElements; i++) {
+            if (!needed[i]) {
+                skippableJars.add(classpathElements.get(i));
+            }
+        }
+        return skippableJars;
+    }
+
     /**
      * Get a list of unique elements on the classpath (directories and files) as File objects, preserving order.
      * Classpath elements that do not exist are not included in the list.
      */
     public static ArrayList<File> getUniqueClasspathElements() {
-        final String[] pathElements = System.getProperty("java.class.path").split(File.pathSeparator);
+        return getUniqueClasspathElements(System.getProperty("java.class.path"));
+    }
+
+    /** Get a list of unique elements of the given classpath as File objects, preserving order. */
+    private static ArrayList<File> getUniqueClasspathElements(final String classpath) {
+        final String[] pathElements = classpath.split(File.pathSeparator);
         final HashSet<String> pathElementsSet = new HashSet<>();
         final ArrayList<File> pathFiles = new ArrayList<>();
         for (final String pathElement : pathElements) {
@@ -1105,57 +2838,211 @@ public class FastClasspathScanner {
      * This method should be called before any "get" methods (e.g. getSubclassesOf()).
      */
     private FastClasspathScanner scan(final boolean scanTimestampsOnly) {
-        // long scanStart = System.currentTimeMillis();
-
         classesEncounteredSoFarDuringScan.clear();
+        classpathSnapshot = classpathSnapshotsEnabled ? new ClasspathSnapshot() : null;
+        final Object scanEvent = scanTimestampsOnly ? null : ScanEvents.INSTANCE.beginScan();
+        final long scanStart = System.nanoTime();
+        scanTracer = scanTimestampsOnly || scanTraceFile == null ? null : new ScanTracer();
+        fileMatchDispatcher = scanTimestampsOnly || fileMatchExecutor == null ? null : new BoundedTaskDispatcher(
+                fileMatchExecutor, maxFileMatchesInFlight);
         if (!scanTimestampsOnly) {
+            scanStatistics.startScan();
             classGraphBuilder.reset();
+            if (constantPoolIndex != null) {
+                constantPoolIndex.reset();
+            }
+            if (methodCallIndex != null) {
+                methodCallIndex.reset();
+                methodCallIndex.setTracer(scanTracer);
+            }
         }
 
+        final ArrayList<File> classpathElements = classpathOverride != null ? getUniqueClasspathElements(
+                classpathOverride) : getUniqueClasspathElements();
+
+        // Use jarfile summaries from previous scans to find jarfiles that cannot contain matches
+        final HashSet<File> jarsWithSummaries = new HashSet<>();
+        final Set<File> skippableJars = jarSummaryCacheDir == null || scanTimestampsOnly ? Collections
+                .<File> emptySet() : findSkippableJars(classpathElements, jarsWithSummaries);
+
         try {
             // Iterate through path elements and recursively scan within each directory and zipfile
-            for (final File pathElt : getUniqueClasspathElements()) {
+            for (final File pathElt : classpathElements) {
                 final String path = pathElt.getPath();
+                final long elementStart = System.nanoTime();
+                final Object elementEvent = scanTimestampsOnly ? null : ScanEvents.INSTANCE.beginClasspathElement();
+                final ClasspathElementStatistics elementStatistics = scanTimestampsOnly ? null : scanStatistics
+                        .startClasspathElement(path);
                 if (pathElt.isDirectory()) {
                     // Scan within dir path element
                     scanDir(pathElt, path.length() + 1, false, scanTimestampsOnly);
                 } else if (pathElt.isFile()) {
                     final String pathLower = path.toLowerCase();
-                    if (pathLower.endsWith(".jar") || pathLower.endsWith(".zip")) {
+                    if (skippableJars.contains(pathElt)) {
+                        // Jarfile cannot contain matches, according to its summary
+                        lastModified = Math.max(lastModified, pathElt.lastModified());
+                        scanStatistics.classpathElementSkipped();
+                        if (classpathSnapshot != null) {
+                            // Only read the central directory, to fingerprint the entries
+                            try (ZipFile zipFile = new ZipFile(pathElt)) {
+                                scanZipfile(path, zipFile, pathElt.lastModified(), /* scanTimestampsOnly = */true);
+                            }
+                        }
+                    } else if (pathLower.endsWith(".jar") || pathLower.endsWith(".zip")) {
                         // Scan within jar/zipfile path element
-                        scanZipfile(path, new ZipFile(pathElt), pathElt.lastModified(), scanTimestampsOnly);
+                        if (jarSummaryCacheDir != null && !scanTimestampsOnly && !jarsWithSummaries.contains(pathElt)) {
+                            // Build summary of jarfile for use by later scans
+                            final JarSummary jarSummary = new JarSummary(JarSummary.fingerprint(pathElt,
+                                    getScanSpec()));
+                            jarSummaryBeingBuilt = jarSummary;
+                            final ZipFile zipFile = new ZipFile(pathElt);
+                            try {
+                                scanZipfile(path, zipFile, pathElt.lastModified(), scanTimestampsOnly);
+                            } finally {
+                                jarSummaryBeingBuilt = null;
+                                closeAfterFileMatchProcessors(zipFile);
+                            }
+                            jarSummary.write(jarSummaryCacheDir, pathElt);
+                        } else {
+                            final ZipFile zipFile = new ZipFile(pathElt);
+                            try {
+                                scanZipfile(path, zipFile, pathElt.lastModified(), scanTimestampsOnly);
+                            } finally {
+                                closeAfterFileMatchProcessors(zipFile);
+                            }
+                        }
                     } else {
                         // File listed directly on classpath
                         scanFile(pathElt, path, pathElt.getName(), scanTimestampsOnly);
 
-                        for (final FilePathMatcher fileMatcher : filePathMatchers) {
-                            if (fileMatcher.pattern.matcher(path).matches()) {
-                                // If there's a match, open the file as a stream and call the
-                                // match processor
-                                try (InputStream inputStream = new FileInputStream(pathElt)) {
-                                    fileMatcher.fileMatchProcessor.processMatch(path, pathElt.getName(), inputStream);
-                                }
-                            }
+                        final List<FilePathMatcher> fileMatchers = filePathMatchers.getMatches(path);
+                        if (!fileMatchers.isEmpty()) {
+                            processFileMatch(fileMatchers, new FileSystemFileMatch(pathElt, path, pathElt.getName(),
+                                    path));
                         }
                     }
                 } else {
                     // Log.info("Skipping non-file/non-dir on classpath: " + file.getCanonicalPath());
                 }
+                if (!scanTimestampsOnly) {
+                    scanStatistics.endClasspathElement(System.nanoTime() - elementStart);
+                    ScanEvents.INSTANCE.endClasspathElement(elementEvent, path, elementStatistics.isSkipped(),
+                            elementStatistics.getBytesRead(), elementStatistics.getClassfilesRead());
+                    if (scanTracer != null) {
+                        scanTracer.end(elementStart, pathElt.isDirectory() ? "scanDir"
+                                : elementStatistics.isSkipped() ? "skipJarfile" : "scanZipfile", "classpath",
+                                "path", path, "classfilesRead", Integer.toString(elementStatistics
+                                        .getClassfilesRead()));
+                    }
+                }
+            }
+            if (fileMatchDispatcher != null) {
+                // Wait for FileMatchProcessors running on the executor, and rethrow any exception they threw
+                final BoundedTaskDispatcher dispatcher = fileMatchDispatcher;
+                fileMatchDispatcher = null;
+                dispatcher.awaitCompletion();
             }
         } catch (final IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            if (fileMatchDispatcher != null) {
+                // The scan failed -- still wait for FileMatchProcessors to complete before returning
+                final BoundedTaskDispatcher dispatcher = fileMatchDispatcher;
+                fileMatchDispatcher = null;
+                try {
+                    dispatcher.awaitCompletion();
+                } catch (final IOException | RuntimeException e) {
+                    // Already throwing the exception that caused the scan to fail
+                }
+            }
+            // FileMatchProcessors have completed, so the zipfiles they were reading from can be closed
+            for (final Closeable resource : closeAfterFileMatchProcessors) {
+                try {
+                    resource.close();
+                } catch (final IOException e) {
+                    // Nothing more to read from the zipfile
+                }
+            }
+            closeAfterFileMatchProcessors.clear();
         }
 
         if (!scanTimestampsOnly) {
+            scannedClasspathSnapshot = classpathSnapshot;
+
             // Finalize class and interface DAGs
+            final long finalizeStart = System.nanoTime();
+            final Object finalizeEvent = ScanEvents.INSTANCE.beginFinalize();
             classGraphBuilder.finalizeNodes();
+            if (scanTracer != null) {
+                scanTracer.end(finalizeStart, "finalizeNodes", "finalize");
+            }
+            if (constantPoolIndex != null) {
+                final long indexStart = System.nanoTime();
+                constantPoolIndex.finalizeIndex();
+                if (scanTracer != null) {
+                    scanTracer.end(indexStart, "ConstantPoolIndex.finalizeIndex", "finalize");
+                }
+            }
+            if (methodCallIndex != null) {
+                // Wait for method bodies to be decoded
+                final long indexStart = System.nanoTime();
+                methodCallIndex.finalizeIndex();
+                if (scanTracer != null) {
+                    scanTracer.end(indexStart, "MethodCallIndex.finalizeIndex", "finalize");
+                }
+            }
+            ScanEvents.INSTANCE.endFinalize(finalizeEvent, scanStatistics.getClassfilesRead()
+                    - scanStatistics.getClassfilesMasked());
+            scanStatistics.addFinalizeTime(System.nanoTime() - finalizeStart);
+            if (methodCallIndex != null) {
+                for (final MethodCallMatcher methodCallMatcher : methodCallMatchers) {
+                    final long matcherStart = System.nanoTime();
+                    for (final MethodInfo[] call : findCalls(methodCallMatcher.className,
+                            methodCallMatcher.methodName, methodCallMatcher.methodDescriptor)) {
+                        final long matchStart = System.nanoTime();
+                        final Object event = ScanEvents.INSTANCE.beginMatchProcessor();
+                        methodCallMatcher.methodCallMatchProcessor.processMatch(call[0], call[1]);
+                        ScanEvents.INSTANCE.endMatchProcessor(event, methodCallMatcher.methodCallMatchProcessor,
+                                call[0].getClassName(), call[0].getMethodName());
+                        scanStatistics.addMatchProcessorTime(System.nanoTime() - matchStart);
+                    }
+                    if (scanTracer != null) {
+                        scanTracer.end(matcherStart, "MethodCallMatcher", "match", "callee",
+                                methodCallMatcher.className + "." + methodCallMatcher.methodName);
+                    }
+                }
+            }
             // Look for class and interface matches
-            for (final ClassMatcher classMatcher : classMatchers) {
-                classMatcher.lookForMatches();
+            for (int i = 0; i < classMatchers.size(); i++) {
+                final long matcherStart = System.nanoTime();
+                classMatchers.get(i).lookForMatches();
+                if (scanTracer != null) {
+                    scanTracer.end(matcherStart, "ClassMatcher.lookForMatches", "match", "matcher",
+                            Integer.toString(i));
+                }
+            }
+            if (boundedMemoryQueriedNames != null) {
+                // Discard the parts of the class graph that are not needed for later queries
+                final HashSet<String> queriedNames = new HashSet<>(classMatcherTargetNames);
+                queriedNames.addAll(boundedMemoryQueriedNames);
+                classGraphBuilder.retainOnly(queriedNames);
+                classesEncounteredSoFarDuringScan.clear();
+            }
+            scanStatistics.setClassGraphFootprintBytes(classGraphBuilder.estimateFootprintBytes());
+            scanStatistics.setClassGraphOffHeapBytes(classGraphBuilder.getOffHeapBytes());
+            scanStatistics.endScan();
+            ScanEvents.INSTANCE.endScan(scanEvent, scanStatistics.getClasspathElementCount(),
+                    scanStatistics.getClassfilesRead());
+            if (scanTracer != null) {
+                scanTracer.end(scanStart, "scan", "scan");
+                try {
+                    scanTracer.write(scanTraceFile);
+                } catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+                scanTracer = null;
             }
         }
-        // Log.info("Classpath " + (scanTimestampsOnly ? "timestamp " : "") + "scanning took: "
-        //      + (System.currentTimeMillis() - scanStart) + " ms");
         return this;
     }
 
@@ -1184,4 +3071,36 @@ public class FastClasspathScanner {
             return newLastModified > oldLastModified;
         }
     }
+
+    /**
+     * Returns the fingerprints of the classfiles and resources recorded by the most recent call to scan(), or null
+     * if enableClasspathSnapshots() was not called. Two snapshots can be compared with ClasspathSnapshot.diff().
+     */
+    public ClasspathSnapshot getClasspathSnapshot() {
+        return scannedClasspathSnapshot;
+    }
+
+    /**
+     * Returns the classes and resources that were added, removed or modified since scan() was last called, by
+     * comparing the fingerprints of the classfiles and resources now on the classpath with those recorded by the
+     * scan. Only considers classpath prefixes whitelisted in the call to the constructor. Unlike
+     * classpathContentsModifiedSinceScan(), this can be used to reload only the changed classes and resources.
+     * Calling this method does not affect the result of classpathContentsModifiedSinceScan().
+     * 
+     * @throws IllegalStateException
+     *             if enableClasspathSnapshots() was not called before scan(), or scan() has not been called.
+     */
+    public ClasspathDiff getClasspathChangesSinceScan() {
+        if (scannedClasspathSnapshot == null) {
+            throw new IllegalStateException("enableClasspathSnapshots() and scan() must be called first");
+        }
+        // Keep the latest timestamp seen by scan(), so that classpathContentsModifiedSinceScan() still sees changes
+        final long scannedLastModified = lastModified;
+        try {
+            scan(/* scanTimestampsOnly = */true);
+        } finally {
+            lastModified = scannedLastModified;
+        }
+        return scannedClasspathSnapshot.diff(classpathSnapshot);
+    }
 }
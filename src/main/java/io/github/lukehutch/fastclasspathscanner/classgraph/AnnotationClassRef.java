@@ -0,0 +1,97 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.classgraph;
+
+/**
+ * A class literal used as an annotation element value, e.g. the value of @Plugin(type = Widget.class), read from the
+ * classfile without loading the referenced class.
+ */
+public class AnnotationClassRef {
+    private final String typeDescriptor;
+
+    public AnnotationClassRef(final String typeDescriptor) {
+        this.typeDescriptor = typeDescriptor;
+    }
+
+    /** The type descriptor of the referenced class, e.g. "Lcom/xyz/Widget;", "[I" or "V". */
+    public String getTypeDescriptor() {
+        return typeDescriptor;
+    }
+
+    /**
+     * The name of the referenced class in the form returned by Class.getName(), e.g. "com.xyz.Widget", "[I" or "void".
+     */
+    public String getClassName() {
+        if (typeDescriptor.startsWith("[")) {
+            return typeDescriptor.replace('/', '.');
+        }
+        switch (typeDescriptor.charAt(0)) {
+        case 'B':
+            return "byte";
+        case 'C':
+            return "char";
+        case 'D':
+            return "double";
+        case 'F':
+            return "float";
+        case 'I':
+            return "int";
+        case 'J':
+            return "long";
+        case 'S':
+            return "short";
+        case 'Z':
+            return "boolean";
+        case 'V':
+            return "void";
+        case 'L':
+            return typeDescriptor.substring(1, typeDescriptor.length() - 1).replace('/', '.');
+        default:
+            // Should not happen
+            return typeDescriptor;
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return this == obj || obj instanceof AnnotationClassRef
+                && typeDescriptor.equals(((AnnotationClassRef) obj).typeDescriptor);
+    }
+
+    @Override
+    public int hashCode() {
+        return typeDescriptor.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getClassName() + ".class";
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.classgraph;
+
+/** An enum constant used as an annotation element value, read from the classfile without loading the enum class. */
+public class AnnotationEnumValue {
+    private final String enumClassName;
+    private final String constantName;
+
+    public AnnotationEnumValue(final String enumClassName, final String constantName) {
+        this.enumClassName = enumClassName;
+        this.constantName = constantName;
+    }
+
+    /** The fully-qualified name of the enum class, e.g. "com.xyz.HttpMethod". */
+    public String getEnumClassName() {
+        return enumClassName;
+    }
+
+    /** The name of the enum constant, e.g. "GET". */
+    public String getConstantName() {
+        return constantName;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof AnnotationEnumValue)) {
+            return false;
+        }
+        final AnnotationEnumValue other = (AnnotationEnumValue) obj;
+        return enumClassName.equals(other.enumClassName) && constantName.equals(other.constantName);
+    }
+
+    @Override
+    public int hashCode() {
+        return enumClassName.hashCode() * 31 + constantName.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return enumClassName + "." + constantName;
+    }
+}
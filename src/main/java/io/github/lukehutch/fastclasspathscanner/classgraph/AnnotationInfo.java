@@ -0,0 +1,132 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.classgraph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * An annotation found on the classpath, together with its element values, read directly from the classfile without
+ * calling the classloader. Element values are represented as follows:
+ * 
+ * (1) primitive constants are wrapped in the corresponding wrapper class (Integer, Long, Byte, Character, etc.), and
+ * String constants are represented as String;
+ * 
+ * (2) enum constants are represented as AnnotationEnumValue;
+ * 
+ * (3) class literals are represented as AnnotationClassRef;
+ * 
+ * (4) nested annotations are represented as AnnotationInfo;
+ * 
+ * (5) arrays are represented as Object[], containing values of one of the above types.
+ * 
+ * If the annotation type itself was found on the classpath, then default values declared in the annotation type are
+ * returned for any elements that were not explicitly given a value. The default values are looked up when a value is
+ * read, so they reflect the current definition of the annotation type if the class graph is updated after the scan.
+ */
+public class AnnotationInfo {
+    private final String annotationName;
+    private final Map<String, Object> values;
+
+    /** The default values declared in the annotation type, shared by all annotations of the type. */
+    private Map<String, Object> defaultValues = Collections.emptyMap();
+
+    public AnnotationInfo(final String annotationName, final Map<String, Object> values) {
+        this.annotationName = annotationName;
+        this.values = values == null || values.isEmpty() ? Collections.<String, Object> emptyMap() : values;
+    }
+
+    /** The fully-qualified name of the annotation type, e.g. "com.xyz.Route". */
+    public String getAnnotationName() {
+        return annotationName;
+    }
+
+    /**
+     * The element values of the annotation, as a map from element name to value, including default values for
+     * elements that were not given an explicit value.
+     */
+    public Map<String, Object> getValues() {
+        if (defaultValues.isEmpty()) {
+            return Collections.unmodifiableMap(values);
+        }
+        final LinkedHashMap<String, Object> allValues = new LinkedHashMap<>(values);
+        for (final Entry<String, Object> ent : defaultValues.entrySet()) {
+            if (!allValues.containsKey(ent.getKey())) {
+                allValues.put(ent.getKey(), ent.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(allValues);
+    }
+
+    /** The value of the named element of the annotation, or null if the element has no value. */
+    public Object getValue(final String elementName) {
+        final Object value = values.get(elementName);
+        return value != null || values.containsKey(elementName) ? value : defaultValues.get(elementName);
+    }
+
+    /** The values that were explicitly given in the annotation, not including default values. */
+    Map<String, Object> getExplicitValues() {
+        return values;
+    }
+
+    /**
+     * Set the default values of the elements of the annotation type. The map is shared by all annotations of the
+     * type, and is updated in place if the annotation type is replaced.
+     */
+    void setDefaultValues(final Map<String, Object> defaultValues) {
+        this.defaultValues = defaultValues;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append('@').append(annotationName);
+        final Map<String, Object> values = getValues();
+        if (!values.isEmpty()) {
+            buf.append('(');
+            boolean first = true;
+            for (final Entry<String, Object> ent : values.entrySet()) {
+                if (first) {
+                    first = false;
+                } else {
+                    buf.append(", ");
+                }
+                final Object value = ent.getValue();
+                buf.append(ent.getKey()).append('=')
+                        .append(value instanceof Object[] ? Arrays.deepToString((Object[]) value) : value);
+            }
+            buf.append(')');
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.classgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A graph from each class to the classes it references, as found in its constant pool and in the descriptors of its
+ * fields, methods and annotations. Each class name is assigned an int id, and once all classes have been added, the
+ * edges are stored in compressed sparse row form: the ids of the classes referenced by the class with id i are
+ * edges[edgeOffsets[i]] to edges[edgeOffsets[i + 1] - 1]. This takes 4 bytes per edge plus 4 bytes per class, rather
+ * than a HashSet per class, so the graph stays compact for hundreds of thousands of classes.
+ */
+public class ClassDependencyGraph {
+    /** Class names, indexed by class id. Includes referenced classes that were not found on the classpath. */
+    private final ArrayList<String> classNames = new ArrayList<>();
+
+    /** Mapping from class name to class id. */
+    private final HashMap<String, Integer> classNameToId = new HashMap<>();
+
+    /** The start index in the edge buffer of the edges of each scanned class, or -1 if the class was not scanned. */
+    private int[] edgeStart = new int[16];
+
+    /** The number of edges of each scanned class. */
+    private int[] edgeCount = new int[16];
+
+    /** The ids of the referenced classes, in the order the referencing classes were scanned. */
+    private int[] edgeBuffer = new int[256];
+
+    private int edgeBufferSize;
+
+    /** CSR offsets into edges, indexed by class id, with one extra entry at the end. Null until finalized. */
+    private int[] edgeOffsets;
+
+    /** CSR edge array: the ids of the referenced classes, grouped by referencing class id. */
+    private int[] edges;
+
+    /** Return the id of a class name, assigning a new id if the class name has not been seen before. */
+    private int getOrAssignId(final String className) {
+        final Integer id = classNameToId.get(className);
+        if (id != null) {
+            return id;
+        }
+        final int newId = classNames.size();
+        classNames.add(className);
+        classNameToId.put(className, newId);
+        if (newId == edgeStart.length) {
+            edgeStart = Arrays.copyOf(edgeStart, newId * 2);
+            edgeCount = Arrays.copyOf(edgeCount, newId * 2);
+        }
+        edgeStart[newId] = -1;
+        return newId;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** Add a scanned class and the names of the classes it references. Called once per class. */
+    public void addClassDependencies(final String className, final Collection<String> referencedClassNames) {
+        final int classId = getOrAssignId(className);
+        final int numEdges = referencedClassNames.size();
+        if (edgeBufferSize + numEdges > edgeBuffer.length) {
+            edgeBuffer = Arrays.copyOf(edgeBuffer, Math.max(edgeBuffer.length * 2, edgeBufferSize + numEdges));
+        }
+        edgeStart[classId] = edgeBufferSize;
+        edgeCount[classId] = numEdges;
+        for (final String referencedClassName : referencedClassNames) {
+            edgeBuffer[edgeBufferSize++] = getOrAssignId(referencedClassName);
+        }
+    }
+
+    /** Build the compressed sparse row representation of the graph. Called once all classes have been added. */
+    public void finalizeGraph() {
+        final int numClasses = classNames.size();
+        edgeOffsets = new int[numClasses + 1];
+        edges = new int[edgeBufferSize];
+        int numEdges = 0;
+        for (int i = 0; i < numClasses; i++) {
+            edgeOffsets[i] = numEdges;
+            if (edgeStart[i] >= 0) {
+                System.arraycopy(edgeBuffer, edgeStart[i], edges, numEdges, edgeCount[i]);
+                numEdges += edgeCount[i];
+            }
+        }
+        edgeOffsets[numClasses] = numEdges;
+        // Free the build-time buffers
+        edgeStart = edgeCount = edgeBuffer = null;
+        classNames.trimToSize();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** Return the names of the classes directly referenced by the named class. */
+    public List<String> getNamesOfClassesReferencedBy(final String className) {
+        final Integer id = classNameToId.get(className);
+        if (id == null || edgeOffsets == null) {
+            return Collections.emptyList();
+        }
+        final ArrayList<String> names = new ArrayList<>(edgeOffsets[id + 1] - edgeOffsets[id]);
+        for (int i = edgeOffsets[id], end = edgeOffsets[id + 1]; i < end; i++) {
+            names.add(classNames.get(edges[i]));
+        }
+        return names;
+    }
+
+    /**
+     * Return the names of all classes transitively reachable from the named root classes by following class
+     * references, including the root classes themselves. Classes that were not scanned (e.g. classes outside the
+     * whitelisted packages) are included, but their own references are not followed.
+     */
+    public List<String> getNamesOfClassesReachableFrom(final Collection<String> rootClassNames) {
+        if (edgeOffsets == null) {
+            return Collections.emptyList();
+        }
+        final int numClasses = classNames.size();
+        final BitSet visited = new BitSet(numClasses);
+        final int[] queue = new int[numClasses];
+        int queueHead = 0, queueTail = 0;
+        for (final String rootClassName : rootClassNames) {
+            final Integer id = classNameToId.get(rootClassName);
+            if (id != null && !visited.get(id)) {
+                visited.set(id);
+                queue[queueTail++] = id;
+            }
+        }
+        // Breadth-first traversal of the graph
+        while (queueHead < queueTail) {
+            final int id = queue[queueHead++];
+            for (int i = edgeOffsets[id], end = edgeOffsets[id + 1]; i < end; i++) {
+                final int referencedId = edges[i];
+                if (!visited.get(referencedId)) {
+                    visited.set(referencedId);
+                    queue[queueTail++] = referencedId;
+                }
+            }
+        }
+        final ArrayList<String> names = new ArrayList<>(queueTail);
+        for (int i = 0; i < queueTail; i++) {
+            names.add(classNames.get(queue[i]));
+        }
+        return names;
+    }
+
+    public void reset() {
+        classNames.clear();
+        classNameToId.clear();
+        edgeStart = new int[16];
+        edgeCount = new int[16];
+        edgeBuffer = new int[256];
+        edgeBufferSize = 0;
+        edgeOffsets = null;
+        edges = null;
+    }
+}
@@ -30,12 +30,19 @@
 package io.github.lukehutch.fastclasspathscanner.classgraph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class ClassGraphBuilder {
 
@@ -48,13 +55,62 @@ public class ClassGraphBuilder {
     /** Reverse mapping from annotation to classes that have the annotation. */
     private final HashMap<String, ArrayList<String>> annotationNameToClassName = new HashMap<>();
 
+    /** Reverse mapping from annotation to interfaces (including annotation types) that have the annotation. */
+    private final HashMap<String, ArrayList<String>> annotationNameToInterfaceNames = new HashMap<>();
+
+    /** Reverse mapping from meta-annotation to the annotation types that are (transitively) annotated with it. */
+    private final HashMap<String, ArrayList<String>> metaAnnotationNameToAnnotationNames = new HashMap<>();
+
     /** Reverse mapping from interface to classes that implement the interface */
     private final HashMap<String, ArrayList<String>> interfaceNameToClassNames = new HashMap<>();
 
+    /** A map from class or interface name to the annotations on the class or interface, with their values. */
+    private final HashMap<String, ArrayList<AnnotationInfo>> classNameToAnnotationInfos = new HashMap<>();
+
+    /**
+     * A map from annotation type name to the default values of the annotation's elements. Each map is shared by the
+     * AnnotationInfo objects of the annotation type, and is updated in place when the annotation type is replaced.
+     */
+    private final HashMap<String, LinkedHashMap<String, Object>> annotationNameToDefaultValues = new HashMap<>();
+
+    /** Mapping from method annotation to the methods that have the annotation. */
+    private final HashMap<String, ArrayList<MethodInfo>> annotationNameToMethods = new HashMap<>();
+
+    /** Mapping from field annotation to the fields that have the annotation. */
+    private final HashMap<String, ArrayList<FieldInfo>> annotationNameToFields = new HashMap<>();
+
+    /**
+     * The names of the annotations on the methods and fields of each class, so that the annotated methods and fields
+     * of a class can be removed when the class is updated, without scanning every annotated method and field.
+     */
+    private final HashMap<String, HashSet<String>> classNameToMemberAnnotationNames = new HashMap<>();
+
+    /** The graph from each class to the classes it references, or null if the dependency graph is not enabled. */
+    private ClassDependencyGraph classDependencyGraph;
+
+    /**
+     * The off-heap store for the class and interface hierarchy and class annotations, or null if it is not enabled.
+     * When enabled, the class and interface nodes and the reverse mappings above are not used.
+     */
+    private OffHeapClassGraph offHeapClassGraph;
+
+    /** True once finalizeNodes() has been called, after which the class graph is updated incrementally. */
+    private boolean finalized;
+
+    /** True if retainOnly() has discarded the parts of the class graph that are not needed for queries. */
+    private boolean retainedOnly;
+
     // -----------------------------------------------------------------------------------------------------------------
 
-    /** Return the names of all classes with the named class annotation. */
+    /**
+     * Return the names of all classes with the named class annotation, including classes whose annotations are
+     * meta-annotated with the named annotation, and subclasses of classes with the named annotation if the annotation
+     * is itself annotated with @Inherited.
+     */
     public List<String> getNamesOfClassesWithAnnotation(final String annotationName) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getNamesOfClassesWithAnnotation(annotationName);
+        }
         final ArrayList<String> classes = annotationNameToClassName.get(annotationName);
         if (classes == null) {
             return Collections.emptyList();
@@ -62,8 +118,112 @@ public class ClassGraphBuilder {
         return classes;
     }
 
+    /**
+     * Return the names of all classes with the named class annotation (directly, as a meta-annotation, or by
+     * inheritance), for which the annotation values match the given predicate.
+     */
+    public List<String> getNamesOfClassesWithAnnotation(final String annotationName,
+            final Predicate<AnnotationInfo> annotationPredicate) {
+        final ArrayList<String> classes = new ArrayList<>();
+        for (final String className : getNamesOfClassesWithAnnotation(annotationName)) {
+            final AnnotationInfo annotationInfo = getAnnotationInfo(className, annotationName);
+            if (annotationInfo != null && annotationPredicate.test(annotationInfo)) {
+                classes.add(className);
+            }
+        }
+        return classes;
+    }
+
+    /** Return the annotations directly present on the named class or interface, with their values. */
+    public List<AnnotationInfo> getAnnotationInfos(final String className) {
+        final ArrayList<AnnotationInfo> annotationInfos = classNameToAnnotationInfos.get(className);
+        if (annotationInfos == null) {
+            return Collections.emptyList();
+        }
+        return annotationInfos;
+    }
+
+    /**
+     * Return the named annotation on the named class or interface, with its values, or null if the class does not have
+     * the annotation. If the annotation is not directly present on the class, the @Inherited annotations of
+     * superclasses are searched, followed by meta-annotations.
+     */
+    public AnnotationInfo getAnnotationInfo(final String className, final String annotationName) {
+        // Find annotations present on the class: direct annotations, then @Inherited annotations of superclasses
+        final ArrayList<AnnotationInfo> annotationInfos = new ArrayList<>(getAnnotationInfos(className));
+        final HashSet<String> annotationNames = new HashSet<>();
+        for (final AnnotationInfo annotationInfo : annotationInfos) {
+            annotationNames.add(annotationInfo.getAnnotationName());
+        }
+        for (String superclassName = getSuperclassName(className); superclassName != null; //
+        superclassName = getSuperclassName(superclassName)) {
+            for (final AnnotationInfo annotationInfo : getAnnotationInfos(superclassName)) {
+                if (isInheritedAnnotation(annotationInfo.getAnnotationName())
+                        && annotationNames.add(annotationInfo.getAnnotationName())) {
+                    annotationInfos.add(annotationInfo);
+                }
+            }
+        }
+        for (final AnnotationInfo annotationInfo : annotationInfos) {
+            if (annotationInfo.getAnnotationName().equals(annotationName)) {
+                return annotationInfo;
+            }
+        }
+        if (!annotationName.startsWith("java.lang.annotation.")) {
+            // Breadth-first search through the annotations on the annotation types, for a meta-annotation match
+            for (int i = 0; i < annotationInfos.size(); i++) {
+                for (final AnnotationInfo metaAnnotationInfo : getAnnotationInfos(annotationInfos.get(i)
+                        .getAnnotationName())) {
+                    if (metaAnnotationInfo.getAnnotationName().equals(annotationName)) {
+                        return metaAnnotationInfo;
+                    } else if (annotationNames.add(metaAnnotationInfo.getAnnotationName())) {
+                        annotationInfos.add(metaAnnotationInfo);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Return the name of the superclass of the named class, or null if the class or its superclass is unknown. */
+    private String getSuperclassName(final String className) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getSuperclassName(className);
+        }
+        final ClassNode classNode = classNameToClassNode.get(className);
+        return classNode == null || classNode.directSuperNodes.isEmpty() ? null
+                : classNode.directSuperNodes.get(0).name;
+    }
+
+    /** Return the names of all interfaces (including annotation types) with the named annotation or meta-annotation. */
+    public List<String> getNamesOfInterfacesWithAnnotation(final String annotationName) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getNamesOfInterfacesWithAnnotation(annotationName);
+        }
+        final ArrayList<String> interfaces = annotationNameToInterfaceNames.get(annotationName);
+        if (interfaces == null) {
+            return Collections.emptyList();
+        }
+        return interfaces;
+    }
+
+    /** Return the names of all annotation types directly or transitively annotated with the named annotation. */
+    public List<String> getNamesOfAnnotationsWithMetaAnnotation(final String metaAnnotationName) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getNamesOfAnnotationsWithMetaAnnotation(metaAnnotationName);
+        }
+        final ArrayList<String> annotations = metaAnnotationNameToAnnotationNames.get(metaAnnotationName);
+        if (annotations == null) {
+            return Collections.emptyList();
+        }
+        return annotations;
+    }
+
     /** Return the names of all classes implementing the named interface. */
     public List<String> getNamesOfClassesImplementing(final String interfaceName) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getNamesOfClassesImplementing(interfaceName);
+        }
         final ArrayList<String> classes = interfaceNameToClassNames.get(interfaceName);
         if (classes == null) {
             return Collections.emptyList();
@@ -73,6 +233,9 @@ public class ClassGraphBuilder {
 
     /** Return the names of all subclasses of the named class. */
     public List<String> getNamesOfSubclassesOf(final String className) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getNamesOfSubclassesOf(className);
+        }
         final ArrayList<String> subclasses = new ArrayList<>();
         final ClassNode classNode = classNameToClassNode.get(className);
         if (classNode != null) {
@@ -85,6 +248,9 @@ public class ClassGraphBuilder {
 
     /** Return the names of all superclasses of the named class. */
     public List<String> getNamesOfSuperclassesOf(final String className) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getNamesOfSuperclassesOf(className);
+        }
         final ArrayList<String> superclasses = new ArrayList<>();
         final ClassNode classNode = classNameToClassNode.get(className);
         if (classNode != null) {
@@ -97,6 +263,9 @@ public class ClassGraphBuilder {
 
     /** Return the names of all subinterfaces of the named interface. */
     public List<String> getNamesOfSubinterfacesOf(final String interfaceName) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getNamesOfSubinterfacesOf(interfaceName);
+        }
         final ArrayList<String> subinterfaces = new ArrayList<>();
         final InterfaceNode interfaceNode = interfaceNameToInterfaceNode.get(interfaceName);
         if (interfaceNode != null) {
@@ -109,6 +278,9 @@ public class ClassGraphBuilder {
 
     /** Return the names of all superinterfaces of the named interface. */
     public List<String> getNamesOfSuperinterfacesOf(final String interfaceName) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getNamesOfSuperinterfacesOf(interfaceName);
+        }
         final ArrayList<String> superinterfaces = new ArrayList<>();
         final InterfaceNode interfaceNode = interfaceNameToInterfaceNode.get(interfaceName);
         if (interfaceNode != null) {
@@ -119,18 +291,158 @@ public class ClassGraphBuilder {
         return superinterfaces;
     }
 
-    /** Return all class names reached during the scan. */
+    /** Return all methods with the named method annotation. */
+    public List<MethodInfo> getMethodsWithAnnotation(final String annotationName) {
+        final ArrayList<MethodInfo> methods = annotationNameToMethods.get(annotationName);
+        if (methods == null) {
+            return Collections.emptyList();
+        }
+        return methods;
+    }
+
+    /** Return the names of all classes that declare at least one method with the named method annotation. */
+    public List<String> getNamesOfClassesWithMethodAnnotation(final String annotationName) {
+        final ArrayList<String> classNames = new ArrayList<>();
+        final ArrayList<MethodInfo> methods = annotationNameToMethods.get(annotationName);
+        if (methods != null) {
+            final HashSet<String> classNamesSet = new HashSet<>();
+            for (final MethodInfo method : methods) {
+                if (classNamesSet.add(method.getClassName())) {
+                    classNames.add(method.getClassName());
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /** Return all fields with the named field annotation. */
+    public List<FieldInfo> getFieldsWithAnnotation(final String annotationName) {
+        final ArrayList<FieldInfo> fields = annotationNameToFields.get(annotationName);
+        if (fields == null) {
+            return Collections.emptyList();
+        }
+        return fields;
+    }
+
+    /** Return the names of all classes that declare at least one field with the named field annotation. */
+    public List<String> getNamesOfClassesWithFieldAnnotation(final String annotationName) {
+        final ArrayList<String> classNames = new ArrayList<>();
+        final ArrayList<FieldInfo> fields = annotationNameToFields.get(annotationName);
+        if (fields != null) {
+            final HashSet<String> classNamesSet = new HashSet<>();
+            for (final FieldInfo field : fields) {
+                if (classNamesSet.add(field.getClassName())) {
+                    classNames.add(field.getClassName());
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /** Return the names of the classes directly referenced by the named class. */
+    public List<String> getNamesOfClassesReferencedBy(final String className) {
+        return classDependencyGraph == null ? Collections.emptyList() : classDependencyGraph
+                .getNamesOfClassesReferencedBy(className);
+    }
+
+    /** Return the names of all classes transitively reachable from the named root classes. */
+    public List<String> getNamesOfClassesReachableFrom(final Collection<String> rootClassNames) {
+        return classDependencyGraph == null ? Collections.emptyList() : classDependencyGraph
+                .getNamesOfClassesReachableFrom(rootClassNames);
+    }
+
+    /** Return all class names reached during the scan, or only the retained class names after retainOnly(). */
     public Set<String> getNamesOfAllClasses() {
-        return classNameToClassNode.keySet();
+        return offHeapClassGraph != null ? offHeapClassGraph.getNamesOfAllClasses() : classNameToClassNode.keySet();
+    }
+
+    /**
+     * Return the names of all classes, interfaces and annotations in the class graph, including superclasses,
+     * interfaces and annotations that were referenced but not scanned.
+     */
+    public Set<String> getAllNames() {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.getAllNames();
+        }
+        final HashSet<String> names = new HashSet<>(classNameToClassNode.keySet());
+        names.addAll(interfaceNameToInterfaceNode.keySet());
+        names.addAll(annotationNameToClassName.keySet());
+        names.addAll(annotationNameToInterfaceNames.keySet());
+        names.addAll(metaAnnotationNameToAnnotationNames.keySet());
+        names.addAll(interfaceNameToClassNames.keySet());
+        return names;
     }
 
     // -----------------------------------------------------------------------------------------------------------------
 
-    /** Link a class to its superclass and to the interfaces it implements, and save the class annotations. */
+    /** Enable recording of class dependencies. */
+    public void enableClassDependencyGraph() {
+        if (classDependencyGraph == null) {
+            classDependencyGraph = new ClassDependencyGraph();
+        }
+    }
+
+    /** Returns true if class dependencies should be recorded. */
+    public boolean isClassDependencyGraphEnabled() {
+        return classDependencyGraph != null;
+    }
+
+    /** Store the class and interface hierarchy and class annotations off-heap. */
+    public void enableOffHeapClassGraph() {
+        if (offHeapClassGraph == null) {
+            offHeapClassGraph = new OffHeapClassGraph();
+        }
+    }
+
+    /** Returns true if the class and interface hierarchy is stored off-heap. */
+    public boolean isOffHeapClassGraphEnabled() {
+        return offHeapClassGraph != null;
+    }
+
+    /**
+     * Record that a class or interface was encountered on the classpath, when the off-heap class graph is enabled.
+     * Returns false if a class or interface of the same name was already encountered.
+     */
+    public boolean markEncountered(final String className) {
+        return offHeapClassGraph.markEncountered(className);
+    }
+
+    /** The number of bytes of off-heap memory used by the class graph. */
+    public long getOffHeapBytes() {
+        return offHeapClassGraph == null ? 0 : offHeapClassGraph.getAllocatedBytes();
+    }
+
+    /** Save the names of the classes referenced by a class. */
+    public void addClassDependencies(final String className, final Collection<String> referencedClassNames) {
+        classDependencyGraph.addClassDependencies(className, referencedClassNames);
+    }
+
+    /**
+     * Link a class to its superclass and to the interfaces it implements, and save the class annotations. If called
+     * after finalizeNodes(), any previous definition of the class is replaced, and the class graph is updated
+     * incrementally.
+     */
     public void linkToSuperclassAndInterfaces(final String className, final String superclassName,
             final ArrayList<String> interfaces, final HashSet<String> annotations) {
         // Save the info recovered from the classfile for a class
+        if (offHeapClassGraph != null && !finalized) {
+            offHeapClassGraph.addClass(className, superclassName, interfaces, annotations);
+        } else if (!finalized) {
+            addClassNode(className, superclassName, interfaces, annotations);
+        } else {
+            checkUpdatable();
+            final List<ReverseMappingUpdate> reverseMappingUpdates = findReverseMappingUpdates(className,
+                    Collections.<String> emptyList());
+            removeNode(classNameToClassNode, className);
+            removeNode(interfaceNameToInterfaceNode, className);
+            updateClosures(addClassNode(className, superclassName, interfaces, annotations));
+            applyReverseMappingUpdates(reverseMappingUpdates);
+        }
+    }
 
+    /** Create or encounter the ClassNode for a class, and link it to its superclass. */
+    private ClassNode addClassNode(final String className, final String superclassName,
+            final ArrayList<String> interfaces, final HashSet<String> annotations) {
         // Look up ClassNode object for this class
         ClassNode thisClassNode = classNameToClassNode.get(className);
         if (thisClassNode == null) {
@@ -150,20 +462,44 @@ public class ClassGraphBuilder {
         } else {
             superclassNode.addSubNode(thisClassNode);
         }
+        return thisClassNode;
     }
 
-    /** Save the mapping from an interface to its superinterfaces. */
-    public void linkToSuperinterfaces(final String interfaceName, final ArrayList<String> superInterfaces) {
+    /**
+     * Save the mapping from an interface to its superinterfaces, and save the interface annotations. For annotation
+     * types, the interface annotations are the meta-annotations of the annotation. If called after finalizeNodes(),
+     * any previous definition of the interface is replaced, and the class graph is updated incrementally.
+     */
+    public void linkToSuperinterfaces(final String interfaceName, final ArrayList<String> superInterfaces,
+            final HashSet<String> annotations, final boolean isAnnotation) {
+        if (offHeapClassGraph != null && !finalized) {
+            offHeapClassGraph.addInterface(interfaceName, superInterfaces, annotations, isAnnotation);
+        } else if (!finalized) {
+            addInterfaceNode(interfaceName, superInterfaces, annotations, isAnnotation);
+        } else {
+            checkUpdatable();
+            final List<ReverseMappingUpdate> reverseMappingUpdates = findReverseMappingUpdates(interfaceName,
+                    superInterfaces == null ? Collections.<String> emptyList() : superInterfaces);
+            removeNode(classNameToClassNode, interfaceName);
+            removeNode(interfaceNameToInterfaceNode, interfaceName);
+            updateClosures(addInterfaceNode(interfaceName, superInterfaces, annotations, isAnnotation));
+            applyReverseMappingUpdates(reverseMappingUpdates);
+        }
+    }
 
+    /** Create or encounter the InterfaceNode for an interface, and link it to its superinterfaces. */
+    private InterfaceNode addInterfaceNode(final String interfaceName, final ArrayList<String> superInterfaces,
+            final HashSet<String> annotations, final boolean isAnnotation) {
         // Look up InterfaceNode for this interface
         InterfaceNode thisInterfaceInfo = interfaceNameToInterfaceNode.get(interfaceName);
         if (thisInterfaceInfo == null) {
             // This interface has not been encountered before on the classpath 
-            interfaceNameToInterfaceNode.put(interfaceName, thisInterfaceInfo = new InterfaceNode(interfaceName));
+            interfaceNameToInterfaceNode.put(interfaceName, thisInterfaceInfo = new InterfaceNode(interfaceName,
+                    annotations, isAnnotation));
         } else {
             // This is the first time this interface has been encountered on the classpath, but
             // it was previously cited as a superinterface of another interface
-            thisInterfaceInfo.encounter();
+            thisInterfaceInfo.encounter(annotations, isAnnotation);
         }
 
         if (superInterfaces != null) {
@@ -179,6 +515,50 @@ public class ClassGraphBuilder {
                 }
             }
         }
+        return thisInterfaceInfo;
+    }
+
+    /** Save the annotations (with their values) that are directly present on a class or interface. */
+    public void addAnnotationInfos(final String className, final ArrayList<AnnotationInfo> annotationInfos) {
+        classNameToAnnotationInfos.put(className, annotationInfos);
+        for (final AnnotationInfo annotationInfo : annotationInfos) {
+            linkDefaultValues(annotationInfo);
+        }
+    }
+
+    /** Save the default value of an element of an annotation type. */
+    public void addAnnotationDefaultValue(final String annotationName, final String elementName, final Object value) {
+        getDefaultValues(annotationName).put(elementName, value);
+        linkDefaultValuesOfNestedAnnotations(value);
+    }
+
+    /** Save the mapping from a method annotation to an annotated method. */
+    public void addMethodAnnotation(final String annotationName, final MethodInfo method) {
+        ArrayList<MethodInfo> methods = annotationNameToMethods.get(annotationName);
+        if (methods == null) {
+            annotationNameToMethods.put(annotationName, methods = new ArrayList<>());
+        }
+        methods.add(method);
+        addMemberAnnotationName(method.getClassName(), annotationName);
+    }
+
+    /** Save the mapping from a field annotation to an annotated field. */
+    public void addFieldAnnotation(final String annotationName, final FieldInfo field) {
+        ArrayList<FieldInfo> fields = annotationNameToFields.get(annotationName);
+        if (fields == null) {
+            annotationNameToFields.put(annotationName, fields = new ArrayList<>());
+        }
+        fields.add(field);
+        addMemberAnnotationName(field.getClassName(), annotationName);
+    }
+
+    /** Save the name of an annotation on a method or field of a class. */
+    private void addMemberAnnotationName(final String className, final String annotationName) {
+        HashSet<String> annotationNames = classNameToMemberAnnotationNames.get(className);
+        if (annotationNames == null) {
+            classNameToMemberAnnotationNames.put(className, annotationNames = new HashSet<>(4));
+        }
+        annotationNames.add(annotationName);
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -188,6 +568,18 @@ public class ClassGraphBuilder {
      * Called once all classes have been read.
      */
     public void finalizeNodes() {
+        if (classDependencyGraph != null) {
+            classDependencyGraph.finalizeGraph();
+        }
+
+        if (offHeapClassGraph != null) {
+            // Closures are found at query time
+            offHeapClassGraph.finalizeGraph();
+            finalized = true;
+            return;
+        }
+
+        finalized = true;
         if (classNameToClassNode.isEmpty() && interfaceNameToInterfaceNode.isEmpty()) {
             // If no classes or interfaces were matched, there is no hierarchy to build
             return;
@@ -239,24 +631,61 @@ public class ClassGraphBuilder {
             interfaceNode.allSubNodes = allSubNodes;
         }
 
+        // Find the transitive closure of the meta-annotations of each annotation type, i.e. the annotations on the
+        // annotation type, the annotations on those annotations, and so on
+        final HashMap<String, HashSet<String>> annotationToMetaAnnotations = new HashMap<>();
+        for (final InterfaceNode interfaceNode : interfaceNameToInterfaceNode.values()) {
+            if (interfaceNode.isAnnotation) {
+                annotationToMetaAnnotations.put(interfaceNode.name, findMetaAnnotations(interfaceNode));
+            }
+        }
+
         // Reverse mapping from annotation to classes that have the annotation.
         final HashMap<String, HashSet<DAGNode>> annotationToClassNodes = new HashMap<>();
 
         // Reverse mapping from interface to classes that implement the interface.
         final HashMap<String, HashSet<DAGNode>> interfaceToClassNodes = new HashMap<>();
 
+        // The annotations present on each class: the direct annotations of the class, plus the @Inherited
+        // annotations present on its superclass.
+        final HashMap<DAGNode, HashSet<String>> classNodeToPresentAnnotations = new HashMap<>();
+
         // Create reverse mapping from annotation to the names of classes that have the annotation,
         // and from interface names to the names of classes that implement the interface.
+        // (Superclasses come before subclasses in the topological order, so inherited annotations
+        // are resolved before they are needed.)
         for (final DAGNode classDAGNode : classNodeTopoOrder) {
             final ClassNode classNode = (ClassNode) classDAGNode;
-            if (classNode.annotationNames != null) {
-                // Map from annotation back to classes that have the annotation
-                for (final String annotation : classNode.annotationNames) {
-                    HashSet<DAGNode> classList = annotationToClassNodes.get(annotation);
-                    if (classList == null) {
-                        annotationToClassNodes.put(annotation, classList = new HashSet<>());
+            HashSet<String> presentAnnotations = classNode.annotationNames;
+            for (final DAGNode superclassNode : classNode.directSuperNodes) {
+                final HashSet<String> superclassAnnotations = classNodeToPresentAnnotations.get(superclassNode);
+                if (superclassAnnotations != null) {
+                    for (final String annotation : superclassAnnotations) {
+                        if (isInheritedAnnotation(annotation)) {
+                            if (presentAnnotations == classNode.annotationNames) {
+                                // Copy on write, so that the direct annotations of the class are not modified
+                                presentAnnotations = presentAnnotations == null ? new HashSet<String>()
+                                        : new HashSet<>(presentAnnotations);
+                            }
+                            presentAnnotations.add(annotation);
+                        }
+                    }
+                }
+            }
+            if (presentAnnotations != null) {
+                classNodeToPresentAnnotations.put(classDAGNode, presentAnnotations);
+                // Map from annotation and its meta-annotations back to classes that have the annotation
+                for (final String annotation : presentAnnotations) {
+                    addClassNodeForAnnotation(annotationToClassNodes, annotation, classDAGNode);
+                    final HashSet<String> metaAnnotations = annotationToMetaAnnotations.get(annotation);
+                    if (metaAnnotations != null) {
+                        for (final String metaAnnotation : metaAnnotations) {
+                            // Don't propagate standard meta-annotations like @Retention and @Target to classes
+                            if (!metaAnnotation.startsWith("java.lang.annotation.")) {
+                                addClassNodeForAnnotation(annotationToClassNodes, metaAnnotation, classDAGNode);
+                            }
+                        }
                     }
-                    classList.add(classDAGNode);
                 }
             }
 
@@ -304,6 +733,37 @@ public class ClassGraphBuilder {
             }
         }
 
+        // Create reverse mapping from annotations and meta-annotations to the interfaces that have them, and from
+        // meta-annotations to the annotation types that have them
+        for (final InterfaceNode interfaceNode : interfaceNameToInterfaceNode.values()) {
+            if (interfaceNode.annotationNames != null) {
+                final HashSet<String> annotationsAndMetaAnnotations = new HashSet<>();
+                for (final String annotation : interfaceNode.annotationNames) {
+                    annotationsAndMetaAnnotations.add(annotation);
+                    final HashSet<String> metaAnnotations = annotationToMetaAnnotations.get(annotation);
+                    if (metaAnnotations != null) {
+                        annotationsAndMetaAnnotations.addAll(metaAnnotations);
+                    }
+                }
+                for (final String annotation : annotationsAndMetaAnnotations) {
+                    ArrayList<String> interfaceNameList = annotationNameToInterfaceNames.get(annotation);
+                    if (interfaceNameList == null) {
+                        annotationNameToInterfaceNames.put(annotation, interfaceNameList = new ArrayList<>());
+                    }
+                    interfaceNameList.add(interfaceNode.name);
+                }
+            }
+        }
+        for (final Entry<String, HashSet<String>> ent : annotationToMetaAnnotations.entrySet()) {
+            for (final String metaAnnotation : ent.getValue()) {
+                ArrayList<String> annotationNameList = metaAnnotationNameToAnnotationNames.get(metaAnnotation);
+                if (annotationNameList == null) {
+                    metaAnnotationNameToAnnotationNames.put(metaAnnotation, annotationNameList = new ArrayList<>());
+                }
+                annotationNameList.add(ent.getKey());
+            }
+        }
+
         // Convert annotation and interface mappings to String->String 
         for (final Entry<String, HashSet<DAGNode>> ent : annotationToClassNodes.entrySet()) {
             final ArrayList<String> classNameList = new ArrayList<>();
@@ -327,12 +787,596 @@ public class ClassGraphBuilder {
         }
     }
 
+    /**
+     * Find all meta-annotations of an annotation type by traversing the annotation graph. The annotation graph may
+     * contain cycles (e.g. @Documented is annotated with @Documented), so visited annotations are tracked.
+     */
+    private HashSet<String> findMetaAnnotations(final InterfaceNode annotationNode) {
+        final HashSet<String> metaAnnotations = new HashSet<>();
+        final ArrayList<InterfaceNode> stack = new ArrayList<>();
+        stack.add(annotationNode);
+        while (!stack.isEmpty()) {
+            final InterfaceNode node = stack.remove(stack.size() - 1);
+            if (node.annotationNames != null) {
+                for (final String metaAnnotation : node.annotationNames) {
+                    if (!metaAnnotation.equals(annotationNode.name) && metaAnnotations.add(metaAnnotation)) {
+                        final InterfaceNode metaAnnotationNode = interfaceNameToInterfaceNode.get(metaAnnotation);
+                        if (metaAnnotationNode != null) {
+                            stack.add(metaAnnotationNode);
+                        }
+                    }
+                }
+            }
+        }
+        return metaAnnotations;
+    }
+
+    /**
+     * Get the default values of an annotation type, creating an empty map if the annotation type has not been read
+     * (yet), so that the annotations of the type see the default values once it is read.
+     */
+    private LinkedHashMap<String, Object> getDefaultValues(final String annotationName) {
+        LinkedHashMap<String, Object> defaultValues = annotationNameToDefaultValues.get(annotationName);
+        if (defaultValues == null) {
+            annotationNameToDefaultValues.put(annotationName, defaultValues = new LinkedHashMap<>());
+        }
+        return defaultValues;
+    }
+
+    /**
+     * Recursively link an annotation, and any nested annotations in its values, to the default values of their
+     * annotation types, which are looked up when an element value is read.
+     */
+    private void linkDefaultValues(final AnnotationInfo annotationInfo) {
+        annotationInfo.setDefaultValues(getDefaultValues(annotationInfo.getAnnotationName()));
+        for (final Object value : annotationInfo.getExplicitValues().values()) {
+            linkDefaultValuesOfNestedAnnotations(value);
+        }
+    }
+
+    /** Link nested annotations within an annotation element value to the default values of their types. */
+    private void linkDefaultValuesOfNestedAnnotations(final Object value) {
+        if (value instanceof AnnotationInfo) {
+            linkDefaultValues((AnnotationInfo) value);
+        } else if (value instanceof Object[]) {
+            for (final Object elt : (Object[]) value) {
+                linkDefaultValuesOfNestedAnnotations(elt);
+            }
+        }
+    }
+
+    /** Returns true if the named annotation type was found on the classpath, and is annotated with @Inherited. */
+    private boolean isInheritedAnnotation(final String annotationName) {
+        if (offHeapClassGraph != null) {
+            return offHeapClassGraph.isInheritedAnnotation(annotationName);
+        }
+        final InterfaceNode annotationNode = interfaceNameToInterfaceNode.get(annotationName);
+        return annotationNode != null && annotationNode.annotationNames != null
+                && annotationNode.annotationNames.contains("java.lang.annotation.Inherited");
+    }
+
+    /** Add a class to the reverse mapping from annotation to classes with the annotation. */
+    private static void addClassNodeForAnnotation(final HashMap<String, HashSet<DAGNode>> annotationToClassNodes,
+            final String annotation, final DAGNode classNode) {
+        HashSet<DAGNode> classList = annotationToClassNodes.get(annotation);
+        if (classList == null) {
+            annotationToClassNodes.put(annotation, classList = new HashSet<>());
+        }
+        classList.add(classNode);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Remove a class, interface or annotation type from the class graph after finalizeNodes() has been called, e.g.
+     * when a class is unloaded from a long-running process. Only the closures and reverse mappings of the classes
+     * and interfaces in the hierarchy neighbourhood of the removed class are updated. If the class is still cited as
+     * the superclass or superinterface of another class or interface, it remains in the graph as a placeholder, as if
+     * it had not been found on the classpath.
+     */
+    public void removeClass(final String className) {
+        checkUpdatable();
+        final List<ReverseMappingUpdate> reverseMappingUpdates = findReverseMappingUpdates(className,
+                Collections.<String> emptyList());
+        removeNode(classNameToClassNode, className);
+        removeNode(interfaceNameToInterfaceNode, className);
+        removeClassContents(className);
+        applyReverseMappingUpdates(reverseMappingUpdates);
+    }
+
+    /**
+     * Remove the annotations, annotation default values and annotated methods and fields saved for a class or
+     * interface, before it is read again to replace its previous definition.
+     */
+    public void removeClassContents(final String className) {
+        classNameToAnnotationInfos.remove(className);
+        final LinkedHashMap<String, Object> defaultValues = annotationNameToDefaultValues.get(className);
+        if (defaultValues != null) {
+            // Cleared in place, since the map is shared by the annotations of this type on other classes
+            defaultValues.clear();
+        }
+        // Only the methods and fields with the annotations found on the members of this class need to be checked
+        final HashSet<String> memberAnnotationNames = classNameToMemberAnnotationNames.remove(className);
+        if (memberAnnotationNames != null) {
+            for (final String annotationName : memberAnnotationNames) {
+                final ArrayList<MethodInfo> methods = annotationNameToMethods.get(annotationName);
+                if (methods != null && methods.removeIf(method -> method.getClassName().equals(className))
+                        && methods.isEmpty()) {
+                    annotationNameToMethods.remove(annotationName);
+                }
+                final ArrayList<FieldInfo> fields = annotationNameToFields.get(annotationName);
+                if (fields != null && fields.removeIf(field -> field.getClassName().equals(className))
+                        && fields.isEmpty()) {
+                    annotationNameToFields.remove(annotationName);
+                }
+            }
+        }
+    }
+
+    /** Throw IllegalStateException if the class graph cannot be updated incrementally. */
+    public void checkUpdatable() {
+        if (!finalized) {
+            throw new IllegalStateException("The class graph can only be updated after finalizeNodes()");
+        }
+        if (offHeapClassGraph != null || retainedOnly) {
+            throw new IllegalStateException("The class graph cannot be updated when it is stored off-heap, "
+                    + "or when only the parts needed for queries were retained");
+        }
+    }
+
+    /**
+     * Remove a class or interface node, if it was encountered on the classpath: unlink it from its superclass or
+     * superinterfaces, drop it (or revert it to a placeholder if it still has subnodes), update the closures of its
+     * sub-DAG, and drop any placeholder supernodes that are no longer cited.
+     */
+    private static void removeNode(final HashMap<String, ? extends DAGNode> nameToNode, final String name) {
+        final DAGNode node = nameToNode.get(name);
+        if (node != null && node.encountered) {
+            final ArrayList<DAGNode> oldSuperNodes = new ArrayList<>(node.directSuperNodes);
+            for (final DAGNode superNode : oldSuperNodes) {
+                superNode.directSubNodes.remove(node);
+            }
+            node.directSuperNodes.clear();
+            if (node.directSubNodes.isEmpty()) {
+                nameToNode.remove(name);
+            } else {
+                node.forget();
+            }
+            updateClosures(node);
+            for (final DAGNode superNode : oldSuperNodes) {
+                if (!superNode.encountered && superNode.directSubNodes.isEmpty()) {
+                    nameToNode.remove(superNode.name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recompute the transitive supernodes of a node and of all its subnodes, after the direct supernodes of the node
+     * changed, and add or remove these nodes from the transitive subnodes of their old and new supernodes to match.
+     * Only the sub-DAG below the node is traversed.
+     */
+    private static void updateClosures(final DAGNode node) {
+        // Reverse postorder gives a topological order for the sub-DAG
+        final ArrayList<DAGNode> postOrder = new ArrayList<>();
+        node.topoSortRec(new HashSet<DAGNode>(), postOrder);
+        for (int i = postOrder.size() - 1; i >= 0; --i) {
+            final DAGNode subNode = postOrder.get(i);
+            final HashSet<DAGNode> allSuperNodes = new HashSet<>();
+            for (final DAGNode superNode : subNode.directSuperNodes) {
+                allSuperNodes.add(superNode);
+                allSuperNodes.addAll(superNode.allSuperNodes);
+            }
+            for (final DAGNode oldSuperNode : subNode.allSuperNodes) {
+                if (!allSuperNodes.contains(oldSuperNode)) {
+                    oldSuperNode.allSubNodes.remove(subNode);
+                }
+            }
+            for (final DAGNode superNode : allSuperNodes) {
+                superNode.allSubNodes.add(subNode);
+            }
+            subNode.allSuperNodes = allSuperNodes;
+        }
+    }
+
+    /**
+     * The names whose entries in one of the reverse mappings may change when a class or interface is updated, with
+     * the keys each name was listed under before the update.
+     */
+    private static class ReverseMappingUpdate {
+        private final HashMap<String, ArrayList<String>> reverseMapping;
+        private final Function<String, HashSet<String>> getKeys;
+        private final HashMap<String, HashSet<String>> nameToOldKeys = new HashMap<>();
+
+        ReverseMappingUpdate(final HashMap<String, ArrayList<String>> reverseMapping,
+                final Function<String, HashSet<String>> getKeys, final Collection<String> names) {
+            this.reverseMapping = reverseMapping;
+            this.getKeys = getKeys;
+            for (final String name : names) {
+                nameToOldKeys.put(name, getKeys.apply(name));
+            }
+        }
+
+        /** Once the class graph has been updated, move each name to the keys it is now listed under. */
+        void apply() {
+            for (final Entry<String, HashSet<String>> ent : nameToOldKeys.entrySet()) {
+                final String name = ent.getKey();
+                final HashSet<String> oldKeys = ent.getValue();
+                final HashSet<String> newKeys = getKeys.apply(name);
+                for (final String key : oldKeys) {
+                    if (!newKeys.contains(key)) {
+                        final ArrayList<String> names = reverseMapping.get(key);
+                        if (names != null && names.remove(name) && names.isEmpty()) {
+                            reverseMapping.remove(key);
+                        }
+                    }
+                }
+                for (final String key : newKeys) {
+                    if (!oldKeys.contains(key)) {
+                        ArrayList<String> names = reverseMapping.get(key);
+                        if (names == null) {
+                            reverseMapping.put(key, names = new ArrayList<>());
+                        }
+                        names.add(name);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the classes, interfaces and annotation types whose reverse mapping entries may change when the named
+     * class or interface is added, replaced or removed: the annotation types it is a meta-annotation of, the classes
+     * and interfaces with those annotations, the classes implementing it, and the subclasses of all of these classes.
+     * Also includes the classes implementing superinterfaces that will gain or lose their placeholder node, because
+     * only interfaces that have a node are inherited by the subclasses of implementing classes.
+     */
+    private List<ReverseMappingUpdate> findReverseMappingUpdates(final String name,
+            final Collection<String> newSuperinterfaceNames) {
+        final HashSet<String> annotationNames = new HashSet<>();
+        annotationNames.add(name);
+        addAllNonNull(annotationNames, metaAnnotationNameToAnnotationNames.get(name));
+        final HashSet<String> interfaceNames = new HashSet<>();
+        interfaceNames.add(name);
+        final HashSet<String> classNames = new HashSet<>();
+        classNames.add(name);
+        for (final String annotationName : annotationNames) {
+            addAllNonNull(interfaceNames, annotationNameToInterfaceNames.get(annotationName));
+            addAllNonNull(classNames, annotationNameToClassName.get(annotationName));
+        }
+        addAllNonNull(classNames, interfaceNameToClassNames.get(name));
+        final InterfaceNode interfaceNode = interfaceNameToInterfaceNode.get(name);
+        if (interfaceNode != null) {
+            for (final DAGNode superNode : interfaceNode.directSuperNodes) {
+                if (!superNode.encountered && superNode.directSubNodes.size() == 1) {
+                    addAllNonNull(classNames, interfaceNameToClassNames.get(superNode.name));
+                }
+            }
+        }
+        for (final String superinterfaceName : newSuperinterfaceNames) {
+            if (!interfaceNameToInterfaceNode.containsKey(superinterfaceName)) {
+                addAllNonNull(classNames, interfaceNameToClassNames.get(superinterfaceName));
+            }
+        }
+        for (final String className : new ArrayList<>(classNames)) {
+            final ClassNode classNode = classNameToClassNode.get(className);
+            if (classNode != null) {
+                for (final DAGNode subclassNode : classNode.allSubNodes) {
+                    classNames.add(subclassNode.name);
+                }
+            }
+        }
+        return Arrays.asList(
+                new ReverseMappingUpdate(annotationNameToClassName, this::getClassAnnotationKeys, classNames),
+                new ReverseMappingUpdate(interfaceNameToClassNames, this::getImplementedInterfaceKeys, classNames),
+                new ReverseMappingUpdate(annotationNameToInterfaceNames, this::getInterfaceAnnotationKeys,
+                        interfaceNames),
+                new ReverseMappingUpdate(metaAnnotationNameToAnnotationNames, this::getMetaAnnotationKeys,
+                        annotationNames));
+    }
+
+    private static void addAllNonNull(final HashSet<String> names, final ArrayList<String> namesToAdd) {
+        if (namesToAdd != null) {
+            names.addAll(namesToAdd);
+        }
+    }
+
+    private static void applyReverseMappingUpdates(final List<ReverseMappingUpdate> reverseMappingUpdates) {
+        for (final ReverseMappingUpdate reverseMappingUpdate : reverseMappingUpdates) {
+            reverseMappingUpdate.apply();
+        }
+    }
+
+    /**
+     * The annotations a class is listed under in annotationNameToClassName, as computed by finalizeNodes(): its
+     * direct annotations, the @Inherited annotations of its superclasses, and their non-standard meta-annotations.
+     */
+    private HashSet<String> getClassAnnotationKeys(final String className) {
+        final HashSet<String> keys = new HashSet<>();
+        final ClassNode classNode = classNameToClassNode.get(className);
+        if (classNode != null) {
+            final HashSet<String> presentAnnotations = new HashSet<>();
+            if (classNode.annotationNames != null) {
+                presentAnnotations.addAll(classNode.annotationNames);
+            }
+            for (final DAGNode superclassNode : classNode.allSuperNodes) {
+                final HashSet<String> superclassAnnotations = ((ClassNode) superclassNode).annotationNames;
+                if (superclassAnnotations != null) {
+                    for (final String annotation : superclassAnnotations) {
+                        if (isInheritedAnnotation(annotation)) {
+                            presentAnnotations.add(annotation);
+                        }
+                    }
+                }
+            }
+            for (final String annotation : presentAnnotations) {
+                keys.add(annotation);
+                for (final String metaAnnotation : getMetaAnnotationKeys(annotation)) {
+                    if (!metaAnnotation.startsWith("java.lang.annotation.")) {
+                        keys.add(metaAnnotation);
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The interfaces a class is listed under in interfaceNameToClassNames, as computed by finalizeNodes(): the
+     * interfaces it implements and their superinterfaces, and those of the interfaces implemented by its
+     * superclasses that have an interface node.
+     */
+    private HashSet<String> getImplementedInterfaceKeys(final String className) {
+        final HashSet<String> keys = new HashSet<>();
+        final ClassNode classNode = classNameToClassNode.get(className);
+        if (classNode != null) {
+            addInterfacesAndSuperinterfaces(classNode, /* inherited = */false, keys);
+            for (final DAGNode superclassNode : classNode.allSuperNodes) {
+                addInterfacesAndSuperinterfaces((ClassNode) superclassNode, /* inherited = */true, keys);
+            }
+        }
+        return keys;
+    }
+
+    private void addInterfacesAndSuperinterfaces(final ClassNode classNode, final boolean inherited,
+            final HashSet<String> keys) {
+        if (classNode.interfaceNames != null) {
+            for (final String interfaceName : classNode.interfaceNames) {
+                final InterfaceNode interfaceNode = interfaceNameToInterfaceNode.get(interfaceName);
+                if (!inherited || interfaceNode != null) {
+                    keys.add(interfaceName);
+                }
+                if (interfaceNode != null) {
+                    for (final DAGNode superinterfaceNode : interfaceNode.allSuperNodes) {
+                        keys.add(superinterfaceNode.name);
+                    }
+                }
+            }
+        }
+    }
+
+    /** The annotations an interface is listed under in annotationNameToInterfaceNames. */
+    private HashSet<String> getInterfaceAnnotationKeys(final String interfaceName) {
+        final HashSet<String> keys = new HashSet<>();
+        final InterfaceNode interfaceNode = interfaceNameToInterfaceNode.get(interfaceName);
+        if (interfaceNode != null && interfaceNode.annotationNames != null) {
+            for (final String annotation : interfaceNode.annotationNames) {
+                keys.add(annotation);
+                keys.addAll(getMetaAnnotationKeys(annotation));
+            }
+        }
+        return keys;
+    }
+
+    /** The meta-annotations an annotation type is listed under in metaAnnotationNameToAnnotationNames. */
+    private HashSet<String> getMetaAnnotationKeys(final String annotationName) {
+        final InterfaceNode annotationNode = interfaceNameToInterfaceNode.get(annotationName);
+        return annotationNode != null && annotationNode.isAnnotation ? findMetaAnnotations(annotationNode)
+                : new HashSet<String>();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Discard all classes, interfaces and mappings that are not needed to answer queries about the named classes,
+     * interfaces and annotations. Called after finalizeNodes(), so that long-running processes do not retain the
+     * hierarchy of the whole classpath. A class or interface is retained if it is on a path to a queried name: a
+     * superclass or subclass of a queried class, a superinterface or subinterface of a queried interface, a class
+     * implementing a queried interface, a class or interface with a queried annotation, or an annotation type
+     * meta-annotated with a queried annotation. The superclasses of retained classes are also retained, so that
+     * getAnnotationInfo() can find @Inherited annotations.
+     */
+    public void retainOnly(final Set<String> queriedNames) {
+        retainedOnly = true;
+        final HashSet<DAGNode> retainedNodes = new HashSet<>();
+        final HashSet<String> retainedClassNames = new HashSet<>();
+        for (final String name : queriedNames) {
+            final ClassNode classNode = classNameToClassNode.get(name);
+            if (classNode != null) {
+                retainWithSuperNodes(classNode, retainedNodes);
+                retainedNodes.addAll(classNode.allSubNodes);
+            }
+            final InterfaceNode interfaceNode = interfaceNameToInterfaceNode.get(name);
+            if (interfaceNode != null) {
+                retainedNodes.add(interfaceNode);
+                retainedNodes.addAll(interfaceNode.allSuperNodes);
+                retainedNodes.addAll(interfaceNode.allSubNodes);
+            }
+            retainedClassNames.addAll(getNamesOfClassesImplementing(name));
+            retainedClassNames.addAll(getNamesOfClassesWithAnnotation(name));
+            retainedClassNames.addAll(getNamesOfInterfacesWithAnnotation(name));
+            retainedClassNames.addAll(getNamesOfAnnotationsWithMetaAnnotation(name));
+        }
+        if (offHeapClassGraph != null) {
+            // The hierarchy is stored off-heap, so only the annotation values of classes and interfaces that are not
+            // on a path to a queried name need to be dropped
+            final HashSet<String> retainedNames = new HashSet<>(queriedNames);
+            retainedNames.addAll(retainedClassNames);
+            for (final String name : queriedNames) {
+                retainedNames.addAll(getNamesOfSubclassesOf(name));
+                retainedNames.addAll(getNamesOfSubinterfacesOf(name));
+                retainedNames.addAll(getNamesOfSuperinterfacesOf(name));
+            }
+            for (final String name : new ArrayList<>(retainedNames)) {
+                retainedNames.addAll(getNamesOfSuperclassesOf(name));
+            }
+            classNameToAnnotationInfos.keySet().retainAll(retainedNames);
+        } else {
+            for (final String className : retainedClassNames) {
+                final ClassNode classNode = classNameToClassNode.get(className);
+                if (classNode != null) {
+                    retainWithSuperNodes(classNode, retainedNodes);
+                }
+                final InterfaceNode interfaceNode = interfaceNameToInterfaceNode.get(className);
+                if (interfaceNode != null) {
+                    retainedNodes.add(interfaceNode);
+                }
+            }
+
+            // Drop the nodes that are not retained, and the edges from retained nodes to them
+            retainNodes(classNameToClassNode, retainedNodes);
+            retainNodes(interfaceNameToInterfaceNode, retainedNodes);
+            for (final Iterator<String> iter = classNameToAnnotationInfos.keySet().iterator(); iter.hasNext();) {
+                final String className = iter.next();
+                if (!classNameToClassNode.containsKey(className)
+                        && !interfaceNameToInterfaceNode.containsKey(className)) {
+                    iter.remove();
+                }
+            }
+        }
+
+        // Drop the mappings for names that were not queried
+        annotationNameToClassName.keySet().retainAll(queriedNames);
+        annotationNameToInterfaceNames.keySet().retainAll(queriedNames);
+        metaAnnotationNameToAnnotationNames.keySet().retainAll(queriedNames);
+        interfaceNameToClassNames.keySet().retainAll(queriedNames);
+        annotationNameToMethods.keySet().retainAll(queriedNames);
+        annotationNameToFields.keySet().retainAll(queriedNames);
+        // The class graph can no longer be updated
+        classNameToMemberAnnotationNames.clear();
+        // The AnnotationInfo objects keep references to the default values of their annotation types
+        annotationNameToDefaultValues.clear();
+    }
+
+    /** Add a class node and all its superclasses to the set of retained nodes. */
+    private static void retainWithSuperNodes(final DAGNode classNode, final HashSet<DAGNode> retainedNodes) {
+        if (retainedNodes.add(classNode)) {
+            retainedNodes.addAll(classNode.allSuperNodes);
+        }
+    }
+
+    /** Remove the nodes that are not in retainedNodes from the map, and remove edges to them from the other nodes. */
+    private static void retainNodes(final HashMap<String, ? extends DAGNode> nameToNode,
+            final HashSet<DAGNode> retainedNodes) {
+        for (final Iterator<? extends DAGNode> iter = nameToNode.values().iterator(); iter.hasNext();) {
+            final DAGNode node = iter.next();
+            if (!retainedNodes.contains(node)) {
+                iter.remove();
+            } else {
+                node.directSuperNodes.retainAll(retainedNodes);
+                node.directSubNodes.retainAll(retainedNodes);
+                node.allSuperNodes.retainAll(retainedNodes);
+                node.allSubNodes.retainAll(retainedNodes);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Approximate heap size of an object header plus padding, and of a reference, on a 64-bit JVM without compressed
+     * references. With compressed references (the default for heaps under 32GB), objects are smaller, so the estimate
+     * is an upper bound.
+     */
+    private static final int OBJECT_BYTES = 16, REF_BYTES = 8;
+
+    /** Approximate heap size of a HashMap or HashSet entry, including its share of the hash table. */
+    private static final int HASH_ENTRY_BYTES = 48;
+
+    /** Approximate heap size of an empty HashMap, HashSet or ArrayList. */
+    private static final int COLLECTION_BYTES = 64;
+
+    private static long stringBytes(final String str) {
+        return OBJECT_BYTES + 24 + 2L * str.length();
+    }
+
+    private static long listBytes(final List<?> list) {
+        return list == null ? 0 : COLLECTION_BYTES + (long) REF_BYTES * list.size();
+    }
+
+    private static long setBytes(final Set<?> set) {
+        return set == null ? 0 : COLLECTION_BYTES + (long) HASH_ENTRY_BYTES * set.size();
+    }
+
+    /** Estimate the heap size of the mappings from names to lists of names or objects. */
+    private static long mapBytes(final Map<String, ? extends List<?>> map, final int bytesPerValue) {
+        long bytes = COLLECTION_BYTES;
+        for (final List<?> list : map.values()) {
+            // Keys are usually shared with class nodes, so they are not counted
+            bytes += HASH_ENTRY_BYTES + listBytes(list) + (long) bytesPerValue * list.size();
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimate the number of bytes of heap retained by the class graph, not including the class dependency graph.
+     * This is an approximation based on typical object sizes on a 64-bit JVM without compressed references.
+     */
+    public long estimateFootprintBytes() {
+        long bytes = 2 * COLLECTION_BYTES;
+        for (final Map<String, ? extends DAGNode> nameToNode : Arrays.asList(classNameToClassNode,
+                interfaceNameToInterfaceNode)) {
+            for (final DAGNode node : nameToNode.values()) {
+                bytes += HASH_ENTRY_BYTES + OBJECT_BYTES + 5 * REF_BYTES + stringBytes(node.name)
+                        + listBytes(node.directSuperNodes) + listBytes(node.directSubNodes)
+                        + setBytes(node.allSuperNodes) + setBytes(node.allSubNodes);
+                if (node instanceof ClassNode) {
+                    final ClassNode classNode = (ClassNode) node;
+                    bytes += listBytes(classNode.interfaceNames) + setBytes(classNode.annotationNames);
+                } else {
+                    bytes += setBytes(((InterfaceNode) node).annotationNames);
+                }
+            }
+        }
+        bytes += mapBytes(annotationNameToClassName, 0) + mapBytes(annotationNameToInterfaceNames, 0)
+                + mapBytes(metaAnnotationNameToAnnotationNames, 0) + mapBytes(interfaceNameToClassNames, 0);
+        // AnnotationInfo, MethodInfo and FieldInfo objects, with their values or member names and descriptors
+        bytes += mapBytes(annotationNameToMethods, OBJECT_BYTES + 3 * REF_BYTES + 2 * 64)
+                + mapBytes(annotationNameToFields, OBJECT_BYTES + 3 * REF_BYTES + 2 * 64);
+        for (final HashSet<String> memberAnnotationNames : classNameToMemberAnnotationNames.values()) {
+            bytes += HASH_ENTRY_BYTES + setBytes(memberAnnotationNames);
+        }
+        for (final ArrayList<AnnotationInfo> annotationInfos : classNameToAnnotationInfos.values()) {
+            bytes += HASH_ENTRY_BYTES + listBytes(annotationInfos);
+            for (final AnnotationInfo annotationInfo : annotationInfos) {
+                bytes += OBJECT_BYTES + 2 * REF_BYTES + COLLECTION_BYTES + (long) HASH_ENTRY_BYTES
+                        * annotationInfo.getValues().size();
+            }
+        }
+        return bytes;
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
 
     public void reset() {
         classNameToClassNode.clear();
         interfaceNameToInterfaceNode.clear();
         annotationNameToClassName.clear();
+        annotationNameToInterfaceNames.clear();
+        metaAnnotationNameToAnnotationNames.clear();
         interfaceNameToClassNames.clear();
+        classNameToAnnotationInfos.clear();
+        annotationNameToDefaultValues.clear();
+        annotationNameToMethods.clear();
+        annotationNameToFields.clear();
+        classNameToMemberAnnotationNames.clear();
+        finalized = false;
+        retainedOnly = false;
+        if (classDependencyGraph != null) {
+            classDependencyGraph.reset();
+        }
+        if (offHeapClassGraph != null) {
+            offHeapClassGraph.reset();
+        }
     }
 }
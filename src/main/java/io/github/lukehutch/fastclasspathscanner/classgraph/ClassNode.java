@@ -62,6 +62,14 @@ class ClassNode extends DAGNode {
         this.annotationNames = annotationNames;
     }
 
+    /** This class was removed from the class graph, but is still cited as a superclass. */
+    @Override
+    public void forget() {
+        super.forget();
+        this.interfaceNames = new ArrayList<>();
+        this.annotationNames = new HashSet<>();
+    }
+
     /** Connect this class to a subclass. */
     public void addSubNode(final ClassNode subclass) {
         super.addSubNode(subclass);
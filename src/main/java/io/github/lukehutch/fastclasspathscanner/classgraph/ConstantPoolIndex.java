@@ -0,0 +1,154 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.classgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * An inverted index from the class references and string constants in the constant pools of classfiles to the classes
+ * that contain them, so that repeated queries do not require the classpath to be rescanned. Each distinct class name
+ * and string constant is stored once, and each class is represented by an int id in the posting lists.
+ */
+public class ConstantPoolIndex {
+    /** The names of indexed classes, indexed by class id. */
+    private final ArrayList<String> classNames = new ArrayList<>();
+
+    /** Mapping from referenced class name to the ids of the classes that reference it. */
+    private final HashMap<String, IntArrayList> referencedClassNameToClassIds = new HashMap<>();
+
+    /** Mapping from string constant to the ids of the classes that contain it. */
+    private final HashMap<String, IntArrayList> stringConstantToClassIds = new HashMap<>();
+
+    /** A growable int array, used for the posting lists of the index. */
+    private static class IntArrayList {
+        int[] ids = new int[2];
+        int size;
+
+        void add(final int id) {
+            // Classes are added in increasing id order, so duplicates are always adjacent
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void trim() {
+            if (size < ids.length) {
+                ids = Arrays.copyOf(ids, size);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** Add a class to the index, returning its class id. */
+    public int addClass(final String className) {
+        classNames.add(className);
+        return classNames.size() - 1;
+    }
+
+    /** Record that the class with the given id references the named class. */
+    public void addReferencedClass(final int classId, final String referencedClassName) {
+        add(referencedClassNameToClassIds, referencedClassName, classId);
+    }
+
+    /** Record that the class with the given id contains the given string constant. */
+    public void addStringConstant(final int classId, final String stringConstant) {
+        add(stringConstantToClassIds, stringConstant, classId);
+    }
+
+    private static void add(final HashMap<String, IntArrayList> map, final String key, final int classId) {
+        IntArrayList classIds = map.get(key);
+        if (classIds == null) {
+            map.put(key, classIds = new IntArrayList());
+        }
+        classIds.add(classId);
+    }
+
+    /** Trim the posting lists to size, once all classes have been added. */
+    public void finalizeIndex() {
+        classNames.trimToSize();
+        for (final IntArrayList classIds : referencedClassNameToClassIds.values()) {
+            classIds.trim();
+        }
+        for (final IntArrayList classIds : stringConstantToClassIds.values()) {
+            classIds.trim();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** Return the names of all classes whose constant pool references the named class. */
+    public List<String> getNamesOfClassesReferencing(final String referencedClassName) {
+        final IntArrayList classIds = referencedClassNameToClassIds.get(referencedClassName);
+        if (classIds == null) {
+            return Collections.emptyList();
+        }
+        final ArrayList<String> names = new ArrayList<>(classIds.size);
+        for (int i = 0; i < classIds.size; i++) {
+            names.add(classNames.get(classIds.ids[i]));
+        }
+        return names;
+    }
+
+    /** Return the names of all classes whose constant pool contains a string constant with the given substring. */
+    public List<String> getNamesOfClassesContainingStringConstant(final String substring) {
+        // Each distinct string constant is only tested once, however many classes contain it
+        final BitSet matchingClassIds = new BitSet(classNames.size());
+        for (final Entry<String, IntArrayList> ent : stringConstantToClassIds.entrySet()) {
+            if (ent.getKey().contains(substring)) {
+                final IntArrayList classIds = ent.getValue();
+                for (int i = 0; i < classIds.size; i++) {
+                    matchingClassIds.set(classIds.ids[i]);
+                }
+            }
+        }
+        final ArrayList<String> names = new ArrayList<>(matchingClassIds.cardinality());
+        for (int id = matchingClassIds.nextSetBit(0); id >= 0; id = matchingClassIds.nextSetBit(id + 1)) {
+            names.add(classNames.get(id));
+        }
+        return names;
+    }
+
+    public void reset() {
+        classNames.clear();
+        referencedClassNameToClassIds.clear();
+        stringConstantToClassIds.clear();
+    }
+}
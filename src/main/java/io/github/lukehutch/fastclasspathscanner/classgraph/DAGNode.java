@@ -52,6 +52,9 @@ class DAGNode {
     /** All subclasses / subinterfaces. */
     HashSet<DAGNode> allSubNodes = new HashSet<>();
 
+    /** True if this class or interface was encountered on the classpath, false if it is only cited by a subnode. */
+    boolean encountered;
+
     /** This class or interface was encountered on the classpath. */
     public DAGNode(final String name) {
         this.name = name;
@@ -62,6 +65,15 @@ class DAGNode {
      * encountered on the classpath.
      */
     public void encounter() {
+        encountered = true;
+    }
+
+    /**
+     * This class or interface was removed from the class graph, but it is still cited as a superclass or
+     * superinterface, so it reverts to being a placeholder.
+     */
+    public void forget() {
+        encountered = false;
     }
 
     /** This class/interface was referenced as a superclass/superinterface of the given subclass/subinterface. */
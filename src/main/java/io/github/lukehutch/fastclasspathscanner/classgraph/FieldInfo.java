@@ -0,0 +1,83 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.classgraph;
+
+/**
+ * A field found on the classpath, identified by the name of its declaring class, the field name and the field's type
+ * descriptor, e.g. "Ljava/lang/String;". Obtained directly from the classfile, without calling the classloader.
+ */
+public class FieldInfo {
+    private final String className;
+    private final String fieldName;
+    private final String fieldDescriptor;
+
+    public FieldInfo(final String className, final String fieldName, final String fieldDescriptor) {
+        this.className = className;
+        this.fieldName = fieldName;
+        this.fieldDescriptor = fieldDescriptor;
+    }
+
+    /** The fully-qualified name of the class that declares the field, e.g. "com.xyz.Widget". */
+    public String getClassName() {
+        return className;
+    }
+
+    /** The name of the field, e.g. "size". */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /** The type descriptor of the field, e.g. "Ljava/lang/String;" or "I". */
+    public String getFieldDescriptor() {
+        return fieldDescriptor;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof FieldInfo)) {
+            return false;
+        }
+        final FieldInfo other = (FieldInfo) obj;
+        return className.equals(other.className) && fieldName.equals(other.fieldName)
+                && fieldDescriptor.equals(other.fieldDescriptor);
+    }
+
+    @Override
+    public int hashCode() {
+        return (className.hashCode() * 31 + fieldName.hashCode()) * 31 + fieldDescriptor.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return className + "." + fieldName + ":" + fieldDescriptor;
+    }
+}
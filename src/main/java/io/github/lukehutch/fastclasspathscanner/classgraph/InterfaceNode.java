@@ -29,12 +29,21 @@
 
 package io.github.lukehutch.fastclasspathscanner.classgraph;
 
+import java.util.HashSet;
+
 /** The DAG node representing an interface. */
 class InterfaceNode extends DAGNode {
+    /** All annotations */
+    HashSet<String> annotationNames;
+
+    /** True if this interface is an annotation type. */
+    boolean isAnnotation;
 
     /** The named interface was encountered on the classpath. */
-    public InterfaceNode(final String interfaceName) {
+    public InterfaceNode(final String interfaceName, final HashSet<String> annotationNames,
+            final boolean isAnnotation) {
         super(interfaceName);
+        this.encounter(annotationNames, isAnnotation);
     }
 
     /**
@@ -45,4 +54,20 @@ class InterfaceNode extends DAGNode {
         super(interfaceName, subinterfaceName);
     }
 
-}
\ No newline at end of file
+    /**
+     * This interface was previously cited as a superinterface, and now has itself been encountered on the classpath.
+     */
+    public void encounter(final HashSet<String> annotationNames, final boolean isAnnotation) {
+        super.encounter();
+        this.annotationNames = annotationNames;
+        this.isAnnotation = isAnnotation;
+    }
+
+    /** This interface was removed from the class graph, but is still cited as a superinterface. */
+    @Override
+    public void forget() {
+        super.forget();
+        this.annotationNames = null;
+        this.isAnnotation = false;
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.classgraph;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A versioned binary index of the class graph of a completed scan. The index can be written to a file, then memory-
+ * mapped by any number of processes to answer hierarchy queries directly from the mapping, without deserializing
+ * the class graph onto the heap. Strings are only created for the names in query results, as they are accessed.
+ * 
+ * The file format is as follows, with all ints big-endian:
+ * 
+ * (1) The header: the magic number "FCSI", the format version, the number of names, the maximum name length in
+ * bytes, the offsets of the name block index, the name blocks and the list of all classes, the length of the file,
+ * and the offset of each relation.
+ * 
+ * (2) The name table: names are sorted by their UTF-8 bytes and front-coded in blocks of NAME_BLOCK_SIZE names. The
+ * block index holds the offset of each block relative to the start of the blocks. In each block, the first name is
+ * stored as its length followed by its bytes, and each later name as the length of the prefix it shares with the
+ * previous name, the length of the rest of the name, and the rest of the name, with lengths stored as unsigned
+ * varints. The id of a name is its index in sorted order, found by binary search over the first names of the blocks.
+ * 
+ * (3) All classes: the number of classes, then the name ids of getNamesOfAllClasses().
+ * 
+ * (4) The relations (subclasses, superclasses, subinterfaces, superinterfaces, implementing classes, classes with an
+ * annotation, interfaces with an annotation, annotations with a meta-annotation): for each relation, numNames + 1
+ * offsets into the relation's array of target name ids, then the target array, so that the query results for name
+ * id i are targets[offsets[i]] to targets[offsets[i + 1] - 1], in the order they were returned by the scanner.
+ */
+public class MappedClassGraphIndex {
+    private static final int MAGIC = 0x46435349;
+
+    /** The version of the file format. Files with other versions are rejected. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int NAME_BLOCK_SIZE = 16;
+
+    private static final int SUBCLASSES = 0;
+    private static final int SUPERCLASSES = 1;
+    private static final int SUBINTERFACES = 2;
+    private static final int SUPERINTERFACES = 3;
+    private static final int CLASSES_IMPLEMENTING = 4;
+    private static final int CLASSES_WITH_ANNOTATION = 5;
+    private static final int INTERFACES_WITH_ANNOTATION = 6;
+    private static final int ANNOTATIONS_WITH_META_ANNOTATION = 7;
+    private static final int NUM_RELATIONS = 8;
+
+    private static final int HEADER_LEN = 8 * 4 + NUM_RELATIONS * 4;
+
+    private final ByteBuffer buf;
+    private final int numNames;
+    private final int maxNameLength;
+    private final int nameBlockIndexOffset;
+    private final int nameDataOffset;
+    private final int allClassesOffset;
+    private final int[] relationOffsets = new int[NUM_RELATIONS];
+
+    private MappedClassGraphIndex(final ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.limit() < HEADER_LEN || buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a class graph index");
+        }
+        final int version = buf.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported class graph index version " + version + ", expected "
+                    + FORMAT_VERSION);
+        }
+        numNames = buf.getInt(8);
+        maxNameLength = buf.getInt(12);
+        nameBlockIndexOffset = buf.getInt(16);
+        nameDataOffset = buf.getInt(20);
+        allClassesOffset = buf.getInt(24);
+        for (int i = 0; i < NUM_RELATIONS; i++) {
+            relationOffsets[i] = buf.getInt(32 + 4 * i);
+        }
+        final int end = relationOffsets[NUM_RELATIONS - 1] + 4 * (numNames + 1);
+        if (end < 0 || end > buf.limit() || buf.getInt(28) != buf.limit()) {
+            throw new IOException("Truncated class graph index");
+        }
+    }
+
+    /** Memory-map a class graph index file written by write(). */
+    public static MappedClassGraphIndex open(final File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Class graph index too large to map: " + file);
+            }
+            return new MappedClassGraphIndex(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** A growable int array. */
+    private static class IntArrayList {
+        int[] ints = new int[16];
+        int size;
+
+        void add(final int i) {
+            if (size == ints.length) {
+                ints = Arrays.copyOf(ints, size * 2);
+            }
+            ints[size++] = i;
+        }
+    }
+
+    /** Compare two byte arrays lexicographically, treating bytes as unsigned. */
+    private static int compareBytes(final byte[] a, final byte[] b) {
+        return compareBytes(a, a.length, b);
+    }
+
+    /** Compare the first aLen bytes of a with b lexicographically, treating bytes as unsigned. */
+    private static int compareBytes(final byte[] a, final int aLen, final byte[] b) {
+        for (int i = 0, n = Math.min(aLen, b.length); i < n; i++) {
+            final int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLen - b.length;
+    }
+
+    private static void writeVarint(final ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static List<String> query(final ClassGraphBuilder classGraph, final int relation, final String name) {
+        switch (relation) {
+        case SUBCLASSES:
+            return classGraph.getNamesOfSubclassesOf(name);
+        case SUPERCLASSES:
+            return classGraph.getNamesOfSuperclassesOf(name);
+        case SUBINTERFACES:
+            return classGraph.getNamesOfSubinterfacesOf(name);
+        case SUPERINTERFACES:
+            return classGraph.getNamesOfSuperinterfacesOf(name);
+        case CLASSES_IMPLEMENTING:
+            return classGraph.getNamesOfClassesImplementing(name);
+        case CLASSES_WITH_ANNOTATION:
+            return classGraph.getNamesOfClassesWithAnnotation(name);
+        case INTERFACES_WITH_ANNOTATION:
+            return classGraph.getNamesOfInterfacesWithAnnotation(name);
+        case ANNOTATIONS_WITH_META_ANNOTATION:
+            return classGraph.getNamesOfAnnotationsWithMetaAnnotation(name);
+        default:
+            throw new IllegalArgumentException("Unknown relation " + relation);
+        }
+    }
+
+    /**
+     * Write an index of a finalized class graph to a file. The index is written to a temporary file that is then
+     * renamed, so that processes that open the file never see a partially-written index.
+     */
+    public static void write(final ClassGraphBuilder classGraph, final File file) throws IOException {
+        // Run each query for each name, including any names that only appear in query results
+        final HashMap<String, List<List<String>>> nameToResults = new HashMap<>();
+        final ArrayDeque<String> namesToQuery = new ArrayDeque<>(classGraph.getAllNames());
+        namesToQuery.addAll(classGraph.getNamesOfAllClasses());
+        while (!namesToQuery.isEmpty()) {
+            final String name = namesToQuery.poll();
+            if (!nameToResults.containsKey(name)) {
+                final ArrayList<List<String>> results = new ArrayList<>(NUM_RELATIONS);
+                for (int relation = 0; relation < NUM_RELATIONS; relation++) {
+                    final List<String> result = query(classGraph, relation, name);
+                    results.add(result);
+                    for (final String resultName : result) {
+                        if (!nameToResults.containsKey(resultName)) {
+                            namesToQuery.add(resultName);
+                        }
+                    }
+                }
+                nameToResults.put(name, results);
+            }
+        }
+
+        // Assign name ids in order of UTF-8 bytes
+        final byte[][] sortedNames = new byte[nameToResults.size()][];
+        int numNames = 0;
+        for (final String name : nameToResults.keySet()) {
+            sortedNames[numNames++] = name.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(sortedNames, MappedClassGraphIndex::compareBytes);
+        final String[] sortedNameStrings = new String[numNames];
+        final HashMap<String, Integer> nameToId = new HashMap<>(numNames * 2);
+        for (int id = 0; id < numNames; id++) {
+            sortedNameStrings[id] = new String(sortedNames[id], StandardCharsets.UTF_8);
+            nameToId.put(sortedNameStrings[id], id);
+        }
+
+        // Front-code the names
+        final int numBlocks = (numNames + NAME_BLOCK_SIZE - 1) / NAME_BLOCK_SIZE;
+        final int[] blockOffsets = new int[numBlocks];
+        final ByteArrayOutputStream nameData = new ByteArrayOutputStream();
+        int maxNameLength = 0;
+        for (int id = 0; id < numNames; id++) {
+            final byte[] name = sortedNames[id];
+            maxNameLength = Math.max(maxNameLength, name.length);
+            int shared = 0;
+            if (id % NAME_BLOCK_SIZE == 0) {
+                blockOffsets[id / NAME_BLOCK_SIZE] = nameData.size();
+            } else {
+                final byte[] prev = sortedNames[id - 1];
+                while (shared < name.length && shared < prev.length && name[shared] == prev[shared]) {
+                    shared++;
+                }
+                writeVarint(nameData, shared);
+            }
+            writeVarint(nameData, name.length - shared);
+            nameData.write(name, shared, name.length - shared);
+        }
+
+        // Map the query results to name ids
+        final IntArrayList allClasses = new IntArrayList();
+        for (final String className : classGraph.getNamesOfAllClasses()) {
+            allClasses.add(nameToId.get(className));
+        }
+        final int[][] offsets = new int[NUM_RELATIONS][numNames + 1];
+        final IntArrayList[] targets = new IntArrayList[NUM_RELATIONS];
+        for (int relation = 0; relation < NUM_RELATIONS; relation++) {
+            targets[relation] = new IntArrayList();
+            for (int id = 0; id < numNames; id++) {
+                for (final String resultName : nameToResults.get(sortedNameStrings[id]).get(relation)) {
+                    targets[relation].add(nameToId.get(resultName));
+                }
+                offsets[relation][id + 1] = targets[relation].size;
+            }
+        }
+
+        // Lay out the sections
+        long offset = HEADER_LEN;
+        final int nameBlockIndexOffset = (int) offset;
+        offset += 4L * numBlocks;
+        final int nameDataOffset = (int) offset;
+        offset += nameData.size();
+        final int allClassesOffset = (int) offset;
+        offset += 4L * (allClasses.size + 1);
+        final int[] relationOffsets = new int[NUM_RELATIONS];
+        for (int relation = 0; relation < NUM_RELATIONS; relation++) {
+            relationOffsets[relation] = (int) offset;
+            offset += 4L * (numNames + 1 + targets[relation].size);
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Class graph index too large");
+            }
+        }
+
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(numNames);
+            out.writeInt(maxNameLength);
+            out.writeInt(nameBlockIndexOffset);
+            out.writeInt(nameDataOffset);
+            out.writeInt(allClassesOffset);
+            out.writeInt((int) offset);
+            for (int relation = 0; relation < NUM_RELATIONS; relation++) {
+                out.writeInt(relationOffsets[relation]);
+            }
+            for (final int blockOffset : blockOffsets) {
+                out.writeInt(blockOffset);
+            }
+            nameData.writeTo(out);
+            out.writeInt(allClasses.size);
+            for (int i = 0; i < allClasses.size; i++) {
+                out.writeInt(allClasses.ints[i]);
+            }
+            for (int relation = 0; relation < NUM_RELATIONS; relation++) {
+                for (final int relationOffset : offsets[relation]) {
+                    out.writeInt(relationOffset);
+                }
+                for (int i = 0; i < targets[relation].size; i++) {
+                    out.writeInt(targets[relation].ints[i]);
+                }
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** Read an unsigned varint at pos[0], advancing pos[0] past it. */
+    private int readVarint(final int[] pos) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            final byte b = buf.get(pos[0]++);
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Decode the name at pos[0] into scratch, which holds the previous name of the block, unless this is the first
+     * name of the block. Returns the length of the name, and advances pos[0] past it.
+     */
+    private int decodeNextName(final int[] pos, final boolean firstInBlock, final byte[] scratch) {
+        final int shared = firstInBlock ? 0 : readVarint(pos);
+        final int suffixLen = readVarint(pos);
+        for (int i = 0; i < suffixLen; i++) {
+            scratch[shared + i] = buf.get(pos[0]++);
+        }
+        return shared + suffixLen;
+    }
+
+    /** Return the name with the given id. */
+    private String getName(final int id) {
+        final byte[] scratch = new byte[maxNameLength];
+        final int block = id / NAME_BLOCK_SIZE;
+        final int[] pos = { nameDataOffset + buf.getInt(nameBlockIndexOffset + 4 * block) };
+        int len = 0;
+        for (int i = block * NAME_BLOCK_SIZE; i <= id; i++) {
+            len = decodeNextName(pos, i == block * NAME_BLOCK_SIZE, scratch);
+        }
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /** Compare the first name of a block with the given name. */
+    private int compareFirstName(final int block, final byte[] name) {
+        final int[] pos = { nameDataOffset + buf.getInt(nameBlockIndexOffset + 4 * block) };
+        final int len = readVarint(pos);
+        for (int i = 0, n = Math.min(len, name.length); i < n; i++) {
+            final int diff = (buf.get(pos[0] + i) & 0xff) - (name[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return len - name.length;
+    }
+
+    /** Return the id of the named class, or -1 if the name is not in the index. */
+    private int getNameId(final String name) {
+        final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > maxNameLength) {
+            return -1;
+        }
+        // Find the last block whose first name is not greater than the name
+        int lo = 0;
+        int hi = (numNames + NAME_BLOCK_SIZE - 1) / NAME_BLOCK_SIZE - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int cmp = compareFirstName(mid, nameBytes);
+            if (cmp == 0) {
+                return mid * NAME_BLOCK_SIZE;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (hi < 0) {
+            return -1;
+        }
+        // Scan the block
+        final byte[] scratch = new byte[maxNameLength];
+        final int blockStart = hi * NAME_BLOCK_SIZE;
+        final int[] pos = { nameDataOffset + buf.getInt(nameBlockIndexOffset + 4 * hi) };
+        for (int id = blockStart, end = Math.min(numNames, blockStart + NAME_BLOCK_SIZE); id < end; id++) {
+            final int len = decodeNextName(pos, id == blockStart, scratch);
+            final int cmp = compareBytes(scratch, len, nameBytes);
+            if (cmp == 0) {
+                return id;
+            } else if (cmp > 0) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /** A list of names, given by a range of name ids in the mapping, whose Strings are created as they are read. */
+    private class NameList extends AbstractList<String> {
+        private final int idsOffset;
+        private final int size;
+
+        NameList(final int idsOffset, final int size) {
+            this.idsOffset = idsOffset;
+            this.size = size;
+        }
+
+        @Override
+        public String get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return getName(buf.getInt(idsOffset + 4 * index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private List<String> getRelation(final int relation, final String name) {
+        final int id = getNameId(name);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        final int offsetsStart = relationOffsets[relation];
+        final int start = buf.getInt(offsetsStart + 4 * id);
+        final int end = buf.getInt(offsetsStart + 4 * (id + 1));
+        return new NameList(offsetsStart + 4 * (numNames + 1) + 4 * start, end - start);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** The number of distinct class, interface and annotation names in the index. */
+    public int getNumNames() {
+        return numNames;
+    }
+
+    /** Return the names of all classes reached during the scan. */
+    public List<String> getNamesOfAllClasses() {
+        return new NameList(allClassesOffset + 4, buf.getInt(allClassesOffset));
+    }
+
+    /** Return the names of all subclasses of the named class. */
+    public List<String> getNamesOfSubclassesOf(final String className) {
+        return getRelation(SUBCLASSES, className);
+    }
+
+    /** Return the names of all superclasses of the named class. */
+    public List<String> getNamesOfSuperclassesOf(final String className) {
+        return getRelation(SUPERCLASSES, className);
+    }
+
+    /** Return the names of all subinterfaces of the named interface. */
+    public List<String> getNamesOfSubinterfacesOf(final String interfaceName) {
+        return getRelation(SUBINTERFACES, interfaceName);
+    }
+
+    /** Return the names of all superinterfaces of the named interface. */
+    public List<String> getNamesOfSuperinterfacesOf(final String interfaceName) {
+        return getRelation(SUPERINTERFACES, interfaceName);
+    }
+
+    /** Return the names of all classes implementing the named interface. */
+    public List<String> getNamesOfClassesImplementing(final String interfaceName) {
+        return getRelation(CLASSES_IMPLEMENTING, interfaceName);
+    }
+
+    /**
+     * Return the names of all classes with the named class annotation, including classes whose annotations are
+     * meta-annotated with the named annotation, and subclasses of classes with the named annotation if the annotation
+     * is itself annotated with @Inherited.
+     */
+    public List<String> getNamesOfClassesWithAnnotation(final String annotationName) {
+        return getRelation(CLASSES_WITH_ANNOTATION, annotationName);
+    }
+
+    /** Return the names of all interfaces (including annotation types) with the named annotation or meta-annotation. */
+    public List<String> getNamesOfInterfacesWithAnnotation(final String annotationName) {
+        return getRelation(INTERFACES_WITH_ANNOTATION, annotationName);
+    }
+
+    /** Return the names of all annotation types directly or transitively annotated with the named annotation. */
+    public List<String> getNamesOfAnnotationsWithMetaAnnotation(final String metaAnnotationName) {
+        return getRelation(ANNOTATIONS_WITH_META_ANNOTATION, metaAnnotationName);
+    }
+}
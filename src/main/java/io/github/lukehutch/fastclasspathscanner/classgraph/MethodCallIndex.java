@@ -0,0 +1,262 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.classgraph;
+
+import io.github.lukehutch.fastclasspathscanner.utils.ScanTracer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+/**
+ * An index from each invoked method to the methods that call it, built by decoding the invoke instructions in the
+ * Code attributes of methods. Decoding is performed in parallel on a ForkJoinPool private to the scanner while the
+ * classpath scan continues, and the results are merged in classpath order once the scan is complete. Methods whose
+ * Code attribute cannot be decoded are skipped.
+ */
+public class MethodCallIndex {
+    /** Decode tasks that have been submitted but not yet merged into the index. */
+    private final ArrayList<Future<ArrayList<MethodInfo>>> pendingDecodeTasks = new ArrayList<>();
+
+    /** Records a span for each decode task, if non-null. */
+    private volatile ScanTracer tracer;
+
+    /** Mapping from invoked method to the methods that call it. */
+    private final HashMap<MethodInfo, LinkedHashSet<MethodInfo>> calleeToCallers = new HashMap<>();
+
+    /** Mapping from "className.methodName" of invoked methods to each invoked overload. */
+    private final HashMap<String, LinkedHashSet<MethodInfo>> classAndMethodNameToCallees = new HashMap<>();
+
+    /**
+     * The pool that decodes method bodies. The common ForkJoinPool is not used, as it is shared with the parallel
+     * streams and CompletableFutures of the application. Worker threads are daemon threads, created on demand.
+     */
+    private static final ForkJoinPool DECODE_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("FastClasspathScanner-MethodCallIndex-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+
+    /** The length of each instruction, indexed by opcode, or 0 for variable-length instructions. */
+    private static final byte[] INSTRUCTION_LENGTH = new byte[256];
+
+    static {
+        for (int opcode = 0; opcode < 256; opcode++) {
+            final int len;
+            if (opcode == 16 /* bipush */|| opcode == 18 /* ldc */|| (opcode >= 21 && opcode <= 25) /* xload */
+                    || (opcode >= 54 && opcode <= 58) /* xstore */|| opcode == 169 /* ret */
+                    || opcode == 188 /* newarray */) {
+                len = 2;
+            } else if (opcode == 17 /* sipush */|| opcode == 19 /* ldc_w */|| opcode == 20 /* ldc2_w */
+                    || opcode == 132 /* iinc */|| (opcode >= 153 && opcode <= 168) /* if*, goto, jsr */
+                    || (opcode >= 178 && opcode <= 184) /* get/put field/static, invokevirtual/special/static */
+                    || opcode == 187 /* new */|| opcode == 189 /* anewarray */|| opcode == 192 /* checkcast */
+                    || opcode == 193 /* instanceof */|| opcode == 198 /* ifnull */|| opcode == 199 /* ifnonnull */) {
+                len = 3;
+            } else if (opcode == 197 /* multianewarray */) {
+                len = 4;
+            } else if (opcode == 185 /* invokeinterface */|| opcode == 186 /* invokedynamic */
+                    || opcode == 200 /* goto_w */|| opcode == 201 /* jsr_w */) {
+                len = 5;
+            } else if (opcode == 170 /* tableswitch */|| opcode == 171 /* lookupswitch */|| opcode == 196 /* wide */) {
+                len = 0;
+            } else {
+                len = 1;
+            }
+            INSTRUCTION_LENGTH[opcode] = (byte) len;
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Submit the Code attributes of the methods of a class for decoding.
+     * 
+     * @param methodRefs
+     *            The methods referenced by the Methodref and InterfaceMethodref entries of the constant pool of the
+     *            class, indexed by constant pool index.
+     * @param callers
+     *            The methods of the class that have a Code attribute.
+     * @param codeAttributes
+     *            The contents of the Code attribute of each method in callers.
+     */
+    public void addCodeAttributes(final MethodInfo[] methodRefs, final ArrayList<MethodInfo> callers,
+            final ArrayList<byte[]> codeAttributes) {
+        final ScanTracer taskTracer = tracer;
+        pendingDecodeTasks.add(DECODE_POOL.submit(() -> {
+            final long decodeStart = System.nanoTime();
+            final ArrayList<MethodInfo> calls = new ArrayList<>();
+            for (int i = 0, n = callers.size(); i < n; i++) {
+                final int numCallsBefore = calls.size();
+                if (!findCalls(codeAttributes.get(i), methodRefs, callers.get(i), calls)) {
+                    // Drop any calls found before the malformed instruction
+                    calls.subList(numCallsBefore, calls.size()).clear();
+                    System.err.println("Could not decode the Code attribute of method " + callers.get(i)
+                            + ", skipping it");
+                }
+            }
+            if (taskTracer != null && !callers.isEmpty()) {
+                taskTracer.end(decodeStart, "decodeMethodBodies", "methodCallIndex", "class", callers.get(0)
+                        .getClassName());
+            }
+            return calls;
+        }));
+    }
+
+    /**
+     * Find the invokevirtual, invokespecial, invokestatic and invokeinterface instructions in a Code attribute,
+     * adding the (callee, caller) pair for each to calls.
+     * 
+     * @return false if an instruction or the code array extends past the end of the Code attribute.
+     */
+    private static boolean findCalls(final byte[] code, final MethodInfo[] methodRefs, final MethodInfo caller,
+            final ArrayList<MethodInfo> calls) {
+        if (code.length < 8) {
+            return false;
+        }
+        // Skip max_stack and max_locals
+        final int codeLength = readInt(code, 4);
+        final int codeStart = 8;
+        if (codeLength < 0 || codeLength > code.length - codeStart) {
+            return false;
+        }
+        final int codeEnd = codeStart + codeLength;
+        int pc = codeStart;
+        while (pc < codeEnd) {
+            final int opcode = code[pc] & 0xff;
+            final long nextPc;
+            final int len = INSTRUCTION_LENGTH[opcode];
+            if (len > 0) {
+                nextPc = pc + len;
+            } else if (opcode == 196) {
+                if (pc + 1 >= codeEnd) {
+                    return false;
+                }
+                // wide: iinc has two 2-byte operands, other instructions have one
+                nextPc = pc + ((code[pc + 1] & 0xff) == 132 ? 6 : 4);
+            } else {
+                // tableswitch or lookupswitch: operands are aligned to a multiple of 4 bytes from the code start
+                final int operandsStart = pc + 1 + ((4 - (pc + 1 - codeStart) % 4) % 4);
+                if (operandsStart + (opcode == 170 ? 12 : 8) > codeEnd) {
+                    return false;
+                }
+                if (opcode == 170) {
+                    final int low = readInt(code, operandsStart + 4);
+                    final int high = readInt(code, operandsStart + 8);
+                    nextPc = operandsStart + 12 + ((long) high - low + 1) * 4;
+                } else {
+                    final int numPairs = readInt(code, operandsStart + 4);
+                    nextPc = operandsStart + 8 + (long) numPairs * 8;
+                }
+            }
+            if (nextPc <= pc || nextPc > codeEnd) {
+                return false;
+            }
+            if (opcode >= 182 && opcode <= 185) {
+                // invokevirtual, invokespecial, invokestatic, invokeinterface
+                final int methodRefIdx = ((code[pc + 1] & 0xff) << 8) | (code[pc + 2] & 0xff);
+                final MethodInfo callee = methodRefIdx < methodRefs.length ? methodRefs[methodRefIdx] : null;
+                if (callee != null) {
+                    calls.add(callee);
+                    calls.add(caller);
+                }
+            }
+            pc = (int) nextPc;
+        }
+        return true;
+    }
+
+    private static int readInt(final byte[] buf, final int off) {
+        return ((buf[off] & 0xff) << 24) | ((buf[off + 1] & 0xff) << 16) | ((buf[off + 2] & 0xff) << 8)
+                | (buf[off + 3] & 0xff);
+    }
+
+    /** Wait for all pending decode tasks to complete, and merge their results into the index, in submission order. */
+    public void finalizeIndex() {
+        try {
+            for (final Future<ArrayList<MethodInfo>> task : pendingDecodeTasks) {
+                final ArrayList<MethodInfo> calls = task.get();
+                for (int i = 0, n = calls.size(); i < n; i += 2) {
+                    final MethodInfo callee = calls.get(i);
+                    LinkedHashSet<MethodInfo> callers = calleeToCallers.get(callee);
+                    if (callers == null) {
+                        calleeToCallers.put(callee, callers = new LinkedHashSet<>());
+                        final String key = callee.getClassName() + "." + callee.getMethodName();
+                        LinkedHashSet<MethodInfo> callees = classAndMethodNameToCallees.get(key);
+                        if (callees == null) {
+                            classAndMethodNameToCallees.put(key, callees = new LinkedHashSet<>());
+                        }
+                        callees.add(callee);
+                    }
+                    callers.add(calls.get(i + 1));
+                }
+            }
+        } catch (final InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pendingDecodeTasks.clear();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** Return the invoked methods with the given owner class name and method name (i.e. all invoked overloads). */
+    public List<MethodInfo> getCallees(final String className, final String methodName) {
+        final LinkedHashSet<MethodInfo> callees = classAndMethodNameToCallees.get(className + "." + methodName);
+        return callees == null ? Collections.emptyList() : new ArrayList<>(callees);
+    }
+
+    /** Return the methods that call the given method. */
+    public List<MethodInfo> getCallers(final MethodInfo callee) {
+        final LinkedHashSet<MethodInfo> callers = calleeToCallers.get(callee);
+        return callers == null ? Collections.emptyList() : new ArrayList<>(callers);
+    }
+
+    /** Record a span for the decoding of the method bodies of each class with the given tracer, if non-null. */
+    public void setTracer(final ScanTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    public void reset() {
+        for (final Future<ArrayList<MethodInfo>> task : pendingDecodeTasks) {
+            task.cancel(false);
+        }
+        pendingDecodeTasks.clear();
+        calleeToCallers.clear();
+        classAndMethodNameToCallees.clear();
+    }
+}
@@ -0,0 +1,630 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.classgraph;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An alternative store for the class and interface hierarchy and the annotations of classes and interfaces, which
+ * keeps names, edges and flags in direct (off-heap) buffers, so that scanning millions of classes does not require a
+ * multi-GB heap. Each name is interned as UTF-8 bytes and assigned an int id through an open-addressing hash table.
+ * Edges are appended to an edge buffer during the scan, and converted to forward and reverse compressed sparse row
+ * form when the graph is finalized. Unlike ClassGraphBuilder, no transitive closures are stored: subclasses,
+ * implementing classes etc. are found by a breadth-first search at query time. Only query results are allocated on
+ * the heap.
+ */
+public class OffHeapClassGraph {
+    /** Edge kinds, stored in the low 2 bits of each CSR entry. */
+    private static final int SUPERCLASS = 0, INTERFACE = 1, SUPERINTERFACE = 2, ANNOTATION = 3;
+
+    /** Flags of each name. */
+    private static final byte IS_CLASS = 1, IS_INTERFACE = 2, IS_ANNOTATION = 4, ENCOUNTERED = 8;
+
+    /** A growable array of bytes or ints in a direct buffer. */
+    private static class DirectArray {
+        private final int elementShift;
+        private ByteBuffer buf;
+        private int size;
+
+        DirectArray(final int elementShift, final int initialCapacity) {
+            this.elementShift = elementShift;
+            this.buf = allocate((long) initialCapacity << elementShift);
+        }
+
+        private static ByteBuffer allocate(final long numBytes) {
+            if (numBytes > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Off-heap class graph buffer would exceed 2GB");
+            }
+            return ByteBuffer.allocateDirect((int) numBytes).order(ByteOrder.nativeOrder());
+        }
+
+        /** Grow to hold at least the given number of elements. New elements are zero. */
+        void setSize(final int newSize) {
+            final long numBytes = (long) newSize << elementShift;
+            if (numBytes > buf.capacity()) {
+                final ByteBuffer newBuf = allocate(Math.min(Integer.MAX_VALUE, Math.max(numBytes,
+                        2L * buf.capacity())));
+                // Copy from the start of the buffer, since put() leaves the position at the end of the copied bytes.
+                // (Cast to Buffer, since ByteBuffer.position(int) and limit(int) do not exist before JDK 9.)
+                final ByteBuffer src = buf.duplicate();
+                ((Buffer) src).position(0).limit(size << elementShift);
+                newBuf.put(src);
+                buf = newBuf;
+            }
+            size = newSize;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int getInt(final int i) {
+            return buf.getInt(i << 2);
+        }
+
+        void setInt(final int i, final int value) {
+            buf.putInt(i << 2, value);
+        }
+
+        void addInt(final int value) {
+            setSize(size + 1);
+            buf.putInt((size - 1) << 2, value);
+        }
+
+        byte getByte(final int i) {
+            return buf.get(i);
+        }
+
+        void setByte(final int i, final byte value) {
+            buf.put(i, value);
+        }
+
+        void addBytes(final byte[] bytes) {
+            final int start = size;
+            setSize(size + bytes.length);
+            final ByteBuffer dst = buf.duplicate();
+            ((Buffer) dst).position(start);
+            dst.put(bytes);
+        }
+
+        void getBytes(final int start, final byte[] bytes) {
+            final ByteBuffer src = buf.duplicate();
+            ((Buffer) src).position(start);
+            src.get(bytes);
+        }
+
+        long capacityBytes() {
+            return buf.capacity();
+        }
+    }
+
+    /** The UTF-8 bytes of all names, concatenated. */
+    private DirectArray nameBytes;
+
+    /** The start offset of each name in nameBytes, indexed by id, with one extra entry at the end. */
+    private DirectArray nameOffsets;
+
+    /** The hash of each name, indexed by id. */
+    private DirectArray nameHashes;
+
+    /** The flags of each name, indexed by id. */
+    private DirectArray flags;
+
+    /** Open-addressing hash table from name hash to id + 1 (0 for an empty slot). */
+    private DirectArray hashTable;
+
+    private int numNames;
+
+    /** The source ids of the edges added so far, and the target ids of the edges shifted left by 2, plus the kind. */
+    private DirectArray edgeSources, edgeTargets;
+
+    /** CSR offsets and entries for the edges from each id, and for the edges to each id. Null until finalized. */
+    private DirectArray forwardOffsets, forwardEntries, reverseOffsets, reverseEntries;
+
+    /** The id of java.lang.annotation.Inherited, or -1 if it was not referenced. */
+    private int inheritedId = -1;
+
+    public OffHeapClassGraph() {
+        reset();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static int hash(final byte[] bytes) {
+        // FNV-1a
+        int h = 0x811c9dc5;
+        for (final byte b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x01000193;
+        }
+        return h;
+    }
+
+    private int slot(final int hash) {
+        return (hash ^ (hash >>> 16)) & (hashTable.size() - 1);
+    }
+
+    private boolean nameEquals(final int id, final byte[] bytes) {
+        final int start = nameOffsets.getInt(id);
+        if (nameOffsets.getInt(id + 1) - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (nameBytes.getByte(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the id of a name, or -1 if the name is not present and create is false. */
+    private int getId(final String name, final boolean create) {
+        final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(bytes);
+        final int mask = hashTable.size() - 1;
+        for (int slot = slot(hash);; slot = (slot + 1) & mask) {
+            final int entry = hashTable.getInt(slot);
+            if (entry == 0) {
+                if (!create) {
+                    return -1;
+                }
+                final int id = numNames++;
+                hashTable.setInt(slot, id + 1);
+                nameBytes.addBytes(bytes);
+                nameOffsets.addInt(nameBytes.size());
+                nameHashes.addInt(hash);
+                flags.setSize(numNames);
+                if (numNames * 2 > hashTable.size()) {
+                    rehash();
+                }
+                return id;
+            } else if (nameHashes.getInt(entry - 1) == hash && nameEquals(entry - 1, bytes)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /** Double the size of the hash table. */
+    private void rehash() {
+        hashTable = new DirectArray(2, hashTable.size() * 2);
+        hashTable.setSize((int) (hashTable.capacityBytes() >> 2));
+        final int mask = hashTable.size() - 1;
+        for (int id = 0; id < numNames; id++) {
+            int slot = slot(nameHashes.getInt(id));
+            while (hashTable.getInt(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            hashTable.setInt(slot, id + 1);
+        }
+    }
+
+    private String getName(final int id) {
+        final int start = nameOffsets.getInt(id);
+        final byte[] bytes = new byte[nameOffsets.getInt(id + 1) - start];
+        nameBytes.getBytes(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int addFlags(final String name, final byte newFlags) {
+        final int id = getId(name, /* create = */true);
+        flags.setByte(id, (byte) (flags.getByte(id) | newFlags));
+        return id;
+    }
+
+    private boolean hasFlags(final int id, final byte flagsToTest) {
+        return (flags.getByte(id) & flagsToTest) != 0;
+    }
+
+    private void addEdge(final int sourceId, final int targetId, final int kind) {
+        edgeSources.addInt(sourceId);
+        edgeTargets.addInt(targetId << 2 | kind);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Record that a class or interface was encountered on the classpath. Returns false if a class or interface of
+     * the same name was already encountered, i.e. if this one is masked by an earlier one.
+     */
+    public boolean markEncountered(final String className) {
+        final int id = getId(className, /* create = */true);
+        if (hasFlags(id, ENCOUNTERED)) {
+            return false;
+        }
+        flags.setByte(id, (byte) (flags.getByte(id) | ENCOUNTERED));
+        return true;
+    }
+
+    /** Add a class, with its superclass, the interfaces it implements and its annotations. */
+    public void addClass(final String className, final String superclassName, final Collection<String> interfaces,
+            final Collection<String> annotations) {
+        final int id = addFlags(className, IS_CLASS);
+        addEdge(id, addFlags(superclassName, IS_CLASS), SUPERCLASS);
+        if (interfaces != null) {
+            for (final String interfaceName : interfaces) {
+                addEdge(id, getId(interfaceName, /* create = */true), INTERFACE);
+            }
+        }
+        addAnnotations(id, annotations);
+    }
+
+    /** Add an interface or annotation type, with its superinterfaces and annotations. */
+    public void addInterface(final String interfaceName, final Collection<String> superinterfaces,
+            final Collection<String> annotations, final boolean isAnnotation) {
+        final int id = addFlags(interfaceName, isAnnotation ? (byte) (IS_INTERFACE | IS_ANNOTATION) : IS_INTERFACE);
+        if (superinterfaces != null) {
+            for (final String superinterfaceName : superinterfaces) {
+                addEdge(id, addFlags(superinterfaceName, IS_INTERFACE), SUPERINTERFACE);
+            }
+        }
+        addAnnotations(id, annotations);
+    }
+
+    private void addAnnotations(final int id, final Collection<String> annotations) {
+        if (annotations != null) {
+            for (final String annotationName : annotations) {
+                addEdge(id, getId(annotationName, /* create = */true), ANNOTATION);
+            }
+        }
+    }
+
+    /** Build the forward and reverse CSR edge arrays, and release the edge buffers. */
+    private void buildCSR(final DirectArray offsets, final DirectArray entries, final boolean reverse) {
+        final int numEdges = edgeSources.size();
+        offsets.setSize(numNames + 1);
+        for (int i = 0; i < numEdges; i++) {
+            final int from = reverse ? edgeTargets.getInt(i) >>> 2 : edgeSources.getInt(i);
+            offsets.setInt(from + 1, offsets.getInt(from + 1) + 1);
+        }
+        for (int id = 0; id < numNames; id++) {
+            offsets.setInt(id + 1, offsets.getInt(id + 1) + offsets.getInt(id));
+        }
+        // Place each edge at the current end of its source's range, then shift the offsets back down by one slot
+        entries.setSize(numEdges);
+        for (int i = 0; i < numEdges; i++) {
+            final int target = edgeTargets.getInt(i);
+            final int from = reverse ? target >>> 2 : edgeSources.getInt(i);
+            final int entry = reverse ? edgeSources.getInt(i) << 2 | (target & 3) : target;
+            final int pos = offsets.getInt(from);
+            entries.setInt(pos, entry);
+            offsets.setInt(from, pos + 1);
+        }
+        for (int id = numNames; id > 0; --id) {
+            offsets.setInt(id, offsets.getInt(id - 1));
+        }
+        offsets.setInt(0, 0);
+    }
+
+    /** Called once all classes have been added. */
+    public void finalizeGraph() {
+        forwardOffsets = new DirectArray(2, numNames + 1);
+        forwardEntries = new DirectArray(2, Math.max(1, edgeSources.size()));
+        buildCSR(forwardOffsets, forwardEntries, /* reverse = */false);
+        reverseOffsets = new DirectArray(2, numNames + 1);
+        reverseEntries = new DirectArray(2, Math.max(1, edgeSources.size()));
+        buildCSR(reverseOffsets, reverseEntries, /* reverse = */true);
+        edgeSources = edgeTargets = null;
+        inheritedId = getId("java.lang.annotation.Inherited", /* create = */false);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** A growable list of ids, used as a queue for breadth-first search. */
+    private static class IdList {
+        int[] ids = new int[16];
+        int size;
+
+        void add(final int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * Add to found and to the list the ids reachable from the ids in the list by following edges of the given kind
+     * (forwards or in reverse), for which the node has one of the required flags (or any flags, if requiredFlags
+     * is 0).
+     */
+    private void search(final IdList list, final BitSet found, final int kind, final boolean reverse,
+            final byte requiredFlags) {
+        final DirectArray offsets = reverse ? reverseOffsets : forwardOffsets;
+        final DirectArray entries = reverse ? reverseEntries : forwardEntries;
+        for (int i = 0; i < list.size; i++) {
+            final int id = list.ids[i];
+            for (int e = offsets.getInt(id), end = offsets.getInt(id + 1); e < end; e++) {
+                final int entry = entries.getInt(e);
+                final int otherId = entry >>> 2;
+                if ((entry & 3) == kind && (requiredFlags == 0 || hasFlags(otherId, requiredFlags))
+                        && !found.get(otherId)) {
+                    found.set(otherId);
+                    list.add(otherId);
+                }
+            }
+        }
+    }
+
+    /** Return the ids reachable from id by following edges of the given kind, not including id itself. */
+    private IdList reachable(final int id, final int kind, final boolean reverse, final byte requiredFlags) {
+        final IdList list = new IdList();
+        list.add(id);
+        final BitSet found = new BitSet();
+        found.set(id);
+        search(list, found, kind, reverse, requiredFlags);
+        // Remove the start id
+        final IdList result = new IdList();
+        for (int i = 1; i < list.size; i++) {
+            result.add(list.ids[i]);
+        }
+        return result;
+    }
+
+    private List<String> getNames(final IdList ids) {
+        final ArrayList<String> names = new ArrayList<>(ids.size);
+        for (int i = 0; i < ids.size; i++) {
+            names.add(getName(ids.ids[i]));
+        }
+        return names;
+    }
+
+    private List<String> getNames(final BitSet ids) {
+        final ArrayList<String> names = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            names.add(getName(id));
+        }
+        return names;
+    }
+
+    /** Return the id of a name, or -1 if the name was not found or the graph has not been finalized. */
+    private int getQueryId(final String name) {
+        return forwardOffsets == null ? -1 : getId(name, /* create = */false);
+    }
+
+    /** Return the ids of the annotation types that are directly or transitively annotated with the given id. */
+    private BitSet getAnnotationsWithMetaAnnotation(final int metaAnnotationId) {
+        final IdList list = new IdList();
+        list.add(metaAnnotationId);
+        final BitSet found = new BitSet();
+        search(list, found, ANNOTATION, /* reverse = */true, IS_ANNOTATION);
+        found.clear(metaAnnotationId);
+        return found;
+    }
+
+    /** Add each class that is reachable by a reverse edge of the given kind from the ids to found and classIds. */
+    private void addClassesWithEdgeTo(final BitSet ids, final int kind, final BitSet found, final IdList classIds) {
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            for (int e = reverseOffsets.getInt(id), end = reverseOffsets.getInt(id + 1); e < end; e++) {
+                final int entry = reverseEntries.getInt(e);
+                if ((entry & 3) == kind && hasFlags(entry >>> 2, IS_CLASS) && !found.get(entry >>> 2)) {
+                    found.set(entry >>> 2);
+                    classIds.add(entry >>> 2);
+                }
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** Return the names of all subclasses of the named class. */
+    public List<String> getNamesOfSubclassesOf(final String className) {
+        final int id = getQueryId(className);
+        return id < 0 ? Collections.<String> emptyList() : getNames(reachable(id, SUPERCLASS, true, (byte) 0));
+    }
+
+    /** Return the names of all superclasses of the named class. */
+    public List<String> getNamesOfSuperclassesOf(final String className) {
+        final int id = getQueryId(className);
+        return id < 0 ? Collections.<String> emptyList() : getNames(reachable(id, SUPERCLASS, false, (byte) 0));
+    }
+
+    /** Return the name of the superclass of the named class, or null if it is not known. */
+    public String getSuperclassName(final String className) {
+        final int id = getQueryId(className);
+        if (id >= 0) {
+            for (int e = forwardOffsets.getInt(id), end = forwardOffsets.getInt(id + 1); e < end; e++) {
+                final int entry = forwardEntries.getInt(e);
+                if ((entry & 3) == SUPERCLASS) {
+                    return getName(entry >>> 2);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Return the names of all subinterfaces of the named interface. */
+    public List<String> getNamesOfSubinterfacesOf(final String interfaceName) {
+        final int id = getQueryId(interfaceName);
+        return id < 0 ? Collections.<String> emptyList() : getNames(reachable(id, SUPERINTERFACE, true, (byte) 0));
+    }
+
+    /** Return the names of all superinterfaces of the named interface. */
+    public List<String> getNamesOfSuperinterfacesOf(final String interfaceName) {
+        final int id = getQueryId(interfaceName);
+        return id < 0 ? Collections.<String> emptyList() : getNames(reachable(id, SUPERINTERFACE, false,
+                (byte) 0));
+    }
+
+    /**
+     * Return the names of all classes implementing the named interface: the classes that directly implement the
+     * interface or one of its subinterfaces, and their subclasses.
+     */
+    public List<String> getNamesOfClassesImplementing(final String interfaceName) {
+        final int id = getQueryId(interfaceName);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        final BitSet interfaceIds = new BitSet();
+        interfaceIds.set(id);
+        final IdList subinterfaces = reachable(id, SUPERINTERFACE, true, (byte) 0);
+        for (int i = 0; i < subinterfaces.size; i++) {
+            interfaceIds.set(subinterfaces.ids[i]);
+        }
+        final BitSet found = new BitSet();
+        final IdList classIds = new IdList();
+        addClassesWithEdgeTo(interfaceIds, INTERFACE, found, classIds);
+        search(classIds, found, SUPERCLASS, /* reverse = */true, (byte) 0);
+        return getNames(classIds);
+    }
+
+    /**
+     * Return the names of all classes with the named annotation, including classes whose annotations are
+     * meta-annotated with the named annotation, and subclasses of classes with an @Inherited annotation.
+     */
+    public List<String> getNamesOfClassesWithAnnotation(final String annotationName) {
+        final int id = getQueryId(annotationName);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        // Standard meta-annotations like @Retention and @Target are not propagated to classes
+        final BitSet annotationIds = annotationName.startsWith("java.lang.annotation.") ? new BitSet()
+                : getAnnotationsWithMetaAnnotation(id);
+        annotationIds.set(id);
+        final BitSet found = new BitSet();
+        final IdList classIds = new IdList();
+        final BitSet inheritedAnnotationIds = new BitSet();
+        for (int annotationId = annotationIds.nextSetBit(0); annotationId >= 0; annotationId = annotationIds
+                .nextSetBit(annotationId + 1)) {
+            if (isInherited(annotationId)) {
+                inheritedAnnotationIds.set(annotationId);
+                annotationIds.clear(annotationId);
+            }
+        }
+        // Subclasses of classes with an @Inherited annotation also have the annotation
+        addClassesWithEdgeTo(inheritedAnnotationIds, ANNOTATION, found, classIds);
+        search(classIds, found, SUPERCLASS, /* reverse = */true, (byte) 0);
+        addClassesWithEdgeTo(annotationIds, ANNOTATION, found, classIds);
+        return getNames(classIds);
+    }
+
+    private boolean isInherited(final int annotationId) {
+        if (inheritedId >= 0) {
+            for (int e = forwardOffsets.getInt(annotationId), end = forwardOffsets.getInt(annotationId + 1); //
+            e < end; e++) {
+                if (forwardEntries.getInt(e) == (inheritedId << 2 | ANNOTATION)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns true if the named annotation type was found on the classpath, and is annotated with @Inherited. */
+    public boolean isInheritedAnnotation(final String annotationName) {
+        final int id = getQueryId(annotationName);
+        return id >= 0 && hasFlags(id, IS_ANNOTATION) && isInherited(id);
+    }
+
+    /** Return the names of all interfaces (including annotation types) with the named annotation or meta-annotation. */
+    public List<String> getNamesOfInterfacesWithAnnotation(final String annotationName) {
+        final int id = getQueryId(annotationName);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        final BitSet annotationIds = getAnnotationsWithMetaAnnotation(id);
+        annotationIds.set(id);
+        final BitSet interfaceIds = new BitSet();
+        for (int annotationId = annotationIds.nextSetBit(0); annotationId >= 0; annotationId = annotationIds
+                .nextSetBit(annotationId + 1)) {
+            for (int e = reverseOffsets.getInt(annotationId), end = reverseOffsets.getInt(annotationId + 1); //
+            e < end; e++) {
+                final int entry = reverseEntries.getInt(e);
+                if ((entry & 3) == ANNOTATION && hasFlags(entry >>> 2, IS_INTERFACE)) {
+                    interfaceIds.set(entry >>> 2);
+                }
+            }
+        }
+        return getNames(interfaceIds);
+    }
+
+    /** Return the names of all annotation types directly or transitively annotated with the named annotation. */
+    public List<String> getNamesOfAnnotationsWithMetaAnnotation(final String metaAnnotationName) {
+        final int id = getQueryId(metaAnnotationName);
+        return id < 0 ? Collections.<String> emptyList() : getNames(getAnnotationsWithMetaAnnotation(id));
+    }
+
+    /** Return the names of all classes, including superclasses that were referenced but not found. */
+    public Set<String> getNamesOfAllClasses() {
+        final HashSet<String> classNames = new HashSet<>();
+        for (int id = 0; id < numNames; id++) {
+            if (hasFlags(id, IS_CLASS)) {
+                classNames.add(getName(id));
+            }
+        }
+        return classNames;
+    }
+
+    /** Return the names of all classes, interfaces and annotations in the graph, including referenced names. */
+    public Set<String> getAllNames() {
+        final HashSet<String> names = new HashSet<>();
+        for (int id = 0; id < numNames; id++) {
+            names.add(getName(id));
+        }
+        return names;
+    }
+
+    /** The number of bytes of off-heap memory allocated for the graph. */
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (final DirectArray array : new DirectArray[] { nameBytes, nameOffsets, nameHashes, flags, hashTable,
+                edgeSources, edgeTargets, forwardOffsets, forwardEntries, reverseOffsets, reverseEntries }) {
+            if (array != null) {
+                bytes += array.capacityBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /** Discard the graph. The direct buffers are released when they are garbage collected. */
+    public void reset() {
+        nameBytes = new DirectArray(0, 4096);
+        nameOffsets = new DirectArray(2, 256);
+        nameOffsets.addInt(0);
+        nameHashes = new DirectArray(2, 256);
+        flags = new DirectArray(0, 256);
+        hashTable = new DirectArray(2, 512);
+        hashTable.setSize(512);
+        numNames = 0;
+        edgeSources = new DirectArray(2, 1024);
+        edgeTargets = new DirectArray(2, 1024);
+        forwardOffsets = forwardEntries = reverseOffsets = reverseEntries = null;
+        inheritedId = -1;
+    }
+}
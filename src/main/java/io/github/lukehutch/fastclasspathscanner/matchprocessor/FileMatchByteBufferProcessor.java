@@ -0,0 +1,59 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.matchprocessor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The method to run when a file with a matching path is found on the classpath, receiving the contents of the file
+ * as a ByteBuffer rather than as an InputStream.
+ */
+@FunctionalInterface
+public interface FileMatchByteBufferProcessor {
+    /**
+     * Process a matching file.
+     * 
+     * @param absolutePath
+     *            The path of the matching file on the filesystem.
+     * @param relativePath
+     *            The path of the matching file relative to the classpath entry that contained the match.
+     * @param byteBuffer
+     *            A read-only ByteBuffer containing the contents of the file, positioned at the first byte. Files in
+     *            directories and uncompressed (STORED) jarfile entries are memory-mapped, and compressed jarfile
+     *            entries are inflated into a heap ByteBuffer. Mappings are released once the file's match
+     *            processors have been called, so the buffer must not be used after this method returns -- copy
+     *            the contents if they are needed later.
+     * @param length
+     *            The length of the file in bytes.
+     */
+    public void processMatch(String absolutePath, String relativePath, ByteBuffer byteBuffer, int length)
+            throws IOException;
+}
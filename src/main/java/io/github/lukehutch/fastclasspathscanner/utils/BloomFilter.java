@@ -0,0 +1,112 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A Bloom filter over strings, used to summarize the set of names referenced by the classes in a jarfile. A Bloom
+ * filter may return false positives but never false negatives, so a jarfile whose filter does not contain any of the
+ * names being looked for can safely be skipped. Uses about 10 bits per element and 7 hash functions, giving a false
+ * positive rate of about 1%.
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final int numHashes;
+
+    private static final int BITS_PER_ELEMENT = 10;
+    private static final int NUM_HASHES = 7;
+
+    /** Create an empty Bloom filter sized for the given number of elements. */
+    public BloomFilter(final int expectedNumElements) {
+        this(new long[Math.max(1, (expectedNumElements * BITS_PER_ELEMENT + 63) / 64)], NUM_HASHES);
+    }
+
+    private BloomFilter(final long[] bits, final int numHashes) {
+        this.bits = bits;
+        this.numHashes = numHashes;
+    }
+
+    /** A second hash function, independent of String.hashCode(), for double hashing. */
+    private static int hash2(final String str) {
+        int h = 0x9747b28c;
+        for (int i = 0, n = str.length(); i < n; i++) {
+            h = (h ^ str.charAt(i)) * 0x5bd1e995;
+            h ^= h >>> 15;
+        }
+        // Must be odd so that the probe sequence visits different bits
+        return h | 1;
+    }
+
+    public void add(final String str) {
+        final long numBits = bits.length * 64L;
+        final int h1 = str.hashCode(), h2 = hash2(str);
+        for (int i = 0; i < numHashes; i++) {
+            final int bit = (int) (((h1 + i * (long) h2) & 0x7fffffffffffffffL) % numBits);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /** Returns false if the string was definitely not added to the filter, or true if it may have been added. */
+    public boolean mightContain(final String str) {
+        final long numBits = bits.length * 64L;
+        final int h1 = str.hashCode(), h2 = hash2(str);
+        for (int i = 0; i < numHashes; i++) {
+            final int bit = (int) (((h1 + i * (long) h2) & 0x7fffffffffffffffL) % numBits);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void write(final DataOutputStream out) throws IOException {
+        out.writeByte(numHashes);
+        out.writeInt(bits.length);
+        for (final long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    public static BloomFilter read(final DataInputStream in) throws IOException {
+        final int numHashes = in.readUnsignedByte();
+        final int numWords = in.readInt();
+        if (numHashes == 0 || numWords <= 0) {
+            throw new IOException("Invalid Bloom filter");
+        }
+        final long[] bits = new long[numWords];
+        for (int i = 0; i < numWords; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, numHashes);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs tasks on an Executor, with at most a fixed number of tasks submitted but not yet completed, so that the
+ * submitting thread blocks rather than queueing an unbounded amount of work. Tasks submitted with the same non-null
+ * lane key are run one at a time, in submission order; other tasks may run concurrently. The first exception thrown
+ * by a task is rethrown by the next call to submit() or awaitCompletion().
+ */
+public class BoundedTaskDispatcher {
+    private final Executor executor;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final HashMap<Object, Lane> lanes = new HashMap<>();
+    private Throwable failure;
+
+    /** A task that may throw an IOException. */
+    @FunctionalInterface
+    public interface Task {
+        public void run() throws IOException;
+    }
+
+    /** The tasks waiting to be run for one lane key, run one at a time. */
+    private class Lane implements Runnable {
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        boolean running;
+
+        @Override
+        public void run() {
+            for (;;) {
+                final Runnable next;
+                synchronized (lanes) {
+                    next = queue.poll();
+                    if (next == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                next.run();
+            }
+        }
+    }
+
+    public BoundedTaskDispatcher(final Executor executor, final int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Submit a task, blocking while maxInFlight tasks are already in flight.
+     * 
+     * @param laneKey
+     *            If non-null, the task is run after all previously-submitted tasks with an equal lane key have
+     *            completed, and before any tasks submitted later with an equal lane key are started.
+     */
+    public void submit(final Object laneKey, final Task task) throws IOException {
+        final boolean failed;
+        synchronized (this) {
+            failed = failure != null;
+        }
+        if (failed) {
+            // Stop submitting work after the first failure
+            awaitCompletion();
+        }
+        inFlight.acquireUninterruptibly();
+        final Runnable runnable = () -> {
+            try {
+                task.run();
+            } catch (final Throwable t) {
+                synchronized (BoundedTaskDispatcher.this) {
+                    if (failure == null) {
+                        failure = t;
+                    }
+                }
+            } finally {
+                inFlight.release();
+            }
+        };
+        try {
+            if (laneKey == null) {
+                executor.execute(runnable);
+            } else {
+                synchronized (lanes) {
+                    Lane lane = lanes.get(laneKey);
+                    if (lane == null) {
+                        lanes.put(laneKey, lane = new Lane());
+                    }
+                    lane.queue.add(runnable);
+                    if (!lane.running) {
+                        // Mark the lane as running before starting it, since the executor may run the lane on this
+                        // thread (e.g. a direct executor, or CallerRunsPolicy), draining the queue before returning
+                        lane.running = true;
+                        try {
+                            executor.execute(lane);
+                        } catch (final RejectedExecutionException e) {
+                            lane.queue.removeLast();
+                            lane.running = false;
+                            throw e;
+                        }
+                    }
+                }
+            }
+        } catch (final RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /** Wait for all submitted tasks to complete, then rethrow the first exception thrown by a task, if any. */
+    public void awaitCompletion() throws IOException {
+        inFlight.acquireUninterruptibly(maxInFlight);
+        inFlight.release(maxInFlight);
+        final Throwable t;
+        synchronized (this) {
+            t = failure;
+            failure = null;
+        }
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new RuntimeException(t);
+        }
+    }
+}
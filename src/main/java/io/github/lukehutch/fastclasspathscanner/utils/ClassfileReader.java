@@ -0,0 +1,533 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Parses a classfile from a byte array, decoding constant pool entries lazily, when they are looked up. The byte array
+ * and the constant pool arrays are scratch buffers that are reused for each classfile read on the same thread, and
+ * grow to the size of the largest classfile seen, so that reading a classfile only allocates for the strings and
+ * constants that are looked up. Names that are only compared against known names (e.g. attribute names) can be
+ * compared with stringEquals() against names pre-encoded with encode(), without decoding them.
+ */
+public class ClassfileReader {
+    /** The reader for each thread. */
+    private static final ThreadLocal<ClassfileReader> THREAD_READER = new ThreadLocal<ClassfileReader>() {
+        @Override
+        protected ClassfileReader initialValue() {
+            return new ClassfileReader();
+        }
+    };
+
+    /** True while the reader is acquired. */
+    private boolean inUse;
+
+    /** The classfile, in buf[0..length). */
+    private byte[] buf = new byte[16384];
+    private int length;
+
+    /** The read position. */
+    private int pos;
+
+    /** The number of constant pool entries, plus one (the zeroth entry is not used). */
+    private int cpCount;
+
+    /** The tag of each constant pool entry. */
+    private byte[] cpTag = new byte[1024];
+
+    /** The offset in buf of each constant pool entry, after its tag. */
+    private int[] cpOffset = new int[1024];
+
+    /** The decoded strings of the CONSTANT_Utf8 entries that have been looked up, or null. */
+    private String[] cpString = new String[1024];
+
+    /** Scratch buffer for decoding strings. */
+    private char[] chars = new char[256];
+
+    /**
+     * Get the reader for the current thread. If the reader for the current thread is already in use (e.g. because a
+     * match processor called while a classfile is being read started another scan), a new reader is returned. The
+     * reader must be released with release() once the classfile has been read.
+     */
+    public static ClassfileReader acquire() {
+        ClassfileReader reader = THREAD_READER.get();
+        if (reader.inUse) {
+            reader = new ClassfileReader();
+        }
+        reader.inUse = true;
+        return reader;
+    }
+
+    /** Release the reader, so that it can be reused for the next classfile. */
+    public void release() {
+        inUse = false;
+    }
+
+    /**
+     * Read a classfile into the buffer, growing the buffer if the classfile is larger than any classfile read before.
+     * 
+     * @param inputStream
+     *            The classfile.
+     * @param sizeHint
+     *            The size of the classfile, or -1 if not known.
+     */
+    public void read(final InputStream inputStream, final long sizeHint) throws IOException {
+        if (sizeHint > buf.length && sizeHint < Integer.MAX_VALUE - 8) {
+            buf = new byte[(int) Math.max(sizeHint, buf.length * 2L)];
+        }
+        int n = 0;
+        for (;;) {
+            if (n == buf.length) {
+                // Only grow the buffer if the classfile is larger than the buffer
+                final int b = inputStream.read();
+                if (b < 0) {
+                    break;
+                }
+                buf = Arrays.copyOf(buf, buf.length * 2);
+                buf[n++] = (byte) b;
+            }
+            final int bytesRead = inputStream.read(buf, n, buf.length - n);
+            if (bytesRead < 0) {
+                break;
+            }
+            n += bytesRead;
+        }
+        length = n;
+        pos = 0;
+    }
+
+    /**
+     * Get the buffer, grown if necessary to hold a classfile of the given length, so that the classfile can be
+     * written into it directly (e.g. by inflating it) rather than read from an InputStream. The classfile must be
+     * written to buf[0..length) before it is parsed.
+     */
+    public byte[] prepareBuffer(final int length) {
+        if (length > buf.length) {
+            buf = new byte[Math.max(length, buf.length * 2)];
+        }
+        this.length = length;
+        pos = 0;
+        return buf;
+    }
+
+    /**
+     * Read the classfile header, and find the offset of each constant pool entry. Returns false if the buffer does
+     * not contain a classfile.
+     */
+    public boolean readHeader() throws IOException {
+        if (length < 10 || readInt() != 0xCAFEBABE) {
+            return false;
+        }
+        // Minor and major version
+        skipBytes(4);
+        cpCount = readUnsignedShort();
+        if (cpCount > cpTag.length) {
+            final int newLength = Math.max(cpCount, cpTag.length * 2);
+            cpTag = new byte[newLength];
+            cpOffset = new int[newLength];
+            cpString = new String[newLength];
+        } else {
+            Arrays.fill(cpString, 0, cpCount, null);
+        }
+        for (int i = 1; i < cpCount; i++) {
+            final int tag = readUnsignedByte();
+            cpTag[i] = (byte) tag;
+            cpOffset[i] = pos;
+            switch (tag) {
+            case 1: // Modified UTF8
+                skipBytes(readUnsignedShort());
+                break;
+            case 3: // int, short, char, byte, boolean are all represented by Constant_INTEGER
+            case 4: // float
+                skipBytes(4);
+                break;
+            case 5: // long
+            case 6: // double
+                skipBytes(8);
+                cpTag[++i] = 0; // double slot
+                break;
+            case 7: // Class
+            case 8: // String
+            case 16: // method type
+            case 19: // module
+            case 20: // package
+                skipBytes(2);
+                break;
+            case 9: // field ref
+            case 10: // method ref
+            case 11: // interface ref
+            case 12: // name and type
+            case 17: // dynamic
+            case 18: // invoke dynamic
+                skipBytes(4);
+                break;
+            case 15: // method handle
+                skipBytes(3);
+                break;
+            default:
+                // System.err.println("Unkown tag value for constant pool entry: " + tag);
+                break;
+            }
+        }
+        return true;
+    }
+
+    /** The number of constant pool entries, plus one (the zeroth entry is not used). */
+    public int getConstantPoolCount() {
+        return cpCount;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private void checkAvailable(final int numBytes) throws EOFException {
+        if (numBytes < 0 || numBytes > length - pos) {
+            throw new EOFException();
+        }
+    }
+
+    public int readUnsignedByte() throws IOException {
+        checkAvailable(1);
+        return buf[pos++] & 0xff;
+    }
+
+    public int readUnsignedShort() throws IOException {
+        checkAvailable(2);
+        final int val = ((buf[pos] & 0xff) << 8) | (buf[pos + 1] & 0xff);
+        pos += 2;
+        return val;
+    }
+
+    public int readInt() throws IOException {
+        checkAvailable(4);
+        final int val = intAt(pos);
+        pos += 4;
+        return val;
+    }
+
+    public void skipBytes(final int numBytes) throws IOException {
+        checkAvailable(numBytes);
+        pos += numBytes;
+    }
+
+    /** Read bytes into a new array, for data that is retained after the classfile has been read. */
+    public byte[] readBytes(final int numBytes) throws IOException {
+        checkAvailable(numBytes);
+        final byte[] bytes = Arrays.copyOfRange(buf, pos, pos + numBytes);
+        pos += numBytes;
+        return bytes;
+    }
+
+    /** Read an unsigned short constant pool index, then look up the string in the constant pool. */
+    public String readRefdString() throws IOException {
+        return getString(readUnsignedShort());
+    }
+
+    /**
+     * Read an unsigned short constant pool index, then look up the string in the constant pool, with '/' replaced
+     * with '.', e.g. to convert the internal name of a class to a class name.
+     */
+    public String readRefdClassName() throws IOException {
+        return getClassName(readUnsignedShort());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private int u2At(final int offset) {
+        return ((buf[offset] & 0xff) << 8) | (buf[offset + 1] & 0xff);
+    }
+
+    private int intAt(final int offset) {
+        return ((buf[offset] & 0xff) << 24) | ((buf[offset + 1] & 0xff) << 16) | ((buf[offset + 2] & 0xff) << 8)
+                | (buf[offset + 3] & 0xff);
+    }
+
+    private long longAt(final int offset) {
+        return ((long) intAt(offset) << 32) | (intAt(offset + 4) & 0xffffffffL);
+    }
+
+    /** The tag of a constant pool entry, or 0 for an unused entry. */
+    public int getTag(final int cpIdx) {
+        return cpTag[cpIdx];
+    }
+
+    /** The first unsigned short operand of a constant pool entry, e.g. the class index of a Methodref. */
+    public int getRef(final int cpIdx) {
+        return u2At(cpOffset[cpIdx]);
+    }
+
+    /** The second unsigned short operand of a constant pool entry, e.g. the descriptor index of a NameAndType. */
+    public int getSecondRef(final int cpIdx) {
+        return u2At(cpOffset[cpIdx] + 2);
+    }
+
+    /**
+     * Find the CONSTANT_Utf8 entry for a constant pool index, following the indirection of CONSTANT_Class,
+     * CONSTANT_String, CONSTANT_MethodType, CONSTANT_Module and CONSTANT_Package entries. Returns 0 if the index is
+     * invalid.
+     */
+    private int utf8Index(final int cpIdx) {
+        if (cpIdx <= 0 || cpIdx >= cpCount) {
+            return 0;
+        }
+        final int tag = cpTag[cpIdx];
+        if (tag == 1) {
+            return cpIdx;
+        }
+        final int utf8Idx = tag == 7 || tag == 8 || tag == 16 || tag == 19 || tag == 20 ? getRef(cpIdx) : 0;
+        return utf8Idx > 0 && utf8Idx < cpCount && cpTag[utf8Idx] == 1 ? utf8Idx : 0;
+    }
+
+    /**
+     * Look up the string of a CONSTANT_Utf8 entry, or of the entry referenced by a CONSTANT_Class, CONSTANT_String
+     * or CONSTANT_MethodType entry. Returns null if the index is not valid.
+     */
+    public String getString(final int cpIdx) throws IOException {
+        final int utf8Idx = utf8Index(cpIdx);
+        if (utf8Idx == 0) {
+            return null;
+        }
+        String str = cpString[utf8Idx];
+        if (str == null) {
+            final int start = cpOffset[utf8Idx] + 2;
+            cpString[utf8Idx] = str = decodeString(start, start + u2At(start - 2), /* replaceSlashes = */false);
+        }
+        return str;
+    }
+
+    /** Like getString(), but with '/' replaced with '.'. */
+    public String getClassName(final int cpIdx) throws IOException {
+        final int utf8Idx = utf8Index(cpIdx);
+        if (utf8Idx == 0) {
+            return null;
+        }
+        final int start = cpOffset[utf8Idx] + 2;
+        return decodeString(start, start + u2At(start - 2), /* replaceSlashes = */true);
+    }
+
+    /**
+     * Look up the class name of the internal name of a class or array type in a CONSTANT_Class entry, e.g.
+     * "com/xyz/Widget" or "[Lcom/xyz/Widget;" to "com.xyz.Widget". Returns null for arrays of primitive types.
+     */
+    public String getReferencedClassName(final int cpIdx) throws IOException {
+        final int utf8Idx = utf8Index(cpIdx);
+        if (utf8Idx == 0) {
+            return null;
+        }
+        int start = cpOffset[utf8Idx] + 2;
+        int end = start + u2At(start - 2);
+        if (start < end && buf[start] == '[') {
+            while (start < end && buf[start] == '[') {
+                start++;
+            }
+            if (start == end || buf[start] != 'L') {
+                // Array of primitive type
+                return null;
+            }
+            // Lcom/xyz/Widget; -> com/xyz/Widget
+            start++;
+            end--;
+        }
+        return decodeString(start, end, /* replaceSlashes = */true);
+    }
+
+    /**
+     * Look up the class name of a field descriptor that names a class, e.g. "Lcom/xyz/Annotation;" to
+     * "com.xyz.Annotation". Descriptors that do not name a class are returned as they are.
+     */
+    public String getDescriptorClassName(final int cpIdx) throws IOException {
+        final int utf8Idx = utf8Index(cpIdx);
+        if (utf8Idx == 0) {
+            return null;
+        }
+        final int start = cpOffset[utf8Idx] + 2;
+        final int end = start + u2At(start - 2);
+        if (end - start >= 2 && buf[start] == 'L' && buf[end - 1] == ';') {
+            return decodeString(start + 1, end - 1, /* replaceSlashes = */true);
+        }
+        // Should not happen
+        return getString(utf8Idx);
+    }
+
+    /**
+     * Add the names of the classes named in a field or method descriptor, e.g. "(ILcom/xyz/Widget;)[Lcom/xyz/Gizmo;",
+     * to a collection of class names.
+     */
+    public void addDescriptorClassNames(final int cpIdx, final Collection<String> classNames) throws IOException {
+        final int utf8Idx = utf8Index(cpIdx);
+        if (utf8Idx == 0) {
+            return;
+        }
+        final int start = cpOffset[utf8Idx] + 2;
+        final int end = start + u2At(start - 2);
+        // 'L' and ';' cannot occur within a multi-byte character, so the descriptor can be scanned bytewise
+        for (int i = start; i < end; i++) {
+            if (buf[i] == 'L') {
+                int semicolonIdx = i + 1;
+                while (semicolonIdx < end && buf[semicolonIdx] != ';') {
+                    semicolonIdx++;
+                }
+                if (semicolonIdx == end) {
+                    // Should not happen
+                    return;
+                }
+                classNames.add(decodeString(i + 1, semicolonIdx, /* replaceSlashes = */true));
+                i = semicolonIdx;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the string of a constant pool entry (with the same indirection as getString()) is equal to a
+     * string encoded with encode(), comparing the encoded bytes, without decoding the string.
+     */
+    public boolean stringEquals(final int cpIdx, final byte[] encodedString) {
+        final int utf8Idx = utf8Index(cpIdx);
+        if (utf8Idx == 0) {
+            return false;
+        }
+        final int start = cpOffset[utf8Idx] + 2;
+        if (u2At(start - 2) != encodedString.length || start + encodedString.length > length) {
+            return false;
+        }
+        for (int i = 0; i < encodedString.length; i++) {
+            if (buf[start + i] != encodedString[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encode a string in modified UTF8, the encoding of strings in the constant pool, for comparing against constant
+     * pool entries with stringEquals().
+     */
+    public static byte[] encode(final String str) {
+        int numBytes = 0;
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            numBytes += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        final byte[] bytes = new byte[numBytes];
+        int j = 0;
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c != 0 && c < 0x80) {
+                bytes[j++] = (byte) c;
+            } else if (c < 0x800) {
+                // '\0' is encoded with two bytes
+                bytes[j++] = (byte) (0xc0 | (c >> 6));
+                bytes[j++] = (byte) (0x80 | (c & 0x3f));
+            } else {
+                bytes[j++] = (byte) (0xe0 | (c >> 12));
+                bytes[j++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[j++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Look up a constant: Integer, Float, Long, Double or String. Returns null if the entry is not a constant.
+     */
+    public Object getConstant(final int cpIdx) throws IOException {
+        if (cpIdx <= 0 || cpIdx >= cpCount) {
+            return null;
+        }
+        switch (cpTag[cpIdx]) {
+        case 3:
+            return intAt(cpOffset[cpIdx]);
+        case 4:
+            return Float.intBitsToFloat(intAt(cpOffset[cpIdx]));
+        case 5:
+            return longAt(cpOffset[cpIdx]);
+        case 6:
+            return Double.longBitsToDouble(longAt(cpOffset[cpIdx]));
+        case 1:
+        case 8:
+            return getString(cpIdx);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Decode the modified UTF8 string in buf[start..end). Strings that are entirely ASCII, such as nearly all class,
+     * field, method and attribute names, take a fast path that does not decode multi-byte characters.
+     */
+    private String decodeString(final int start, final int end, final boolean replaceSlashes) throws IOException {
+        if (end > length) {
+            throw new EOFException();
+        }
+        final int utfLength = end - start;
+        boolean isAscii = true;
+        for (int i = start; i < end; i++) {
+            if (buf[i] < 0) {
+                isAscii = false;
+                break;
+            }
+        }
+        if (isAscii && !replaceSlashes) {
+            // The ASCII bytes are also the ISO-8859-1 encoding of the string
+            return new String(buf, start, utfLength, StandardCharsets.ISO_8859_1);
+        }
+        if (chars.length < utfLength) {
+            chars = new char[Math.max(utfLength, chars.length * 2)];
+        }
+        int numChars = 0;
+        if (isAscii) {
+            for (int i = start; i < end; i++) {
+                final char c = (char) buf[i];
+                chars[numChars++] = c == '/' ? '.' : c;
+            }
+            return new String(chars, 0, numChars);
+        }
+        for (int i = start; i < end;) {
+            final int c = buf[i++] & 0xff;
+            if (c < 0x80) {
+                chars[numChars++] = replaceSlashes && c == '/' ? '.' : (char) c;
+            } else if ((c & 0xe0) == 0xc0 && i < end) {
+                chars[numChars++] = (char) (((c & 0x1f) << 6) | (buf[i++] & 0x3f));
+            } else if ((c & 0xf0) == 0xe0 && i + 1 < end) {
+                chars[numChars++] = (char) (((c & 0x0f) << 12) | ((buf[i] & 0x3f) << 6) | (buf[i + 1] & 0x3f));
+                i += 2;
+            } else {
+                throw new UTFDataFormatException("Malformed modified UTF8 string in constant pool");
+            }
+        }
+        return new String(chars, 0, numChars);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The classes and resources that were added, removed or modified between two classpath snapshots, for targeted
+ * reloading. Classes are identified by their fully-qualified class name, and resources by their path relative to the
+ * classpath element that contains them. Each list is sorted.
+ */
+public class ClasspathDiff {
+    private final ArrayList<String> addedClasses = new ArrayList<>();
+    private final ArrayList<String> removedClasses = new ArrayList<>();
+    private final ArrayList<String> modifiedClasses = new ArrayList<>();
+    private final ArrayList<String> addedResources = new ArrayList<>();
+    private final ArrayList<String> removedResources = new ArrayList<>();
+    private final ArrayList<String> modifiedResources = new ArrayList<>();
+
+    ClasspathDiff() {
+    }
+
+    /** Convert a classfile path to a class name, or return null if the path is not a classfile. */
+    private static String className(final String path) {
+        return path.endsWith(".class") ? path.substring(0, path.length() - 6).replace('/', '.') : null;
+    }
+
+    void added(final String path) {
+        final String className = className(path);
+        if (className != null) {
+            addedClasses.add(className);
+        } else {
+            addedResources.add(path);
+        }
+    }
+
+    void removed(final String path) {
+        final String className = className(path);
+        if (className != null) {
+            removedClasses.add(className);
+        } else {
+            removedResources.add(path);
+        }
+    }
+
+    void modified(final String path) {
+        final String className = className(path);
+        if (className != null) {
+            modifiedClasses.add(className);
+        } else {
+            modifiedResources.add(path);
+        }
+    }
+
+    void sort() {
+        for (final ArrayList<String> list : Arrays.asList(addedClasses, removedClasses, modifiedClasses,
+                addedResources, removedResources, modifiedResources)) {
+            Collections.sort(list);
+        }
+    }
+
+    /** The names of the classes that were added. */
+    public List<String> getAddedClasses() {
+        return addedClasses;
+    }
+
+    /** The names of the classes that were removed. */
+    public List<String> getRemovedClasses() {
+        return removedClasses;
+    }
+
+    /** The names of the classes whose classfile was modified. */
+    public List<String> getModifiedClasses() {
+        return modifiedClasses;
+    }
+
+    /** The paths of the resources (non-classfiles) that were added. */
+    public List<String> getAddedResources() {
+        return addedResources;
+    }
+
+    /** The paths of the resources that were removed. */
+    public List<String> getRemovedResources() {
+        return removedResources;
+    }
+
+    /** The paths of the resources that were modified. */
+    public List<String> getModifiedResources() {
+        return modifiedResources;
+    }
+
+    /** Returns true if no classes or resources were added, removed or modified. */
+    public boolean isEmpty() {
+        return addedClasses.isEmpty() && removedClasses.isEmpty() && modifiedClasses.isEmpty()
+                && addedResources.isEmpty() && removedResources.isEmpty() && modifiedResources.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "added classes: " + addedClasses + ", removed classes: " + removedClasses + ", modified classes: "
+                + modifiedClasses + ", added resources: " + addedResources + ", removed resources: "
+                + removedResources + ", modified resources: " + modifiedResources;
+    }
+}
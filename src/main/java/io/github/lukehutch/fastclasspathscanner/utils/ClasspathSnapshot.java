@@ -0,0 +1,96 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+
+/**
+ * Fingerprints of the classfiles and resources in the whitelisted paths of the classpath, recorded during a scan, so
+ * that the classes and resources added, removed or modified between two scans can be found without reading or
+ * parsing them again. The fingerprint of a jarfile entry is its CRC and size, read from the central directory of the
+ * jarfile, and the fingerprint of a file in a directory is its size and modification time. Only the first
+ * occurrence of each path on the classpath is recorded, since it masks any later occurrences.
+ */
+public class ClasspathSnapshot {
+    /** Map from path relative to the classpath element to { size, CRC or modification time }. */
+    private final HashMap<String, long[]> pathToFingerprint = new HashMap<>();
+
+    /** Record the fingerprint of a jarfile entry. */
+    public void addZipEntry(final ZipEntry entry) {
+        addFingerprint(entry.getName(), entry.getSize(), entry.getCrc());
+    }
+
+    /** Record the fingerprint of a file in a directory, or of a file listed directly on the classpath. */
+    public void addFile(final String relativePath, final File file) {
+        addFingerprint(relativePath, file.length(), file.lastModified());
+    }
+
+    private void addFingerprint(final String relativePath, final long size, final long checksum) {
+        if (!pathToFingerprint.containsKey(relativePath)) {
+            pathToFingerprint.put(relativePath, new long[] { size, checksum });
+        }
+    }
+
+    /** The paths of the classfiles and resources, relative to the classpath element that contains them. */
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(pathToFingerprint.keySet());
+    }
+
+    /**
+     * Compare this snapshot with a newer snapshot, and return the classes and resources that were added, removed or
+     * modified.
+     */
+    public ClasspathDiff diff(final ClasspathSnapshot newerSnapshot) {
+        final ClasspathDiff diff = new ClasspathDiff();
+        for (final Entry<String, long[]> ent : newerSnapshot.pathToFingerprint.entrySet()) {
+            final long[] oldFingerprint = pathToFingerprint.get(ent.getKey());
+            if (oldFingerprint == null) {
+                diff.added(ent.getKey());
+            } else {
+                final long[] newFingerprint = ent.getValue();
+                if (oldFingerprint[0] != newFingerprint[0] || oldFingerprint[1] != newFingerprint[1]) {
+                    diff.modified(ent.getKey());
+                }
+            }
+        }
+        for (final String path : pathToFingerprint.keySet()) {
+            if (!newerSnapshot.pathToFingerprint.containsKey(path)) {
+                diff.removed(path);
+            }
+        }
+        diff.sort();
+        return diff;
+    }
+}
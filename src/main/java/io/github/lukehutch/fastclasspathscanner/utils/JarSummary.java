@@ -0,0 +1,228 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A compact summary of the whitelisted classes in a jarfile, saved to a cache directory after the jarfile is scanned,
+ * so that later scans can skip jarfiles that cannot contain any matches. Records:
+ * 
+ * (1) the packages that contain classes in the jarfile;
+ * 
+ * (2) the packages of the superclasses, interfaces and annotations referenced by classes in the jarfile; and
+ * 
+ * (3) a Bloom filter over the names of the superclasses, interfaces and annotations referenced by classes in the
+ * jarfile.
+ * 
+ * Summaries are keyed by a fingerprint of the jarfile path, size and modification time, and the whitelist and
+ * blacklist of the scan, and are ignored if the fingerprint no longer matches.
+ */
+public class JarSummary {
+    private final String fingerprint;
+    private final HashSet<String> definedPackages;
+    private final HashSet<String> referencedPackages;
+
+    /** The referenced names, while the summary is being built. */
+    private HashSet<String> referencedNames;
+
+    /** The Bloom filter over referenced names, once the summary has been built or read. */
+    private BloomFilter referencedNamesFilter;
+
+    /** Set if the summary could not be completely built, in which case it is not saved. */
+    private boolean incomplete;
+
+    private static final int FORMAT_VERSION = 1;
+
+    /** Create an empty summary, to be filled in as the jarfile is scanned. */
+    public JarSummary(final String fingerprint) {
+        this.fingerprint = fingerprint;
+        this.definedPackages = new HashSet<>();
+        this.referencedPackages = new HashSet<>();
+        this.referencedNames = new HashSet<>();
+    }
+
+    private JarSummary(final String fingerprint, final HashSet<String> definedPackages,
+            final HashSet<String> referencedPackages, final BloomFilter referencedNamesFilter) {
+        this.fingerprint = fingerprint;
+        this.definedPackages = definedPackages;
+        this.referencedPackages = referencedPackages;
+        this.referencedNamesFilter = referencedNamesFilter;
+    }
+
+    /** Return the fingerprint of a jarfile, scanned with the given whitelist and blacklist. */
+    public static String fingerprint(final File jarFile, final String scanSpec) {
+        return jarFile.getAbsolutePath() + "|" + jarFile.length() + "|" + jarFile.lastModified() + "|" + scanSpec;
+    }
+
+    /** Return the package of a class, or "" for the default package. */
+    public static String packageOf(final String className) {
+        final int lastDotIdx = className.lastIndexOf('.');
+        return lastDotIdx < 0 ? "" : className.substring(0, lastDotIdx);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** Record a class found in the jarfile. */
+    public void addDefinedClass(final String className) {
+        definedPackages.add(packageOf(className));
+    }
+
+    /** Record the name of a superclass, interface or annotation referenced by a class in the jarfile. */
+    public void addReferencedName(final String name) {
+        if (referencedNames.add(name)) {
+            referencedPackages.add(packageOf(name));
+        }
+    }
+
+    /** Record the names of superclasses, interfaces or annotations referenced by a class in the jarfile. */
+    public void addReferencedNames(final Collection<String> names) {
+        if (names != null) {
+            for (final String name : names) {
+                addReferencedName(name);
+            }
+        }
+    }
+
+    /** Mark the summary as incomplete, so that it will not be saved. */
+    public void setIncomplete() {
+        incomplete = true;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** The packages that contain classes in the jarfile. */
+    public Set<String> getDefinedPackages() {
+        return definedPackages;
+    }
+
+    /** Returns true if any of the names may be referenced as a superclass, interface or annotation. */
+    public boolean mightReferenceAny(final Collection<String> names) {
+        for (final String name : names) {
+            if (referencedNamesFilter.mightContain(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns true if a class in one of the packages is referenced as a superclass, interface or annotation. */
+    public boolean referencesAnyPackage(final Set<String> packages) {
+        for (final String pkg : referencedPackages) {
+            if (packages.contains(pkg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** The file that the summary of a jarfile is cached in. */
+    private static File cacheFile(final File cacheDir, final File jarFile) {
+        return new File(cacheDir, Integer.toHexString(jarFile.getAbsolutePath().hashCode()) + "-" + jarFile.getName()
+                + ".summary");
+    }
+
+    /** Read the cached summary for a jarfile, or return null if there is no valid summary for the fingerprint. */
+    public static JarSummary read(final File cacheDir, final File jarFile, final String fingerprint) {
+        final File file = cacheFile(cacheDir, jarFile);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(fingerprint)) {
+                return null;
+            }
+            final HashSet<String> definedPackages = readStrings(in);
+            final HashSet<String> referencedPackages = readStrings(in);
+            final BloomFilter referencedNamesFilter = BloomFilter.read(in);
+            return new JarSummary(fingerprint, definedPackages, referencedPackages, referencedNamesFilter);
+        } catch (final IOException e) {
+            // Corrupt or truncated summary -- ignore it
+            return null;
+        }
+    }
+
+    /** Save the summary of a jarfile, once the jarfile has been completely scanned. Does nothing if incomplete. */
+    public void write(final File cacheDir, final File jarFile) throws IOException {
+        if (incomplete) {
+            return;
+        }
+        referencedNamesFilter = new BloomFilter(referencedNames.size());
+        for (final String name : referencedNames) {
+            referencedNamesFilter.add(name);
+        }
+        referencedNames = null;
+        // Write to a temporary file, then rename it, so that concurrent readers never see a partial summary
+        final File file = cacheFile(cacheDir, jarFile);
+        final File tempFile = new File(cacheDir, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(fingerprint);
+            writeStrings(out, definedPackages);
+            writeStrings(out, referencedPackages);
+            referencedNamesFilter.write(out);
+        }
+        if (!tempFile.renameTo(file)) {
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+
+    private static HashSet<String> readStrings(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final HashSet<String> strings = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    private static void writeStrings(final DataOutputStream out, final Set<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (final String str : strings) {
+            out.writeUTF(str);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * A read-only memory mapping of a zipfile, with an index of its central directory, so that the raw (stored or
+ * compressed) data of an entry can be obtained as a slice of the mapping without copying. Zip64 entries are not
+ * indexed, and zipfiles of 2GB or more, or whose central directory cannot be parsed, are not mapped. The mapping
+ * is released by close(), after which the slices returned by getRawData() must not be accessed.
+ */
+public class MappedZipFile implements Closeable {
+    private final ByteBuffer mapping;
+    private final HashMap<String, Entry> entries;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIR_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_LEN = 30;
+    private static final int CENTRAL_HEADER_LEN = 46;
+    private static final int END_OF_CENTRAL_DIR_LEN = 22;
+    private static final long ZIP64_MARKER = 0xffffffffL;
+
+    /** A central directory entry. */
+    public static class Entry {
+        public final String name;
+        /** The compression method, ZipEntry.STORED or ZipEntry.DEFLATED. */
+        public final int method;
+        public final long crc;
+        public final long compressedSize;
+        public final long size;
+        final long localHeaderOffset;
+
+        private Entry(final String name, final int method, final long crc, final long compressedSize,
+                final long size, final long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    private MappedZipFile(final ByteBuffer mapping, final HashMap<String, Entry> entries) {
+        this.mapping = mapping;
+        this.entries = entries;
+    }
+
+    /**
+     * Map a zipfile and read its central directory. Returns null if the zipfile is too large to map, or its central
+     * directory could not be found (e.g. for Zip64 archives).
+     */
+    public static MappedZipFile open(final File file) throws IOException {
+        final ByteBuffer mapping;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            final long fileSize = channel.size();
+            if (fileSize < END_OF_CENTRAL_DIR_LEN || fileSize > Integer.MAX_VALUE) {
+                return null;
+            }
+            mapping = channel.map(MapMode.READ_ONLY, 0, fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        final HashMap<String, Entry> entries = readCentralDirectory(mapping);
+        return entries == null ? null : new MappedZipFile(mapping, entries);
+    }
+
+    /** Find the end of central directory record and index the central directory. Returns null if not found. */
+    private static HashMap<String, Entry> readCentralDirectory(final ByteBuffer buf) {
+        final int size = buf.limit();
+        // The end of central directory record is followed by a comment of up to 65535 bytes
+        int eocd = -1;
+        for (int i = size - END_OF_CENTRAL_DIR_LEN, min = Math.max(0, i - 0xffff); i >= min; i--) {
+            if (buf.getInt(i) == END_OF_CENTRAL_DIR_SIGNATURE
+                    && i + END_OF_CENTRAL_DIR_LEN + (buf.getShort(i + 20) & 0xffff) == size) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            return null;
+        }
+        final int numEntries = buf.getShort(eocd + 10) & 0xffff;
+        final long centralDirOffset = buf.getInt(eocd + 16) & 0xffffffffL;
+        if (numEntries == 0xffff || centralDirOffset == ZIP64_MARKER) {
+            // Zip64 archive
+            return null;
+        }
+        final HashMap<String, Entry> entries = new HashMap<>(numEntries * 2);
+        int pos = (int) centralDirOffset;
+        for (int i = 0; i < numEntries; i++) {
+            if (pos < 0 || pos + CENTRAL_HEADER_LEN > size || buf.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                // Prefixed (e.g. self-extracting) or corrupt zipfile
+                return null;
+            }
+            final int method = buf.getShort(pos + 10) & 0xffff;
+            final long crc = buf.getInt(pos + 16) & 0xffffffffL;
+            final long compressedSize = buf.getInt(pos + 20) & 0xffffffffL;
+            final long uncompressedSize = buf.getInt(pos + 24) & 0xffffffffL;
+            final int nameLen = buf.getShort(pos + 28) & 0xffff;
+            final int extraLen = buf.getShort(pos + 30) & 0xffff;
+            final int commentLen = buf.getShort(pos + 32) & 0xffff;
+            final long localHeaderOffset = buf.getInt(pos + 42) & 0xffffffffL;
+            if (pos + CENTRAL_HEADER_LEN + nameLen > size) {
+                return null;
+            }
+            final byte[] nameBytes = new byte[nameLen];
+            for (int j = 0; j < nameLen; j++) {
+                nameBytes[j] = buf.get(pos + CENTRAL_HEADER_LEN + j);
+            }
+            final String name = new String(nameBytes, StandardCharsets.UTF_8);
+            if (compressedSize != ZIP64_MARKER && uncompressedSize != ZIP64_MARKER
+                    && localHeaderOffset != ZIP64_MARKER) {
+                entries.put(name, new Entry(name, method, crc, compressedSize, uncompressedSize,
+                        localHeaderOffset));
+            }
+            pos += CENTRAL_HEADER_LEN + nameLen + extraLen + commentLen;
+        }
+        return entries;
+    }
+
+    /** Returns the entry with the given name, or null if there is no such entry or it is a Zip64 entry. */
+    public Entry getEntry(final String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Returns a read-only slice of the mapping containing the raw data of an entry, i.e. the contents of a STORED
+     * entry, or the raw deflate stream of a DEFLATED entry.
+     */
+    public ByteBuffer getRawData(final Entry entry) throws IOException {
+        final int size = mapping.limit();
+        final long headerOffset = entry.localHeaderOffset;
+        if (headerOffset + LOCAL_HEADER_LEN > size || mapping.getInt((int) headerOffset) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Bad local header for zip entry " + entry.name);
+        }
+        // The local header's extra field may differ in length from the central directory's
+        final long start = headerOffset + LOCAL_HEADER_LEN + (mapping.getShort((int) headerOffset + 26) & 0xffff)
+                + (mapping.getShort((int) headerOffset + 28) & 0xffff);
+        if (start + entry.compressedSize > size) {
+            throw new IOException("Truncated zip entry " + entry.name);
+        }
+        final ByteBuffer slice = mapping.duplicate();
+        ((Buffer) slice).position((int) start);
+        ((Buffer) slice).limit((int) (start + entry.compressedSize));
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    /** Release the mapping. */
+    @Override
+    public void close() {
+        BufferUnmapper.unmap(mapping);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a path against a set of regexps in one pass, returning the values associated with all the regexps that
+ * match the whole path, in the order the regexps were added. Regexps that are plain literals, or of the form
+ * "prefix.*", ".*suffix" or "prefix.*suffix" with literal prefix and suffix (i.e. the regexp equivalents of simple
+ * globs such as "*.html"), are looked up in a hash table and in prefix and suffix tries, so the cost of matching does
+ * not grow with the number of such regexps. Any other regexp is matched with Pattern.matcher(path).matches().
+ */
+public class MultiPatternMatcher<T> {
+    private final ArrayList<Rule<T>> rules = new ArrayList<>();
+
+    /** Rules for literal regexps, keyed by the literal. */
+    private final HashMap<String, ArrayList<Rule<T>>> literalRules = new HashMap<>();
+
+    /** Rules of the form "prefix.*", indexed by prefix. */
+    private final TrieNode<T> prefixTrie = new TrieNode<>();
+
+    /** Rules of the form ".*suffix" or "prefix.*suffix", indexed by reversed suffix. */
+    private final TrieNode<T> suffixTrie = new TrieNode<>();
+
+    /** Rules for the regexp ".*". */
+    private final ArrayList<Rule<T>> matchAllRules = new ArrayList<>();
+
+    /** Rules that are not of a simple form. */
+    private final ArrayList<Rule<T>> regexpRules = new ArrayList<>();
+
+    private static class Rule<T> {
+        final int order;
+        final T value;
+        final Pattern pattern;
+        /** The literal before the wildcard, or the whole literal if there is no wildcard. */
+        final String prefix;
+        /** The literal after the wildcard, or null if there is no wildcard. */
+        final String suffix;
+
+        Rule(final int order, final T value, final Pattern pattern, final String prefix, final String suffix) {
+            this.order = order;
+            this.value = value;
+            this.pattern = pattern;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+    }
+
+    private static class TrieNode<T> {
+        HashMap<Character, TrieNode<T>> children;
+        ArrayList<Rule<T>> rules;
+
+        TrieNode<T> getOrCreateChild(final char c) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            TrieNode<T> child = children.get(c);
+            if (child == null) {
+                children.put(c, child = new TrieNode<>());
+            }
+            return child;
+        }
+
+        TrieNode<T> getChild(final char c) {
+            return children == null ? null : children.get(c);
+        }
+
+        void addRule(final Rule<T> rule) {
+            if (rules == null) {
+                rules = new ArrayList<>(2);
+            }
+            rules.add(rule);
+        }
+    }
+
+    /** Returns true if there are no regexps in the matcher. */
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Add a regexp, and the value to return when the regexp matches.
+     * 
+     * @throws java.util.regex.PatternSyntaxException
+     *             if the regexp is invalid.
+     */
+    public void add(final String regexp, final T value) {
+        final Pattern pattern = Pattern.compile(regexp);
+        final String[] parts = parseSimpleRegexp(regexp);
+        final Rule<T> rule = new Rule<>(rules.size(), value, pattern, parts == null ? null : parts[0],
+                parts == null ? null : parts[1]);
+        rules.add(rule);
+        if (parts == null) {
+            regexpRules.add(rule);
+        } else if (rule.suffix == null) {
+            ArrayList<Rule<T>> rulesForLiteral = literalRules.get(rule.prefix);
+            if (rulesForLiteral == null) {
+                literalRules.put(rule.prefix, rulesForLiteral = new ArrayList<>(2));
+            }
+            rulesForLiteral.add(rule);
+        } else if (!rule.suffix.isEmpty()) {
+            TrieNode<T> node = suffixTrie;
+            for (int i = rule.suffix.length() - 1; i >= 0; --i) {
+                node = node.getOrCreateChild(rule.suffix.charAt(i));
+            }
+            node.addRule(rule);
+        } else if (!rule.prefix.isEmpty()) {
+            TrieNode<T> node = prefixTrie;
+            for (int i = 0; i < rule.prefix.length(); i++) {
+                node = node.getOrCreateChild(rule.prefix.charAt(i));
+            }
+            node.addRule(rule);
+        } else {
+            matchAllRules.add(rule);
+        }
+    }
+
+    /**
+     * Parse a regexp of the form "literal", "literal1.*literal2" (where either literal may be empty), optionally
+     * anchored with "^" and "$", where the literals may contain escaped non-alphanumeric characters. Returns {literal,
+     * null} or {literal1, literal2}, or null if the regexp is not of this form.
+     */
+    private static String[] parseSimpleRegexp(final String regexp) {
+        final int len = regexp.length();
+        final StringBuilder[] parts = { new StringBuilder(), null };
+        int part = 0;
+        for (int i = regexp.startsWith("^") ? 1 : 0; i < len; i++) {
+            final char c = regexp.charAt(i);
+            if (c == '\\') {
+                // Backslash before a non-alphanumeric character quotes the character
+                if (i + 1 == len || Character.isLetterOrDigit(regexp.charAt(i + 1))) {
+                    return null;
+                }
+                parts[part].append(regexp.charAt(++i));
+            } else if (c == '.' && i + 1 < len && regexp.charAt(i + 1) == '*') {
+                if (part == 1 || (i + 2 < len && (regexp.charAt(i + 2) == '?' || regexp.charAt(i + 2) == '+'))) {
+                    // More than one wildcard, or a reluctant or possessive quantifier
+                    return null;
+                }
+                parts[part = 1] = new StringBuilder();
+                i++;
+            } else if (c == '$' && i == len - 1) {
+                // End anchor
+            } else if ("^$.|?*+()[]{}".indexOf(c) >= 0) {
+                return null;
+            } else {
+                parts[part].append(c);
+            }
+        }
+        return new String[] { parts[0].toString(), parts[1] == null ? null : parts[1].toString() };
+    }
+
+    /** Returns true if there are no characters in the range that "." does not match. */
+    private static boolean noLineTerminators(final String path, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final char c = path.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns true if the path matches a "prefix.*suffix" rule, given that it ends with the suffix. */
+    private static boolean matchesWildcardRule(final String path, final Rule<?> rule) {
+        final int wildcardEnd = path.length() - rule.suffix.length();
+        return wildcardEnd >= rule.prefix.length() && path.startsWith(rule.prefix)
+                && noLineTerminators(path, rule.prefix.length(), wildcardEnd);
+    }
+
+    /**
+     * Returns the values for all the regexps that match the whole path, in the order the regexps were added, or an
+     * empty list if none match.
+     */
+    public List<T> getMatches(final String path) {
+        ArrayList<Rule<T>> matches = null;
+        final ArrayList<Rule<T>> rulesForLiteral = literalRules.isEmpty() ? null : literalRules.get(path);
+        if (rulesForLiteral != null) {
+            matches = new ArrayList<>(rulesForLiteral);
+        }
+        final int len = path.length();
+        TrieNode<T> node = prefixTrie;
+        for (int i = 0; i < len && (node = node.getChild(path.charAt(i))) != null; i++) {
+            if (node.rules != null && noLineTerminators(path, i + 1, len)) {
+                if (matches == null) {
+                    matches = new ArrayList<>();
+                }
+                matches.addAll(node.rules);
+            }
+        }
+        node = suffixTrie;
+        for (int i = len - 1; i >= 0 && (node = node.getChild(path.charAt(i))) != null; --i) {
+            if (node.rules != null) {
+                for (final Rule<T> rule : node.rules) {
+                    if (matchesWildcardRule(path, rule)) {
+                        if (matches == null) {
+                            matches = new ArrayList<>();
+                        }
+                        matches.add(rule);
+                    }
+                }
+            }
+        }
+        if (!matchAllRules.isEmpty() && noLineTerminators(path, 0, len)) {
+            if (matches == null) {
+                matches = new ArrayList<>();
+            }
+            matches.addAll(matchAllRules);
+        }
+        for (final Rule<T> rule : regexpRules) {
+            if (rule.pattern.matcher(path).matches()) {
+                if (matches == null) {
+                    matches = new ArrayList<>();
+                }
+                matches.add(rule);
+            }
+        }
+        if (matches == null) {
+            return Collections.emptyList();
+        }
+        if (matches.size() > 1) {
+            matches.sort((r1, r2) -> Integer.compare(r1.order, r2.order));
+        }
+        final ArrayList<T> values = new ArrayList<>(matches.size());
+        for (final Rule<T> rule : matches) {
+            values.add(rule.value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An Inflater for the raw deflate data of zipfile entries, together with a scratch buffer for the compressed data,
+ * that is returned to a pool after use, so that inflating a zipfile entry of known size does not allocate an
+ * Inflater or any buffers. (ZipFile only caches a few Inflaters, behind a lock, and allocates a new InflaterInputStream
+ * and its buffer for every entry that is read.)
+ */
+public class PooledInflater {
+    /** The maximum number of idle inflaters that are kept in the pool. */
+    private static final int MAX_POOLED = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final ConcurrentLinkedQueue<PooledInflater> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger numPooled = new AtomicInteger();
+
+    private final Inflater inflater = new Inflater(/* nowrap = */true);
+
+    /** Scratch buffer for the compressed data. */
+    private byte[] input = new byte[8192];
+
+    /** Take an inflater from the pool, or create one if the pool is empty. */
+    public static PooledInflater acquire() {
+        final PooledInflater pooledInflater = POOL.poll();
+        if (pooledInflater == null) {
+            return new PooledInflater();
+        }
+        numPooled.decrementAndGet();
+        return pooledInflater;
+    }
+
+    /** Return the inflater to the pool, or free its native resources if the pool is full. */
+    public void release() {
+        inflater.reset();
+        if (numPooled.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(this);
+        } else {
+            numPooled.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    /**
+     * Inflate the raw deflate data of a zipfile entry into out[0..size), where size is the uncompressed size of the
+     * entry from the zipfile's central directory. Since the output buffer is large enough for the whole entry, the
+     * entry is normally inflated in a single call to the Inflater.
+     * 
+     * @throws ZipException
+     *             if the data is corrupt, or does not inflate to exactly size bytes.
+     */
+    public void inflate(final ByteBuffer compressedData, final byte[] out, final int size) throws IOException {
+        final int compressedSize = compressedData.remaining();
+        if (input.length < compressedSize + 1) {
+            input = new byte[Math.max(compressedSize + 1, input.length * 2)];
+        }
+        compressedData.get(input, 0, compressedSize);
+        // With nowrap, the Inflater may need an extra dummy byte of input after the end of the deflate stream
+        input[compressedSize] = 0;
+        inflater.setInput(input, 0, compressedSize + 1);
+        int len = 0;
+        try {
+            while (len < size) {
+                final int n = inflater.inflate(out, len, size - len);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                len += n;
+            }
+        } catch (final DataFormatException e) {
+            throw new ZipException("Invalid deflate data in zip entry: " + e.getMessage());
+        }
+        if (len != size) {
+            throw new ZipException("Zip entry inflated to " + len + " bytes, expected " + size);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+/**
+ * Emits Java Flight Recorder events for the phases of a scan. This base class does nothing: INSTANCE is an instance
+ * of JfrScanEvents if the jdk.jfr API is available at runtime, and an instance of this class otherwise, so that the
+ * scanner still runs on JREs without JFR. JfrScanEvents is in the src/main/jfr source root, which is only compiled
+ * when building with JDK 11 or later, so that this package does not depend on jdk.jfr at compile time. When JFR is available but not recording, each begin...() method returns
+ * null after a single check, and the matching end...() method returns immediately.
+ */
+public class ScanEvents {
+    /** The ScanEvents instance used by all scanners. */
+    public static final ScanEvents INSTANCE = load();
+
+    private static ScanEvents load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (ScanEvents) Class.forName(ScanEvents.class.getPackage().getName() + ".JfrScanEvents")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | SecurityException e) {
+            // JFR is not available
+            return new ScanEvents();
+        }
+    }
+
+    ScanEvents() {
+    }
+
+    /** Called at the start of a scan. Returns an event to pass to endScan(), or null. */
+    public Object beginScan() {
+        return null;
+    }
+
+    public void endScan(final Object event, final int classpathElements, final int classfilesRead) {
+    }
+
+    /** Called before scanning a classpath element. Returns an event to pass to endClasspathElement(), or null. */
+    public Object beginClasspathElement() {
+        return null;
+    }
+
+    public void endClasspathElement(final Object event, final String path, final boolean skipped,
+            final long bytesRead, final int classfilesRead) {
+    }
+
+    /** Called before finalizing the class graph. Returns an event to pass to endFinalize(), or null. */
+    public Object beginFinalize() {
+        return null;
+    }
+
+    public void endFinalize(final Object event, final int numClasses) {
+    }
+
+    /** Called before calling a match processor. Returns an event to pass to endMatchProcessor(), or null. */
+    public Object beginMatchProcessor() {
+        return null;
+    }
+
+    /**
+     * Called after calling a match processor.
+     * 
+     * @param matchProcessor
+     *            The match processor that was called.
+     * @param match
+     *            The name of the matching class, member or file.
+     */
+    public void endMatchProcessor(final Object event, final Object matchProcessor, final String match) {
+    }
+
+    /**
+     * Called after calling a match processor for a class member. The match name, className + "." + memberName, is
+     * only built if the event is recorded.
+     */
+    public void endMatchProcessor(final Object event, final Object matchProcessor, final String className,
+            final String memberName) {
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Timings and counters for a scan, in total and for each classpath element. A FastClasspathScanner reuses the same
+ * ScanStatistics object for each scan, so that it can be registered as a JMX MBean once and then scraped after each
+ * scan. Counters are updated by the scanning thread without synchronization, so a read during a scan may see a
+ * partially-updated set of values.
+ */
+public class ScanStatistics implements ScanStatisticsMBean {
+    /** Timings and counters for one classpath element. */
+    public static class ClasspathElementStatistics {
+        private final String path;
+        private boolean skipped;
+        private long scanNanos;
+        private int classfilesRead;
+        private int classfilesMasked;
+        private long bytesRead;
+        private long bytesInflated;
+
+        ClasspathElementStatistics(final String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /** True if the classpath element was skipped, e.g. because its jarfile summary had no matches. */
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        public long getScanTimeNanos() {
+            return scanNanos;
+        }
+
+        public int getClassfilesRead() {
+            return classfilesRead;
+        }
+
+        public int getClassfilesMasked() {
+            return classfilesMasked;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getBytesInflated() {
+            return bytesInflated;
+        }
+
+        @Override
+        public String toString() {
+            return path + ": " + (skipped ? "skipped" : scanNanos / 1000000 + " ms, " + classfilesRead
+                    + " classfiles (" + classfilesMasked + " masked), " + bytesRead + " bytes read, "
+                    + bytesInflated + " bytes inflated");
+        }
+    }
+
+    private volatile boolean scanInProgress;
+    private long scanStartTimeMillis;
+    private long scanStartNanos;
+    private long scanNanos;
+    private long parseNanos;
+    private long finalizeNanos;
+    private long matchProcessorNanos;
+    private long classLoadNanos;
+    private int classfilesRead;
+    private int classfilesMasked;
+    private long bytesRead;
+    private long bytesInflated;
+    private long classGraphFootprintBytes;
+    private long classGraphOffHeapBytes;
+    private final CopyOnWriteArrayList<ClasspathElementStatistics> classpathElementStatistics = //
+    new CopyOnWriteArrayList<>();
+
+    /** The statistics of the classpath element currently being scanned. */
+    private ClasspathElementStatistics current;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** Reset the statistics at the start of a scan. */
+    public void startScan() {
+        scanInProgress = true;
+        scanStartTimeMillis = System.currentTimeMillis();
+        scanStartNanos = System.nanoTime();
+        scanNanos = parseNanos = finalizeNanos = matchProcessorNanos = classLoadNanos = 0;
+        classfilesRead = classfilesMasked = 0;
+        bytesRead = bytesInflated = 0;
+        classGraphFootprintBytes = classGraphOffHeapBytes = 0;
+        classpathElementStatistics.clear();
+        current = null;
+    }
+
+    public void endScan() {
+        scanNanos = System.nanoTime() - scanStartNanos;
+        current = null;
+        scanInProgress = false;
+    }
+
+    /** Start recording statistics for a classpath element. Returns the statistics object for the element. */
+    public ClasspathElementStatistics startClasspathElement(final String path) {
+        current = new ClasspathElementStatistics(path);
+        classpathElementStatistics.add(current);
+        return current;
+    }
+
+    public void endClasspathElement(final long scanNanos) {
+        current.scanNanos = scanNanos;
+        current = null;
+    }
+
+    /** Record that the current classpath element was skipped. */
+    public void classpathElementSkipped() {
+        current.skipped = true;
+    }
+
+    /** Record that a classfile was read and parsed from the current classpath element. */
+    public void classfileRead(final long bytesRead, final long bytesInflated, final long parseNanos) {
+        this.classfilesRead++;
+        this.bytesRead += bytesRead;
+        this.bytesInflated += bytesInflated;
+        this.parseNanos += parseNanos;
+        if (current != null) {
+            current.classfilesRead++;
+            current.bytesRead += bytesRead;
+            current.bytesInflated += bytesInflated;
+        }
+    }
+
+    /** Record that a classfile was masked by a class of the same name earlier in the classpath. */
+    public void classfileMasked() {
+        classfilesMasked++;
+        if (current != null) {
+            current.classfilesMasked++;
+        }
+    }
+
+    public void addFinalizeTime(final long nanos) {
+        finalizeNanos += nanos;
+    }
+
+    /** May be called from executor threads if concurrent FileMatchProcessors are enabled. */
+    public synchronized void addMatchProcessorTime(final long nanos) {
+        matchProcessorNanos += nanos;
+    }
+
+    public void addClassLoadTime(final long nanos) {
+        classLoadNanos += nanos;
+    }
+
+    public void setClassGraphFootprintBytes(final long bytes) {
+        classGraphFootprintBytes = bytes;
+    }
+
+    public void setClassGraphOffHeapBytes(final long bytes) {
+        classGraphOffHeapBytes = bytes;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** The statistics of each classpath element, in classpath order. */
+    public List<ClasspathElementStatistics> getClasspathElementStatistics() {
+        return Collections.unmodifiableList(new ArrayList<>(classpathElementStatistics));
+    }
+
+    @Override
+    public boolean isScanInProgress() {
+        return scanInProgress;
+    }
+
+    @Override
+    public long getScanStartTimeMillis() {
+        return scanStartTimeMillis;
+    }
+
+    @Override
+    public long getScanTimeMillis() {
+        return (scanInProgress ? System.nanoTime() - scanStartNanos : scanNanos) / 1000000;
+    }
+
+    @Override
+    public long getParseTimeMillis() {
+        return parseNanos / 1000000;
+    }
+
+    @Override
+    public long getFinalizeTimeMillis() {
+        return finalizeNanos / 1000000;
+    }
+
+    @Override
+    public long getMatchProcessorTimeMillis() {
+        return matchProcessorNanos / 1000000;
+    }
+
+    @Override
+    public long getClassLoadTimeMillis() {
+        return classLoadNanos / 1000000;
+    }
+
+    @Override
+    public int getClasspathElementCount() {
+        return classpathElementStatistics.size();
+    }
+
+    @Override
+    public int getClasspathElementsSkipped() {
+        int skipped = 0;
+        for (final ClasspathElementStatistics stats : classpathElementStatistics) {
+            if (stats.skipped) {
+                skipped++;
+            }
+        }
+        return skipped;
+    }
+
+    @Override
+    public int getClassfilesRead() {
+        return classfilesRead;
+    }
+
+    @Override
+    public int getClassfilesMasked() {
+        return classfilesMasked;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public long getBytesInflated() {
+        return bytesInflated;
+    }
+
+    @Override
+    public long getClassGraphFootprintBytes() {
+        return classGraphFootprintBytes;
+    }
+
+    @Override
+    public long getClassGraphOffHeapBytes() {
+        return classGraphOffHeapBytes;
+    }
+
+    @Override
+    public String[] getSlowestClasspathElements() {
+        final ArrayList<ClasspathElementStatistics> sorted = new ArrayList<>(classpathElementStatistics);
+        Collections.sort(sorted, (a, b) -> Long.compare(b.scanNanos, a.scanNanos));
+        final int n = Math.min(10, sorted.size());
+        final String[] slowest = new String[n];
+        for (int i = 0; i < n; i++) {
+            slowest[i] = sorted.get(i).toString();
+        }
+        return slowest;
+    }
+
+    @Override
+    public String toString() {
+        return "Scanned " + getClasspathElementCount() + " classpath elements (" + getClasspathElementsSkipped()
+                + " skipped) in " + getScanTimeMillis() + " ms: " + classfilesRead + " classfiles read ("
+                + classfilesMasked + " masked), " + bytesRead + " bytes read, " + bytesInflated
+                + " bytes inflated; " + getParseTimeMillis() + " ms parsing, " + getFinalizeTimeMillis()
+                + " ms finalizing, " + getMatchProcessorTimeMillis() + " ms in match processors, "
+                + getClassLoadTimeMillis() + " ms loading matching classes; class graph uses ~"
+                + classGraphFootprintBytes / 1024 + " kB on heap, " + classGraphOffHeapBytes / 1024 + " kB off heap";
+    }
+}
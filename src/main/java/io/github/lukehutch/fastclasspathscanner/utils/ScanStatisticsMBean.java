@@ -0,0 +1,84 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+/**
+ * The JMX management interface of ScanStatistics. Times are in milliseconds, and describe the most recent scan (or
+ * the scan in progress, if isScanInProgress() returns true).
+ */
+public interface ScanStatisticsMBean {
+    public boolean isScanInProgress();
+
+    /** The start time of the scan, in milliseconds since the epoch. */
+    public long getScanStartTimeMillis();
+
+    /** The total wall time of the scan. */
+    public long getScanTimeMillis();
+
+    /** The time spent reading and parsing classfiles, not including the match processors of matching classfiles. */
+    public long getParseTimeMillis();
+
+    /** The time spent building the class graph and indices once all classfiles have been read. */
+    public long getFinalizeTimeMillis();
+
+    /** The time spent in match processors, including FileMatchProcessors, not including loading matching classes. */
+    public long getMatchProcessorTimeMillis();
+
+    /** The time spent loading the classes that match class matchers, before calling their match processors. */
+    public long getClassLoadTimeMillis();
+
+    public int getClasspathElementCount();
+
+    /** The number of classpath elements that were skipped, e.g. because their jarfile summary had no matches. */
+    public int getClasspathElementsSkipped();
+
+    public int getClassfilesRead();
+
+    /** The number of classfiles ignored because a class of the same name occurred earlier in the classpath. */
+    public int getClassfilesMasked();
+
+    /** The number of bytes of classfiles read from disk (compressed bytes, for jarfile entries). */
+    public long getBytesRead();
+
+    /** The number of bytes of classfiles inflated from jarfile entries. */
+    public long getBytesInflated();
+
+    /**
+     * The estimated heap size of the class graph retained after the scan, in bytes. In bounded-memory mode, this is
+     * the size after pruning.
+     */
+    public long getClassGraphFootprintBytes();
+
+    /** The number of bytes of off-heap memory used by the class graph, if the off-heap class graph is enabled. */
+    public long getClassGraphOffHeapBytes();
+
+    /** A summary of the (up to) 10 classpath elements that took the longest to scan, slowest first. */
+    public String[] getSlowestClasspathElements();
+}
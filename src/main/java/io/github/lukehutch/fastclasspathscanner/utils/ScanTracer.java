@@ -0,0 +1,149 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records timed spans from any thread, and writes them as a Chrome trace-event JSON file, which can be opened in
+ * chrome://tracing or another trace viewer. Spans are recorded as "complete" events, so each span is a single
+ * record; spans recorded on the same thread nest according to their start times and durations.
+ */
+public class ScanTracer {
+    private static class Span {
+        final String name;
+        final String category;
+        final long threadId;
+        final long startNanos;
+        final long durationNanos;
+        final String[] args;
+
+        Span(final String name, final String category, final long threadId, final long startNanos,
+                final long durationNanos, final String[] args) {
+            this.name = name;
+            this.category = category;
+            this.threadId = threadId;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.args = args;
+        }
+    }
+
+    private final long originNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Long, String> threadNames = new ConcurrentHashMap<>();
+
+    /**
+     * Record a span that started at startNanos (a value of System.nanoTime()) and ends now, on the current thread.
+     * 
+     * @param args
+     *            Alternating argument names and values to show with the span.
+     */
+    public void end(final long startNanos, final String name, final String category, final String... args) {
+        final long endNanos = System.nanoTime();
+        final Thread thread = Thread.currentThread();
+        final long threadId = thread.getId();
+        if (!threadNames.containsKey(threadId)) {
+            threadNames.put(threadId, thread.getName());
+        }
+        spans.add(new Span(name, category, threadId, startNanos, endNanos - startNanos, args));
+    }
+
+    /** The number of spans recorded so far. */
+    public int getNumSpans() {
+        return spans.size();
+    }
+
+    /** Write the recorded spans to a file in Chrome trace-event JSON format. */
+    public void write(final File traceFile) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(traceFile), StandardCharsets.UTF_8)) {
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            boolean first = true;
+            for (final Map.Entry<Long, String> ent : threadNames.entrySet()) {
+                writer.write(first ? "\n" : ",\n");
+                first = false;
+                writer.write("{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":" + ent.getKey()
+                        + ",\"args\":{\"name\":" + quote(ent.getValue()) + "}}");
+            }
+            final StringBuilder buf = new StringBuilder();
+            for (final Span span : spans) {
+                buf.setLength(0);
+                buf.append(first ? "\n" : ",\n");
+                first = false;
+                // Timestamps and durations are in microseconds
+                buf.append("{\"ph\":\"X\",\"name\":").append(quote(span.name)) //
+                        .append(",\"cat\":").append(quote(span.category)) //
+                        .append(",\"pid\":1,\"tid\":").append(span.threadId) //
+                        .append(",\"ts\":").append(microseconds(span.startNanos - originNanos)) //
+                        .append(",\"dur\":").append(microseconds(span.durationNanos));
+                if (span.args.length > 0) {
+                    buf.append(",\"args\":{");
+                    for (int i = 0; i + 1 < span.args.length; i += 2) {
+                        buf.append(i == 0 ? "" : ",").append(quote(span.args[i])).append(':')
+                                .append(quote(span.args[i + 1]));
+                    }
+                    buf.append('}');
+                }
+                buf.append('}');
+                writer.write(buf.toString());
+            }
+            writer.write("\n]}\n");
+        }
+    }
+
+    private static String microseconds(final long nanos) {
+        return nanos / 1000 + "." + (char) ('0' + (Math.abs(nanos) / 100) % 10);
+    }
+
+    /** Quote a string as a JSON string literal. */
+    private static String quote(final String str) {
+        final StringBuilder buf = new StringBuilder(str.length() + 2);
+        buf.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf.append('\\').append(c);
+            } else if (c < 0x20) {
+                buf.append(String.format("\\u%04x", (int) c));
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.append('"').toString();
+    }
+}
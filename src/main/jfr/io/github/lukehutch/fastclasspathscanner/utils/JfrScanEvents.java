@@ -0,0 +1,206 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Emits ScanEvents as Java Flight Recorder events, so that scanning shows up in JDK Mission Control timelines. Only
+ * loaded by ScanEvents if the jdk.jfr API is available. The events are in the "FastClasspathScanner" category, and
+ * can be configured in a .jfc file like any JDK event, e.g. to change the threshold of MatchProcessor events.
+ */
+class JfrScanEvents extends ScanEvents {
+    @Name("io.github.lukehutch.fastclasspathscanner.Scan")
+    @Label("Classpath Scan")
+    @Category("FastClasspathScanner")
+    @Description("A call to FastClasspathScanner.scan()")
+    static class ScanEvent extends Event {
+        @Label("Classpath Elements")
+        int classpathElements;
+
+        @Label("Classfiles Read")
+        int classfilesRead;
+    }
+
+    @Name("io.github.lukehutch.fastclasspathscanner.ClasspathElement")
+    @Label("Classpath Element Scan")
+    @Category("FastClasspathScanner")
+    @Description("The scan of one directory or jarfile on the classpath")
+    static class ClasspathElementEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Skipped")
+        @Description("True if the classpath element was skipped because its jarfile summary had no matches")
+        boolean skipped;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Classfiles Read")
+        int classfilesRead;
+    }
+
+    @Name("io.github.lukehutch.fastclasspathscanner.Finalize")
+    @Label("Class Graph Finalization")
+    @Category("FastClasspathScanner")
+    @Description("Building the class graph and indices once all classfiles have been read")
+    static class FinalizeEvent extends Event {
+        @Label("Classes")
+        int numClasses;
+    }
+
+    @Name("io.github.lukehutch.fastclasspathscanner.MatchProcessor")
+    @Label("Match Processor")
+    @Category("FastClasspathScanner")
+    @Description("A call to a user-supplied match processor that took longer than the threshold")
+    @Threshold("10 ms")
+    static class MatchProcessorEvent extends Event {
+        @Label("Match Processor Class")
+        String matchProcessorClass;
+
+        @Label("Match")
+        String match;
+    }
+
+    private final EventType scanEventType = EventType.getEventType(ScanEvent.class);
+    private final EventType classpathElementEventType = EventType.getEventType(ClasspathElementEvent.class);
+    private final EventType finalizeEventType = EventType.getEventType(FinalizeEvent.class);
+    private final EventType matchProcessorEventType = EventType.getEventType(MatchProcessorEvent.class);
+
+    @Override
+    public Object beginScan() {
+        if (!scanEventType.isEnabled()) {
+            return null;
+        }
+        final ScanEvent event = new ScanEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endScan(final Object event, final int classpathElements, final int classfilesRead) {
+        if (event != null) {
+            final ScanEvent scanEvent = (ScanEvent) event;
+            scanEvent.end();
+            if (scanEvent.shouldCommit()) {
+                scanEvent.classpathElements = classpathElements;
+                scanEvent.classfilesRead = classfilesRead;
+                scanEvent.commit();
+            }
+        }
+    }
+
+    @Override
+    public Object beginClasspathElement() {
+        if (!classpathElementEventType.isEnabled()) {
+            return null;
+        }
+        final ClasspathElementEvent event = new ClasspathElementEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endClasspathElement(final Object event, final String path, final boolean skipped,
+            final long bytesRead, final int classfilesRead) {
+        if (event != null) {
+            final ClasspathElementEvent classpathElementEvent = (ClasspathElementEvent) event;
+            classpathElementEvent.end();
+            if (classpathElementEvent.shouldCommit()) {
+                classpathElementEvent.path = path;
+                classpathElementEvent.skipped = skipped;
+                classpathElementEvent.bytesRead = bytesRead;
+                classpathElementEvent.classfilesRead = classfilesRead;
+                classpathElementEvent.commit();
+            }
+        }
+    }
+
+    @Override
+    public Object beginFinalize() {
+        if (!finalizeEventType.isEnabled()) {
+            return null;
+        }
+        final FinalizeEvent event = new FinalizeEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endFinalize(final Object event, final int numClasses) {
+        if (event != null) {
+            final FinalizeEvent finalizeEvent = (FinalizeEvent) event;
+            finalizeEvent.end();
+            if (finalizeEvent.shouldCommit()) {
+                finalizeEvent.numClasses = numClasses;
+                finalizeEvent.commit();
+            }
+        }
+    }
+
+    @Override
+    public Object beginMatchProcessor() {
+        if (!matchProcessorEventType.isEnabled()) {
+            return null;
+        }
+        final MatchProcessorEvent event = new MatchProcessorEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endMatchProcessor(final Object event, final Object matchProcessor, final String match) {
+        endMatchProcessor(event, matchProcessor, match, null);
+    }
+
+    @Override
+    public void endMatchProcessor(final Object event, final Object matchProcessor, final String className,
+            final String memberName) {
+        if (event != null) {
+            final MatchProcessorEvent matchProcessorEvent = (MatchProcessorEvent) event;
+            matchProcessorEvent.end();
+            // shouldCommit() applies the threshold, so that only slow calls are recorded
+            if (matchProcessorEvent.shouldCommit()) {
+                matchProcessorEvent.matchProcessorClass = matchProcessor.getClass().getName();
+                matchProcessorEvent.match = memberName == null ? className : className + "." + memberName;
+                matchProcessorEvent.commit();
+            }
+        }
+    }
+}
@@ -29,35 +29,128 @@
 
 package io.github.lukehutch.fastclasspathscanner;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.Cls;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsSub;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsSubSub;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsWithCalls;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsWithConstants;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsWithDefaultValueAnnotation;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsWithFieldAnnotation;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsWithMethodAnnotation;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsWithReferences;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsWithStereotype;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsWithStereotypeSub;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ClsWithValueAnnotation;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.FieldAnnotation;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.Iface;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.IfaceSub;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.IfaceSubSub;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.IfaceWithAnnotation;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.Impl1;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.Impl1Sub;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.Impl1SubSub;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.Impl2;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.Impl2Sub;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.Impl2SubSub;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.MetaAnnotation;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.MethodAnnotation;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.StereotypeAnnotation;
+import io.github.lukehutch.fastclasspathscanner.whitelisted.ValueAnnotation;
+import io.github.lukehutch.fastclasspathscanner.utils.ClassfileReader;
+import io.github.lukehutch.fastclasspathscanner.utils.ClasspathDiff;
+import io.github.lukehutch.fastclasspathscanner.utils.ClasspathSnapshot;
+import io.github.lukehutch.fastclasspathscanner.utils.PooledInflater;
 import io.github.lukehutch.fastclasspathscanner.whitelisted.blacklisted.Blacklisted;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 
+import io.github.lukehutch.fastclasspathscanner.classgraph.AnnotationClassRef;
+import io.github.lukehutch.fastclasspathscanner.classgraph.AnnotationEnumValue;
+import io.github.lukehutch.fastclasspathscanner.classgraph.AnnotationInfo;
+import io.github.lukehutch.fastclasspathscanner.classgraph.FieldInfo;
+import io.github.lukehutch.fastclasspathscanner.classgraph.MappedClassGraphIndex;
+import io.github.lukehutch.fastclasspathscanner.classgraph.MethodInfo;
+import io.github.lukehutch.fastclasspathscanner.utils.MultiPatternMatcher;
+import io.github.lukehutch.fastclasspathscanner.utils.ScanStatistics;
+import io.github.lukehutch.fastclasspathscanner.utils.ScanStatistics.ClasspathElementStatistics;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
 import org.junit.Test;
 
 public class FastClasspathScannerTest {
     private static final String WHITELIST_PACKAGE = Cls.class.getPackage().getName();
     private static final String BLACKLIST_PACKAGE = Blacklisted.class.getPackage().getName();
 
+    private final List<File> tempDirs = new ArrayList<>();
+
+    private File createTempDir() throws IOException {
+        final File tempDir = Files.createTempDirectory("fcs-test").toFile();
+        tempDirs.add(tempDir);
+        return tempDir;
+    }
+
+    private static void deleteRecursively(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    @After
+    public void deleteTempDirs() {
+        for (final File tempDir : tempDirs) {
+            deleteRecursively(tempDir);
+        }
+    }
+
     @Test
     public void scan() throws Exception {
         final Set<String> allClasses = new FastClasspathScanner().scan().getNamesOfAllClasses();
@@ -164,4 +257,903 @@ public class FastClasspathScannerTest {
                 }).scan();
         assertTrue( "No file found.", found.get() ) ;
     }
+
+    @Test
+    public void scanFilePatternByteBuffer() throws Exception {
+        final Map<String, String> contents = new HashMap<>();
+        new FastClasspathScanner(WHITELIST_PACKAGE).matchFilenamePattern(".*\\.txt",
+                (absolutePath, relativePath, byteBuffer, length) -> {
+                    assertTrue(byteBuffer.isReadOnly() && byteBuffer.remaining() == length);
+                    final byte[] bytes = new byte[length];
+                    byteBuffer.get(bytes);
+                    contents.put(relativePath, new String(bytes, "UTF-8"));
+                }).scan();
+        assertTrue(contents.size() == 1 && contents.values().iterator().next().startsWith("Hello world"));
+
+        // A jarfile with an uncompressed (mapped) entry and a compressed (inflated) entry
+        final File tempDir = createTempDir();
+        final File jarFile = new File(tempDir, "resources.jar");
+        final byte[] storedBytes = "stored contents".getBytes("UTF-8");
+        final byte[] deflatedBytes = new byte[100000];
+        Arrays.fill(deflatedBytes, (byte) 'x');
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile))) {
+            final ZipEntry storedEntry = new ZipEntry("res/stored.dat");
+            storedEntry.setMethod(ZipEntry.STORED);
+            storedEntry.setSize(storedBytes.length);
+            final CRC32 crc = new CRC32();
+            crc.update(storedBytes);
+            storedEntry.setCrc(crc.getValue());
+            jar.putNextEntry(storedEntry);
+            jar.write(storedBytes);
+            jar.closeEntry();
+            jar.putNextEntry(new ZipEntry("res/deflated.dat"));
+            jar.write(deflatedBytes);
+            jar.closeEntry();
+        }
+        contents.clear();
+        final List<String> streamed = new ArrayList<>();
+        new FastClasspathScanner("res").overrideClasspath(jarFile.getPath())
+                .matchFilenamePattern(".*\\.dat", (absolutePath, relativePath, byteBuffer, length) -> {
+                    // Uncompressed entries are sliced out of the memory-mapped jarfile
+                    assertTrue(byteBuffer.isDirect() == relativePath.equals("res/stored.dat"));
+                    final byte[] bytes = new byte[length];
+                    byteBuffer.get(bytes);
+                    contents.put(relativePath, new String(bytes, "UTF-8"));
+                }).matchFilenamePattern(".*stored\\.dat", (absolutePath, relativePath, inputStream) -> {
+                    streamed.add(new BufferedReader(new InputStreamReader(inputStream)).readLine());
+                }).scan();
+        assertTrue(contents.get("res/stored.dat").equals("stored contents"));
+        assertTrue(contents.get("res/deflated.dat").equals(new String(deflatedBytes, "UTF-8")));
+        assertTrue(streamed.equals(Arrays.asList("stored contents")));
+        // The jarfile is closed and unmapped after the scan, including when FileMatchProcessors run on an executor
+        assertTrue(!isOpenOrMapped(jarFile));
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            contents.clear();
+            new FastClasspathScanner("res").overrideClasspath(jarFile.getPath())
+                    .enableConcurrentFileMatchProcessors(executor, 4, false)
+                    .matchFilenamePattern(".*stored\\.dat", (absolutePath, relativePath, byteBuffer, length) -> {
+                        final byte[] bytes = new byte[length];
+                        byteBuffer.get(bytes);
+                        contents.put(relativePath, new String(bytes, "UTF-8"));
+                    }).scan();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(contents.get("res/stored.dat").equals("stored contents"));
+        assertTrue(!isOpenOrMapped(jarFile));
+    }
+
+    /** Returns true if a file is open or memory-mapped by this process. Returns false if /proc is not available. */
+    private static boolean isOpenOrMapped(final File file) throws IOException {
+        final String path = file.getCanonicalPath();
+        final File maps = new File("/proc/self/maps");
+        if (maps.exists()) {
+            for (final String line : Files.readAllLines(maps.toPath())) {
+                if (line.endsWith(path)) {
+                    return true;
+                }
+            }
+        }
+        final File[] fds = new File("/proc/self/fd").listFiles();
+        if (fds != null) {
+            for (final File fd : fds) {
+                try {
+                    if (fd.getCanonicalPath().equals(path)) {
+                        return true;
+                    }
+                } catch (final IOException e) {
+                    // The file descriptor was closed while listing them
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void scanFilePatternConcurrently() throws Exception {
+        final File tempDir = createTempDir();
+        final File resDir = new File(tempDir, "res");
+        resDir.mkdir();
+        for (int i = 0; i < 50; i++) {
+            Files.write(new File(resDir, "file" + i + ".txt").toPath(), ("contents " + i).getBytes("UTF-8"));
+        }
+        // The order the files are found in when FileMatchProcessors are called on the scanning thread
+        final List<String> scanOrder = new ArrayList<>();
+        new FastClasspathScanner("res").overrideClasspath(tempDir.getPath()).matchFilenamePattern(".*\\.txt",
+                (absolutePath, relativePath, inputStream) -> scanOrder.add(relativePath)).scan();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Set<String> unordered = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            final List<String> serial = Collections.synchronizedList(new ArrayList<String>());
+            final AtomicInteger serialActive = new AtomicInteger();
+            final AtomicBoolean serialOverlapped = new AtomicBoolean();
+            new FastClasspathScanner("res").overrideClasspath(tempDir.getPath())
+                    .enableConcurrentFileMatchProcessors(executor, 8, true)
+                    .matchFilenamePattern(".*\\.txt", (absolutePath, relativePath, inputStream) -> {
+                        unordered.add(new BufferedReader(new InputStreamReader(inputStream)).readLine());
+                    }).matchFilenamePattern(".*\\.txt", (absolutePath, relativePath, byteBuffer, length) -> {
+                        if (serialActive.incrementAndGet() > 1) {
+                            serialOverlapped.set(true);
+                        }
+                        serial.add(relativePath);
+                        serialActive.decrementAndGet();
+                    }).scan();
+            // scan() waits for all processors to complete
+            assertTrue(unordered.size() == 50 && unordered.contains("contents 7"));
+            assertEquals(scanOrder, serial);
+            assertTrue(!serialOverlapped.get());
+
+            try {
+                new FastClasspathScanner("res").overrideClasspath(tempDir.getPath())
+                        .enableConcurrentFileMatchProcessors(executor, 2, false)
+                        .matchFilenamePattern(".*\\.txt", (absolutePath, relativePath, inputStream) -> {
+                            throw new IOException("Failed on " + relativePath);
+                        }).scan();
+                assertTrue("Expected exception", false);
+            } catch (final RuntimeException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void scanFilePatternSeriallyOnCallerRunsExecutor() throws Exception {
+        final File tempDir = createTempDir();
+        final File resDir = new File(tempDir, "res");
+        resDir.mkdir();
+        for (int i = 0; i < 20; i++) {
+            Files.write(new File(resDir, "file" + i + ".txt").toPath(), ("contents " + i).getBytes("UTF-8"));
+        }
+        final List<String> scanOrder = new ArrayList<>();
+        new FastClasspathScanner("res").overrideClasspath(tempDir.getPath()).matchFilenamePattern(".*\\.txt",
+                (absolutePath, relativePath, inputStream) -> scanOrder.add(relativePath)).scan();
+
+        // Executors that may run tasks on the submitting thread, directly or once saturated
+        final ThreadPoolExecutor saturatedExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (final Executor executor : Arrays.<Executor> asList(Runnable::run, saturatedExecutor)) {
+                final List<String> serial = Collections.synchronizedList(new ArrayList<String>());
+                new FastClasspathScanner("res").overrideClasspath(tempDir.getPath())
+                        .enableConcurrentFileMatchProcessors(executor, 4, true)
+                        .matchFilenamePattern(".*\\.txt", (absolutePath, relativePath, inputStream) -> {
+                            serial.add(relativePath);
+                        }).scan();
+                assertEquals(scanOrder, serial);
+            }
+        } finally {
+            saturatedExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void scanClassGraphIndex() throws Exception {
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE).scan();
+        final File indexFile = new File(createTempDir(), "classgraph.idx");
+        scanner.writeClassGraphIndex(indexFile);
+        final MappedClassGraphIndex index = MappedClassGraphIndex.open(indexFile);
+        assertEquals(scanner.getNamesOfAllClasses(), new HashSet<>(index.getNamesOfAllClasses()));
+        final Set<String> names = new HashSet<>(scanner.getNamesOfAllClasses());
+        for (final Class<?> cls : new Class<?>[] { Iface.class, IfaceSub.class, IfaceSubSub.class,
+                IfaceWithAnnotation.class, MetaAnnotation.class, StereotypeAnnotation.class, ValueAnnotation.class,
+                FieldAnnotation.class, MethodAnnotation.class, Inherited.class, Retention.class }) {
+            names.add(cls.getName());
+        }
+        names.add("not.a.Class");
+        for (final String name : names) {
+            assertEquals(name, scanner.getNamesOfSubclassesOf(name), index.getNamesOfSubclassesOf(name));
+            assertEquals(name, scanner.getNamesOfSuperclassesOf(name), index.getNamesOfSuperclassesOf(name));
+            assertEquals(name, scanner.getNamesOfSubinterfacesOf(name), index.getNamesOfSubinterfacesOf(name));
+            assertEquals(name, scanner.getNamesOfSuperinterfacesOf(name), index.getNamesOfSuperinterfacesOf(name));
+            assertEquals(name, scanner.getNamesOfClassesImplementing(name), index.getNamesOfClassesImplementing(
+                    name));
+            assertEquals(name, scanner.getNamesOfClassesWithAnnotation(name), index
+                    .getNamesOfClassesWithAnnotation(name));
+            assertEquals(name, scanner.getNamesOfInterfacesWithAnnotation(name), index
+                    .getNamesOfInterfacesWithAnnotation(name));
+            assertEquals(name, scanner.getNamesOfAnnotationsWithMetaAnnotation(name), index
+                    .getNamesOfAnnotationsWithMetaAnnotation(name));
+        }
+        assertTrue(index.getNamesOfSubclassesOf(Cls.class.getName()).contains(ClsSubSub.class.getName()));
+
+        // Files with a different format version are rejected
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+            raf.seek(4);
+            raf.writeInt(MappedClassGraphIndex.FORMAT_VERSION + 1);
+        }
+        try {
+            MappedClassGraphIndex.open(indexFile);
+            assertTrue("Expected exception", false);
+        } catch (final IOException e) {
+            assertTrue(e.getMessage().contains("version"));
+        }
+    }
+
+    /** Generate a random classfile for a class "incr.C<i>", interface "incr.I<i>" or annotation "incr.A<i>". */
+    private static byte[] randomClassfile(final Random random, final String name, final int numOfEachKind) {
+        final String kind = name.substring(name.lastIndexOf('.') + 1, name.lastIndexOf('.') + 2);
+        final int idx = Integer.parseInt(name.substring(name.lastIndexOf('.') + 2));
+        final List<String> annotations = new ArrayList<>();
+        final Map<String, Map<String, Integer>> annotationValues = new HashMap<>();
+        for (int i = 0; i < numOfEachKind; i++) {
+            if (random.nextInt(4) == 0) {
+                annotations.add("incr.A" + i);
+                if (random.nextBoolean()) {
+                    annotationValues.put("incr.A" + i, Collections.singletonMap("value", random.nextInt(3)));
+                }
+            }
+        }
+        final List<String> interfaces = new ArrayList<>();
+        final List<String> none = Collections.emptyList();
+        if (kind.equals("A")) {
+            if (random.nextBoolean()) {
+                annotations.add(Inherited.class.getName());
+            }
+            // Elements "value" and "other", either of which may have a default value
+            final Map<String, Integer> elementDefaults = new LinkedHashMap<>();
+            for (final String elementName : new String[] { "value", "other" }) {
+                if (random.nextBoolean()) {
+                    elementDefaults.put(elementName, random.nextInt(3));
+                }
+            }
+            return SyntheticClassfiles.classfile(name, SyntheticClassfiles.ACC_ANNOTATION, "java.lang.Object",
+                    Collections.singletonList("java.lang.annotation.Annotation"), annotations, annotationValues,
+                    elementDefaults, none, 0, 0);
+        }
+        // Interfaces and classes may only extend lower-numbered interfaces or classes, to avoid cycles
+        for (int i = 0; i < (kind.equals("I") ? idx : numOfEachKind); i++) {
+            if (random.nextInt(3) == 0) {
+                interfaces.add("incr.I" + i);
+            }
+        }
+        if (random.nextInt(4) == 0) {
+            interfaces.add(random.nextBoolean() ? "java.io.Serializable" : "ext.Iface");
+        }
+        final List<String> memberAnnotations = new ArrayList<>();
+        for (int i = 0; i < numOfEachKind; i++) {
+            if (random.nextInt(4) == 0) {
+                memberAnnotations.add("incr.A" + i);
+            }
+        }
+        if (kind.equals("I")) {
+            return SyntheticClassfiles.classfile(name, SyntheticClassfiles.ACC_INTERFACE, "java.lang.Object",
+                    interfaces, annotations, annotationValues, Collections.<String, Integer> emptyMap(),
+                    memberAnnotations, random.nextInt(2), random.nextInt(2));
+        }
+        final int superIdx = random.nextInt(idx + 2);
+        final String superclassName = superIdx < idx ? "incr.C" + superIdx : superIdx == idx ? "ext.Base"
+                : "java.lang.Object";
+        return SyntheticClassfiles.classfile(name, SyntheticClassfiles.ACC_CLASS, superclassName, interfaces,
+                annotations, annotationValues, Collections.<String, Integer> emptyMap(), memberAnnotations,
+                random.nextInt(3), random.nextInt(3));
+    }
+
+    @Test
+    public void updateClassGraphIncrementally() throws Exception {
+        final File tempDir = createTempDir();
+        final Random random = new Random(1);
+        final int numOfEachKind = 6;
+        final List<String> names = new ArrayList<>();
+        for (final String kind : new String[] { "A", "I", "C" }) {
+            for (int i = 0; i < numOfEachKind; i++) {
+                names.add("incr." + kind + i);
+            }
+        }
+        final HashMap<String, byte[]> classfiles = new HashMap<>();
+        for (final String name : names) {
+            classfiles.put(name, randomClassfile(random, name, numOfEachKind));
+        }
+        final File initialDir = new File(tempDir, "initial");
+        SyntheticClassfiles.writeDir(initialDir, classfiles);
+        final FastClasspathScanner scanner = new FastClasspathScanner("incr").overrideClasspath(
+                initialDir.getPath()).scan();
+        final List<String> queriedNames = new ArrayList<>(names);
+        queriedNames.addAll(Arrays.asList("ext.Base", "ext.Iface", "java.io.Serializable", "java.lang.Object",
+                Inherited.class.getName()));
+        for (int step = 0; step < 60; step++) {
+            // Add, replace or remove a random class, interface or annotation
+            final String name = names.get(random.nextInt(names.size()));
+            if (classfiles.containsKey(name) && random.nextInt(3) == 0) {
+                classfiles.remove(name);
+                scanner.removeClass(name);
+            } else {
+                final byte[] classfile = randomClassfile(random, name, numOfEachKind);
+                classfiles.put(name, classfile);
+                scanner.updateClassfile(new ByteArrayInputStream(classfile));
+            }
+
+            // The updated class graph should be the same as the class graph of a full rescan
+            final File stepDir = new File(tempDir, "step" + step);
+            SyntheticClassfiles.writeDir(stepDir, classfiles);
+            final FastClasspathScanner rescanner = new FastClasspathScanner("incr").overrideClasspath(
+                    stepDir.getPath()).scan();
+            assertEquals(rescanner.getNamesOfAllClasses(), scanner.getNamesOfAllClasses());
+            for (final String className : names) {
+                // Annotation values, including the default values of the current annotation types
+                assertEquals("Step " + step + ", " + className, rescanner.getAnnotationInfos(className).toString(),
+                        scanner.getAnnotationInfos(className).toString());
+            }
+            for (final String queriedName : queriedNames) {
+                final String msg = "Step " + step + ", " + queriedName;
+                assertEquals(msg, new HashSet<>(rescanner.getNamesOfSubclassesOf(queriedName)), new HashSet<>(
+                        scanner.getNamesOfSubclassesOf(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getNamesOfSuperclassesOf(queriedName)), new HashSet<>(
+                        scanner.getNamesOfSuperclassesOf(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getNamesOfSubinterfacesOf(queriedName)), new HashSet<>(
+                        scanner.getNamesOfSubinterfacesOf(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getNamesOfSuperinterfacesOf(queriedName)),
+                        new HashSet<>(scanner.getNamesOfSuperinterfacesOf(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getNamesOfClassesImplementing(queriedName)),
+                        new HashSet<>(scanner.getNamesOfClassesImplementing(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getNamesOfClassesWithAnnotation(queriedName)),
+                        new HashSet<>(scanner.getNamesOfClassesWithAnnotation(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getNamesOfInterfacesWithAnnotation(queriedName)),
+                        new HashSet<>(scanner.getNamesOfInterfacesWithAnnotation(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getNamesOfAnnotationsWithMetaAnnotation(queriedName)),
+                        new HashSet<>(scanner.getNamesOfAnnotationsWithMetaAnnotation(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getMethodsWithAnnotation(queriedName)), new HashSet<>(
+                        scanner.getMethodsWithAnnotation(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getFieldsWithAnnotation(queriedName)), new HashSet<>(
+                        scanner.getFieldsWithAnnotation(queriedName)));
+                assertEquals(msg, new HashSet<>(rescanner.getNamesOfClassesWithAnnotation(queriedName,
+                        a -> Integer.valueOf(1).equals(a.getValue("value")))), new HashSet<>(scanner
+                        .getNamesOfClassesWithAnnotation(queriedName, a -> Integer.valueOf(1).equals(a.getValue(
+                                "value")))));
+            }
+        }
+
+        // Updates are not supported once parts of the class graph have been discarded
+        try {
+            new FastClasspathScanner("incr").overrideClasspath(initialDir.getPath()).enableOffHeapClassGraph()
+                    .scan().removeClass(names.get(0));
+            assertTrue("Expected exception", false);
+        } catch (final IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void multiPatternMatcher() throws Exception {
+        final String[] patterns = { ".*\\.txt", ".*\\.html", "^templates/.*", "templates/.*\\.html$",
+                "META-INF/MANIFEST\\.MF", ".*", "a.*b.*c", "[a-z]+/x\\.txt", ".*\\.txt", "templates/.*+html" };
+        final MultiPatternMatcher<Integer> matcher = new MultiPatternMatcher<>();
+        for (int i = 0; i < patterns.length; i++) {
+            matcher.add(patterns[i], i);
+        }
+        for (final String path : new String[] { "file.txt", "dir/x.txt", "templates/index.html", "templates/",
+                "templates/a\nb.html", "META-INF/MANIFEST.MF", "META-INF/MANIFEST.MF2", "abc", "b.html", "",
+                ".txt", "templatesx.html" }) {
+            final List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < patterns.length; i++) {
+                if (Pattern.matches(patterns[i], path)) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(path, expected, matcher.getMatches(path));
+        }
+    }
+
+    @Test
+    public void scanMethodAnnotation() throws Exception {
+        final List<String> collector = new ArrayList<>();
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE).matchMethodsWithAnnotation(
+                MethodAnnotation.class,
+                (className, methodName, methodDescriptor) -> collector.add(className + "." + methodName
+                        + methodDescriptor)).scan();
+        assertTrue(collector.contains(ClsWithMethodAnnotation.class.getName()
+                + ".annotatedMethod(Ljava/lang/String;)V"));
+        assertTrue(collector.size() == 1);
+        final List<MethodInfo> methods = scanner.getMethodsWithAnnotation(MethodAnnotation.class);
+        assertTrue(methods.contains(new MethodInfo(ClsWithMethodAnnotation.class.getName(), "annotatedMethod",
+                "(Ljava/lang/String;)V")));
+        assertTrue(scanner.getNamesOfClassesWithMethodAnnotation(MethodAnnotation.class.getName()).contains(
+                ClsWithMethodAnnotation.class.getName()));
+        assertTrue(!scanner.getNamesOfClassesWithAnnotation(MethodAnnotation.class).contains(
+                ClsWithMethodAnnotation.class.getName()));
+    }
+
+    @Test
+    public void scanFieldAnnotation() throws Exception {
+        final List<String> collector = new ArrayList<>();
+        final List<Object> constantValues = new ArrayList<>();
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE)
+                .matchFieldsWithAnnotation(FieldAnnotation.class,
+                        (className, fieldName, fieldDescriptor) -> collector.add(fieldName + ":" + fieldDescriptor))
+                .matchStaticFinalFieldNames(
+                        (className, fieldName, fieldConstantValue) -> constantValues.add(fieldConstantValue),
+                        ClsWithFieldAnnotation.class.getName() + ".ANNOTATED_CONSTANT").scan();
+        assertTrue(collector.contains("ANNOTATED_CONSTANT:Ljava/lang/String;"));
+        assertTrue(collector.contains("annotatedField:I"));
+        assertTrue(collector.size() == 2);
+        assertTrue(constantValues.contains("value"));
+        final List<FieldInfo> fields = scanner.getFieldsWithAnnotation(FieldAnnotation.class);
+        assertTrue(fields.contains(new FieldInfo(ClsWithFieldAnnotation.class.getName(), "annotatedField", "I")));
+        assertTrue(!fields.contains(new FieldInfo(ClsWithFieldAnnotation.class.getName(), "unannotatedField", "I")));
+        assertTrue(scanner.getNamesOfClassesWithFieldAnnotation(FieldAnnotation.class.getName()).equals(
+                Arrays.asList(ClsWithFieldAnnotation.class.getName())));
+    }
+
+    @Test
+    public void scanMetaAnnotationAndInherited() throws Exception {
+        final List<Class<?>> collector = new ArrayList<>();
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE).matchClassesWithAnnotation(
+                MetaAnnotation.class, collector::add).scan();
+        assertTrue(collector.contains(ClsWithStereotype.class));
+        assertTrue(collector.contains(ClsWithStereotypeSub.class));
+        assertTrue(scanner.getNamesOfClassesWithAnnotation(StereotypeAnnotation.class).contains(
+                ClsWithStereotype.class.getName()));
+        assertTrue(scanner.getNamesOfClassesWithAnnotation(StereotypeAnnotation.class).contains(
+                ClsWithStereotypeSub.class.getName()));
+        assertTrue(!scanner.getNamesOfClassesWithAnnotation(MetaAnnotation.class).contains(Cls.class.getName()));
+        assertTrue(!scanner.getNamesOfClassesWithAnnotation("java.lang.annotation.Retention").contains(
+                ClsWithStereotype.class.getName()));
+        assertTrue(scanner.getNamesOfInterfacesWithAnnotation(MetaAnnotation.class).contains(
+                IfaceWithAnnotation.class.getName()));
+        assertTrue(scanner.getNamesOfInterfacesWithAnnotation(MetaAnnotation.class).contains(
+                StereotypeAnnotation.class.getName()));
+        assertTrue(scanner.getNamesOfAnnotationsWithMetaAnnotation(MetaAnnotation.class).equals(
+                Arrays.asList(StereotypeAnnotation.class.getName())));
+    }
+
+    @Test
+    public void scanAnnotationValues() throws Exception {
+        final List<Class<?>> collector = new ArrayList<>();
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE).matchClassesWithAnnotation(
+                ValueAnnotation.class, a -> "explicit".equals(a.getValue("name")), collector::add).scan();
+        assertTrue(collector.equals(Arrays.asList(ClsWithValueAnnotation.class)));
+
+        final AnnotationInfo explicit = scanner.getAnnotationInfo(ClsWithValueAnnotation.class.getName(),
+                ValueAnnotation.class.getName());
+        assertTrue(explicit.getValue("priority").equals(1));
+        assertTrue(explicit.getValue("kind").equals(
+                new AnnotationEnumValue(ElementType.class.getName(), ElementType.FIELD.name())));
+        assertTrue(((AnnotationClassRef) explicit.getValue("type")).getClassName().equals(Cls.class.getName()));
+        assertTrue(Arrays.equals((Object[]) explicit.getValue("tags"), new Object[] { "x", "y" }));
+
+        final AnnotationInfo defaults = scanner.getAnnotationInfo(ClsWithDefaultValueAnnotation.class.getName(),
+                ValueAnnotation.class.getName());
+        assertTrue(defaults.getValue("name").equals("defaults"));
+        assertTrue(defaults.getValue("priority").equals(5));
+        assertTrue(((AnnotationClassRef) defaults.getValue("type")).getClassName().equals(Object.class.getName()));
+        assertTrue(scanner.getNamesOfClassesWithAnnotation(ValueAnnotation.class.getName(),
+                a -> ((Integer) a.getValue("priority")) > 2).equals(
+                Arrays.asList(ClsWithDefaultValueAnnotation.class.getName())));
+    }
+
+    @Test
+    public void scanStaticFinalFieldPatterns() throws Exception {
+        final Map<String, Object> stringKeys = new HashMap<>();
+        final Map<String, Object> annotatedConstants = new HashMap<>();
+        new FastClasspathScanner(WHITELIST_PACKAGE)
+                .matchStaticFinalFields(".*\\.ClsWithConst.*", ".*_KEY", String.class, null,
+                        (className, fieldName, fieldConstantValue) -> stringKeys.put(fieldName, fieldConstantValue))
+                .matchStaticFinalFields(null, null, null, FieldAnnotation.class,
+                        (className, fieldName, fieldConstantValue) -> annotatedConstants.put(className + "."
+                                + fieldName, fieldConstantValue)).scan();
+        final Map<String, Object> expectedStringKeys = new HashMap<>();
+        expectedStringKeys.put("FOO_KEY", "foo");
+        expectedStringKeys.put("BAR_KEY", "bar");
+        assertTrue(stringKeys.equals(expectedStringKeys));
+        assertTrue(annotatedConstants.get(ClsWithFieldAnnotation.class.getName() + ".ANNOTATED_CONSTANT").equals(
+                "value"));
+        assertTrue(annotatedConstants.size() == 1);
+    }
+
+    @Test
+    public void scanConstantPool() throws Exception {
+        final List<String> referencing = new ArrayList<>();
+        final List<String> stringConstants = new ArrayList<>();
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE)
+                .matchClassesReferencing("java.util.concurrent.ConcurrentHashMap",
+                        (className, matchingConstant) -> referencing.add(className))
+                .matchClassesContainingStringConstant("jdbc:",
+                        (className, matchingConstant) -> stringConstants.add(matchingConstant))
+                .enableConstantPoolIndex().scan();
+        assertTrue(referencing.equals(Arrays.asList(ClsWithReferences.class.getName())));
+        assertTrue(stringConstants.equals(Arrays.asList("jdbc:h2:mem:test")));
+        assertTrue(scanner.getNamesOfClassesReferencing("java.util.concurrent.ConcurrentHashMap").equals(
+                Arrays.asList(ClsWithReferences.class.getName())));
+        assertTrue(scanner.getNamesOfClassesContainingStringConstant("jdbc:").equals(
+                Arrays.asList(ClsWithReferences.class.getName())));
+        assertTrue(scanner.getNamesOfClassesReferencing(Cls.class.getName()).contains(ClsSub.class.getName()));
+    }
+
+    @Test
+    public void scanClassDependencyGraph() throws Exception {
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE).enableClassDependencyGraph()
+                .scan();
+        final List<String> referenced = scanner.getNamesOfClassesReferencedBy(ClsWithReferences.class.getName());
+        assertTrue(referenced.contains("java.util.concurrent.ConcurrentHashMap"));
+        assertTrue(referenced.contains("java.lang.String"));
+        assertTrue(!referenced.contains(ClsWithReferences.class.getName()));
+        final List<String> reachable = scanner.getNamesOfClassesReachableFrom(ClsSubSub.class.getName());
+        assertTrue(reachable.get(0).equals(ClsSubSub.class.getName()));
+        assertTrue(reachable.contains(ClsSub.class.getName()));
+        assertTrue(reachable.contains(Cls.class.getName()));
+        assertTrue(reachable.contains("java.lang.Object"));
+        assertTrue(!reachable.contains(ClsWithReferences.class.getName()));
+    }
+
+    @Test
+    public void scanMethodCalls() throws Exception {
+        final List<String> matchedCallers = new ArrayList<>();
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE).matchCallersOf(
+                ClsWithReferences.class.getName(), "getUrl", "()Ljava/lang/String;",
+                (caller, callee) -> matchedCallers.add(caller.getMethodName())).scan();
+        assertTrue(matchedCallers.size() == 2);
+        assertTrue(matchedCallers.contains("callWithSwitches"));
+        assertTrue(matchedCallers.contains("callWithoutSwitches"));
+        final List<MethodInfo> callers = scanner.getCallersOf(ClsWithReferences.class.getName(), "getUrl", null);
+        assertTrue(callers.contains(new MethodInfo(ClsWithCalls.class.getName(), "callWithSwitches",
+                "(II)Ljava/lang/String;")));
+        assertTrue(scanner.getCallersOf(ClsWithReferences.class.getName(), "getUrl", "()V").isEmpty());
+        final List<MethodInfo> constructorCallers = scanner.getCallersOf(ClsWithReferences.class.getName(),
+                "<init>", null);
+        assertTrue(constructorCallers.size() == 2);
+    }
+
+    @Test
+    public void scanMethodCallsSkipsMalformedMethodBodies() throws Exception {
+        final File tempDir = createTempDir();
+        final File jar = new File(tempDir, "calls.jar");
+        createJar(jar, ClsWithCalls.class, ClsWithReferences.class);
+        // Replace the return instruction of a one-byte method body with a truncated tableswitch
+        final byte[] classfile = SyntheticClassfiles.classfile("malformed.Cls", SyntheticClassfiles.ACC_CLASS,
+                "java.lang.Object", Collections.<String> emptyList(), Collections.<String> emptyList(), 0, 1);
+        final byte[] code = { 0, 0, 0, 1, (byte) 0xb1, 0, 0, 0, 0 };
+        int codeIdx = -1;
+        for (int i = 0; i + code.length <= classfile.length && codeIdx < 0; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(classfile, i, i + code.length), code)) {
+                codeIdx = i + 4;
+            }
+        }
+        assertTrue(codeIdx >= 0);
+        classfile[codeIdx] = (byte) 0xaa;
+        final File malformedJar = new File(tempDir, "malformed.jar");
+        SyntheticClassfiles.writeJar(malformedJar, Collections.singletonMap("malformed.Cls", classfile));
+
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE, "malformed")
+                .overrideClasspath(malformedJar.getPath() + File.pathSeparator + jar.getPath())
+                .enableMethodCallIndex().scan();
+        assertTrue(scanner.getNamesOfAllClasses().contains("malformed.Cls"));
+        assertTrue(scanner.getCallersOf(ClsWithReferences.class.getName(), "getUrl", null).size() == 2);
+    }
+
+    /** Create a jarfile containing the classfiles of the given classes. */
+    private static void createJar(final File jarFile, final Class<?>... classes) throws IOException {
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (final Class<?> cls : classes) {
+                final String path = cls.getName().replace('.', '/') + ".class";
+                jar.putNextEntry(new ZipEntry(path));
+                try (InputStream inputStream = cls.getClassLoader().getResourceAsStream(path)) {
+                    final byte[] buf = new byte[4096];
+                    for (int n; (n = inputStream.read(buf)) > 0;) {
+                        jar.write(buf, 0, n);
+                    }
+                }
+                jar.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    public void scanWithJarSummaries() throws Exception {
+        final File tempDir = createTempDir();
+        final File clsJar = new File(tempDir, "cls.jar");
+        final File otherJar = new File(tempDir, "other.jar");
+        createJar(clsJar, Cls.class, ClsSub.class, ClsSubSub.class);
+        createJar(otherJar, Blacklisted.class);
+        final File cacheDir = new File(tempDir, "cache");
+        final String classpath = clsJar.getPath() + File.pathSeparator + otherJar.getPath();
+        for (int i = 0; i < 2; i++) {
+            final List<String> subclasses = new ArrayList<>();
+            final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE)
+                    .overrideClasspath(classpath).setJarSummaryCacheDir(cacheDir)
+                    .matchSubclassesOf(Cls.class, c -> subclasses.add(c.getName())).scan();
+            assertTrue(subclasses.size() == 2);
+            assertTrue(subclasses.contains(ClsSub.class.getName()));
+            assertTrue(subclasses.contains(ClsSubSub.class.getName()));
+            // The first scan builds the summaries, the second scan uses them to skip the jar without matches
+            assertTrue(scanner.getNamesOfAllClasses().contains(Blacklisted.class.getName()) == (i == 0));
+        }
+        assertTrue(cacheDir.list().length == 2);
+    }
+
+    @Test
+    public void classpathChangesSinceScan() throws Exception {
+        final File tempDir = createTempDir();
+        final File dir = new File(tempDir, "classes");
+        final File jar = new File(tempDir, "lib.jar");
+        final List<String> none = Collections.emptyList();
+        final HashMap<String, byte[]> dirClassfiles = new HashMap<>();
+        for (final String name : new String[] { "snap.A", "snap.B", "snap.C" }) {
+            dirClassfiles.put(name, SyntheticClassfiles.classfile(name, SyntheticClassfiles.ACC_CLASS,
+                    "java.lang.Object", none, none, 0, 0));
+        }
+        SyntheticClassfiles.writeDir(dir, dirClassfiles);
+        final File resource = new File(dir, "snap/config.txt");
+        Files.write(resource.toPath(), "a=1".getBytes("UTF-8"));
+        final HashMap<String, byte[]> jarClassfiles = new HashMap<>();
+        for (final String name : new String[] { "snap.D", "snap.E", "snap.A" }) {
+            jarClassfiles.put(name, SyntheticClassfiles.classfile(name, SyntheticClassfiles.ACC_CLASS,
+                    "java.lang.Object", none, none, 0, 0));
+        }
+        SyntheticClassfiles.writeJar(jar, jarClassfiles);
+        final FastClasspathScanner scanner = new FastClasspathScanner("snap").overrideClasspath(
+                dir.getPath() + File.pathSeparator + jar.getPath()).enableClasspathSnapshots().scan();
+        final ClasspathSnapshot firstSnapshot = scanner.getClasspathSnapshot();
+        assertEquals(new HashSet<>(Arrays.asList("snap/A.class", "snap/B.class", "snap/C.class", "snap/D.class",
+                "snap/E.class", "snap/config.txt")), firstSnapshot.getPaths());
+        assertTrue(scanner.getClasspathChangesSinceScan().isEmpty());
+
+        // Add, remove and modify classes in the directory and the jarfile, and modify a resource
+        SyntheticClassfiles.writeDir(dir, Collections.singletonMap("snap.F", SyntheticClassfiles.classfile("snap.F",
+                SyntheticClassfiles.ACC_CLASS, "java.lang.Object", none, none, 0, 0)));
+        assertTrue(new File(dir, "snap/B.class").delete());
+        Files.write(resource.toPath(), "a=12".getBytes("UTF-8"));
+        // Make sure the modification is newer than the scan, even with coarse filesystem timestamps
+        assertTrue(resource.setLastModified(resource.lastModified() + 2000));
+        jarClassfiles.put("snap.E", SyntheticClassfiles.classfile("snap.E", SyntheticClassfiles.ACC_CLASS,
+                "snap.D", none, none, 1, 0));
+        // A.class in the jarfile is masked by A.class in the directory, so changing it is not a change
+        jarClassfiles.put("snap.A", SyntheticClassfiles.classfile("snap.A", SyntheticClassfiles.ACC_CLASS,
+                "snap.D", none, none, 1, 0));
+        SyntheticClassfiles.writeJar(jar, jarClassfiles);
+        final ClasspathDiff diff = scanner.getClasspathChangesSinceScan();
+        assertEquals(Arrays.asList("snap.F"), diff.getAddedClasses());
+        assertEquals(Arrays.asList("snap.B"), diff.getRemovedClasses());
+        assertEquals(Arrays.asList("snap.E"), diff.getModifiedClasses());
+        assertEquals(Arrays.asList("snap/config.txt"), diff.getModifiedResources());
+        assertTrue(diff.getAddedResources().isEmpty() && diff.getRemovedResources().isEmpty());
+        // Finding the changes does not reset the baseline of classpathContentsModifiedSinceScan()
+        assertTrue(scanner.classpathContentsModifiedSinceScan());
+
+        // Compare the snapshots of two scans
+        scanner.scan();
+        assertEquals(diff.toString(), firstSnapshot.diff(scanner.getClasspathSnapshot()).toString());
+        assertTrue(scanner.getClasspathChangesSinceScan().isEmpty());
+    }
+
+    @Test
+    public void scanStatistics() throws Exception {
+        final File tempDir = createTempDir();
+        final File clsJar = new File(tempDir, "cls.jar");
+        final File dupJar = new File(tempDir, "dup.jar");
+        createJar(clsJar, Cls.class, ClsSub.class);
+        createJar(dupJar, ClsSub.class, ClsSubSub.class);
+        final FastClasspathScanner scanner = new FastClasspathScanner(WHITELIST_PACKAGE).overrideClasspath(
+                clsJar.getPath() + File.pathSeparator + dupJar.getPath()).scan();
+        final ScanStatistics stats = scanner.getScanStatistics();
+        assertTrue(!stats.isScanInProgress());
+        assertTrue(stats.getClasspathElementCount() == 2);
+        assertTrue(stats.getClassfilesRead() == 4);
+        assertTrue(stats.getClassfilesMasked() == 1);
+        assertTrue(stats.getBytesRead() > 0);
+        final List<ClasspathElementStatistics> elementStats = stats.getClasspathElementStatistics();
+        assertTrue(elementStats.get(0).getPath().equals(clsJar.getPath()));
+        assertTrue(elementStats.get(1).getClassfilesMasked() == 1);
+        assertTrue(stats.getSlowestClasspathElements().length == 2);
+
+        scanner.registerScanStatisticsMBean("test");
+        try {
+            final ObjectName objectName = new ObjectName(
+                    "io.github.lukehutch.fastclasspathscanner:type=ScanStatistics,name=\"test\"");
+            assertTrue(((Integer) ManagementFactory.getPlatformMBeanServer().getAttribute(objectName,
+                    "ClassfilesRead")) == 4);
+        } finally {
+            scanner.unregisterScanStatisticsMBean();
+        }
+
+        // Parsing, finalizing, match processors and loading matching classes are disjoint parts of the scan
+        final ScanStatistics slowStats = new FastClasspathScanner(WHITELIST_PACKAGE)
+                .matchStaticFinalFieldNames((className, fieldName, fieldConstantValue) -> spin(200),
+                        ClsWithConstants.class.getName() + ".FOO_KEY")
+                .matchSubclassesOf(Cls.class, subclass -> spin(200)).scan().getScanStatistics();
+        // One static final field match and two subclass matches, including the match made during parsing
+        assertTrue(slowStats.getMatchProcessorTimeMillis() >= 600);
+        assertTrue(slowStats.getParseTimeMillis() + slowStats.getFinalizeTimeMillis()
+                + slowStats.getMatchProcessorTimeMillis() + slowStats.getClassLoadTimeMillis() <= slowStats
+                .getScanTimeMillis());
+    }
+
+    /** Busy-wait for the given number of milliseconds. */
+    private static void spin(final long millis) {
+        final long end = System.nanoTime() + millis * 1000000;
+        while (System.nanoTime() < end) {
+            // Wait
+        }
+    }
+
+    @Test
+    public void scanTrace() throws Exception {
+        final File tempDir = createTempDir();
+        final File traceFile = new File(tempDir, "trace.json");
+        new FastClasspathScanner(WHITELIST_PACKAGE).enableScanTrace(traceFile)
+                .matchSubclassesOf(Cls.class, c -> {
+                }).matchFilenamePattern(".*\\.txt", (absolutePath, relativePath, inputStream) -> {
+                }).scan();
+        final String trace = new String(Files.readAllBytes(traceFile.toPath()), "UTF-8");
+        assertTrue(trace.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(trace.contains("\"name\":\"scanDir\""));
+        assertTrue(trace.contains("\"name\":\"finalizeNodes\""));
+        assertTrue(trace.contains("\"name\":\"ClassMatcher.lookForMatches\""));
+        assertTrue(trace.contains("\"name\":\"FileMatchProcessor\""));
+        assertTrue(trace.contains("\"name\":\"thread_name\""));
+    }
+
+    @Test
+    public void scanBoundedMemory() throws Exception {
+        final FastClasspathScanner fullScanner = new FastClasspathScanner(WHITELIST_PACKAGE).matchSubclassesOf(
+                Cls.class, c -> {
+                }).scan();
+        final FastClasspathScanner boundedScanner = new FastClasspathScanner(WHITELIST_PACKAGE)
+                .enableBoundedMemoryMode(IfaceSub.class.getName(), ValueAnnotation.class.getName())
+                .matchSubclassesOf(Cls.class, c -> {
+                }).scan();
+        assertTrue(new HashSet<>(boundedScanner.getNamesOfSubclassesOf(Cls.class)).equals(
+                new HashSet<>(fullScanner.getNamesOfSubclassesOf(Cls.class))));
+        assertTrue(new HashSet<>(boundedScanner.getNamesOfClassesImplementing(IfaceSub.class)).equals(
+                new HashSet<>(fullScanner.getNamesOfClassesImplementing(IfaceSub.class))));
+        assertTrue(boundedScanner.getNamesOfClassesWithAnnotation(ValueAnnotation.class.getName(),
+                a -> ((Integer) a.getValue("priority")) > 2).equals(
+                Arrays.asList(ClsWithDefaultValueAnnotation.class.getName())));
+
+        // Classes that are not on a path to a queried name are discarded
+        final Set<String> retainedClasses = boundedScanner.getNamesOfAllClasses();
+        assertTrue(retainedClasses.contains(ClsSubSub.class.getName()));
+        assertTrue(retainedClasses.contains(Impl1Sub.class.getName()));
+        assertTrue(!retainedClasses.contains(ClsWithConstants.class.getName()));
+        assertTrue(!retainedClasses.contains(ClsWithCalls.class.getName()));
+        assertTrue(boundedScanner.getNamesOfClassesImplementing(Iface.class).isEmpty());
+        assertTrue(boundedScanner.getScanStatistics().getClassGraphFootprintBytes() > 0);
+        assertTrue(boundedScanner.getScanStatistics().getClassGraphFootprintBytes() < fullScanner
+                .getScanStatistics().getClassGraphFootprintBytes());
+    }
+
+    @Test
+    public void scanOffHeapClassGraph() throws Exception {
+        final FastClasspathScanner onHeap = new FastClasspathScanner(WHITELIST_PACKAGE).scan();
+        final FastClasspathScanner offHeap = new FastClasspathScanner(WHITELIST_PACKAGE).enableOffHeapClassGraph()
+                .scan();
+        assertTrue(offHeap.getNamesOfAllClasses().equals(onHeap.getNamesOfAllClasses()));
+        final Set<String> names = new HashSet<>(onHeap.getNamesOfAllClasses());
+        for (final Class<?> iface : Arrays.asList(Iface.class, IfaceSub.class, IfaceSubSub.class,
+                IfaceWithAnnotation.class, MetaAnnotation.class, StereotypeAnnotation.class, ValueAnnotation.class,
+                MethodAnnotation.class, FieldAnnotation.class, Inherited.class, Retention.class)) {
+            names.add(iface.getName());
+        }
+        for (final String name : names) {
+            assertTrue(name, new HashSet<>(offHeap.getNamesOfSubclassesOf(name)).equals(
+                    new HashSet<>(onHeap.getNamesOfSubclassesOf(name))));
+            assertTrue(name, new HashSet<>(offHeap.getNamesOfSuperclassesOf(name)).equals(
+                    new HashSet<>(onHeap.getNamesOfSuperclassesOf(name))));
+            assertTrue(name, new HashSet<>(offHeap.getNamesOfSubinterfacesOf(name)).equals(
+                    new HashSet<>(onHeap.getNamesOfSubinterfacesOf(name))));
+            assertTrue(name, new HashSet<>(offHeap.getNamesOfSuperinterfacesOf(name)).equals(
+                    new HashSet<>(onHeap.getNamesOfSuperinterfacesOf(name))));
+            assertTrue(name, new HashSet<>(offHeap.getNamesOfClassesImplementing(name)).equals(
+                    new HashSet<>(onHeap.getNamesOfClassesImplementing(name))));
+            assertTrue(name, new HashSet<>(offHeap.getNamesOfClassesWithAnnotation(name)).equals(
+                    new HashSet<>(onHeap.getNamesOfClassesWithAnnotation(name))));
+            assertTrue(name, new HashSet<>(offHeap.getNamesOfInterfacesWithAnnotation(name)).equals(
+                    new HashSet<>(onHeap.getNamesOfInterfacesWithAnnotation(name))));
+            assertTrue(name, new HashSet<>(offHeap.getNamesOfAnnotationsWithMetaAnnotation(name)).equals(
+                    new HashSet<>(onHeap.getNamesOfAnnotationsWithMetaAnnotation(name))));
+        }
+        assertTrue(offHeap.getNamesOfClassesWithAnnotation(ValueAnnotation.class.getName(),
+                a -> ((Integer) a.getValue("priority")) > 2).equals(
+                Arrays.asList(ClsWithDefaultValueAnnotation.class.getName())));
+        assertTrue(offHeap.getScanStatistics().getClassGraphOffHeapBytes() > 0);
+    }
+
+    @Test
+    public void classfileReaderReusesPerThreadScratchBuffers() throws Exception {
+        final ClassfileReader reader = ClassfileReader.acquire();
+        try {
+            for (final Class<?> cls : Arrays.asList(Cls.class, ClsWithConstants.class, ClsSub.class)) {
+                try (InputStream inputStream = getClass().getClassLoader()
+                        .getResourceAsStream(cls.getName().replace('.', '/') + ".class")) {
+                    reader.read(inputStream, -1);
+                }
+                assertTrue(reader.readHeader());
+                reader.readUnsignedShort();
+                assertEquals(cls.getName(), reader.readRefdClassName());
+            }
+            // A nested acquire on the same thread must not share the in-use scratch buffers
+            final ClassfileReader nested = ClassfileReader.acquire();
+            assertTrue(nested != reader);
+            nested.read(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 }), 4);
+            assertTrue(!nested.readHeader());
+            nested.release();
+        } finally {
+            reader.release();
+        }
+        final ClassfileReader reacquired = ClassfileReader.acquire();
+        assertTrue(reacquired == reader);
+        reacquired.release();
+    }
+
+    @Test
+    public void scanNonAsciiClassNames() throws Exception {
+        final File jar = new File(createTempDir(), "utf.jar");
+        final List<String> none = Collections.emptyList();
+        final String annotationName = "utf.Ann\u00e9";
+        final String superclassName = "utf.Base\u4e2d";
+        final String className = "utf.Caf\u00e9";
+        final HashMap<String, byte[]> classfiles = new HashMap<>();
+        classfiles.put(annotationName, SyntheticClassfiles.classfile(annotationName,
+                SyntheticClassfiles.ACC_ANNOTATION, "java.lang.Object",
+                Collections.singletonList("java.lang.annotation.Annotation"), none, 0, 0));
+        classfiles.put(superclassName, SyntheticClassfiles.classfile(superclassName, SyntheticClassfiles.ACC_CLASS,
+                "java.lang.Object", none, none, 0, 0));
+        classfiles.put(className, SyntheticClassfiles.classfile(className, SyntheticClassfiles.ACC_CLASS,
+                superclassName, none, Collections.singletonList(annotationName), 1, 1));
+        SyntheticClassfiles.writeJar(jar, classfiles);
+        final FastClasspathScanner scanner = new FastClasspathScanner("utf").overrideClasspath(jar.getPath())
+                .scan();
+        assertEquals(Arrays.asList(className), scanner.getNamesOfSubclassesOf(superclassName));
+        assertEquals(Arrays.asList(className), scanner.getNamesOfClassesWithAnnotation(annotationName));
+
+        // Names are pre-encoded in modified UTF8, the encoding of the constant pool
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        new DataOutputStream(encoded).writeUTF("a\u0000\u00e9\u4e2d/");
+        assertTrue(Arrays.equals(Arrays.copyOfRange(encoded.toByteArray(), 2, encoded.size()),
+                ClassfileReader.encode("a\u0000\u00e9\u4e2d/")));
+    }
+
+    @Test
+    public void scanDeflatedJarWithPooledInflaters() throws Exception {
+        final File tempDir = createTempDir();
+        final File dir = new File(tempDir, "classes");
+        final File jar = new File(tempDir, "classes.jar");
+        final Map<String, byte[]> classfiles = SyntheticClassfiles.tree("defl", 200, 4, 3);
+        // A classfile larger than the initial size of the scratch buffer
+        classfiles.put("defl.Big", SyntheticClassfiles.classfile("defl.Big", SyntheticClassfiles.ACC_CLASS,
+                "defl.C0", Collections.<String> emptyList(), Collections.singletonList("defl.Ann"), 3000, 10));
+        SyntheticClassfiles.writeDir(dir, classfiles);
+        SyntheticClassfiles.writeJar(jar, classfiles);
+        final FastClasspathScanner dirScanner = new FastClasspathScanner("defl").overrideClasspath(dir.getPath())
+                .scan();
+        final FastClasspathScanner jarScanner = new FastClasspathScanner("defl").overrideClasspath(jar.getPath())
+                .scan();
+        assertEquals(dirScanner.getNamesOfAllClasses(), jarScanner.getNamesOfAllClasses());
+        assertTrue(jarScanner.getNamesOfSubclassesOf("defl.C0").contains("defl.Big"));
+        assertEquals(new HashSet<>(dirScanner.getNamesOfSubclassesOf("defl.C0")),
+                new HashSet<>(jarScanner.getNamesOfSubclassesOf("defl.C0")));
+        assertEquals(new HashSet<>(dirScanner.getNamesOfClassesWithAnnotation("defl.Ann")),
+                new HashSet<>(jarScanner.getNamesOfClassesWithAnnotation("defl.Ann")));
+
+        // Inflate raw deflate data with a pooled inflater, which must be reset when it is released
+        final byte[] data = classfiles.get("defl.Big");
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, /* nowrap = */true);
+        deflater.setInput(data);
+        deflater.finish();
+        final byte[] compressed = new byte[data.length + 1024];
+        final int compressedSize = deflater.deflate(compressed);
+        deflater.end();
+        for (int i = 0; i < 3; i++) {
+            final PooledInflater inflater = PooledInflater.acquire();
+            try {
+                final byte[] out = new byte[data.length];
+                inflater.inflate(ByteBuffer.wrap(compressed, 0, compressedSize), out, data.length);
+                assertTrue(Arrays.equals(data, out));
+            } finally {
+                inflater.release();
+            }
+        }
+        final PooledInflater inflater = PooledInflater.acquire();
+        try {
+            inflater.inflate(ByteBuffer.wrap(compressed, 0, compressedSize), new byte[data.length + 1],
+                    data.length + 1);
+            assertTrue("Expected ZipException", false);
+        } catch (final ZipException e) {
+            // Expected -- the entry size does not match the inflated size
+        } finally {
+            inflater.release();
+        }
+    }
 }
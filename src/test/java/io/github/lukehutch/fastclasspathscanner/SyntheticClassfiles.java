@@ -0,0 +1,351 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes synthetic classfiles, jarfiles and classpath directories for tests and benchmarks. The classfiles are
+ * structurally valid (so they can be parsed by the scanner) but are not intended to be loaded.
+ */
+public class SyntheticClassfiles {
+    public static final int ACC_CLASS = 0x0021; // public, super
+    public static final int ACC_INTERFACE = 0x0601; // public, interface, abstract
+    public static final int ACC_ANNOTATION = 0x2601; // public, interface, abstract, annotation
+
+    /** A constant pool, with deduplicated entries. */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final HashMap<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(final String str) throws IOException {
+            final Integer idx = entries.get("U" + str);
+            if (idx != null) {
+                return idx;
+            }
+            out.writeByte(1);
+            out.writeUTF(str);
+            entries.put("U" + str, count);
+            return count++;
+        }
+
+        int classRef(final String className) throws IOException {
+            final String internalName = className.replace('.', '/');
+            final Integer idx = entries.get("C" + internalName);
+            if (idx != null) {
+                return idx;
+            }
+            final int nameIdx = utf8(internalName);
+            out.writeByte(7);
+            out.writeShort(nameIdx);
+            entries.put("C" + internalName, count);
+            return count++;
+        }
+
+        int intConst(final int value) throws IOException {
+            final Integer idx = entries.get("I" + value);
+            if (idx != null) {
+                return idx;
+            }
+            out.writeByte(3);
+            out.writeInt(value);
+            entries.put("I" + value, count);
+            return count++;
+        }
+    }
+
+    /**
+     * Write a classfile.
+     * 
+     * @param className
+     *            The name of the class, e.g. "com.xyz.Widget".
+     * @param accessFlags
+     *            ACC_CLASS, ACC_INTERFACE or ACC_ANNOTATION.
+     * @param superclassName
+     *            The name of the superclass ("java.lang.Object" for interfaces).
+     * @param interfaceNames
+     *            The names of the implemented or extended interfaces.
+     * @param annotationNames
+     *            The names of the class annotations.
+     * @param numFields
+     *            The number of int fields to add.
+     * @param numMethods
+     *            The number of no-op void methods to add.
+     * @return The classfile.
+     */
+    public static byte[] classfile(final String className, final int accessFlags, final String superclassName,
+            final List<String> interfaceNames, final List<String> annotationNames, final int numFields,
+            final int numMethods) {
+        return classfile(className, accessFlags, superclassName, interfaceNames, annotationNames,
+                Collections.<String, Map<String, Integer>> emptyMap(), Collections.<String, Integer> emptyMap(),
+                Collections.<String> emptyList(), numFields, numMethods);
+    }
+
+    /**
+     * Write a classfile with annotation element values, annotation element default values, and annotated fields and
+     * methods.
+     * 
+     * @param annotationValues
+     *            The int element values of the class annotations, keyed by annotation name (annotations without an
+     *            entry have no element values).
+     * @param elementDefaults
+     *            For an annotation type, the int default values of its elements, keyed by element name. Each element
+     *            is declared as an abstract method with an AnnotationDefault attribute.
+     * @param memberAnnotationNames
+     *            The names of the annotations on each field and method.
+     * @see #classfile(String, int, String, List, List, int, int)
+     */
+    public static byte[] classfile(final String className, final int accessFlags, final String superclassName,
+            final List<String> interfaceNames, final List<String> annotationNames,
+            final Map<String, Map<String, Integer>> annotationValues, final Map<String, Integer> elementDefaults,
+            final List<String> memberAnnotationNames, final int numFields, final int numMethods) {
+        try {
+            final ConstantPool cp = new ConstantPool();
+            final int thisIdx = cp.classRef(className);
+            final int superIdx = cp.classRef(superclassName);
+            final int[] interfaceIdxs = new int[interfaceNames.size()];
+            for (int i = 0; i < interfaceIdxs.length; i++) {
+                interfaceIdxs[i] = cp.classRef(interfaceNames.get(i));
+            }
+            final byte[] classAnnotations = annotationNames.isEmpty() ? null
+                    : annotations(cp, annotationNames, annotationValues);
+            final byte[] memberAnnotations = memberAnnotationNames.isEmpty() ? null
+                    : annotations(cp, memberAnnotationNames, Collections.<String, Map<String, Integer>> emptyMap());
+            final int annotationsAttrIdx = classAnnotations != null || memberAnnotations != null
+                    ? cp.utf8("RuntimeVisibleAnnotations")
+                    : 0;
+            final int intDescIdx = numFields > 0 ? cp.utf8("I") : 0;
+            final int voidDescIdx = numMethods > 0 ? cp.utf8("()V") : 0;
+            final int codeAttrIdx = numMethods > 0 && accessFlags == ACC_CLASS ? cp.utf8("Code") : 0;
+            final int[] fieldNameIdxs = new int[numFields];
+            for (int i = 0; i < numFields; i++) {
+                fieldNameIdxs[i] = cp.utf8("field" + i);
+            }
+            final int[] methodNameIdxs = new int[numMethods];
+            for (int i = 0; i < numMethods; i++) {
+                methodNameIdxs[i] = cp.utf8("method" + i);
+            }
+            final int intMethodDescIdx = elementDefaults.isEmpty() ? 0 : cp.utf8("()I");
+            final int annotationDefaultAttrIdx = elementDefaults.isEmpty() ? 0 : cp.utf8("AnnotationDefault");
+            final int[] elementNameIdxs = new int[elementDefaults.size()];
+            final int[] elementDefaultIdxs = new int[elementDefaults.size()];
+            int elementIdx = 0;
+            for (final Entry<String, Integer> ent : elementDefaults.entrySet()) {
+                elementNameIdxs[elementIdx] = cp.utf8(ent.getKey());
+                elementDefaultIdxs[elementIdx++] = cp.intConst(ent.getValue());
+            }
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0); // minor version
+            out.writeShort(52); // major version (Java 8)
+            out.writeShort(cp.count);
+            cp.out.flush();
+            cp.bytes.writeTo(out);
+            out.writeShort(accessFlags);
+            out.writeShort(thisIdx);
+            out.writeShort(superIdx);
+            out.writeShort(interfaceIdxs.length);
+            for (final int idx : interfaceIdxs) {
+                out.writeShort(idx);
+            }
+            out.writeShort(numFields);
+            for (int i = 0; i < numFields; i++) {
+                out.writeShort(0x0001); // public
+                out.writeShort(fieldNameIdxs[i]);
+                out.writeShort(intDescIdx);
+                if (memberAnnotations != null) {
+                    out.writeShort(1); // attributes_count
+                    writeAttribute(out, annotationsAttrIdx, memberAnnotations);
+                } else {
+                    out.writeShort(0); // attributes_count
+                }
+            }
+            out.writeShort(numMethods + elementNameIdxs.length);
+            for (int i = 0; i < numMethods; i++) {
+                if (codeAttrIdx == 0) {
+                    out.writeShort(0x0401); // public abstract
+                    out.writeShort(methodNameIdxs[i]);
+                    out.writeShort(voidDescIdx);
+                    out.writeShort(memberAnnotations != null ? 1 : 0); // attributes_count
+                } else {
+                    out.writeShort(0x0001); // public
+                    out.writeShort(methodNameIdxs[i]);
+                    out.writeShort(voidDescIdx);
+                    out.writeShort(memberAnnotations != null ? 2 : 1); // attributes_count
+                    out.writeShort(codeAttrIdx);
+                    out.writeInt(13); // attribute_length
+                    out.writeShort(0); // max_stack
+                    out.writeShort(1); // max_locals
+                    out.writeInt(1); // code_length
+                    out.writeByte(0xb1); // return
+                    out.writeShort(0); // exception_table_length
+                    out.writeShort(0); // attributes_count
+                }
+                if (memberAnnotations != null) {
+                    writeAttribute(out, annotationsAttrIdx, memberAnnotations);
+                }
+            }
+            for (int i = 0; i < elementNameIdxs.length; i++) {
+                out.writeShort(0x0401); // public abstract
+                out.writeShort(elementNameIdxs[i]);
+                out.writeShort(intMethodDescIdx);
+                out.writeShort(1); // attributes_count
+                out.writeShort(annotationDefaultAttrIdx);
+                out.writeInt(3); // attribute_length
+                out.writeByte('I');
+                out.writeShort(elementDefaultIdxs[i]);
+            }
+            if (classAnnotations != null) {
+                out.writeShort(1); // attributes_count
+                writeAttribute(out, annotationsAttrIdx, classAnnotations);
+            } else {
+                out.writeShort(0); // attributes_count
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            // Can't happen, writing to a byte array
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Encode the contents of a RuntimeVisibleAnnotations attribute, with int element values. */
+    private static byte[] annotations(final ConstantPool cp, final List<String> annotationNames,
+            final Map<String, Map<String, Integer>> annotationValues) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(annotationNames.size());
+        for (final String annotationName : annotationNames) {
+            out.writeShort(cp.utf8("L" + annotationName.replace('.', '/') + ";"));
+            final Map<String, Integer> values = annotationValues.get(annotationName);
+            out.writeShort(values == null ? 0 : values.size()); // num_element_value_pairs
+            if (values != null) {
+                for (final Entry<String, Integer> ent : values.entrySet()) {
+                    out.writeShort(cp.utf8(ent.getKey()));
+                    out.writeByte('I');
+                    out.writeShort(cp.intConst(ent.getValue()));
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /** Write an attribute. */
+    private static void writeAttribute(final DataOutputStream out, final int nameIdx, final byte[] contents)
+            throws IOException {
+        out.writeShort(nameIdx);
+        out.writeInt(contents.length);
+        out.write(contents);
+    }
+
+    /** The path of the classfile of a class, relative to the classpath element that contains it. */
+    public static String classfilePath(final String className) {
+        return className.replace('.', '/') + ".class";
+    }
+
+    /** Write classfiles (keyed by class name) to a jarfile. */
+    public static void writeJar(final File jarFile, final Map<String, byte[]> classfiles) throws IOException {
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (final Entry<String, byte[]> ent : classfiles.entrySet()) {
+                jar.putNextEntry(new ZipEntry(classfilePath(ent.getKey())));
+                jar.write(ent.getValue());
+                jar.closeEntry();
+            }
+        }
+    }
+
+    /** Write classfiles (keyed by class name) to a classpath directory. */
+    public static void writeDir(final File dir, final Map<String, byte[]> classfiles) throws IOException {
+        for (final Entry<String, byte[]> ent : classfiles.entrySet()) {
+            final File file = new File(dir, classfilePath(ent.getKey()));
+            file.getParentFile().mkdirs();
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(ent.getValue());
+            }
+        }
+    }
+
+    /**
+     * Generate a class hierarchy in the given package: an interface "Iface", an annotation "Ann", and numClasses
+     * classes "C0" to "C(numClasses-1)", where C0 extends java.lang.Object, and each other class Ci extends class
+     * C((i-1)/fanout). A fanout of 1 gives a single deep chain of classes, and a large fanout gives a wide, shallow
+     * hierarchy. Every annotationEvery-th class is annotated with Ann and implements Iface.
+     */
+    public static LinkedHashMap<String, byte[]> tree(final String packageName, final int numClasses,
+            final int fanout, final int annotationEvery) {
+        final LinkedHashMap<String, byte[]> classfiles = new LinkedHashMap<>();
+        final String ifaceName = packageName + ".Iface";
+        final String annName = packageName + ".Ann";
+        final List<String> none = Collections.emptyList();
+        classfiles.put(ifaceName, classfile(ifaceName, ACC_INTERFACE, "java.lang.Object", none, none, 0, 2));
+        classfiles.put(annName, classfile(annName, ACC_ANNOTATION, "java.lang.Object",
+                Collections.singletonList("java.lang.annotation.Annotation"), none, 0, 0));
+        for (int i = 0; i < numClasses; i++) {
+            final String className = packageName + ".C" + i;
+            final String superclassName = i == 0 ? "java.lang.Object" : packageName + ".C" + ((i - 1) / fanout);
+            final boolean annotated = annotationEvery > 0 && i % annotationEvery == 0;
+            final List<String> interfaces = annotated ? Collections.singletonList(ifaceName) : none;
+            final List<String> annotations = annotated ? Collections.singletonList(annName) : none;
+            classfiles.put(className, classfile(className, ACC_CLASS, superclassName, interfaces, annotations, 4, 4));
+        }
+        return classfiles;
+    }
+
+    /** Split a map of classfiles into a list of maps of approximately equal size. */
+    public static List<LinkedHashMap<String, byte[]>> split(final Map<String, byte[]> classfiles, final int numParts) {
+        final List<LinkedHashMap<String, byte[]>> parts = new ArrayList<>(numParts);
+        for (int i = 0; i < numParts; i++) {
+            parts.add(new LinkedHashMap<String, byte[]>());
+        }
+        int i = 0;
+        for (final Entry<String, byte[]> ent : classfiles.entrySet()) {
+            parts.get(i++ % numParts).put(ent.getKey(), ent.getValue());
+        }
+        return parts;
+    }
+}
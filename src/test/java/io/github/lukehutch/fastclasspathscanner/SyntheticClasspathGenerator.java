@@ -0,0 +1,277 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a synthetic classpath of classfiles in jarfiles and a directory, with a configurable hierarchy shape,
+ * interface and annotation density, and package spread, for testing the scanner at scale. The generated class
+ * hierarchy is also kept as a model, so that tests can compute expected query results independently of the scanner.
+ * 
+ * Classes are organized into numTrees separate class trees. Within each tree, the i-th class extends the
+ * ((i-1)/fanout)-th class, so a fanout of 1 gives deep chains, and a large fanout gives wide, shallow hierarchies.
+ * Classes are assigned round-robin to packages and to classpath elements, so that hierarchies span packages, jarfiles
+ * and the directory.
+ */
+public class SyntheticClasspathGenerator {
+    private final String basePackage;
+    private int numClasses = 1000;
+    private int numTrees = 1;
+    private int fanout = 4;
+    private int numPackages = 10;
+    private int numJars = 10;
+    private boolean includeDir = true;
+    private int numInterfaces = 10;
+    private double interfaceDensity = 0.1;
+    private int numAnnotations = 10;
+    private double annotationDensity = 0.1;
+    private long seed = 1;
+
+    /** The superclass of each generated class. */
+    public final HashMap<String, String> superclassOf = new HashMap<>();
+
+    /** The interfaces implemented by each generated class that implements an interface. */
+    public final HashMap<String, List<String>> interfacesOf = new HashMap<>();
+
+    /** The annotations of each generated class that has an annotation. */
+    public final HashMap<String, List<String>> annotationsOf = new HashMap<>();
+
+    /** The names of the generated classes, in generation order. */
+    public final ArrayList<String> classNames = new ArrayList<>();
+
+    public SyntheticClasspathGenerator(final String basePackage) {
+        this.basePackage = basePackage;
+    }
+
+    public SyntheticClasspathGenerator numClasses(final int numClasses) {
+        this.numClasses = numClasses;
+        return this;
+    }
+
+    public SyntheticClasspathGenerator numTrees(final int numTrees) {
+        this.numTrees = numTrees;
+        return this;
+    }
+
+    public SyntheticClasspathGenerator fanout(final int fanout) {
+        this.fanout = fanout;
+        return this;
+    }
+
+    public SyntheticClasspathGenerator numPackages(final int numPackages) {
+        this.numPackages = numPackages;
+        return this;
+    }
+
+    /** The number of jarfiles to write. If includeDir is true, a classpath directory is written too. */
+    public SyntheticClasspathGenerator numJars(final int numJars, final boolean includeDir) {
+        this.numJars = numJars;
+        this.includeDir = includeDir;
+        return this;
+    }
+
+    /** Each class implements one of numInterfaces interfaces with the given probability. */
+    public SyntheticClasspathGenerator interfaces(final int numInterfaces, final double interfaceDensity) {
+        this.numInterfaces = numInterfaces;
+        this.interfaceDensity = interfaceDensity;
+        return this;
+    }
+
+    /** Each class has one of numAnnotations annotations with the given probability. */
+    public SyntheticClasspathGenerator annotations(final int numAnnotations, final double annotationDensity) {
+        this.numAnnotations = numAnnotations;
+        this.annotationDensity = annotationDensity;
+        return this;
+    }
+
+    public SyntheticClasspathGenerator seed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    public String interfaceName(final int i) {
+        return basePackage + ".api.Iface" + i;
+    }
+
+    public String annotationName(final int i) {
+        return basePackage + ".api.Ann" + i;
+    }
+
+    /** The name of the root class of the given class tree. */
+    public String rootClassName(final int tree) {
+        return className(tree, 0);
+    }
+
+    private String className(final int tree, final int idx) {
+        final int globalIdx = idx * numTrees + tree;
+        return basePackage + ".p" + (globalIdx % numPackages) + ".T" + tree + "C" + idx;
+    }
+
+    /**
+     * Generate the classpath in the given directory, and return it as a classpath string. Interfaces and annotations
+     * are written to the first classpath element; classes are distributed round-robin over all classpath elements.
+     */
+    public String write(final File outputDir) throws IOException {
+        final Random random = new Random(seed);
+        final int numElements = numJars + (includeDir ? 1 : 0);
+        final ArrayList<LinkedHashMap<String, byte[]>> elementClassfiles = new ArrayList<>();
+        for (int i = 0; i < numElements; i++) {
+            elementClassfiles.add(new LinkedHashMap<String, byte[]>());
+        }
+        final List<String> none = Collections.emptyList();
+        for (int i = 0; i < numInterfaces; i++) {
+            elementClassfiles.get(0).put(interfaceName(i), SyntheticClassfiles.classfile(interfaceName(i),
+                    SyntheticClassfiles.ACC_INTERFACE, "java.lang.Object", none, none, 0, 2));
+        }
+        for (int i = 0; i < numAnnotations; i++) {
+            elementClassfiles.get(0).put(annotationName(i), SyntheticClassfiles.classfile(annotationName(i),
+                    SyntheticClassfiles.ACC_ANNOTATION, "java.lang.Object",
+                    Collections.singletonList("java.lang.annotation.Annotation"), none, 0, 0));
+        }
+        final int classesPerTree = (numClasses + numTrees - 1) / numTrees;
+        for (int idx = 0, n = 0; idx < classesPerTree; idx++) {
+            for (int tree = 0; tree < numTrees && n < numClasses; tree++, n++) {
+                final String className = className(tree, idx);
+                final String superclassName = idx == 0 ? "java.lang.Object" : className(tree, (idx - 1) / fanout);
+                List<String> interfaces = none;
+                if (numInterfaces > 0 && random.nextDouble() < interfaceDensity) {
+                    interfaces = Collections.singletonList(interfaceName(random.nextInt(numInterfaces)));
+                    interfacesOf.put(className, interfaces);
+                }
+                List<String> annotations = none;
+                if (numAnnotations > 0 && random.nextDouble() < annotationDensity) {
+                    annotations = Collections.singletonList(annotationName(random.nextInt(numAnnotations)));
+                    annotationsOf.put(className, annotations);
+                }
+                superclassOf.put(className, superclassName);
+                classNames.add(className);
+                elementClassfiles.get(n % numElements).put(className, SyntheticClassfiles.classfile(className,
+                        SyntheticClassfiles.ACC_CLASS, superclassName, interfaces, annotations, 4, 4));
+            }
+        }
+
+        final StringBuilder classpath = new StringBuilder();
+        for (int i = 0; i < numElements; i++) {
+            final File element;
+            if (includeDir && i == 0) {
+                element = new File(outputDir, "classes");
+                SyntheticClassfiles.writeDir(element, elementClassfiles.get(i));
+            } else {
+                element = new File(outputDir, "lib" + i + ".jar");
+                SyntheticClassfiles.writeJar(element, elementClassfiles.get(i));
+            }
+            elementClassfiles.set(i, null);
+            if (classpath.length() > 0) {
+                classpath.append(File.pathSeparatorChar);
+            }
+            classpath.append(element.getPath());
+        }
+        return classpath.toString();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /** The expected names of the subclasses of a generated class, computed from the model. */
+    public HashSet<String> expectedSubclassesOf(final String className) {
+        final HashSet<String> subclasses = new HashSet<>();
+        for (final String name : classNames) {
+            for (String sup = superclassOf.get(name); sup != null; sup = superclassOf.get(sup)) {
+                if (sup.equals(className)) {
+                    subclasses.add(name);
+                    break;
+                }
+            }
+        }
+        return subclasses;
+    }
+
+    /** The expected names of the classes implementing an interface, directly or via a superclass. */
+    public HashSet<String> expectedClassesImplementing(final String interfaceName) {
+        final HashSet<String> classes = new HashSet<>();
+        for (final String name : classNames) {
+            for (String cls = name; cls != null; cls = superclassOf.get(cls)) {
+                final List<String> interfaces = interfacesOf.get(cls);
+                if (interfaces != null && interfaces.contains(interfaceName)) {
+                    classes.add(name);
+                    break;
+                }
+            }
+        }
+        return classes;
+    }
+
+    /** The expected names of the classes directly annotated with an annotation. */
+    public HashSet<String> expectedClassesWithAnnotation(final String annotationName) {
+        final HashSet<String> classes = new HashSet<>();
+        for (final String name : classNames) {
+            final List<String> annotations = annotationsOf.get(name);
+            if (annotations != null && annotations.contains(annotationName)) {
+                classes.add(name);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * The number of (class, superclass) pairs in the transitive closure of the generated class hierarchy, excluding
+     * java.lang.Object. The scanner stores the closure in both directions, so its memory use grows with this number.
+     */
+    public long numAncestorPairs() {
+        long numPairs = 0;
+        for (final String name : classNames) {
+            for (String sup = superclassOf.get(name); superclassOf.containsKey(sup); sup = superclassOf.get(sup)) {
+                numPairs++;
+            }
+        }
+        return numPairs;
+    }
+
+    /** Recursively delete a generated classpath. */
+    public static void deleteRecursively(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File child : files) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.HashSet;
+
+import io.github.lukehutch.fastclasspathscanner.classgraph.MappedClassGraphIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Large-scale tests on synthetic classpaths, checking query results against the generator's model. The default
+ * sizes keep the suite fast; run with e.g. -Dfastclasspathscanner.scale=50 to multiply the number of classes and
+ * jarfiles (200k classes, 500 jarfiles). Run with -Dfastclasspathscanner.budgets=true to also check that scanning
+ * and querying stay within wall-time and retained heap budgets, which depend on the machine running the tests.
+ */
+public class SyntheticClasspathScaleTest {
+    /** Multiplier for the number of classes and jarfiles. */
+    private static final int SCALE = Integer.getInteger("fastclasspathscanner.scale", 1);
+
+    /** Whether to check the wall-time and retained heap budgets. */
+    private static final boolean CHECK_BUDGETS = Boolean.getBoolean("fastclasspathscanner.budgets");
+
+    /** Wall-time budget for scan() per 10k classes. */
+    private static final long SCAN_MILLIS_PER_10K_CLASSES = 10000;
+
+    /** Wall-time budget for all queries in a test. */
+    private static final long QUERY_MILLIS = 5000;
+
+    /** Retained heap budget per class of the scanner after scan(). */
+    private static final long HEAP_BYTES_PER_CLASS = 4096;
+
+    /** Additional retained heap budget per (class, superclass) pair in the transitive closure of the hierarchy. */
+    private static final long HEAP_BYTES_PER_ANCESTOR_PAIR = 128;
+
+    private File tempDir;
+
+    @Before
+    public void createTempDir() throws Exception {
+        tempDir = Files.createTempDirectory("fcs-scale").toFile();
+    }
+
+    @After
+    public void deleteTempDir() {
+        SyntheticClasspathGenerator.deleteRecursively(tempDir);
+    }
+
+    private static long numCollections() {
+        long numCollections = 0;
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            numCollections += Math.max(0, collector.getCollectionCount());
+        }
+        return numCollections;
+    }
+
+    /**
+     * Return the heap in use after garbage collection. System.gc() is only a hint, so the garbage collector MXBeans
+     * are checked to make sure that collections actually ran.
+     */
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            final long numCollectionsBefore = numCollections();
+            System.gc();
+            assertTrue("System.gc() did not run a collection, e.g. due to -XX:+DisableExplicitGC",
+                    numCollections() > numCollectionsBefore);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /** Check the heap retained since heapBefore was measured, if budgets are checked. */
+    private static void checkRetainedHeap(final String what, final long heapBefore, final long heapBudget) {
+        if (CHECK_BUDGETS) {
+            final long heapUsed = usedHeap() - heapBefore;
+            assertTrue(what + " retained " + heapUsed + " bytes, budget " + heapBudget, heapUsed <= heapBudget);
+        }
+    }
+
+    /** Check the time taken by the queries started at queryStart, if budgets are checked. */
+    private static void checkQueryTime(final long queryStart) {
+        if (CHECK_BUDGETS) {
+            final long queryMillis = (System.nanoTime() - queryStart) / 1000000;
+            assertTrue("Queries took " + queryMillis + " ms", queryMillis <= QUERY_MILLIS);
+        }
+    }
+
+    /** Scan the classpath, checking the wall-time and retained heap budgets if required, and return the scanner. */
+    private static FastClasspathScanner scanWithinBudget(final SyntheticClasspathGenerator generator,
+            final String classpath) {
+        final int numClasses = generator.classNames.size();
+        final long heapBefore = CHECK_BUDGETS ? usedHeap() : 0;
+        final long scanStart = System.nanoTime();
+        final FastClasspathScanner scanner = new FastClasspathScanner("synth").overrideClasspath(classpath).scan();
+        if (CHECK_BUDGETS) {
+            final long scanMillis = (System.nanoTime() - scanStart) / 1000000;
+            final long scanBudget = SCAN_MILLIS_PER_10K_CLASSES * Math.max(1, numClasses / 10000);
+            assertTrue("scan() took " + scanMillis + " ms, budget " + scanBudget + " ms", scanMillis <= scanBudget);
+        }
+        checkRetainedHeap("Scanner", heapBefore, HEAP_BYTES_PER_CLASS * numClasses + HEAP_BYTES_PER_ANCESTOR_PAIR
+                * generator.numAncestorPairs());
+        return scanner;
+    }
+
+    @Test
+    public void wideHierarchyWithManyImplementations() throws Exception {
+        // 2k implementations of one interface (at the default scale), spread over 10 jarfiles
+        final int numClasses = 4000 * SCALE;
+        final SyntheticClasspathGenerator generator = new SyntheticClasspathGenerator("synth")
+                .numClasses(numClasses).numTrees(10).fanout(50).numPackages(100).numJars(10 * SCALE, true)
+                .interfaces(1, 0.5).annotations(10, 0.2);
+        final String classpath = generator.write(tempDir);
+        final FastClasspathScanner scanner = scanWithinBudget(generator, classpath);
+
+        final long queryStart = System.nanoTime();
+        assertEquals(generator.expectedClassesImplementing(generator.interfaceName(0)), new HashSet<>(
+                scanner.getNamesOfClassesImplementing(generator.interfaceName(0))));
+        for (int tree = 0; tree < 10; tree++) {
+            final String root = generator.rootClassName(tree);
+            assertEquals(generator.expectedSubclassesOf(root), new HashSet<>(scanner.getNamesOfSubclassesOf(root)));
+        }
+        for (int i = 0; i < 10; i++) {
+            final String annotation = generator.annotationName(i);
+            assertEquals(generator.expectedClassesWithAnnotation(annotation), new HashSet<>(
+                    scanner.getNamesOfClassesWithAnnotation(annotation)));
+        }
+        checkQueryTime(queryStart);
+    }
+
+    @Test
+    public void deepHierarchy() throws Exception {
+        // Chains of 500 classes, each class implementing an interface with probability 0.1
+        final int numClasses = 1000 * SCALE;
+        final SyntheticClasspathGenerator generator = new SyntheticClasspathGenerator("synth")
+                .numClasses(numClasses).numTrees(2 * SCALE).fanout(1).numPackages(20).numJars(10, false)
+                .interfaces(10, 0.1).annotations(0, 0);
+        final String classpath = generator.write(tempDir);
+        final FastClasspathScanner scanner = scanWithinBudget(generator, classpath);
+
+        final long queryStart = System.nanoTime();
+        final String root = generator.rootClassName(0);
+        assertEquals(generator.expectedSubclassesOf(root), new HashSet<>(scanner.getNamesOfSubclassesOf(root)));
+        final String leaf = generator.classNames.get(generator.classNames.size() - 1);
+        // All ancestors in the chain, plus java.lang.Object
+        assertEquals(numClasses / (2 * SCALE), scanner.getNamesOfSuperclassesOf(leaf).size());
+        for (int i = 0; i < 10; i++) {
+            final String iface = generator.interfaceName(i);
+            assertEquals(generator.expectedClassesImplementing(iface), new HashSet<>(
+                    scanner.getNamesOfClassesImplementing(iface)));
+        }
+        checkQueryTime(queryStart);
+    }
+
+    @Test
+    public void manyPackagesAndJars() throws Exception {
+        // Every class in its own package, with the classes spread over many small jarfiles
+        final int numClasses = 1000 * SCALE;
+        final SyntheticClasspathGenerator generator = new SyntheticClasspathGenerator("synth")
+                .numClasses(numClasses).numTrees(100).fanout(4).numPackages(numClasses).numJars(40 * SCALE, true)
+                .interfaces(100, 0.3).annotations(100, 0.3);
+        final String classpath = generator.write(tempDir);
+        final FastClasspathScanner scanner = scanWithinBudget(generator, classpath);
+        // All classes, interfaces and annotations, plus java.lang.Object
+        assertEquals(numClasses + 1, scanner.getNamesOfAllClasses().size());
+        for (int tree = 0; tree < 100; tree += 10) {
+            final String root = generator.rootClassName(tree);
+            assertEquals(generator.expectedSubclassesOf(root), new HashSet<>(scanner.getNamesOfSubclassesOf(root)));
+        }
+    }
+
+    @Test
+    public void boundedMemoryMode() throws Exception {
+        // Query one of 10 class trees: the retained heap should be proportional to the size of that tree
+        final int numClasses = 4000 * SCALE;
+        final SyntheticClasspathGenerator generator = new SyntheticClasspathGenerator("synth")
+                .numClasses(numClasses).numTrees(10).fanout(50).numPackages(100).numJars(10 * SCALE, true)
+                .interfaces(1, 0.5).annotations(10, 0.2);
+        final String classpath = generator.write(tempDir);
+        final String root = generator.rootClassName(0);
+        final long heapBefore = CHECK_BUDGETS ? usedHeap() : 0;
+        final FastClasspathScanner scanner = new FastClasspathScanner("synth").overrideClasspath(classpath)
+                .enableBoundedMemoryMode(root).scan();
+        final long heapBudget = HEAP_BYTES_PER_CLASS * numClasses / 5;
+        checkRetainedHeap("Scanner", heapBefore, heapBudget);
+        assertTrue(scanner.getScanStatistics().getClassGraphFootprintBytes() <= heapBudget);
+        assertEquals(generator.expectedSubclassesOf(root), new HashSet<>(scanner.getNamesOfSubclassesOf(root)));
+        assertTrue(scanner.getNamesOfSubclassesOf(generator.rootClassName(1)).isEmpty());
+    }
+
+    @Test
+    public void mappedClassGraphIndex() throws Exception {
+        // Write an index of the scan, discard the scanner, and answer queries from the mapped index
+        final int numClasses = 4000 * SCALE;
+        final SyntheticClasspathGenerator generator = new SyntheticClasspathGenerator("synth")
+                .numClasses(numClasses).numTrees(10).fanout(50).numPackages(100).numJars(10 * SCALE, true)
+                .interfaces(10, 0.2).annotations(10, 0.2);
+        final String classpath = generator.write(tempDir);
+        final File indexFile = new File(tempDir, "classgraph.idx");
+        final long heapBeforeScan = CHECK_BUDGETS ? usedHeap() : 0;
+        FastClasspathScanner scanner = new FastClasspathScanner("synth").overrideClasspath(classpath).scan();
+        // The index should retain a small fraction of the heap retained by the scanner
+        final long scannerHeapUsed = CHECK_BUDGETS ? usedHeap() - heapBeforeScan : 0;
+        scanner.writeClassGraphIndex(indexFile);
+        scanner = null;
+        final long heapBefore = CHECK_BUDGETS ? usedHeap() : 0;
+        final MappedClassGraphIndex index = MappedClassGraphIndex.open(indexFile);
+        checkRetainedHeap("Index", heapBefore, scannerHeapUsed / 10);
+
+        final long queryStart = System.nanoTime();
+        for (int tree = 0; tree < 10; tree++) {
+            final String root = generator.rootClassName(tree);
+            assertEquals(generator.expectedSubclassesOf(root), new HashSet<>(index.getNamesOfSubclassesOf(root)));
+        }
+        for (int i = 0; i < 10; i++) {
+            final String iface = generator.interfaceName(i);
+            assertEquals(generator.expectedClassesImplementing(iface), new HashSet<>(
+                    index.getNamesOfClassesImplementing(iface)));
+            final String annotation = generator.annotationName(i);
+            assertEquals(generator.expectedClassesWithAnnotation(annotation), new HashSet<>(
+                    index.getNamesOfClassesWithAnnotation(annotation)));
+        }
+        checkQueryTime(queryStart);
+        // All classes, interfaces and annotations, plus java.lang.Object
+        assertEquals(numClasses + 1, index.getNamesOfAllClasses().size());
+    }
+
+    @Test
+    public void offHeapClassGraph() throws Exception {
+        // The deep hierarchy needs O(n * depth) heap for the on-heap closures, but the off-heap graph does not
+        final int numClasses = 1000 * SCALE;
+        final SyntheticClasspathGenerator generator = new SyntheticClasspathGenerator("synth")
+                .numClasses(numClasses).numTrees(2 * SCALE).fanout(1).numPackages(20).numJars(10, false)
+                .interfaces(10, 0.1).annotations(10, 0.1);
+        final String classpath = generator.write(tempDir);
+        final long heapBefore = CHECK_BUDGETS ? usedHeap() : 0;
+        final FastClasspathScanner scanner = new FastClasspathScanner("synth").overrideClasspath(classpath)
+                .enableOffHeapClassGraph().scan();
+        checkRetainedHeap("Scanner", heapBefore, HEAP_BYTES_PER_CLASS * numClasses / 4);
+        assertTrue(scanner.getScanStatistics().getClassGraphOffHeapBytes() > 0);
+
+        final long queryStart = System.nanoTime();
+        final String root = generator.rootClassName(0);
+        assertEquals(generator.expectedSubclassesOf(root), new HashSet<>(scanner.getNamesOfSubclassesOf(root)));
+        final String leaf = generator.classNames.get(generator.classNames.size() - 1);
+        assertEquals(numClasses / (2 * SCALE), scanner.getNamesOfSuperclassesOf(leaf).size());
+        for (int i = 0; i < 10; i++) {
+            final String iface = generator.interfaceName(i);
+            assertEquals(generator.expectedClassesImplementing(iface), new HashSet<>(
+                    scanner.getNamesOfClassesImplementing(iface)));
+            final String annotation = generator.annotationName(i);
+            assertEquals(generator.expectedClassesWithAnnotation(annotation), new HashSet<>(
+                    scanner.getNamesOfClassesWithAnnotation(annotation)));
+        }
+        checkQueryTime(queryStart);
+    }
+}
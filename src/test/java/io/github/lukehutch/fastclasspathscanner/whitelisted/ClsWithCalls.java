@@ -0,0 +1,28 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+public class ClsWithCalls {
+    public String callWithSwitches(final int i, final int j) {
+        switch (i) {
+        case 0:
+        case 1:
+        case 2:
+        case 3:
+            return "small";
+        default:
+            break;
+        }
+        switch (j) {
+        case 10:
+        case 1000:
+        case 100000:
+            return "sparse";
+        default:
+            break;
+        }
+        return new ClsWithReferences().getUrl();
+    }
+
+    public String callWithoutSwitches() {
+        return new ClsWithReferences().getUrl();
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+public class ClsWithConstants {
+    public static final String FOO_KEY = "foo";
+
+    static final String BAR_KEY = "bar";
+
+    static final int INT_KEY = 3;
+
+    static final String OTHER = "other";
+
+    static String NON_FINAL_KEY = "nonFinal";
+}
@@ -0,0 +1,5 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+@ValueAnnotation(name = "defaults")
+public class ClsWithDefaultValueAnnotation {
+}
@@ -0,0 +1,11 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+public class ClsWithFieldAnnotation {
+    @FieldAnnotation
+    public static final String ANNOTATED_CONSTANT = "value";
+
+    @FieldAnnotation
+    int annotatedField;
+
+    int unannotatedField;
+}
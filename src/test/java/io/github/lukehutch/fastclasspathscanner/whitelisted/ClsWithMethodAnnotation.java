@@ -0,0 +1,10 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+public class ClsWithMethodAnnotation {
+    @MethodAnnotation
+    public void annotatedMethod(final String arg) {
+    }
+
+    public void unannotatedMethod() {
+    }
+}
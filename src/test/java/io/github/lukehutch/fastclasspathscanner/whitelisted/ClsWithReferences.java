@@ -0,0 +1,12 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ClsWithReferences {
+    private final ConcurrentHashMap<String, String> map = new ConcurrentHashMap<>();
+
+    public String getUrl() {
+        map.put("url", "jdbc:h2:mem:test");
+        return map.get("url");
+    }
+}
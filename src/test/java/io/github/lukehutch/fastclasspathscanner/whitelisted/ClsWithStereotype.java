@@ -0,0 +1,5 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+@StereotypeAnnotation
+public class ClsWithStereotype {
+}
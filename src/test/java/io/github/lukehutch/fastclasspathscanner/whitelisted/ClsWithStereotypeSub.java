@@ -0,0 +1,4 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+public class ClsWithStereotypeSub extends ClsWithStereotype {
+}
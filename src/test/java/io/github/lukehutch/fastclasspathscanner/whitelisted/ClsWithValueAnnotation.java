@@ -0,0 +1,7 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+import java.lang.annotation.ElementType;
+
+@ValueAnnotation(name = "explicit", priority = 1, kind = ElementType.FIELD, type = Cls.class, tags = { "x", "y" })
+public class ClsWithValueAnnotation {
+}
@@ -0,0 +1,11 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface FieldAnnotation {
+}
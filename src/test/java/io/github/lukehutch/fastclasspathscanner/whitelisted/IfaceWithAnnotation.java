@@ -0,0 +1,5 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+@MetaAnnotation
+public interface IfaceWithAnnotation {
+}
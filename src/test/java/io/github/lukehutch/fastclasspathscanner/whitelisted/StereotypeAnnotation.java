@@ -0,0 +1,14 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+@MetaAnnotation
+public @interface StereotypeAnnotation {
+}
@@ -0,0 +1,20 @@
+package io.github.lukehutch.fastclasspathscanner.whitelisted;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ValueAnnotation {
+    String name();
+
+    int priority() default 5;
+
+    ElementType kind() default ElementType.TYPE;
+
+    Class<?> type() default Object.class;
+
+    String[] tags() default {};
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of FastClasspathScanner.
+ * 
+ * Author: Luke Hutchison <luke .dot. hutch .at. gmail .dot. com>
+ * 
+ * Hosted at: https://github.com/lukehutch/fast-classpath-scanner
+ * 
+ * --
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Luke Hutchison
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without
+ * limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT
+ * LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO
+ * EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE
+ * OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.lukehutch.fastclasspathscanner;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.lukehutch.fastclasspathscanner.utils.ScanEvents;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the Java Flight Recorder events emitted by the scanner. Only compiled when building with JDK 11 or later
+ * (see the jfr profile in pom.xml), and skipped if the scanner could not load its JFR events at runtime.
+ */
+public class FlightRecorderEventsTest {
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void scanFlightRecorderEvents() throws Exception {
+        assumeTrue("JFR events are not available", ScanEvents.INSTANCE.getClass() != ScanEvents.class);
+        final List<String> none = Collections.emptyList();
+        final Map<String, byte[]> classfiles = new LinkedHashMap<>();
+        classfiles.put("jfr.Cls", SyntheticClassfiles.classfile("jfr.Cls", SyntheticClassfiles.ACC_CLASS,
+                "java.lang.Object", none, none, 0, 0));
+        classfiles.put("jfr.ClsSub", SyntheticClassfiles.classfile("jfr.ClsSub", SyntheticClassfiles.ACC_CLASS,
+                "jfr.Cls", none, none, 0, 0));
+        classfiles.put("jfr.ClsSubSub", SyntheticClassfiles.classfile("jfr.ClsSubSub",
+                SyntheticClassfiles.ACC_CLASS, "jfr.ClsSub", none, none, 0, 0));
+        final File clsJar = tempFolder.newFile("cls.jar");
+        SyntheticClassfiles.writeJar(clsJar, classfiles);
+        final File recordingFile = new File(tempFolder.getRoot(), "scan.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.github.lukehutch.fastclasspathscanner.Scan");
+            recording.enable("io.github.lukehutch.fastclasspathscanner.ClasspathElement");
+            recording.enable("io.github.lukehutch.fastclasspathscanner.Finalize");
+            recording.enable("io.github.lukehutch.fastclasspathscanner.MatchProcessor").withThreshold(Duration.ZERO);
+            recording.start();
+            new FastClasspathScanner("jfr").overrideClasspath(clsJar.getPath())
+                    .matchClassesReferencing("jfr.Cls", (className, referencedClassName) -> {
+                    }).scan();
+            recording.stop();
+            recording.dump(recordingFile.toPath());
+        }
+        final Map<String, RecordedEvent> events = new HashMap<>();
+        for (final RecordedEvent event : RecordingFile.readAllEvents(recordingFile.toPath())) {
+            events.put(event.getEventType().getName().replace("io.github.lukehutch.fastclasspathscanner.", ""),
+                    event);
+        }
+        assertTrue(events.get("Scan").getInt("classfilesRead") == 3);
+        assertTrue(events.get("ClasspathElement").getString("path").equals(clsJar.getPath()));
+        assertTrue(events.get("ClasspathElement").getLong("bytesRead") > 0);
+        assertTrue(events.get("Finalize").getInt("numClasses") == 3);
+        assertTrue(events.get("MatchProcessor").getString("match").equals("jfr.ClsSub"));
+    }
+}